@@ -5,6 +5,7 @@ import java.util.Arrays;
 import java.util.Date;
 import java.util.Locale;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 import java.util.Objects;
 
@@ -14,10 +15,17 @@ import stream.vispar.server.cli.DefaultConsole;
 import stream.vispar.server.cli.IConsole;
 import stream.vispar.server.core.ServerConfig;
 import stream.vispar.server.core.ServerInstance;
+import stream.vispar.server.core.SlowConsumerPolicy;
+import stream.vispar.server.core.SocketDelivery;
+import stream.vispar.server.core.SparkSocket;
+import stream.vispar.server.engine.DeploymentMode;
 import stream.vispar.server.localization.LocalizedString;
+import stream.vispar.server.localization.Localizer;
 import stream.vispar.server.logger.ConsoleLogger;
 import stream.vispar.server.logger.FileLogger;
+import stream.vispar.server.logger.LogLevel;
 import stream.vispar.server.logger.MultiLogger;
+import stream.vispar.server.logger.OverflowPolicy;
 
 /**
  * Main class representing the entry point of the Vispar server.
@@ -61,15 +69,42 @@ public final class ServerApp {
         // use system default console
         console = new DefaultConsole();
         
-        // setup logging
-        MultiLogger logger = new MultiLogger();
-        logger.addLogger(new ConsoleLogger(console, true));
-        String logName = "Vispar_" + new SimpleDateFormat("yyyy-MM-dd-HHmmss").format(new Date()) + ".log";
-        logger.addLogger(new FileLogger(logName, true));
-        
         // retrieve startup args or set to default
+        LogLevel logLevel = LogLevel.INFO;
+        try {
+            logLevel = LogLevel.valueOf(System.getProperty("loglevel", "info").toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.err.println("[ERROR] Log level must be one of " + Arrays.toString(LogLevel.values())
+                    + ": " + e.toString());
+            System.exit(1);
+        }
+        int logBufferSize = 0;
+        long logMaxBytes = 0;
+        long logMaxAge = 0;
+        long logSummaryInterval = 0;
+        try {
+            logBufferSize = Integer.valueOf(System.getProperty("logbuffer",
+                    String.valueOf(FileLogger.DEFAULT_CAPACITY)));
+            logMaxBytes = Long.valueOf(System.getProperty("logsize", "100")) * 1024 * 1024;
+            logMaxAge = TimeUnit.HOURS.toMillis(Long.valueOf(System.getProperty("logage", "24")));
+            logSummaryInterval = TimeUnit.SECONDS.toMillis(Long.valueOf(System.getProperty("logsummary", "0")));
+        } catch (NumberFormatException e) {
+            System.err.println("[ERROR] Log buffer size, size, age and summary interval must be integers: "
+                    + e.toString());
+            System.exit(1);
+        }
+        OverflowPolicy logOverflow = OverflowPolicy.BLOCK;
+        try {
+            logOverflow = OverflowPolicy.valueOf(System.getProperty("logoverflow", "block").toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.err.println("[ERROR] Log overflow policy must be one of " + Arrays.toString(OverflowPolicy.values())
+                    + ": " + e.toString());
+            System.exit(1);
+        }
         int requestPort = 0;
         int socketPort = 0;
+        int engineLanes = 0;
+        int asyncBufferSize = 0;
         try {
             requestPort = Integer.valueOf(System.getProperty("requestport", "8080"));
             socketPort = Integer.valueOf(System.getProperty("socketport", "8081"));
@@ -77,14 +112,102 @@ public final class ServerApp {
             System.err.println("[ERROR] Port number must be an integer: " + e.toString());
             System.exit(1);
         }
+        try {
+            engineLanes = Integer.valueOf(System.getProperty("lanes", 
+                    String.valueOf(Runtime.getRuntime().availableProcessors())));
+        } catch (NumberFormatException e) {
+            System.err.println("[ERROR] Number of lanes must be an integer: " + e.toString());
+            System.exit(1);
+        }
+        try {
+            asyncBufferSize = Integer.valueOf(System.getProperty("asyncbuffer", "0"));
+        } catch (NumberFormatException e) {
+            System.err.println("[ERROR] Buffer size must be an integer: " + e.toString());
+            System.exit(1);
+        }
+        DeploymentMode deploymentMode = DeploymentMode.ISOLATED;
+        try {
+            deploymentMode = DeploymentMode.valueOf(System.getProperty("mode", "isolated").toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.err.println("[ERROR] Deployment mode must be one of " + Arrays.toString(DeploymentMode.values())
+                    + ": " + e.toString());
+            System.exit(1);
+        }
+        boolean filterFastPath = Boolean.parseBoolean(System.getProperty("fastpath", "false"));
+        SocketDelivery socketDelivery = SocketDelivery.IMMEDIATE;
+        SlowConsumerPolicy slowConsumerPolicy = SlowConsumerPolicy.DROP_OLDEST;
+        try {
+            socketDelivery = SocketDelivery.valueOf(
+                    System.getProperty("socketdelivery", "immediate").toUpperCase(Locale.ROOT));
+            slowConsumerPolicy = SlowConsumerPolicy.valueOf(
+                    System.getProperty("slowconsumer", "drop_oldest").toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.err.println("[ERROR] Socket delivery must be one of " + Arrays.toString(SocketDelivery.values())
+                    + ", slow consumer policy one of " + Arrays.toString(SlowConsumerPolicy.values()) + ": "
+                    + e.toString());
+            System.exit(1);
+        }
+        long socketTick = 0;
+        int socketReplay = 0;
+        long socketHoldTimeout = 0;
+        int socketQueueCapacity = 0;
+        try {
+            socketTick = Long.valueOf(System.getProperty("sockettick", String.valueOf(SparkSocket.DEFAULT_TICK)));
+            socketReplay = Integer.valueOf(System.getProperty("socketreplay", "0"));
+            socketHoldTimeout = Long.valueOf(System.getProperty("sockethold",
+                    String.valueOf(SparkSocket.DEFAULT_HOLD_TIMEOUT)));
+            socketQueueCapacity = Integer.valueOf(System.getProperty("socketqueue",
+                    String.valueOf(SparkSocket.DEFAULT_QUEUE_CAPACITY)));
+        } catch (NumberFormatException e) {
+            System.err.println("[ERROR] Socket tick, replay size, hold timeout and queue size must be integers: "
+                    + e.toString());
+            System.exit(1);
+        }
         String databaseUrl = System.getProperty("database", "localhost");
         String configPath = System.getProperty("configpath", "sensors");
         
-        // create server config
-        ServerConfig config = new ServerConfig(requestPort, socketPort, Locale.US, logger, databaseUrl, configPath);
+        // create server config (the loggers are added once the config is validated)
+        MultiLogger logger = new MultiLogger();
+        ServerConfig config = null;
+        try {
+            config = new ServerConfig.Builder(requestPort, socketPort, Locale.US, logger, databaseUrl, configPath)
+                    .engineLanes(engineLanes)
+                    .asyncBufferSize(asyncBufferSize)
+                    .deploymentMode(deploymentMode)
+                    .filterFastPath(filterFastPath)
+                    .socketDelivery(socketDelivery)
+                    .socketTick(socketTick)
+                    .socketReplay(socketReplay)
+                    .socketHoldTimeout(socketHoldTimeout)
+                    .socketQueueCapacity(socketQueueCapacity)
+                    .slowConsumerPolicy(slowConsumerPolicy)
+                    .logLevel(logLevel)
+                    .logBufferSize(logBufferSize)
+                    .logOverflow(logOverflow)
+                    .logMaxBytes(logMaxBytes)
+                    .logMaxAge(logMaxAge)
+                    .logSummaryInterval(logSummaryInterval)
+                    .build();
+        } catch (IllegalArgumentException e) {
+            System.err.println("[ERROR] Invalid configuration: " + e.getMessage());
+            System.exit(1);
+        }
+        
+        // setup logging
+        logger.addLogger(new ConsoleLogger(console, true, config.getLogLevel()));
+        String logName = "Vispar_" + new SimpleDateFormat("yyyy-MM-dd-HHmmss").format(new Date()) + ".log";
+        FileLogger fileLogger = new FileLogger(logName, true, config.getLogLevel(), config.getLogBufferSize(),
+                config.getLogOverflow(), config.getLogMaxBytes(), config.getLogMaxAge(), new Localizer(Locale.US));
+        logger.addLogger(fileLogger);
         
         // setup server instance
         instance = new ServerInstance(config);
+        
+        // write pending summaries and buffered log messages on exit
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            instance.stop();
+            fileLogger.close();
+        }, "vispar-log-shutdown"));
         instance.start();
         
         // command REPL
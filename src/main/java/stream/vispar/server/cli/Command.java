@@ -9,8 +9,10 @@ import java.util.stream.Collectors;
 import org.apache.commons.codec.digest.DigestUtils;
 
 import stream.vispar.server.core.ServerInstance;
+import stream.vispar.server.core.SocketSession;
 import stream.vispar.server.core.entities.Simulation;
 import stream.vispar.server.core.entities.User;
+import stream.vispar.server.engine.IngestQueue;
 import stream.vispar.server.localization.LocalizedString;
 
 /**
@@ -156,6 +158,35 @@ public enum Command {
         }
     },
     
+    /**
+     * Command to print the state of the ingest queue and the outbound queues of the socket clients.
+     */
+    STATS("stats", "stats") {
+        @Override
+        protected CommandResult execute(ServerInstance instance, String input) {
+            if (getMatcher(input).matches()) {
+                
+                // get queue depth and rejections
+                IngestQueue queue = instance.getIngestQueue();
+                StringBuilder stats = new StringBuilder(String.format(
+                        instance.getLocalizer().get(LocalizedString.INGEST_STATS),
+                        queue.getDepth(), queue.getCapacity(), queue.getLanes(), queue.getRejected()));
+                
+                // get outbound queue of each socket client
+                for (SocketSession session : instance.getSockHandler().getSessions()) {
+                    stats.append("\n").append(String.format(
+                            instance.getLocalizer().get(LocalizedString.SOCKET_STATS),
+                            session.getRemoteAddress(), session.getQueueDepth(), session.getDropped()));
+                }
+                return new StringCommandResult(stats.toString());
+                
+            } else {
+                return new StringCommandResult(
+                        instance.getLocalizer().get(LocalizedString.INV_STATS_SYNTAX));
+            }
+        }
+    },
+    
     /**
      * Command to stop the server.
      */
@@ -18,6 +18,7 @@ import stream.vispar.model.nodes.inputs.PatternInputNode;
 import stream.vispar.model.nodes.outputs.PatternOutputNode;
 import stream.vispar.server.core.entities.Sensor;
 import stream.vispar.server.core.entities.adapters.NodeVisitorAdapter;
+import stream.vispar.server.engine.IEngine;
 
 /**
  * Defines the routes for the api server provided by a {@link IRequestHandler}.
@@ -288,13 +289,27 @@ public enum ApiRoute {
             try {
                     
                 // get pattern id
-                String patternId = request.getAsJsonObject().get("data")
-                        .getAsJsonObject().getAsJsonPrimitive("id").getAsString();
+                IJsonObject data = request.getAsJsonObject().get("data").getAsJsonObject();
+                String patternId = data.getAsJsonPrimitive("id").getAsString();
+                
+                // get buffer size for asynchronous processing (optional)
+                int bufferSize = IEngine.DEFAULT_BUFFER_SIZE;
+                if (data.has("bufferSize")) {
+                    bufferSize = Integer.parseInt(data.getAsJsonPrimitive("bufferSize").getAsString());
+                    if (bufferSize < IEngine.SYNCHRONOUS || bufferSize > IEngine.MAX_BUFFER_SIZE) {
+                        response.add(ERROR_KEY_NAME, RouteError.INVALID_REQUEST.getCode());
+                        return response;
+                    }
+                }
                 
                 // deploy pattern
-                Pattern pattern = instance.getPatternCtrl().deploy(patternId);
+                Pattern pattern = bufferSize == IEngine.DEFAULT_BUFFER_SIZE
+                        ? instance.getPatternCtrl().deploy(patternId)
+                        : instance.getPatternCtrl().deploy(patternId, bufferSize);
                 response.add("data", new GsonConverter().toJson(pattern));
                 
+            } catch (NumberFormatException e) {
+                response.add(ERROR_KEY_NAME, RouteError.INVALID_REQUEST.getCode());
             } catch (IllegalArgumentException e) {
                 response.add(ERROR_KEY_NAME, RouteError.UNKNOWN_PATTERN.getCode());
             } catch (IllegalStateException e) {
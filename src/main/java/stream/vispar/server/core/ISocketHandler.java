@@ -1,5 +1,7 @@
 package stream.vispar.server.core;
 
+import java.util.List;
+
 /**
  * Defines functionality of a handler for websockets.
  * 
@@ -18,10 +20,29 @@ public interface ISocketHandler {
     void stop();
     
     /**
-     * Sends a message over the socket.
+     * Sends a message over the socket to all clients. Does not wait for the clients to receive it.
      * 
      * @param message
      *          the message to be sent.
      */
     void sendMessage(String message);
+    
+    /**
+     * Sends a message of a topic over the socket. Only clients that subscribed to the topic (or did not subscribe
+     * to any topic) receive it. Does not wait for the clients to receive it.
+     * 
+     * @param topic
+     *          the {@link SocketTopic} of the message.
+     * @param message
+     *          the message to be sent.
+     */
+    void publish(SocketTopic topic, String message);
+    
+    /**
+     * Returns the currently connected clients.
+     * 
+     * @return
+     *          the {@link SocketSession sessions} of the clients.
+     */
+    List<SocketSession> getSessions();
 }
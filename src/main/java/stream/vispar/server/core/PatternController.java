@@ -14,6 +14,7 @@ import stream.vispar.model.Pattern;
 import stream.vispar.model.nodes.inputs.InputNode;
 import stream.vispar.model.nodes.inputs.SensorNode;
 import stream.vispar.server.core.entities.adapters.NodeVisitorAdapter;
+import stream.vispar.server.engine.IEngine;
 import stream.vispar.server.localization.LocalizedString;
 
 /**
@@ -184,7 +185,27 @@ public class PatternController {
      *          if the pattern is already deployed, is invalid, sensors used in pattern
      *          are not registered on server.
      */
-    public synchronized Pattern deploy(String id) {
+    public Pattern deploy(String id) {
+        return deploy(id, IEngine.DEFAULT_BUFFER_SIZE);
+    }
+    
+    /**
+     * Deploys a pattern, optionally processing its input streams asynchronously.
+     * 
+     * @param id
+     *          the id of the {@link Pattern} to be deployed.
+     * @param bufferSize
+     *          the buffer size of the asynchronous input streams, {@link IEngine#SYNCHRONOUS} to process the
+     *          pattern synchronously or {@link IEngine#DEFAULT_BUFFER_SIZE} to use the default of the engine.
+     * @return
+     *          the deployed {@link Pattern}.   
+     * @throws IllegalArgumentException
+     *          if the pattern does not exist.
+     * @throws IllegalStateException
+     *          if the pattern is already deployed, is invalid, sensors used in pattern
+     *          are not registered on server.
+     */
+    public synchronized Pattern deploy(String id, int bufferSize) {
         IDatabaseConnector db = instance.getDBConn();
         
         // get pattern and check deployment status
@@ -216,7 +237,11 @@ public class PatternController {
         
         // deploy pattern
         try {
-            instance.getEngine().deploy(pattern);
+            if (bufferSize == IEngine.DEFAULT_BUFFER_SIZE) {
+                instance.getEngine().deploy(pattern);
+            } else {
+                instance.getEngine().deploy(pattern, bufferSize);
+            }
         } catch (IllegalArgumentException e) {
             throw new IllegalStateException(String.valueOf(RouteError.PATTERN_INVALID.getCode()));
         }
@@ -0,0 +1,218 @@
+package stream.vispar.server.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Bounded ring of the latest messages sent over the socket, numbered by consecutive sequence numbers starting at
+ * 1. Once full, every new message evicts the oldest one. Reconnecting clients get the messages they missed
+ * replayed from it, as long as they were not evicted yet.
+ * 
+ * Thread-safe: numbering, keeping and completing a message each take the lock only briefly, and no publisher
+ * waits for another one. Each publisher marks its message {@link #complete(long, Collection) complete} once it is
+ * routed to the clients. {@link #getCompleted()} only advances over consecutive completed messages, so clients
+ * receiving all messages up to it in order never miss one that is still being routed.
+ * 
+ * @author Micha Hanselmann
+ */
+final class ReplayBuffer {
+
+    /**
+     * Message kept for replay.
+     */
+    static final class Entry {
+
+        /**
+         * Sequence number of the message.
+         */
+        private final long sequence;
+
+        /**
+         * Topic of the message (null for messages without topic).
+         */
+        private final SocketTopic topic;
+
+        /**
+         * Message as sent to clients (JSON object including the sequence number).
+         */
+        private final String message;
+
+        /**
+         * Constructs a new {@link Entry}.
+         * 
+         * @param sequence
+         *          the sequence number.
+         * @param topic
+         *          the {@link SocketTopic} (may be null).
+         * @param message
+         *          the message as sent to clients.
+         */
+        private Entry(long sequence, SocketTopic topic, String message) {
+            this.sequence = sequence;
+            this.topic = topic;
+            this.message = message;
+        }
+
+        /**
+         * Returns the sequence number of the message.
+         * 
+         * @return
+         *          the sequence number.
+         */
+        long getSequence() {
+            return sequence;
+        }
+
+        /**
+         * Returns the topic of the message.
+         * 
+         * @return
+         *          the {@link SocketTopic}, null for messages without topic.
+         */
+        SocketTopic getTopic() {
+            return topic;
+        }
+
+        /**
+         * Returns the message as sent to clients.
+         * 
+         * @return
+         *          the message including its sequence number.
+         */
+        String getMessage() {
+            return message;
+        }
+    }
+
+    /**
+     * Kept messages, the message with sequence number n is at index n % capacity (guarded by this).
+     */
+    private final Entry[] entries;
+
+    /**
+     * Clients of the messages completed before all messages preceding them, by sequence number (guarded by this).
+     */
+    private final NavigableMap<Long, Collection<SocketSession>> waiting;
+
+    /**
+     * Sequence number of the latest numbered message (guarded by this).
+     */
+    private long latest;
+
+    /**
+     * Sequence number up to which all messages are completed (guarded by this).
+     */
+    private long completed;
+
+
+    /**
+     * Constructs a new {@link ReplayBuffer}.
+     * 
+     * @param capacity
+     *          the number of messages kept.
+     */
+    ReplayBuffer(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity has to be positive.");
+        }
+        this.entries = new Entry[capacity];
+        this.waiting = new TreeMap<>();
+    }
+
+    /**
+     * Numbers a message and keeps it, evicting the oldest message if full.
+     * 
+     * @param topic
+     *          the {@link SocketTopic} of the message (may be null).
+     * @param message
+     *          the message text.
+     * @return
+     *          the kept {@link Entry}.
+     */
+    Entry add(SocketTopic topic, String message) {
+        Objects.requireNonNull(message);
+        synchronized (this) {
+            long sequence = ++latest;
+            Entry entry = new Entry(sequence, topic, SocketMessages.sequenced(sequence, message));
+            entries[(int) (sequence % entries.length)] = entry;
+            return entry;
+        }
+    }
+
+    /**
+     * Completes a message after it was routed to the clients. If messages before it are still being routed, the
+     * message waits for them without blocking the caller: the caller completing the last of them takes over the
+     * clients of all messages it completes this way.
+     * 
+     * @param sequence
+     *          the sequence number of the message.
+     * @param clients
+     *          the {@link SocketSession}s of the clients the message was routed to.
+     * @return
+     *          the clients of all messages completed by this call (empty if messages before it are still being
+     *          routed), to be {@link SocketSession#release(long) released} up to {@link #getCompleted()}.
+     */
+    synchronized Collection<SocketSession> complete(long sequence, Collection<SocketSession> clients) {
+        if (sequence != completed + 1) {
+            waiting.put(sequence, clients);
+            return Collections.emptySet();
+        }
+        completed = sequence;
+        if (waiting.isEmpty()) {
+            return clients;
+        }
+        Set<SocketSession> released = new HashSet<>(clients);
+        while (!waiting.isEmpty() && waiting.firstKey() == completed + 1) {
+            completed++;
+            released.addAll(waiting.pollFirstEntry().getValue());
+        }
+        return released;
+    }
+
+    /**
+     * Returns the messages following a sequence number.
+     * 
+     * @param sequence
+     *          the sequence number of the last message received by a client (0 if none).
+     * @return
+     *          the following messages, oldest first, or null if some of them were already evicted (or the
+     *          sequence number was never assigned).
+     */
+    synchronized List<Entry> since(long sequence) {
+        if (sequence < 0 || sequence < latest - entries.length || sequence > latest) {
+            return null;
+        }
+        List<Entry> missed = new ArrayList<>((int) (latest - sequence));
+        for (long i = sequence + 1; i <= latest; i++) {
+            missed.add(entries[(int) (i % entries.length)]);
+        }
+        return missed;
+    }
+
+    /**
+     * Returns the sequence number of the latest message.
+     * 
+     * @return
+     *          the sequence number, 0 if no message was sent yet.
+     */
+    synchronized long getLatest() {
+        return latest;
+    }
+
+    /**
+     * Returns the sequence number up to which all messages are completed.
+     * 
+     * @return
+     *          the sequence number, 0 if no message was completed yet.
+     */
+    synchronized long getCompleted() {
+        return completed;
+    }
+}
@@ -97,6 +97,9 @@ public class SensorController {
                     }
                 }
                 
+                // compile attribute paths (once, so parsing events needs no further processing of the keys)
+                sensor.compile();
+                
                 // validate attributes
                 Collection<Attribute> attrs = sensor.getAttributes();
                 for (Attribute a : attrs) {
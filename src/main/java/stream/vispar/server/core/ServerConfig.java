@@ -4,10 +4,17 @@ import java.util.Locale;
 import java.util.Objects;
 import java.util.logging.Logger;
 
+import stream.vispar.server.engine.DeploymentMode;
+import stream.vispar.server.engine.IEngine;
+import stream.vispar.server.logger.AggregatingLogger;
+import stream.vispar.server.logger.FileLogger;
 import stream.vispar.server.logger.ILogger;
+import stream.vispar.server.logger.LogLevel;
+import stream.vispar.server.logger.OverflowPolicy;
 
 /**
- * Contains the configuration for a {@link ServerInstance}.
+ * Contains the configuration for a {@link ServerInstance}. Configurations with more than the required options are
+ * created by a {@link Builder}.
  * 
  * @author Micha Hanselmann
  */
@@ -43,6 +50,86 @@ public class ServerConfig {
      */
     private final String sensorsConfigPath;
     
+    /**
+     * Number of lanes (worker threads) forwarding sensor events to the engine.
+     */
+    private final int engineLanes;
+    
+    /**
+     * Default buffer size of the asynchronous input streams of deployed patterns (0 if synchronous).
+     */
+    private final int asyncBufferSize;
+    
+    /**
+     * Distribution of the deployed patterns onto engine runtimes.
+     */
+    private final DeploymentMode deploymentMode;
+    
+    /**
+     * Determines whether stateless filter patterns are evaluated without Siddhi.
+     */
+    private final boolean filterFastPath;
+    
+    /**
+     * Determines how messages are delivered to socket clients.
+     */
+    private final SocketDelivery socketDelivery;
+    
+    /**
+     * Interval in milliseconds between two batches sent to a socket client.
+     */
+    private final long socketTick;
+    
+    /**
+     * Number of latest socket messages kept for reconnecting clients.
+     */
+    private final int socketReplay;
+    
+    /**
+     * Grace period in milliseconds for new socket clients to resume before they receive numbered messages.
+     */
+    private final long socketHoldTimeout;
+    
+    /**
+     * Number of messages queued per socket client.
+     */
+    private final int socketQueueCapacity;
+    
+    /**
+     * Policy applied to socket clients whose queue is full.
+     */
+    private final SlowConsumerPolicy slowConsumerPolicy;
+    
+    /**
+     * Lowest level of logged messages.
+     */
+    private final LogLevel logLevel;
+    
+    /**
+     * Number of log messages buffered until they are written to the log file.
+     */
+    private final int logBufferSize;
+    
+    /**
+     * Policy applied while the log buffer is full.
+     */
+    private final OverflowPolicy logOverflow;
+    
+    /**
+     * Size in bytes after which the log file is rotated (0 = never).
+     */
+    private final long logMaxBytes;
+    
+    /**
+     * Age in milliseconds after which the log file is rotated (0 = never).
+     */
+    private final long logMaxAge;
+    
+    /**
+     * Interval in milliseconds between two summaries of repeated log messages (0 = no summaries).
+     */
+    private final long logSummaryInterval;
+    
 
     /**
      * Constructs a new {@link ServerConfig}.
@@ -62,19 +149,62 @@ public class ServerConfig {
      */
     public ServerConfig(int apiPort, int socketPort, Locale locale, ILogger logger, String databaseUrl, 
             String sensorsConfigPath) {
-        
+        this(new Builder(apiPort, socketPort, locale, logger, databaseUrl, sensorsConfigPath));
+    }
+    
+    /**
+     * Constructs a new {@link ServerConfig} from the options of a {@link Builder}.
+     * 
+     * @param builder
+     *          the {@link Builder}.
+     */
+    private ServerConfig(Builder builder) {
+        int apiPort = builder.apiPort;
+        int socketPort = builder.socketPort;
         if (apiPort < 0 || socketPort < 0 || apiPort > 65535 || socketPort > 65535) {
             throw new IllegalArgumentException("Port numbers have to be between 0 and 65535.");
         } else if (apiPort == socketPort) {
             throw new IllegalArgumentException("Api and socket port cannot be the same.");
+        } else if (builder.engineLanes < 1) {
+            throw new IllegalArgumentException("At least one engine lane is required.");
+        } else if (builder.asyncBufferSize < IEngine.SYNCHRONOUS || builder.asyncBufferSize > IEngine.MAX_BUFFER_SIZE) {
+            throw new IllegalArgumentException("Buffer size has to be between 0 and " + IEngine.MAX_BUFFER_SIZE + ".");
+        } else if (builder.socketTick < 1) {
+            throw new IllegalArgumentException("Socket tick has to be positive.");
+        } else if (builder.socketReplay < 0) {
+            throw new IllegalArgumentException("Socket replay capacity cannot be negative.");
+        } else if (builder.socketHoldTimeout < 0) {
+            throw new IllegalArgumentException("Socket hold timeout cannot be negative.");
+        } else if (builder.socketQueueCapacity < 1) {
+            throw new IllegalArgumentException("Socket queue capacity has to be positive.");
+        } else if (builder.logBufferSize < 1) {
+            throw new IllegalArgumentException("Log buffer size has to be positive.");
+        } else if (builder.logMaxBytes < 0 || builder.logMaxAge < 0 || builder.logSummaryInterval < 0) {
+            throw new IllegalArgumentException("Log size, age and summary interval cannot be negative.");
         }
         
         this.apiPort = apiPort;
         this.socketPort = socketPort;
-        this.locale = Objects.requireNonNull(locale);
-        this.logger = Objects.requireNonNull(logger);
-        this.databaseUrl = Objects.requireNonNull(databaseUrl);
-        this.sensorsConfigPath = Objects.requireNonNull(sensorsConfigPath);
+        this.locale = Objects.requireNonNull(builder.locale);
+        this.logger = Objects.requireNonNull(builder.logger);
+        this.databaseUrl = Objects.requireNonNull(builder.databaseUrl);
+        this.sensorsConfigPath = Objects.requireNonNull(builder.sensorsConfigPath);
+        this.engineLanes = builder.engineLanes;
+        this.asyncBufferSize = builder.asyncBufferSize;
+        this.deploymentMode = Objects.requireNonNull(builder.deploymentMode);
+        this.filterFastPath = builder.filterFastPath;
+        this.socketDelivery = Objects.requireNonNull(builder.socketDelivery);
+        this.socketTick = builder.socketTick;
+        this.socketReplay = builder.socketReplay;
+        this.socketHoldTimeout = builder.socketHoldTimeout;
+        this.socketQueueCapacity = builder.socketQueueCapacity;
+        this.slowConsumerPolicy = Objects.requireNonNull(builder.slowConsumerPolicy);
+        this.logLevel = Objects.requireNonNull(builder.logLevel);
+        this.logBufferSize = builder.logBufferSize;
+        this.logOverflow = Objects.requireNonNull(builder.logOverflow);
+        this.logMaxBytes = builder.logMaxBytes;
+        this.logMaxAge = builder.logMaxAge;
+        this.logSummaryInterval = builder.logSummaryInterval;
     }
     
     /**
@@ -136,4 +266,541 @@ public class ServerConfig {
     public String getSensorsConfigPath() {
         return sensorsConfigPath;
     }
-}
+    
+    /**
+     * Returns the number of lanes (worker threads) forwarding sensor events to the engine.
+     * 
+     * @return
+     *          the number of lanes.
+     */
+    public int getEngineLanes() {
+        return engineLanes;
+    }
+    
+    /**
+     * Returns the default buffer size of the asynchronous input streams of deployed patterns.
+     * 
+     * @return
+     *          the buffer size (0 if patterns are processed synchronously by default).
+     */
+    public int getAsyncBufferSize() {
+        return asyncBufferSize;
+    }
+    
+    /**
+     * Returns how deployed patterns are distributed onto engine runtimes.
+     * 
+     * @return
+     *          the {@link DeploymentMode}.
+     */
+    public DeploymentMode getDeploymentMode() {
+        return deploymentMode;
+    }
+    
+    /**
+     * Returns whether stateless filter patterns are evaluated without Siddhi.
+     * 
+     * @return
+     *          true if the filter fast path is used, false otherwise.
+     */
+    public boolean isFilterFastPath() {
+        return filterFastPath;
+    }
+    
+    /**
+     * Returns how messages are delivered to socket clients.
+     * 
+     * @return
+     *          the {@link SocketDelivery}.
+     */
+    public SocketDelivery getSocketDelivery() {
+        return socketDelivery;
+    }
+    
+    /**
+     * Returns the interval between two batches sent to a socket client.
+     * 
+     * @return
+     *          the interval in milliseconds.
+     */
+    public long getSocketTick() {
+        return socketTick;
+    }
+    
+    /**
+     * Returns the number of latest socket messages kept for reconnecting clients.
+     * 
+     * @return
+     *          the replay capacity, 0 if socket messages are sent without sequence numbers.
+     */
+    public int getSocketReplay() {
+        return socketReplay;
+    }
+    
+    /**
+     * Returns the grace period for new socket clients to resume before they receive numbered messages.
+     * 
+     * @return
+     *          the grace period in milliseconds.
+     */
+    public long getSocketHoldTimeout() {
+        return socketHoldTimeout;
+    }
+    
+    /**
+     * Returns the number of messages queued per socket client.
+     * 
+     * @return
+     *          the queue capacity.
+     */
+    public int getSocketQueueCapacity() {
+        return socketQueueCapacity;
+    }
+    
+    /**
+     * Returns the policy applied to socket clients whose queue is full.
+     * 
+     * @return
+     *          the {@link SlowConsumerPolicy}.
+     */
+    public SlowConsumerPolicy getSlowConsumerPolicy() {
+        return slowConsumerPolicy;
+    }
+    
+    /**
+     * Returns the lowest level of logged messages.
+     * 
+     * @return
+     *          the {@link LogLevel}.
+     */
+    public LogLevel getLogLevel() {
+        return logLevel;
+    }
+    
+    /**
+     * Returns the number of log messages buffered until they are written to the log file.
+     * 
+     * @return
+     *          the buffer size.
+     */
+    public int getLogBufferSize() {
+        return logBufferSize;
+    }
+    
+    /**
+     * Returns the policy applied while the log buffer is full.
+     * 
+     * @return
+     *          the {@link OverflowPolicy}.
+     */
+    public OverflowPolicy getLogOverflow() {
+        return logOverflow;
+    }
+    
+    /**
+     * Returns the size after which the log file is rotated.
+     * 
+     * @return
+     *          the size in bytes, 0 if the log file is never rotated by size.
+     */
+    public long getLogMaxBytes() {
+        return logMaxBytes;
+    }
+    
+    /**
+     * Returns the age after which the log file is rotated.
+     * 
+     * @return
+     *          the age in milliseconds, 0 if the log file is never rotated by age.
+     */
+    public long getLogMaxAge() {
+        return logMaxAge;
+    }
+    
+    /**
+     * Returns the interval between two summaries of repeated log messages.
+     * 
+     * @return
+     *          the interval in milliseconds, 0 if repeated messages are not summarized.
+     */
+    public long getLogSummaryInterval() {
+        return logSummaryInterval;
+    }
+    
+    /**
+     * Builds a {@link ServerConfig}. The network ports, locale, logger, database url and sensors config path are
+     * required, all other options have defaults.
+     */
+    public static final class Builder {
+        
+        /**
+         * Network port used by the api server.
+         */
+        private final int apiPort;
+        
+        /**
+         * Network port used by the socket server.
+         */
+        private final int socketPort;
+        
+        /**
+         * Locale used for the log/output.
+         */
+        private final Locale locale;
+        
+        /**
+         * Logger used by the server.
+         */
+        private final ILogger logger;
+        
+        /**
+         * Url of the database.
+         */
+        private final String databaseUrl;
+        
+        /**
+         * Path to the config files of the sensors.
+         */
+        private final String sensorsConfigPath;
+        
+        /**
+         * Number of lanes (worker threads) forwarding sensor events to the engine.
+         */
+        private int engineLanes = Runtime.getRuntime().availableProcessors();
+        
+        /**
+         * Default buffer size of the asynchronous input streams of deployed patterns (0 if synchronous).
+         */
+        private int asyncBufferSize = IEngine.SYNCHRONOUS;
+        
+        /**
+         * Distribution of the deployed patterns onto engine runtimes.
+         */
+        private DeploymentMode deploymentMode = DeploymentMode.ISOLATED;
+        
+        /**
+         * Determines whether stateless filter patterns are evaluated without Siddhi.
+         */
+        private boolean filterFastPath;
+        
+        /**
+         * Determines how messages are delivered to socket clients.
+         */
+        private SocketDelivery socketDelivery = SocketDelivery.IMMEDIATE;
+        
+        /**
+         * Interval in milliseconds between two batches sent to a socket client.
+         */
+        private long socketTick = SparkSocket.DEFAULT_TICK;
+        
+        /**
+         * Number of latest socket messages kept for reconnecting clients.
+         */
+        private int socketReplay;
+        
+        /**
+         * Grace period in milliseconds for new socket clients to resume before they receive numbered messages.
+         */
+        private long socketHoldTimeout = SparkSocket.DEFAULT_HOLD_TIMEOUT;
+        
+        /**
+         * Number of messages queued per socket client.
+         */
+        private int socketQueueCapacity = SparkSocket.DEFAULT_QUEUE_CAPACITY;
+        
+        /**
+         * Policy applied to socket clients whose queue is full.
+         */
+        private SlowConsumerPolicy slowConsumerPolicy = SlowConsumerPolicy.DROP_OLDEST;
+        
+        /**
+         * Lowest level of logged messages.
+         */
+        private LogLevel logLevel = LogLevel.INFO;
+        
+        /**
+         * Number of log messages buffered until they are written to the log file.
+         */
+        private int logBufferSize = FileLogger.DEFAULT_CAPACITY;
+        
+        /**
+         * Policy applied while the log buffer is full.
+         */
+        private OverflowPolicy logOverflow = OverflowPolicy.BLOCK;
+        
+        /**
+         * Size in bytes after which the log file is rotated (0 = never).
+         */
+        private long logMaxBytes;
+        
+        /**
+         * Age in milliseconds after which the log file is rotated (0 = never).
+         */
+        private long logMaxAge;
+        
+        /**
+         * Interval in milliseconds between two summaries of repeated log messages (0 = no summaries).
+         */
+        private long logSummaryInterval;
+        
+        
+        /**
+         * Constructs a new {@link Builder} with the required options.
+         * 
+         * @param apiPort
+         *          the network port used by the api server.
+         * @param socketPort
+         *          the network port used by the socket server.
+         * @param locale
+         *          the {@link Locale} used for the log/output.
+         * @param logger
+         *          the {@link Logger} used by the server.
+         * @param databaseUrl
+         *          the url for the database used by the server.
+         * @param sensorsConfigPath
+         *          the path to the config files of the sensors.
+         */
+        public Builder(int apiPort, int socketPort, Locale locale, ILogger logger, String databaseUrl,
+                String sensorsConfigPath) {
+            this.apiPort = apiPort;
+            this.socketPort = socketPort;
+            this.locale = locale;
+            this.logger = logger;
+            this.databaseUrl = databaseUrl;
+            this.sensorsConfigPath = sensorsConfigPath;
+        }
+        
+        /**
+         * Sets the number of lanes (worker threads) forwarding sensor events to the engine. Events of the same
+         * sensor always use the same lane, so their order is kept. Defaults to the number of processors.
+         * 
+         * @param engineLanes
+         *          the number of lanes.
+         * @return
+         *          this {@link Builder}.
+         */
+        public Builder engineLanes(int engineLanes) {
+            this.engineLanes = engineLanes;
+            return this;
+        }
+        
+        /**
+         * Sets the default buffer size of the asynchronous input streams of deployed patterns. Defaults to
+         * {@link IEngine#SYNCHRONOUS}.
+         * 
+         * @param asyncBufferSize
+         *          the buffer size (0 to process patterns synchronously by default).
+         * @return
+         *          this {@link Builder}.
+         */
+        public Builder asyncBufferSize(int asyncBufferSize) {
+            this.asyncBufferSize = asyncBufferSize;
+            return this;
+        }
+        
+        /**
+         * Sets how deployed patterns are distributed onto engine runtimes. Defaults to
+         * {@link DeploymentMode#ISOLATED}.
+         * 
+         * @param deploymentMode
+         *          the {@link DeploymentMode}.
+         * @return
+         *          this {@link Builder}.
+         */
+        public Builder deploymentMode(DeploymentMode deploymentMode) {
+            this.deploymentMode = deploymentMode;
+            return this;
+        }
+        
+        /**
+         * Sets whether stateless filter patterns are evaluated directly instead of by Siddhi runtimes. Defaults to
+         * false.
+         * 
+         * @param filterFastPath
+         *          true to use the filter fast path.
+         * @return
+         *          this {@link Builder}.
+         */
+        public Builder filterFastPath(boolean filterFastPath) {
+            this.filterFastPath = filterFastPath;
+            return this;
+        }
+        
+        /**
+         * Sets how messages are delivered to socket clients. Defaults to {@link SocketDelivery#IMMEDIATE}.
+         * 
+         * @param socketDelivery
+         *          the {@link SocketDelivery}.
+         * @return
+         *          this {@link Builder}.
+         */
+        public Builder socketDelivery(SocketDelivery socketDelivery) {
+            this.socketDelivery = socketDelivery;
+            return this;
+        }
+        
+        /**
+         * Sets the interval between two batches sent to a socket client. Defaults to
+         * {@link SparkSocket#DEFAULT_TICK}.
+         * 
+         * @param socketTick
+         *          the interval in milliseconds.
+         * @return
+         *          this {@link Builder}.
+         */
+        public Builder socketTick(long socketTick) {
+            this.socketTick = socketTick;
+            return this;
+        }
+        
+        /**
+         * Sets the number of latest socket messages kept for reconnecting clients. Defaults to 0.
+         * 
+         * @param socketReplay
+         *          the replay capacity (0 to send socket messages without sequence numbers).
+         * @return
+         *          this {@link Builder}.
+         */
+        public Builder socketReplay(int socketReplay) {
+            this.socketReplay = socketReplay;
+            return this;
+        }
+        
+        /**
+         * Sets the grace period for new socket clients to resume (or subscribe) before they receive numbered
+         * messages, so reconnecting clients get the messages they missed replayed instead of having to resync.
+         * Defaults to {@link SparkSocket#DEFAULT_HOLD_TIMEOUT}.
+         * 
+         * @param socketHoldTimeout
+         *          the grace period in milliseconds.
+         * @return
+         *          this {@link Builder}.
+         */
+        public Builder socketHoldTimeout(long socketHoldTimeout) {
+            this.socketHoldTimeout = socketHoldTimeout;
+            return this;
+        }
+        
+        /**
+         * Sets the number of messages queued per socket client. Defaults to
+         * {@link SparkSocket#DEFAULT_QUEUE_CAPACITY}.
+         * 
+         * @param socketQueueCapacity
+         *          the queue capacity.
+         * @return
+         *          this {@link Builder}.
+         */
+        public Builder socketQueueCapacity(int socketQueueCapacity) {
+            this.socketQueueCapacity = socketQueueCapacity;
+            return this;
+        }
+        
+        /**
+         * Sets the policy applied to socket clients whose queue is full. Defaults to
+         * {@link SlowConsumerPolicy#DROP_OLDEST}.
+         * 
+         * @param slowConsumerPolicy
+         *          the {@link SlowConsumerPolicy}.
+         * @return
+         *          this {@link Builder}.
+         */
+        public Builder slowConsumerPolicy(SlowConsumerPolicy slowConsumerPolicy) {
+            this.slowConsumerPolicy = slowConsumerPolicy;
+            return this;
+        }
+        
+        /**
+         * Sets the lowest level of logged messages. Defaults to {@link LogLevel#INFO}.
+         * 
+         * @param logLevel
+         *          the {@link LogLevel}.
+         * @return
+         *          this {@link Builder}.
+         */
+        public Builder logLevel(LogLevel logLevel) {
+            this.logLevel = logLevel;
+            return this;
+        }
+        
+        /**
+         * Sets the number of log messages buffered until they are written to the log file. Defaults to
+         * {@link FileLogger#DEFAULT_CAPACITY}.
+         * 
+         * @param logBufferSize
+         *          the buffer size.
+         * @return
+         *          this {@link Builder}.
+         */
+        public Builder logBufferSize(int logBufferSize) {
+            this.logBufferSize = logBufferSize;
+            return this;
+        }
+        
+        /**
+         * Sets the policy applied while the log buffer is full. Defaults to {@link OverflowPolicy#BLOCK}.
+         * 
+         * @param logOverflow
+         *          the {@link OverflowPolicy}.
+         * @return
+         *          this {@link Builder}.
+         */
+        public Builder logOverflow(OverflowPolicy logOverflow) {
+            this.logOverflow = logOverflow;
+            return this;
+        }
+        
+        /**
+         * Sets the size after which the log file is rotated. Defaults to 0.
+         * 
+         * @param logMaxBytes
+         *          the size in bytes (0 to never rotate by size).
+         * @return
+         *          this {@link Builder}.
+         */
+        public Builder logMaxBytes(long logMaxBytes) {
+            this.logMaxBytes = logMaxBytes;
+            return this;
+        }
+        
+        /**
+         * Sets the age after which the log file is rotated. Defaults to 0.
+         * 
+         * @param logMaxAge
+         *          the age in milliseconds (0 to never rotate by age).
+         * @return
+         *          this {@link Builder}.
+         */
+        public Builder logMaxAge(long logMaxAge) {
+            this.logMaxAge = logMaxAge;
+            return this;
+        }
+        
+        /**
+         * Sets the interval between two summaries of repeated log messages, see {@link AggregatingLogger}. Defaults
+         * to 0.
+         * 
+         * @param logSummaryInterval
+         *          the interval in milliseconds (0 to log repeated messages one by one).
+         * @return
+         *          this {@link Builder}.
+         */
+        public Builder logSummaryInterval(long logSummaryInterval) {
+            this.logSummaryInterval = logSummaryInterval;
+            return this;
+        }
+        
+        /**
+         * Builds the {@link ServerConfig}.
+         * 
+         * @return
+         *          the {@link ServerConfig}.
+         * @throws IllegalArgumentException
+         *          if an option is out of range.
+         * @throws NullPointerException
+         *          if a required option is null.
+         */
+        public ServerConfig build() {
+            return new ServerConfig(this);
+        }
+    }
+}
\ No newline at end of file
@@ -3,10 +3,13 @@ package stream.vispar.server.core;
 import java.util.Objects;
 import java.util.Optional;
 
+import stream.vispar.server.engine.FilterEngine;
 import stream.vispar.server.engine.IEngine;
+import stream.vispar.server.engine.IngestQueue;
 import stream.vispar.server.engine.SiddhiEngine;
 import stream.vispar.server.localization.LocalizedString;
 import stream.vispar.server.localization.Localizer;
+import stream.vispar.server.logger.AggregatingLogger;
 import stream.vispar.server.logger.ILogger;
 
 /**
@@ -36,6 +39,11 @@ public class ServerInstance {
      */
     private final IEngine engine;
     
+    /**
+     * Ingest queue in front of the engine used by the instance.
+     */
+    private final IngestQueue ingestQueue;
+    
     /**
      * User controller used by the instance.
      */
@@ -96,16 +104,22 @@ public class ServerInstance {
         Objects.requireNonNull(config);
         
         // init server components
-        logger = config.getLogger();
         localizer = new Localizer(config.getLocale());
+        logger = (config.getLogSummaryInterval() > 0)
+                ? new AggregatingLogger(config.getLogger(), config.getLogSummaryInterval(), localizer)
+                : config.getLogger();
         this.dbConn = Optional.ofNullable(dbConn).orElse(new MongoDBConnector(this, config.getDatabaseUrl()));
-        engine = new SiddhiEngine(this);
+        SiddhiEngine siddhi = new SiddhiEngine(this, config.getAsyncBufferSize(), config.getDeploymentMode());
+        engine = config.isFilterFastPath() ? new FilterEngine(this, siddhi) : siddhi;
+        ingestQueue = new IngestQueue(this, IngestQueue.DEFAULT_CAPACITY, config.getEngineLanes());
         userCtrl = new UserController(this);
         patternCtrl = new PatternController(this);
         sensorCtrl = new SensorController(this, config.getSensorsConfigPath());
         authMgr = new AuthManager(this);
         reqHandler = new SparkServer(this, config.getApiPort());
-        sockHandler = new SparkSocket(this, config.getSocketPort());
+        sockHandler = new SparkSocket(this, config.getSocketPort(), config.getSocketQueueCapacity(),
+                config.getSlowConsumerPolicy(), config.getSocketDelivery(), config.getSocketTick(),
+                config.getSocketReplay(), config.getSocketHoldTimeout());
     }
     
     /**
@@ -121,6 +135,7 @@ public class ServerInstance {
         patternCtrl.resetDeploymentStatus();
         sensorCtrl.registerSensors();
         engine.start();
+        ingestQueue.start();
         sockHandler.start();
         reqHandler.start();
     }
@@ -134,10 +149,16 @@ public class ServerInstance {
         }
         this.running = false;
         logger.log(localizer.get(LocalizedString.STOPPING_SERVER));
+        ingestQueue.stop();
         engine.stop();
         dbConn.disconnect();
         reqHandler.stop();
         sockHandler.stop();
+        
+        // log the pending summaries of repeated messages
+        if (logger instanceof AggregatingLogger) {
+            ((AggregatingLogger) logger).close();
+        }
     }
     
     /**
@@ -190,6 +211,16 @@ public class ServerInstance {
         return engine;
     }
     
+    /**
+     * Returns the ingest queue in front of the engine used by the instance.
+     * 
+     * @return
+     *          the {@link IngestQueue}.
+     */
+    public IngestQueue getIngestQueue() {
+        return ingestQueue;
+    }
+    
     /**
      * Returns the user controller used by the instance.
      * 
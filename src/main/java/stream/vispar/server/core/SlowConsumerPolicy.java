@@ -0,0 +1,24 @@
+package stream.vispar.server.core;
+
+/**
+ * Determines what happens to a message sent to a socket client whose outbound queue is full.
+ * 
+ * @author Micha Hanselmann
+ */
+public enum SlowConsumerPolicy {
+
+    /**
+     * The new message is dropped.
+     */
+    DROP_NEWEST,
+
+    /**
+     * The oldest queued message is dropped to make room for the new one.
+     */
+    DROP_OLDEST,
+
+    /**
+     * The client is disconnected.
+     */
+    DISCONNECT
+}
@@ -0,0 +1,24 @@
+package stream.vispar.server.core;
+
+/**
+ * Determines how messages are delivered to socket clients.
+ * 
+ * @author Micha Hanselmann
+ */
+public enum SocketDelivery {
+
+    /**
+     * Every message is sent as its own frame as soon as possible.
+     */
+    IMMEDIATE,
+
+    /**
+     * Messages are collected per client and sent as one frame carrying a JSON array of them on every tick.
+     */
+    BATCHED,
+
+    /**
+     * Like {@link #BATCHED}, but only the latest message of each socket action node is kept until the next tick.
+     */
+    LATEST
+}
@@ -0,0 +1,80 @@
+package stream.vispar.server.core;
+
+import java.util.Collection;
+import java.util.Objects;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * Encodes the messages sent to socket clients. A message is encoded once and the same text is handed to the
+ * endpoint of each client.
+ * 
+ * @author Micha Hanselmann
+ */
+final class SocketMessages {
+
+    /**
+     * Encoder of batched messages.
+     */
+    private static final Gson GSON = new GsonBuilder().disableHtmlEscaping().create();
+
+
+    /**
+     * Utility class, not instantiable.
+     */
+    private SocketMessages() {
+    }
+
+    /**
+     * Encodes several messages as JSON array.
+     * 
+     * @param elements
+     *          the messages encoded as JSON values (see {@link #quote(String)}), in the order they should be
+     *          received.
+     * @return
+     *          the JSON array.
+     */
+    static String batch(Collection<String> elements) {
+        return "[" + String.join(",", elements) + "]";
+    }
+
+    /**
+     * Encodes a message as JSON string.
+     * 
+     * @param message
+     *          the message text.
+     * @return
+     *          the JSON string.
+     */
+    static String quote(String message) {
+        return GSON.toJson(Objects.requireNonNull(message));
+    }
+
+    /**
+     * Encodes a message with its sequence number as JSON object {@code {"seq":<sequence>,"message":<message>}}.
+     * 
+     * @param sequence
+     *          the sequence number.
+     * @param message
+     *          the message text.
+     * @return
+     *          the JSON object.
+     */
+    static String sequenced(long sequence, String message) {
+        return "{\"seq\":" + sequence + ",\"message\":" + quote(message) + "}";
+    }
+
+    /**
+     * Encodes the signal telling a client that the messages it missed are no longer available, so it has to
+     * reload the current state, as JSON object {@code {"resync":true,"seq":<sequence>}}.
+     * 
+     * @param sequence
+     *          the sequence number of the latest message, the client continues with the next one.
+     * @return
+     *          the JSON object.
+     */
+    static String resync(long sequence) {
+        return "{\"resync\":true,\"seq\":" + sequence + "}";
+    }
+}
@@ -0,0 +1,679 @@
+package stream.vispar.server.core;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.StatusCode;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+
+import stream.vispar.server.logger.ILogger;
+
+/**
+ * Connection of a client to the socket with its own outbound queue. Messages are sent asynchronously, one at a
+ * time: the next queued message is sent when the previous write completed. So a slow client only fills its own
+ * queue instead of blocking the sender, and a {@link SlowConsumerPolicy} decides what happens once it is full.
+ * The text of a message is encoded once and shared by all clients (see {@link SocketMessages}).
+ * 
+ * With a batched {@link SocketDelivery}, messages are collected instead and sent together as one frame whenever
+ * the socket {@link #flush() flushes} its clients. A batch still waiting for the previous write keeps collecting,
+ * so slow clients receive fewer, larger frames.
+ * 
+ * Numbered messages (see {@link ReplayBuffer}) are routed to the session concurrently and kept by sequence number
+ * until all messages before them are {@link #release(long) released}, so the client receives them in order. A
+ * session can {@link #hold() hold} them until the client resumed or subscribed, or a grace period {@link
+ * #expire(long) expired}, so replayed and routed messages are merged without duplicates.
+ * 
+ * @author Micha Hanselmann
+ */
+public final class SocketSession {
+
+    /**
+     * Jetty session of the connection.
+     */
+    private final Session session;
+
+    /**
+     * Address of the client.
+     */
+    private final String remoteAddress;
+
+    /**
+     * Number of messages the queue can hold.
+     */
+    private final int capacity;
+
+    /**
+     * Determines what happens to messages while the queue is full.
+     */
+    private final SlowConsumerPolicy policy;
+
+    /**
+     * Logger for failed writes.
+     */
+    private final ILogger logger;
+
+    /**
+     * Determines how messages are delivered.
+     */
+    private final SocketDelivery delivery;
+
+    /**
+     * Messages waiting for the current write to complete (guarded by this).
+     */
+    private final Queue<String> queue;
+
+    /**
+     * Messages collected until the next flush, by socket action node if only the latest message of each is kept
+     * (guarded by this).
+     */
+    private final Map<Object, String> batch;
+
+    /**
+     * Numbered messages waiting until all messages before them are routed, by sequence number (guarded by this).
+     */
+    private final NavigableMap<Long, ReplayBuffer.Entry> pending;
+
+    /**
+     * Determines whether numbered messages are held until the client resumed or subscribed, or the grace period
+     * expired (guarded by this).
+     */
+    private boolean held;
+
+    /**
+     * Time in nanoseconds (see {@link System#nanoTime()}) since which numbered messages are held (guarded by this).
+     */
+    private long heldSince;
+
+    /**
+     * Sequence number of the latest message numbered before the client connected, later messages are routed to the
+     * client (guarded by this).
+     */
+    private long joined;
+
+    /**
+     * Sequence number of the latest numbered message added to the queue or batch (guarded by this).
+     */
+    private long released;
+
+    /**
+     * Determines whether a write is in progress (guarded by this).
+     */
+    private boolean writing;
+
+    /**
+     * Number of dropped messages (guarded by this).
+     */
+    private long dropped;
+
+    /**
+     * Keys of the topics the client subscribed to (guarded by this).
+     */
+    private final Set<String> subscriptions;
+
+    /**
+     * Continues with the next message once a write completed.
+     */
+    private final WriteCallback callback = new WriteCallback() {
+
+        @Override
+        public void writeSuccess() {
+            sendNext();
+        }
+
+        @Override
+        public void writeFailed(Throwable error) {
+            if (session.isOpen()) {
+                logger.logError(error.toString());
+                sendNext();
+            } else {
+                discard();
+            }
+        }
+    };
+
+
+    /**
+     * Constructs a new {@link SocketSession} sending every message immediately.
+     * 
+     * @param session
+     *          the Jetty {@link Session} of the connection.
+     * @param capacity
+     *          the number of messages the outbound queue can hold.
+     * @param policy
+     *          the {@link SlowConsumerPolicy} applied while the queue is full.
+     * @param logger
+     *          the {@link ILogger} for failed writes.
+     */
+    SocketSession(Session session, int capacity, SlowConsumerPolicy policy, ILogger logger) {
+        this(session, capacity, policy, logger, SocketDelivery.IMMEDIATE);
+    }
+
+    /**
+     * Constructs a new {@link SocketSession}.
+     * 
+     * @param session
+     *          the Jetty {@link Session} of the connection.
+     * @param capacity
+     *          the number of messages the outbound queue (or batch) can hold.
+     * @param policy
+     *          the {@link SlowConsumerPolicy} applied while the queue (or batch) is full.
+     * @param logger
+     *          the {@link ILogger} for failed writes.
+     * @param delivery
+     *          the {@link SocketDelivery} determining whether messages are sent immediately or batched.
+     */
+    SocketSession(Session session, int capacity, SlowConsumerPolicy policy, ILogger logger,
+            SocketDelivery delivery) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity has to be positive.");
+        }
+        this.session = Objects.requireNonNull(session);
+        this.capacity = capacity;
+        this.policy = Objects.requireNonNull(policy);
+        this.logger = Objects.requireNonNull(logger);
+        this.delivery = Objects.requireNonNull(delivery);
+        this.remoteAddress = (session.getRemoteAddress() != null)
+                ? session.getRemoteAddress().getAddress().getHostAddress() : "unknown";
+        this.queue = new ArrayDeque<>(Math.min(capacity, 64));
+        this.batch = new LinkedHashMap<>();
+        this.subscriptions = new HashSet<>();
+        this.pending = new TreeMap<>();
+    }
+
+    /**
+     * Sends a message without waiting for the client. The message is queued if a write is in progress.
+     * 
+     * @param message
+     *          the message text to be sent.
+     * @return
+     *          true if the message is sent or queued, false if it was dropped.
+     */
+    boolean send(String message) {
+        Objects.requireNonNull(message);
+        if (!session.isOpen()) {
+            return false;
+        }
+        Admission admission;
+        synchronized (this) {
+            if (writing) {
+                admission = queue(message);
+            } else {
+                writing = true;
+                admission = Admission.WRITE;
+            }
+        }
+        return dispatch(admission, message);
+    }
+
+    /**
+     * Adds a message to the batch sent on the next {@link #flush()}. With {@link SocketDelivery#LATEST}, the
+     * message replaces a pending message of the same socket action node.
+     * 
+     * @param topic
+     *          the {@link SocketTopic} of the message (null for messages without topic, never replaced).
+     * @param message
+     *          the message encoded as JSON value (see {@link SocketMessages#quote(String)}).
+     * @return
+     *          true if the message is collected, false if it was dropped.
+     */
+    boolean enqueue(SocketTopic topic, String message) {
+        Objects.requireNonNull(message);
+        if (!session.isOpen()) {
+            return false;
+        }
+        Admission admission;
+        synchronized (this) {
+            admission = collect(topic, message);
+        }
+        return dispatch(admission, null);
+    }
+
+    /**
+     * Holds numbered messages until the client {@link #resume resumed}, or the session is {@link #live() live}.
+     * Called before the session is added to the socket. If more messages than fit into the queue are routed
+     * meanwhile, the session stops holding them, so a client which never resumes does not pile them up.
+     */
+    synchronized void hold() {
+        held = true;
+        heldSince = System.nanoTime();
+    }
+
+    /**
+     * Stops holding numbered messages once they were held for a grace period, for clients which neither resume
+     * nor subscribe.
+     * 
+     * @param timeout
+     *          the grace period in milliseconds.
+     */
+    synchronized void expire(long timeout) {
+        if (held && System.nanoTime() - heldSince >= TimeUnit.MILLISECONDS.toNanos(timeout)) {
+            live();
+        }
+    }
+
+    /**
+     * Sets the sequence number of the latest message numbered before the client connected. Called after the session
+     * is added to the socket, so all later messages are routed to the client.
+     * 
+     * @param sequence
+     *          the sequence number.
+     */
+    synchronized void join(long sequence) {
+        joined = sequence;
+    }
+
+    /**
+     * Routes a numbered message to the client. The message is kept until all messages before it are routed as
+     * well, see {@link #release(long)}.
+     * 
+     * @param entry
+     *          the numbered message.
+     */
+    void offer(ReplayBuffer.Entry entry) {
+        Objects.requireNonNull(entry);
+        if (!session.isOpen()) {
+            return;
+        }
+        synchronized (this) {
+            if (entry.getSequence() > released) {
+                pending.put(entry.getSequence(), entry);
+            }
+            if (held && pending.size() > capacity) {
+                live();
+            }
+        }
+    }
+
+    /**
+     * Adds the pending numbered messages to the queue (or batch) in order, as far as all messages before them are
+     * routed. Nothing is released while the session is held.
+     * 
+     * @param completed
+     *          the sequence number up to which all messages are routed (see {@link ReplayBuffer#getCompleted()}).
+     */
+    void release(long completed) {
+        String next;
+        Admission admission;
+        synchronized (this) {
+            if (held) {
+                return;
+            }
+            admission = drain(completed);
+            next = start();
+        }
+        if (admission == Admission.DISCONNECT) {
+            dispatch(admission, null);
+        } else if (next != null) {
+            write(next);
+        }
+    }
+
+    /**
+     * Stops holding numbered messages, the client receives the messages routed since it connected. Messages not
+     * matching its subscriptions are dropped.
+     */
+    synchronized void live() {
+        if (held) {
+            held = false;
+            pending.values().removeIf(entry -> !accepts(entry.getTopic()));
+        }
+    }
+
+    /**
+     * Merges the messages a reconnecting client missed into the pending messages and stops holding them. Only
+     * messages numbered before the client connected are taken from the missed ones, later messages were routed to
+     * the client already. Call {@link #release(long)} afterwards.
+     * 
+     * @param sequence
+     *          the sequence number of the last message the client received.
+     * @param missed
+     *          the numbered messages following it, oldest first (see {@link ReplayBuffer#since(long)}).
+     * @return
+     *          true if the messages are merged, false if they do not fit into the queue or cannot be delivered in
+     *          order anymore, so the client has to {@link #resync(long) resync}.
+     */
+    synchronized boolean resume(long sequence, List<ReplayBuffer.Entry> missed) {
+        List<ReplayBuffer.Entry> replayed = new ArrayList<>();
+        for (ReplayBuffer.Entry entry : missed) {
+            if (entry.getSequence() <= joined && accepts(entry.getTopic())) {
+                replayed.add(entry);
+            }
+        }
+        if (replayed.size() > capacity || (!replayed.isEmpty() && replayed.get(0).getSequence() <= released)) {
+            return false;
+        }
+        live();
+        pending.headMap(sequence, true).clear();
+        for (ReplayBuffer.Entry entry : replayed) {
+            pending.put(entry.getSequence(), entry);
+        }
+        return true;
+    }
+
+    /**
+     * Tells the client that the messages it missed are no longer available, so it has to reload the current state,
+     * and stops holding numbered messages. The client continues with the messages not routed yet. Call
+     * {@link #release(long)} afterwards.
+     * 
+     * @param completed
+     *          the sequence number up to which all messages are routed (see {@link ReplayBuffer#getCompleted()}).
+     */
+    void resync(long completed) {
+        Admission admission;
+        synchronized (this) {
+            live();
+            long sequence = Math.max(completed, joined);
+            pending.headMap(sequence, true).clear();
+            released = Math.max(released, sequence);
+            String signal = SocketMessages.resync(sequence);
+            admission = (delivery == SocketDelivery.IMMEDIATE) ? queue(signal)
+                    : collect(null, signal);
+        }
+        dispatch(admission, null);
+    }
+
+    /**
+     * Sends the collected messages as one frame carrying a JSON array of them. Nothing is sent if the batch is
+     * empty or the previous write did not complete yet, the messages are sent on a later flush then.
+     */
+    void flush() {
+        String frame;
+        synchronized (this) {
+            if (writing || batch.isEmpty()) {
+                return;
+            }
+            frame = SocketMessages.batch(new ArrayList<>(batch.values()));
+            batch.clear();
+            writing = true;
+        }
+        write(frame);
+    }
+
+    /**
+     * Returns the address of the client.
+     * 
+     * @return
+     *          the address.
+     */
+    public String getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    /**
+     * Returns the number of messages waiting to be sent.
+     * 
+     * @return
+     *          the queue depth.
+     */
+    public synchronized int getQueueDepth() {
+        return queue.size() + batch.size() + pending.size();
+    }
+
+    /**
+     * Returns the number of messages dropped since the client connected.
+     * 
+     * @return
+     *          the number of dropped messages.
+     */
+    public synchronized long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * Returns the keys of the topics the client subscribed to.
+     * 
+     * @return
+     *          the subscription keys (see {@link SocketTopic}), empty if the client receives all messages.
+     */
+    public synchronized Set<String> getSubscriptions() {
+        return new HashSet<>(subscriptions);
+    }
+
+    /**
+     * Adds a subscription.
+     * 
+     * @param key
+     *          the key of the topic (see {@link SocketTopic}).
+     * @return
+     *          true if the subscription was added, false if the client already subscribed to the key.
+     */
+    synchronized boolean subscribe(String key) {
+        return subscriptions.add(Objects.requireNonNull(key));
+    }
+
+    /**
+     * Removes a subscription.
+     * 
+     * @param key
+     *          the key of the topic (see {@link SocketTopic}).
+     * @return
+     *          true if the subscription was removed, false if the client did not subscribe to the key.
+     */
+    synchronized boolean unsubscribe(String key) {
+        return subscriptions.remove(key);
+    }
+
+    /**
+     * Adds a message to the queue, applying the {@link SlowConsumerPolicy} if it is full. Must be called while
+     * holding the lock.
+     * 
+     * @param message
+     *          the message text.
+     * @return
+     *          the {@link Admission} of the message.
+     */
+    private Admission queue(String message) {
+        if (queue.size() < capacity) {
+            queue.add(message);
+            return Admission.QUEUED;
+        }
+        dropped++;
+        switch (policy) {
+        case DROP_OLDEST:
+            queue.poll();
+            queue.add(message);
+            return Admission.QUEUED;
+        case DISCONNECT:
+            queue.clear();
+            return Admission.DISCONNECT;
+        default:
+            return Admission.DROPPED;
+        }
+    }
+
+    /**
+     * Adds a message to the batch, applying the {@link SlowConsumerPolicy} if it is full. Must be called while
+     * holding the lock.
+     * 
+     * @param topic
+     *          the {@link SocketTopic} of the message (null for messages without topic, never replaced).
+     * @param message
+     *          the message encoded as JSON value.
+     * @return
+     *          the {@link Admission} of the message.
+     */
+    private Admission collect(SocketTopic topic, String message) {
+        Object key = (topic != null && delivery == SocketDelivery.LATEST) ? topic.latestKey() : new Object();
+        if (batch.remove(key) != null || batch.size() < capacity) {
+            // re-insert replaced messages, so the batch stays in the order of the latest messages
+            batch.put(key, message);
+            return Admission.QUEUED;
+        }
+        dropped++;
+        switch (policy) {
+        case DROP_OLDEST:
+            Iterator<String> oldest = batch.values().iterator();
+            oldest.next();
+            oldest.remove();
+            batch.put(key, message);
+            return Admission.QUEUED;
+        case DISCONNECT:
+            batch.clear();
+            return Admission.DISCONNECT;
+        default:
+            return Admission.DROPPED;
+        }
+    }
+
+    /**
+     * Adds the pending numbered messages up to a sequence number to the queue (or batch), in order. Must be called
+     * while holding the lock.
+     * 
+     * @param completed
+     *          the sequence number up to which all messages are routed.
+     * @return
+     *          {@link Admission#DISCONNECT} if the client has to be disconnected, {@link Admission#QUEUED} else.
+     */
+    private Admission drain(long completed) {
+        NavigableMap<Long, ReplayBuffer.Entry> ready = pending.headMap(completed, true);
+        for (ReplayBuffer.Entry entry : ready.values()) {
+            released = entry.getSequence();
+            Admission admission = (delivery == SocketDelivery.IMMEDIATE) ? queue(entry.getMessage())
+                    : collect(entry.getTopic(), entry.getMessage());
+            if (admission == Admission.DISCONNECT) {
+                pending.clear();
+                return admission;
+            }
+        }
+        ready.clear();
+        return Admission.QUEUED;
+    }
+
+    /**
+     * Takes the next queued message if no write is in progress. Must be called while holding the lock.
+     * 
+     * @return
+     *          the message text to be written by the caller, null if none.
+     */
+    private String start() {
+        if (writing || queue.isEmpty()) {
+            return null;
+        }
+        writing = true;
+        return queue.poll();
+    }
+
+    /**
+     * Completes the admission of a message outside of the lock.
+     * 
+     * @param admission
+     *          the {@link Admission} of the message.
+     * @param message
+     *          the message text to be written if admitted for writing.
+     * @return
+     *          true if the message is sent or queued, false if it was dropped.
+     */
+    private boolean dispatch(Admission admission, String message) {
+        switch (admission) {
+        case WRITE:
+            write(message);
+            return true;
+        case QUEUED:
+            return true;
+        case DISCONNECT:
+            session.close(StatusCode.POLICY_VIOLATION, "Client too slow");
+            return false;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Returns whether the client receives messages of a topic with its current subscriptions. Must be called while
+     * holding the lock.
+     * 
+     * @param topic
+     *          the {@link SocketTopic} (null for messages without topic).
+     * @return
+     *          true if the client receives the messages, false otherwise.
+     */
+    private boolean accepts(SocketTopic topic) {
+        if (topic == null || subscriptions.isEmpty()) {
+            return true;
+        }
+        for (String key : topic.keys()) {
+            if (subscriptions.contains(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sends the next queued message, if any.
+     */
+    private void sendNext() {
+        String message;
+        synchronized (this) {
+            message = queue.poll();
+            if (message == null) {
+                writing = false;
+                return;
+            }
+        }
+        write(message);
+    }
+
+    /**
+     * Starts the write of a message.
+     * 
+     * @param message
+     *          the message text.
+     */
+    private void write(String message) {
+        try {
+            session.getRemote().sendString(message, callback);
+        } catch (RuntimeException e) {
+            // connection already closed - nothing left to send to
+            discard();
+        }
+    }
+
+    /**
+     * Discards the queued and collected messages after the connection was closed.
+     */
+    private synchronized void discard() {
+        queue.clear();
+        batch.clear();
+        pending.clear();
+        writing = false;
+    }
+
+    /**
+     * Outcome of adding a message to the queue (or batch).
+     */
+    private enum Admission {
+
+        /**
+         * No write is in progress, the message has to be written by the caller.
+         */
+        WRITE,
+
+        /**
+         * The message is queued (or collected).
+         */
+        QUEUED,
+
+        /**
+         * The message is dropped.
+         */
+        DROPPED,
+
+        /**
+         * The client is too slow and has to be disconnected.
+         */
+        DISCONNECT
+    }
+}
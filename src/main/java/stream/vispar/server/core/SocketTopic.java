@@ -0,0 +1,100 @@
+package stream.vispar.server.core;
+
+import java.util.Objects;
+
+/**
+ * Topic of a message sent over the socket, identifying the socket output of a pattern it was sent by. Clients
+ * subscribe to topics by one of their keys: {@code pattern:<pattern id>}, {@code output:<output node id>} or
+ * {@code name:<pattern name>}.
+ * 
+ * @author Micha Hanselmann
+ */
+public final class SocketTopic {
+
+    /**
+     * Prefix of keys addressing a pattern by its id.
+     */
+    public static final String PATTERN = "pattern:";
+
+    /**
+     * Prefix of keys addressing an output node by its id.
+     */
+    public static final String OUTPUT = "output:";
+
+    /**
+     * Prefix of keys addressing a pattern by its name.
+     */
+    public static final String NAME = "name:";
+
+    /**
+     * Subscription keys of the topic, in the order pattern, output node, name.
+     */
+    private final String[] keys;
+
+
+    /**
+     * Constructs a new {@link SocketTopic}.
+     * 
+     * @param patternId
+     *          the id of the pattern.
+     * @param outputId
+     *          the id of the output node.
+     * @param patternName
+     *          the name of the pattern (may be null for unnamed patterns).
+     */
+    public SocketTopic(String patternId, String outputId, String patternName) {
+        this.keys = new String[] {
+            PATTERN + Objects.requireNonNull(patternId),
+            OUTPUT + Objects.requireNonNull(outputId),
+            NAME + patternName
+        };
+    }
+
+    /**
+     * Returns the keys clients can subscribe to the topic with.
+     * 
+     * @return
+     *          the subscription keys, in the order pattern, output node, name.
+     */
+    public String[] getKeys() {
+        return keys.clone();
+    }
+
+    /**
+     * Returns whether a string is a valid subscription key.
+     * 
+     * @param key
+     *          the string.
+     * @return
+     *          true if the string is a subscription key, false otherwise.
+     */
+    public static boolean isKey(String key) {
+        return key.startsWith(PATTERN) || key.startsWith(OUTPUT) || key.startsWith(NAME);
+    }
+
+    /**
+     * Returns the subscription keys without copying them.
+     * 
+     * @return
+     *          the subscription keys (must not be modified).
+     */
+    String[] keys() {
+        return keys;
+    }
+
+    /**
+     * Returns the key identifying the socket action node that sent the message. Messages with the same key
+     * replace each other if only the latest message of each node is delivered (see {@link SocketDelivery#LATEST}).
+     * 
+     * @return
+     *          the output node key ({@code output:<output node id>}).
+     */
+    String latestKey() {
+        return keys[1];
+    }
+
+    @Override
+    public String toString() {
+        return keys[0] + " " + keys[1];
+    }
+}
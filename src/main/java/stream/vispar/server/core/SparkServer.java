@@ -1,15 +1,25 @@
 package stream.vispar.server.core;
 
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Objects;
+import java.util.TreeMap;
 
 import spark.Request;
 import spark.Response;
 import spark.Route;
 import spark.Service;
 import stream.vispar.jsonconverter.IJsonConverter;
-import stream.vispar.jsonconverter.exceptions.JsonException;
 import stream.vispar.jsonconverter.gson.GsonConverter;
+import stream.vispar.jsonconverter.gson.typeadapters.GsonJsonArray;
 import stream.vispar.jsonconverter.gson.typeadapters.GsonJsonObject;
+import stream.vispar.jsonconverter.types.IJsonArray;
 import stream.vispar.jsonconverter.types.IJsonObject;
 import stream.vispar.server.ServerApp;
 import stream.vispar.server.core.entities.Event;
@@ -24,6 +34,11 @@ import stream.vispar.server.localization.LocalizedString;
  */
 public class SparkServer implements IRequestHandler {
     
+    /**
+     * Seconds a sensor should wait before retrying a rejected request.
+     */
+    private static final int RETRY_AFTER_SECONDS = 1;
+    
     /**
      * Server instance the handler belongs to.
      */
@@ -80,8 +95,10 @@ public class SparkServer implements IRequestHandler {
         http.get("/", (req, res) -> "Vispar Server " + ServerApp.VERSION); // version landing page
         
         // sensor routes
-        instance.getSensorCtrl().getAll().forEach(sensor ->
-            http.post("/sensor/" + sensor.getEndpoint(), createSensorRoute(sensor)));
+        instance.getSensorCtrl().getAll().forEach(sensor -> {
+            http.post("/sensor/" + sensor.getEndpoint(), createSensorRoute(sensor));
+            http.post("/sensor/" + sensor.getEndpoint() + "/batch", createSensorBatchRoute(sensor));
+        });
         
         // api routes
         http.path("/api", () -> {
@@ -170,15 +187,86 @@ public class SparkServer implements IRequestHandler {
             @Override
             public Object handle(Request req, Response res) throws Exception {
                 IJsonObject response = new GsonJsonObject();
-                try {
+                try (Reader body = openBody(req)) {
+                    
+                    // parse event (streamed from the request, without building a json tree)
+                    Event event = sensor.parseEvent(body);
+                    
+                    // hand over to engine (reject if the engine cannot keep up)
+                    if (!instance.getIngestQueue().offer(event)) {
+                        rejectOverloaded(res, response);
+                    }
+                    
+                } catch (IllegalArgumentException e) {
+                    res.status(400);
+                    response.add("error", e.getMessage());
+                    instance.getLogger().logError(e.toString());
+                }
+                res.type("application/json");
+                return response;
+            }
+        };
+    }
+    
+    /**
+     * Creates a Spark {@link Route} for a sensor batch route. The route accepts a json array or newline-delimited
+     * json and forwards all valid items to the engine at once. Invalid items are reported by their position,
+     * without failing the whole batch. Batches larger than a lane of the ingest queue are rejected with
+     * 413 (Payload Too Large), as they never fit.
+     * 
+     * @param sensor
+     *              the {@link Sensor} which belongs to the route.
+     * @return
+     *              the Spark {@link Route}.
+     */
+    private Route createSensorBatchRoute(Sensor sensor) {
+        return new Route() {
+            @Override
+            public Object handle(Request req, Response res) throws Exception {
+                IJsonObject response = new GsonJsonObject();
+                try (Reader body = openBody(req)) {
+                    
+                    // parse events
+                    Map<Integer, String> errors = new TreeMap<>();
+                    List<Event> events = sensor.parseEvents(body, errors);
                     
-                    // parse event
-                    Event event = sensor.parseEvent(jsonConv.fromString(req.body()));
+                    // the events of a sensor share one lane, a larger batch would be rejected on every retry
+                    int laneCapacity = instance.getIngestQueue().getLaneCapacity();
+                    if (events.size() > laneCapacity) {
+                        res.status(413);
+                        response.add("error", String.format(
+                                instance.getLocalizer().get(LocalizedString.BATCH_TOO_LARGE), laneCapacity));
+                        res.type("application/json");
+                        return response;
+                    }
+                    
+                    // hand over to engine (reject the whole batch if the engine cannot keep up)
+                    if (!events.isEmpty() && !instance.getIngestQueue().offerAll(events)) {
+                        rejectOverloaded(res, response);
+                        res.type("application/json");
+                        return response;
+                    }
                     
-                    // send to engine
-                    instance.getEngine().sendEvent(event);
+                    // report per-item errors
+                    response.add("accepted", events.size());
+                    if (!errors.isEmpty()) {
+                        IJsonArray errorList = new GsonJsonArray();
+                        for (Entry<Integer, String> error : errors.entrySet()) {
+                            IJsonObject item = new GsonJsonObject();
+                            item.add("index", error.getKey());
+                            item.add("error", error.getValue());
+                            errorList.add(item);
+                        }
+                        response.add("errors", errorList);
+                        instance.getLogger().logError(String.format(
+                                instance.getLocalizer().get(LocalizedString.BATCH_ITEMS_REJECTED), 
+                                errors.size(), errors.size() + events.size(), sensor.getName()));
+                    }
+                    if (events.isEmpty() && !errors.isEmpty()) {
+                        res.status(400);
+                    }
                     
-                } catch (IllegalArgumentException | JsonException e) {
+                } catch (IllegalArgumentException e) {
                     res.status(400);
                     response.add("error", e.getMessage());
                     instance.getLogger().logError(e.toString());
@@ -188,4 +276,41 @@ public class SparkServer implements IRequestHandler {
             }
         };
     }
+    
+    /**
+     * Marks a sensor response as rejected because the ingest queue is full. The sensor is asked to retry later.
+     * 
+     * @param res
+     *              the {@link Response}.
+     * @param response
+     *              the json body of the response.
+     */
+    private void rejectOverloaded(Response res, IJsonObject response) {
+        res.status(503);
+        res.header("Retry-After", String.valueOf(RETRY_AFTER_SECONDS));
+        response.add("error", instance.getLocalizer().get(LocalizedString.SERVER_BUSY));
+    }
+    
+    /**
+     * Opens a {@link Reader} on the body of a request, using the charset of the request (UTF-8 by default).
+     * 
+     * @param req
+     *              the {@link Request}.
+     * @return
+     *              the {@link Reader}.
+     * @throws IOException
+     *              if the body could not be opened.
+     */
+    private Reader openBody(Request req) throws IOException {
+        Charset charset = StandardCharsets.UTF_8;
+        String encoding = req.raw().getCharacterEncoding();
+        if (encoding != null) {
+            try {
+                charset = Charset.forName(encoding);
+            } catch (IllegalArgumentException e) {
+                // unknown charset - stick to default
+            }
+        }
+        return new InputStreamReader(req.raw().getInputStream(), charset);
+    }
 }
@@ -1,13 +1,23 @@
 package stream.vispar.server.core;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.jetty.websocket.api.Session;
 import org.eclipse.jetty.websocket.api.annotations.OnWebSocketClose;
 import org.eclipse.jetty.websocket.api.annotations.OnWebSocketConnect;
+import org.eclipse.jetty.websocket.api.annotations.OnWebSocketMessage;
 import org.eclipse.jetty.websocket.api.annotations.WebSocket;
 
 import spark.Service;
@@ -21,6 +31,21 @@ import stream.vispar.server.localization.LocalizedString;
 @WebSocket // annotation needed for Jetty
 public class SparkSocket implements ISocketHandler {
     
+    /**
+     * Default number of messages queued per client.
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 256;
+    
+    /**
+     * Default interval in milliseconds between two batches sent to a client.
+     */
+    public static final long DEFAULT_TICK = 50;
+    
+    /**
+     * Default grace period in milliseconds for new clients to resume before they receive numbered messages.
+     */
+    public static final long DEFAULT_HOLD_TIMEOUT = 5000;
+    
     /**
      * Server instance the handler belongs to.
      */
@@ -36,14 +61,59 @@ public class SparkSocket implements ISocketHandler {
      */
     private Service http;
     
+    /**
+     * Number of messages queued per client.
+     */
+    private final int queueCapacity;
+    
+    /**
+     * Determines what happens to messages for clients whose queue is full.
+     */
+    private final SlowConsumerPolicy policy;
+    
+    /**
+     * Determines how messages are delivered to clients.
+     */
+    private final SocketDelivery delivery;
+    
+    /**
+     * Interval in milliseconds between two batches sent to a client.
+     */
+    private final long tick;
+    
+    /**
+     * Latest messages kept for reconnecting clients, null if messages are not numbered.
+     */
+    private final ReplayBuffer replay;
+    
+    /**
+     * Grace period in milliseconds for new clients to resume or subscribe before they receive numbered messages.
+     */
+    private final long holdTimeout;
+    
+    /**
+     * Flushes the batches of all clients on every tick (only used by batched delivery).
+     */
+    private ScheduledExecutorService flusher;
+    
     /**
      * Currently opened connections (thread-safe).
      */
-    private final Queue<Session> sessions;
+    private final Map<Session, SocketSession> sessions;
+    
+    /**
+     * Connections without subscriptions, receiving all messages (thread-safe).
+     */
+    private final Set<SocketSession> unfiltered;
+    
+    /**
+     * Connections by the keys of the topics they subscribed to (thread-safe).
+     */
+    private final Map<String, Set<SocketSession>> subscribers;
     
     
     /**
-     * Constructs a new {@link SparkSocket}.
+     * Constructs a new {@link SparkSocket} dropping the oldest queued messages of slow clients.
      * 
      * @param instance
      *          the {@link ServerInstance} the handler belongs to.
@@ -51,14 +121,122 @@ public class SparkSocket implements ISocketHandler {
      *          the (network) port the socket should use.
      */
     public SparkSocket(ServerInstance instance, int port) {
+        this(instance, port, DEFAULT_QUEUE_CAPACITY, SlowConsumerPolicy.DROP_OLDEST);
+    }
+    
+    /**
+     * Constructs a new {@link SparkSocket}.
+     * 
+     * @param instance
+     *          the {@link ServerInstance} the handler belongs to.
+     * @param port
+     *          the (network) port the socket should use.
+     * @param queueCapacity
+     *          the number of messages queued per client.
+     * @param policy
+     *          the {@link SlowConsumerPolicy} applied to clients whose queue is full.
+     */
+    public SparkSocket(ServerInstance instance, int port, int queueCapacity, SlowConsumerPolicy policy) {
+        this(instance, port, queueCapacity, policy, SocketDelivery.IMMEDIATE, DEFAULT_TICK);
+    }
+    
+    /**
+     * Constructs a new {@link SparkSocket}.
+     * 
+     * @param instance
+     *          the {@link ServerInstance} the handler belongs to.
+     * @param port
+     *          the (network) port the socket should use.
+     * @param queueCapacity
+     *          the number of messages queued (or batched) per client.
+     * @param policy
+     *          the {@link SlowConsumerPolicy} applied to clients whose queue is full.
+     * @param delivery
+     *          the {@link SocketDelivery} determining whether messages are sent immediately or batched.
+     * @param tick
+     *          the interval in milliseconds between two batches sent to a client (ignored if not batched).
+     */
+    public SparkSocket(ServerInstance instance, int port, int queueCapacity, SlowConsumerPolicy policy,
+            SocketDelivery delivery, long tick) {
+        this(instance, port, queueCapacity, policy, delivery, tick, 0);
+    }
+    
+    /**
+     * Constructs a new {@link SparkSocket}.
+     * 
+     * @param instance
+     *          the {@link ServerInstance} the handler belongs to.
+     * @param port
+     *          the (network) port the socket should use.
+     * @param queueCapacity
+     *          the number of messages queued (or batched) per client.
+     * @param policy
+     *          the {@link SlowConsumerPolicy} applied to clients whose queue is full.
+     * @param delivery
+     *          the {@link SocketDelivery} determining whether messages are sent immediately or batched.
+     * @param tick
+     *          the interval in milliseconds between two batches sent to a client (ignored if not batched).
+     * @param replayCapacity
+     *          the number of latest messages kept for reconnecting clients (0 to send messages without sequence
+     *          numbers).
+     */
+    public SparkSocket(ServerInstance instance, int port, int queueCapacity, SlowConsumerPolicy policy,
+            SocketDelivery delivery, long tick, int replayCapacity) {
+        this(instance, port, queueCapacity, policy, delivery, tick, replayCapacity, DEFAULT_HOLD_TIMEOUT);
+    }
+    
+    /**
+     * Constructs a new {@link SparkSocket}.
+     * 
+     * @param instance
+     *          the {@link ServerInstance} the handler belongs to.
+     * @param port
+     *          the (network) port the socket should use.
+     * @param queueCapacity
+     *          the number of messages queued (or batched) per client.
+     * @param policy
+     *          the {@link SlowConsumerPolicy} applied to clients whose queue is full.
+     * @param delivery
+     *          the {@link SocketDelivery} determining whether messages are sent immediately or batched.
+     * @param tick
+     *          the interval in milliseconds between two batches sent to a client (ignored if not batched).
+     * @param replayCapacity
+     *          the number of latest messages kept for reconnecting clients (0 to send messages without sequence
+     *          numbers).
+     * @param holdTimeout
+     *          the grace period in milliseconds for new clients to resume or subscribe before they receive
+     *          numbered messages (ignored if messages are not numbered).
+     */
+    public SparkSocket(ServerInstance instance, int port, int queueCapacity, SlowConsumerPolicy policy,
+            SocketDelivery delivery, long tick, int replayCapacity, long holdTimeout) {
         
         if (port < 0 || port > 65535) {
             throw new IllegalArgumentException("Port number has to be between 0 and 65535.");
         }
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("Queue capacity has to be positive.");
+        }
+        if (tick < 1) {
+            throw new IllegalArgumentException("Tick has to be positive.");
+        }
+        if (replayCapacity < 0) {
+            throw new IllegalArgumentException("Replay capacity cannot be negative.");
+        }
+        if (holdTimeout < 0) {
+            throw new IllegalArgumentException("Hold timeout cannot be negative.");
+        }
         
         this.instance = Objects.requireNonNull(instance);
         this.port = port;
-        this.sessions = new ConcurrentLinkedQueue<>();
+        this.queueCapacity = queueCapacity;
+        this.policy = Objects.requireNonNull(policy);
+        this.delivery = Objects.requireNonNull(delivery);
+        this.tick = tick;
+        this.replay = (replayCapacity > 0) ? new ReplayBuffer(replayCapacity) : null;
+        this.holdTimeout = holdTimeout;
+        this.sessions = new ConcurrentHashMap<>();
+        this.unfiltered = ConcurrentHashMap.newKeySet();
+        this.subscribers = new ConcurrentHashMap<>();
     }
 
     @Override
@@ -79,22 +257,38 @@ public class SparkSocket implements ISocketHandler {
         
         http.awaitInitialization();
         
+        // send batches and stop holding messages for new clients whose grace period expired periodically
+        if (delivery != SocketDelivery.IMMEDIATE || replay != null) {
+            flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "vispar-socket-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleAtFixedRate(this::flush, tick, tick, TimeUnit.MILLISECONDS);
+        }
+        
         instance.getLogger().log(
                 String.format(instance.getLocalizer().get(LocalizedString.SOCKET_OPENED), http.port()));
     }
 
     @Override
     public void stop() {
+        if (flusher != null) {
+            flusher.shutdownNow();
+            flusher = null;
+        }
         if (http != null) {
             // disconnect all clients
             try {
-                for (Session session : sessions) {
+                for (Session session : sessions.keySet()) {
                     session.disconnect();
                 }
             } catch (IOException e) {
                 instance.getLogger().logError(e.toString());
             } finally {
                 sessions.clear();
+                unfiltered.clear();
+                subscribers.clear();
             }
             
             http.stop();
@@ -102,16 +296,21 @@ public class SparkSocket implements ISocketHandler {
     }
 
     @Override
-    public synchronized void sendMessage(String message) {
-        
-        // send message to all connected clients
-        try {
-            for (Session session : sessions) {
-                session.getRemote().sendString(message);
-            }
-        } catch (IOException e) {
-            instance.getLogger().logError(e.toString());
-        }
+    public void sendMessage(String message) {
+        Objects.requireNonNull(message);
+        deliver(null, message);
+    }
+    
+    @Override
+    public void publish(SocketTopic topic, String message) {
+        Objects.requireNonNull(topic);
+        Objects.requireNonNull(message);
+        deliver(topic, message);
+    }
+    
+    @Override
+    public List<SocketSession> getSessions() {
+        return new ArrayList<>(sessions.values());
     }
     
     /**
@@ -122,7 +321,16 @@ public class SparkSocket implements ISocketHandler {
      */
     @OnWebSocketConnect
     public void clientConnected(Session session) {
-        sessions.add(session);
+        SocketSession client = new SocketSession(session, queueCapacity, policy, instance.getLogger(), delivery);
+        if (replay != null) {
+            // hold messages until the client resumed, so replayed and new messages are not mixed up
+            client.hold();
+        }
+        sessions.put(session, client);
+        unfiltered.add(client);
+        if (replay != null) {
+            client.join(replay.getLatest());
+        }
         instance.getLogger().log(
                 String.format(instance.getLocalizer().get(LocalizedString.CONNECTED_TO_SOCKET), 
                         session.getRemoteAddress().getAddress().getHostAddress()));
@@ -140,9 +348,210 @@ public class SparkSocket implements ISocketHandler {
      */
     @OnWebSocketClose
     public void clientDisconnected(Session session, int statusCode, String reason) {
-        sessions.remove(session);
+        SocketSession client = sessions.remove(session);
+        if (client != null) {
+            unfiltered.remove(client);
+            for (String key : client.getSubscriptions()) {
+                removeSubscriber(key, client);
+            }
+        }
         instance.getLogger().log(
                 String.format(instance.getLocalizer().get(LocalizedString.DISCONNECTED_FROM_SOCKET), 
                         session.getRemoteAddress().getAddress().getHostAddress()));
     }
+    
+    /**
+     * Client sent a message to the socket. Clients (un)subscribe to topics by sending
+     * {@code subscribe <key>} or {@code unsubscribe <key>}, see {@link SocketTopic} for the keys. Clients without
+     * subscriptions receive all messages. If messages are numbered, reconnecting clients send
+     * {@code resume <sequence>} with the sequence number of the last message they received to get the messages
+     * they missed. New clients receive numbered messages once they resumed or subscribed, or once the grace period
+     * for resuming expired.
+     * 
+     * @param session
+     *          the connection {@link Session}.
+     * @param message
+     *          the message.
+     */
+    @OnWebSocketMessage
+    public void messageReceived(Session session, String message) {
+        SocketSession client = sessions.get(session);
+        if (client == null) {
+            return;
+        }
+        
+        String[] command = message.trim().split("\\s+", 2);
+        if (command.length == 2 && command[0].equals("resume") && replay != null) {
+            try {
+                resume(client, Long.parseLong(command[1]));
+                return;
+            } catch (NumberFormatException e) {
+                // reported as invalid command
+            }
+        }
+        if (command.length == 2 && SocketTopic.isKey(command[1])) {
+            String key = command[1];
+            if (command[0].equals("subscribe")) {
+                if (client.subscribe(key)) {
+                    subscribers.compute(key, (k, subscribed) -> {
+                        Set<SocketSession> updated = (subscribed != null) ? subscribed : ConcurrentHashMap.newKeySet();
+                        updated.add(client);
+                        return updated;
+                    });
+                    unfiltered.remove(client);
+                }
+                if (replay != null) {
+                    client.live();
+                    client.release(replay.getCompleted());
+                }
+                return;
+            } else if (command[0].equals("unsubscribe")) {
+                if (client.unsubscribe(key)) {
+                    if (client.getSubscriptions().isEmpty()) {
+                        unfiltered.add(client);
+                    }
+                    removeSubscriber(key, client);
+                }
+                return;
+            }
+        }
+        instance.getLogger().logError(String.format(
+                instance.getLocalizer().get(LocalizedString.INVALID_SOCKET_COMMAND), client.getRemoteAddress(),
+                message));
+    }
+    
+    /**
+     * Sends the batches collected for all clients and stops holding messages for new clients whose grace period
+     * expired, called on every tick.
+     */
+    void flush() {
+        for (SocketSession session : sessions.values()) {
+            if (replay != null) {
+                session.expire(holdTimeout);
+                session.release(replay.getCompleted());
+            }
+            session.flush();
+        }
+    }
+    
+    /**
+     * Delivers a message to the interested clients.
+     * 
+     * @param topic
+     *          the {@link SocketTopic} of the message (null to deliver it to all clients).
+     * @param message
+     *          the message.
+     */
+    private void deliver(SocketTopic topic, String message) {
+        if (replay == null) {
+            Collection<SocketSession> targets = targetsOf(topic);
+            if (!targets.isEmpty()) {
+                deliverEncoded(targets, topic, (delivery == SocketDelivery.IMMEDIATE) ? message
+                        : SocketMessages.quote(message));
+            }
+            return;
+        }
+        
+        // number before collecting the clients, so clients connecting meanwhile get the message replayed; messages
+        // are kept even if nobody receives them now
+        ReplayBuffer.Entry entry = replay.add(topic, message);
+        Collection<SocketSession> targets = Collections.emptySet();
+        Collection<SocketSession> released;
+        try {
+            targets = targetsOf(topic);
+            for (SocketSession session : targets) {
+                session.offer(entry);
+            }
+        } finally {
+            released = replay.complete(entry.getSequence(), targets);
+        }
+        
+        // the clients reorder concurrently routed messages, the publisher completing a gap releases the clients of
+        // all messages up to the next gap
+        long completed = replay.getCompleted();
+        for (SocketSession session : released) {
+            session.release(completed);
+        }
+    }
+    
+    /**
+     * Collects the clients interested in a topic (once, even if subscribed by multiple keys of the topic).
+     * 
+     * @param topic
+     *          the {@link SocketTopic} (null for all clients).
+     * @return
+     *          the {@link SocketSession}s of the clients.
+     */
+    private Collection<SocketSession> targetsOf(SocketTopic topic) {
+        if (topic == null) {
+            return sessions.values();
+        }
+        Set<SocketSession> targets = new HashSet<>(unfiltered);
+        for (String key : topic.keys()) {
+            Set<SocketSession> subscribed = subscribers.get(key);
+            if (subscribed != null) {
+                targets.addAll(subscribed);
+            }
+        }
+        return targets;
+    }
+    
+    /**
+     * Delivers an encoded message to clients.
+     * 
+     * @param targets
+     *          the {@link SocketSession}s of the clients.
+     * @param topic
+     *          the {@link SocketTopic} of the message (may be null).
+     * @param encoded
+     *          the message as frame text if sent immediately, else as JSON value.
+     */
+    private void deliverEncoded(Collection<SocketSession> targets, SocketTopic topic, String encoded) {
+        if (delivery == SocketDelivery.IMMEDIATE) {
+            // queue the same text for all clients (sent asynchronously)
+            for (SocketSession session : targets) {
+                session.send(encoded);
+            }
+        } else {
+            // collect for the next tick
+            for (SocketSession session : targets) {
+                session.enqueue(topic, encoded);
+            }
+        }
+    }
+    
+    /**
+     * Replays the messages a reconnecting client missed, restricted to its subscriptions, and stops holding
+     * messages for it. If some of them were already evicted (or cannot be delivered in order), the client is told
+     * to resync instead.
+     * 
+     * @param client
+     *          the {@link SocketSession} of the client.
+     * @param sequence
+     *          the sequence number of the last message the client received.
+     */
+    private void resume(SocketSession client, long sequence) {
+        List<ReplayBuffer.Entry> missed = replay.since(sequence);
+        if (missed == null || !client.resume(sequence, missed)) {
+            client.resync(replay.getCompleted());
+            instance.getLogger().log(String.format(instance.getLocalizer().get(LocalizedString.SOCKET_RESYNC),
+                    client.getRemoteAddress(), sequence));
+        }
+        client.release(replay.getCompleted());
+    }
+    
+    /**
+     * Removes a client from the subscribers of a topic key.
+     * 
+     * @param key
+     *          the key of the topic.
+     * @param client
+     *          the {@link SocketSession} of the client.
+     */
+    private void removeSubscriber(String key, SocketSession client) {
+        subscribers.computeIfPresent(key, (k, subscribed) -> {
+            subscribed.remove(client);
+            return subscribed.isEmpty() ? null : subscribed;
+        });
+    }
 }
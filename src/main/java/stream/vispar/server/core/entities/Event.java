@@ -20,9 +20,14 @@ public class Event {
     private final long timestamp;
 
     /**
-     * Attributes and their values of the event.
+     * Typed attribute values of the event in the canonical attribute order of the sensor.
      */
-    private final Map<Attribute, String> data;
+    private final Object[] values;
+
+    /**
+     * Attribute values as received from the sensor (e.g. "21" for a double), in the same order as the typed values.
+     */
+    private final String[] raw;
 
     /**
      * Sensor responsible for the event.
@@ -39,20 +44,79 @@ public class Event {
      *            the attributes and their values of the event.
      * @param sensor
      *            the sensor responsible for the event.
+     * @throws IllegalArgumentException
+     *            if the data does not match the attributes of the sensor.
      */
     public Event(long timestamp, Map<Attribute, String> data, Sensor sensor) {
+        this(timestamp, Objects.requireNonNull(sensor).toValues(Objects.requireNonNull(data)),
+                rawOf(data, sensor), sensor);
+    }
+
+    /**
+     * Constructs a new {@link Event} from already typed values. The values are not copied.
+     * 
+     * @param timestamp
+     *            the timestamp of the event (in milliseconds from 1970).
+     * @param values
+     *            the typed attribute values in the canonical attribute order of the sensor.
+     * @param raw
+     *            the attribute values as received, in the same order as the typed values.
+     * @param sensor
+     *            the sensor responsible for the event.
+     */
+    Event(long timestamp, Object[] values, String[] raw, Sensor sensor) {
+        if (Objects.requireNonNull(raw).length != Objects.requireNonNull(values).length) {
+            throw new IllegalArgumentException("Raw and typed values differ in number.");
+        }
         this.timestamp = timestamp;
-        this.data = new HashMap<>(Objects.requireNonNull(data));
+        this.values = values;
+        this.raw = raw;
         this.sensor = Objects.requireNonNull(sensor);
     }
 
     /**
-     * Returns the data of the event.
+     * Returns the raw attribute values in the canonical attribute order of a sensor.
+     * 
+     * @param data
+     *            the attributes and their raw values.
+     * @param sensor
+     *            the sensor the attributes belong to.
+     * @return the raw values.
+     */
+    private static String[] rawOf(Map<Attribute, String> data, Sensor sensor) {
+        Attribute[] attributes = sensor.attributeOrder();
+        String[] raw = new String[attributes.length];
+        for (int i = 0; i < attributes.length; i++) {
+            raw[i] = data.get(attributes[i]);
+        }
+        return raw;
+    }
+
+    /**
+     * Returns the data of the event. The values are returned as received from the sensor, so they keep their
+     * original form (e.g. "21" for a double). The map is created on each call, use {@link #getValues()} to access
+     * the values without copying them.
      * 
      * @return map of attributes and their values.
      */
     public Map<Attribute, String> getData() {
-        return new HashMap<>(data);
+        Map<Attribute, String> data = new HashMap<>();
+        Attribute[] attributes = sensor.attributeOrder();
+        for (int i = 0; i < values.length; i++) {
+            data.put(attributes[i], raw[i]);
+        }
+        return data;
+    }
+
+    /**
+     * Returns the typed attribute values of the event ({@link Integer}, {@link Double} or {@link String}) in
+     * the canonical attribute order of the sensor (see {@link Sensor#getAttributeOrder()}). The array is shared
+     * and must not be modified.
+     * 
+     * @return the typed values.
+     */
+    public Object[] getValues() {
+        return values;
     }
     
     /**
@@ -76,10 +140,13 @@ public class Event {
 
     @Override
     public String toString() {
-        Map<String, String> output = new HashMap<>();
-        output.put("sensor", sensor.getName());
-        output.put("timestamp", String.valueOf(timestamp));
-        output.put("data", data.toString());
-        return output.toString();
+        StringBuilder output = new StringBuilder("{sensor=").append(sensor.getName())
+                .append(", timestamp=").append(timestamp)
+                .append(", data={");
+        Attribute[] attributes = sensor.attributeOrder();
+        for (int i = 0; i < values.length; i++) {
+            output.append(i > 0 ? ", " : "").append(attributes[i]).append('=').append(values[i]);
+        }
+        return output.append("}}").toString();
     }
 }
@@ -0,0 +1,162 @@
+package stream.vispar.server.core.entities;
+
+import java.util.Objects;
+
+import stream.vispar.jsonconverter.exceptions.JsonException;
+import stream.vispar.jsonconverter.types.IJsonElement;
+
+/**
+ * Precompiled accessor for a value in sensor data. A path consists of dot-separated keys, each of them optionally
+ * followed by an array index (e.g. {@code metadata.values[1].time}).
+ * 
+ * @author Micha Hanselmann
+ */
+public final class JsonPath {
+
+    /**
+     * Marks a segment without array index.
+     */
+    private static final int NO_INDEX = -1;
+
+    /**
+     * The path as it was configured.
+     */
+    private final String path;
+
+    /**
+     * Keys of the segments.
+     */
+    private final String[] keys;
+
+    /**
+     * Array indices of the segments ({@link #NO_INDEX} if the segment is no array access).
+     */
+    private final int[] indices;
+
+
+    /**
+     * Constructs a new {@link JsonPath}.
+     * 
+     * @param path
+     *          the path as it was configured.
+     * @param keys
+     *          the keys of the segments.
+     * @param indices
+     *          the array indices of the segments.
+     */
+    private JsonPath(String path, String[] keys, int[] indices) {
+        this.path = path;
+        this.keys = keys;
+        this.indices = indices;
+    }
+
+    /**
+     * Compiles a path.
+     * 
+     * @param path
+     *          the path to be compiled.
+     * @return
+     *          the compiled {@link JsonPath}.
+     * @throws IllegalArgumentException
+     *          if the path is malformed.
+     */
+    public static JsonPath compile(String path) {
+        String[] segments = Objects.requireNonNull(path).split("\\.", -1);
+        String[] keys = new String[segments.length];
+        int[] indices = new int[segments.length];
+
+        for (int i = 0; i < segments.length; i++) {
+            String segment = segments[i];
+            int bracket = segment.indexOf('[');
+            if (bracket < 0) {
+                keys[i] = segment;
+                indices[i] = NO_INDEX;
+            } else if (segment.endsWith("]")) {
+                keys[i] = segment.substring(0, bracket);
+                try {
+                    indices[i] = Integer.parseInt(segment.substring(bracket + 1, segment.length() - 1));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid array index in path '" + path + "'");
+                }
+            } else {
+                throw new IllegalArgumentException("Invalid array access in path '" + path + "'");
+            }
+            if (keys[i].isEmpty() || (indices[i] < 0 && bracket >= 0)) {
+                throw new IllegalArgumentException("Invalid segment in path '" + path + "'");
+            }
+        }
+
+        return new JsonPath(path, keys, indices);
+    }
+
+    /**
+     * Returns the value the path points to.
+     * 
+     * @param json
+     *          the {@link IJsonElement} to be traversed.
+     * @return
+     *          the value as string.
+     * @throws JsonException
+     *          if the path is invalid for the given json.
+     * @throws NullPointerException
+     *          if a key of the path is missing in the given json.
+     */
+    public String getValue(IJsonElement json) throws JsonException {
+        IJsonElement current = json;
+        int last = keys.length - 1;
+
+        // go down to the level of the last segment
+        for (int i = 0; i < last; i++) {
+            current = current.getAsJsonObject().get(keys[i]);
+            if (indices[i] != NO_INDEX) {
+                current = current.getAsJsonArray().get(indices[i]);
+            }
+        }
+
+        // get the value
+        if (indices[last] == NO_INDEX) {
+            return current.getAsJsonObject().getAsJsonPrimitive(keys[last]).getAsString();
+        }
+        return current.getAsJsonObject().get(keys[last]).getAsJsonArray()
+                .get(indices[last]).getAsJsonPrimitive().getAsString();
+    }
+
+    /**
+     * Returns the number of segments of the path.
+     * 
+     * @return
+     *          the number of segments.
+     */
+    public int getDepth() {
+        return keys.length;
+    }
+
+    /**
+     * Returns the key of a segment.
+     * 
+     * @param segment
+     *          the index of the segment.
+     * @return
+     *          the key.
+     */
+    public String getKey(int segment) {
+        return keys[segment];
+    }
+
+    /**
+     * Returns the array index of a segment.
+     * 
+     * @param segment
+     *          the index of the segment.
+     * @return
+     *          the array index or -1 if the segment is no array access.
+     */
+    public int getIndex(int segment) {
+        return indices[segment];
+    }
+
+    @Override
+    public String toString() {
+        return path;
+    }
+}
@@ -1,12 +1,19 @@
 package stream.vispar.server.core.entities;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.NoSuchElementException;
+
+import com.google.gson.stream.JsonReader;
 
 import stream.vispar.jsonconverter.exceptions.JsonException;
 import stream.vispar.jsonconverter.types.IJsonElement;
@@ -48,6 +55,27 @@ public final class Sensor {
      */
     private final Map<String, Attribute> attributes;
     
+    /**
+     * Attribute slots of the sensor in canonical order (derived from the attribute mappings). Written last by
+     * {@link #compile()}, so reading it also publishes the timestamp path.
+     */
+    private transient volatile Slot[] slots;
+    
+    /**
+     * Attributes of the slots (shared by all events of the sensor).
+     */
+    private transient Attribute[] attributeOrder;
+    
+    /**
+     * Compiled path of the timestamp source (null if timestamps are taken from the system).
+     */
+    private transient JsonPath timestampPath;
+    
+    /**
+     * Streaming reader extracting the attribute values (and the timestamp) from raw sensor data.
+     */
+    private transient SensorDataReader dataReader;
+    
     
     /**
      * Constructs a new {@link Sensor}. Called implicitly by json conversion.
@@ -97,7 +125,47 @@ public final class Sensor {
      *          the attributes.
      */
     public Collection<Attribute> getAttributes() {
-        return new ArrayList<>(attributes.values());
+        return new ArrayList<>(Arrays.asList(getAttributeOrder()));
+    }
+    
+    /**
+     * Returns the attributes of the sensor in canonical order. The values of an {@link Event} of this sensor
+     * are stored in the same order.
+     * 
+     * @return
+     *          the ordered attributes.
+     */
+    public Attribute[] getAttributeOrder() {
+        return attributeOrder().clone();
+    }
+    
+    /**
+     * Returns the attributes of the sensor in canonical order without copying them.
+     * 
+     * @return
+     *          the shared array of ordered attributes, must not be modified.
+     */
+    Attribute[] attributeOrder() {
+        getSlots();
+        return attributeOrder;
+    }
+    
+    /**
+     * Returns the slot of an attribute, i.e. its index in the canonical attribute order.
+     * 
+     * @param attributeName
+     *          the name of the attribute.
+     * @return
+     *          the slot or -1 if the sensor has no attribute with the given name.
+     */
+    public int getSlot(String attributeName) {
+        Slot[] ordered = getSlots();
+        for (int i = 0; i < ordered.length; i++) {
+            if (ordered[i].attribute.getName().equals(attributeName)) {
+                return i;
+            }
+        }
+        return -1;
     }
     
     /**
@@ -112,30 +180,226 @@ public final class Sensor {
      */
     public Event parseEvent(IJsonElement data) {
         
+        Slot[] ordered = getSlots();
+        
         // set timestamp (either from system or from sensor)
         long timestampMillis = System.currentTimeMillis(); // default
-        if (timestamp != null && !timestamp.isEmpty()) {
+        if (timestampPath != null) {
             try {
-                timestampMillis = Long.valueOf(getValueRecursively(data, timestamp));
+                timestampMillis = Long.parseLong(timestampPath.getValue(data));
             } catch (JsonException | NullPointerException | NumberFormatException e) {
                 throw new IllegalArgumentException("Sensor data for timestamp does not match configuration: " 
                         + e.toString());
             }
         }
         
-        // parse attribute values
-        Map<Attribute, String> values = new HashMap<>();
-        for (Entry<String, Attribute> attr : attributes.entrySet()) {
+        // parse attribute values (typed, in canonical order)
+        Object[] values = new Object[ordered.length];
+        String[] raw = new String[ordered.length];
+        for (int i = 0; i < ordered.length; i++) {
             try {
-                values.put(attr.getValue(), getValueRecursively(data, attr.getKey()));
-            } catch (JsonException | NullPointerException e) {
-                throw new IllegalArgumentException("Sensor data for attribute '" + attr.getValue().getName() 
+                raw[i] = ordered[i].path.getValue(data);
+                values[i] = convert(ordered[i].attribute, raw[i]);
+            } catch (JsonException | NullPointerException | NumberFormatException e) {
+                throw new IllegalArgumentException("Sensor data for attribute '" + ordered[i].attribute.getName() 
                         + "' does not match configuration: " + e.toString());
             }
         }
         
         // return event
-        return new Event(timestampMillis, values, this);
+        return new Event(timestampMillis, values, raw, this);
+    }
+    
+    /**
+     * Parses an event from raw data based on the sensors attribute mappings. In contrast to
+     * {@link #parseEvent(IJsonElement)}, the data is streamed: no json tree is built, parts of the data not
+     * referenced by the configuration are skipped and reading stops once all values are found.
+     * 
+     * @param data 
+     *          {@link Reader} providing the raw json sent from the sensor.
+     * @return
+     *          the parsed {@link Event}.
+     * @throws IllegalArgumentException
+     *          if the data could not be read or parsed.
+     */
+    public Event parseEvent(Reader data) {
+        
+        // extract raw values
+        String[] raw;
+        try {
+            raw = getDataReader().read(data);
+        } catch (IOException | IllegalStateException e) {
+            throw new IllegalArgumentException("Sensor data is not valid json: " + e.toString());
+        }
+        
+        // return event
+        return toEvent(raw);
+    }
+    
+    /**
+     * Parses multiple events from raw data based on the sensors attribute mappings. The data is either a json
+     * array or newline-delimited json (one json object per line). Like {@link #parseEvent(Reader)}, the data is
+     * streamed. Items that could not be parsed do not affect the other items, their errors are reported
+     * separately.
+     * 
+     * @param data 
+     *          {@link Reader} providing the raw data sent from the sensor.
+     * @param errors
+     *          map receiving the error message for each item (by position) that could not be parsed.
+     * @return
+     *          the parsed {@link Event events} in the order they were sent.
+     * @throws IllegalArgumentException
+     *          if the data could not be read at all (e.g. a malformed json array).
+     */
+    public List<Event> parseEvents(Reader data, Map<Integer, String> errors) {
+        List<Event> events = new ArrayList<>();
+        BufferedReader buffered = new BufferedReader(data);
+        
+        try {
+            
+            // skip leading whitespace to determine the format
+            int first;
+            do {
+                buffered.mark(1);
+                first = buffered.read();
+            } while (first != -1 && Character.isWhitespace(first));
+            if (first == -1) {
+                return events;
+            }
+            buffered.reset();
+            
+            if (first == '[') {
+                // json array - every element is consumed completely, so the next one can be read
+                JsonReader reader = new JsonReader(buffered);
+                reader.setLenient(true);
+                reader.beginArray();
+                for (int index = 0; reader.hasNext(); index++) {
+                    try {
+                        events.add(toEvent(getDataReader().read(reader, true)));
+                    } catch (IllegalArgumentException e) {
+                        errors.put(index, e.getMessage());
+                    }
+                }
+                reader.endArray();
+                
+            } else {
+                // newline-delimited json - every line is parsed on its own, so malformed lines are skipped
+                String line;
+                int index = 0;
+                while ((line = buffered.readLine()) != null) {
+                    if (line.trim().isEmpty()) {
+                        continue;
+                    }
+                    try {
+                        events.add(parseEvent(new StringReader(line)));
+                    } catch (IllegalArgumentException e) {
+                        errors.put(index, e.getMessage());
+                    }
+                    index++;
+                }
+            }
+            
+        } catch (IOException | IllegalStateException e) {
+            throw new IllegalArgumentException("Sensor data is not valid json: " + e.toString());
+        }
+        
+        return events;
+    }
+    
+    /**
+     * Converts raw values extracted by the {@link SensorDataReader} into an {@link Event}.
+     * 
+     * @param raw
+     *          the raw attribute values in slot order, followed by the timestamp (if configured).
+     * @return
+     *          the {@link Event}.
+     * @throws IllegalArgumentException
+     *          if a value is missing or does not match its type.
+     */
+    private Event toEvent(String[] raw) {
+        
+        Slot[] ordered = getSlots();
+        
+        // set timestamp (either from system or from sensor)
+        long timestampMillis = System.currentTimeMillis(); // default
+        if (timestampPath != null) {
+            try {
+                timestampMillis = Long.parseLong(raw[ordered.length]);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Sensor data for timestamp does not match configuration: " 
+                        + e.toString());
+            }
+        }
+        
+        // convert attribute values (typed, in canonical order)
+        Object[] values = new Object[ordered.length];
+        for (int i = 0; i < ordered.length; i++) {
+            try {
+                if (raw[i] == null) {
+                    throw new NoSuchElementException("no value at '" + ordered[i].path + "'");
+                }
+                values[i] = convert(ordered[i].attribute, raw[i]);
+            } catch (NoSuchElementException | NumberFormatException e) {
+                throw new IllegalArgumentException("Sensor data for attribute '" + ordered[i].attribute.getName() 
+                        + "' does not match configuration: " + e.toString());
+            }
+        }
+        
+        // return event (the reader reuses its array, so the raw values are copied)
+        return new Event(timestampMillis, values, Arrays.copyOf(raw, ordered.length), this);
+    }
+    
+    /**
+     * Converts raw attribute values into typed values in canonical order.
+     * 
+     * @param data
+     *          the attributes and their raw values.
+     * @return
+     *          the typed values.
+     * @throws IllegalArgumentException
+     *          if a value is missing or could not be converted.
+     */
+    Object[] toValues(Map<Attribute, String> data) {
+        Slot[] ordered = getSlots();
+        Object[] values = new Object[ordered.length];
+        for (int i = 0; i < ordered.length; i++) {
+            String raw = data.get(ordered[i].attribute);
+            if (raw == null) {
+                throw new IllegalArgumentException("No value for attribute '" + ordered[i].attribute.getName() + "'");
+            }
+            try {
+                values[i] = convert(ordered[i].attribute, raw);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Value for attribute '" + ordered[i].attribute.getName() 
+                        + "' does not match its type: " + e.toString());
+            }
+        }
+        return values;
+    }
+    
+    /**
+     * Converts a raw value to the type of an attribute.
+     * 
+     * @param attribute
+     *          the {@link Attribute} the value belongs to.
+     * @param raw
+     *          the raw value.
+     * @return
+     *          the typed value ({@link Integer}, {@link Double} or {@link String}).
+     * @throws NumberFormatException
+     *          if the value does not match the type of the attribute.
+     */
+    static Object convert(Attribute attribute, String raw) {
+        switch (attribute.getType()) {
+        case DOUBLE:
+            return Double.valueOf(raw);
+        case INTEGER:
+            return Integer.valueOf(raw);
+        case STRING:
+            return raw;
+        default:
+            throw new IllegalStateException("Attribute has unknown type");
+        }
     }
     
     @Override
@@ -156,52 +420,92 @@ public final class Sensor {
      *          the {@link SensorNode}.
      */
     public SensorNode getSensorNode() {
-        Attribute[] attrArray = attributes.values().stream().toArray(Attribute[]::new);
-        return new SensorNode("", new Point(0, 0), name, description, new Operand(attrArray));
+        return new SensorNode("", new Point(0, 0), name, description, new Operand(getAttributeOrder()));
     }
     
     /**
-     * Returns the value of a key in a {@link IJsonElement}. It supports nested objects by recursively
-     * traverse the json until the bottom-level key with its value is found.
+     * Compiles the attribute mappings and the timestamp source of the sensor into {@link JsonPath accessors}.
+     * Called once on registration, sensors that were not registered are compiled on first use.
      * 
-     * @param json
-     *          the {@link IJsonElement} to be traversed.
-     * @param key
-     *          the key to be searched for.
-     * @return
-     *          the value associated with the key.
-     * @throws JsonException
-     *          if key is invalid for given json.
+     * @throws IllegalArgumentException
+     *          if a key of the configuration is malformed.
      */
-    private String getValueRecursively(IJsonElement json, String key) throws JsonException {
+    public void compile() {
+        Slot[] compiled = attributes.entrySet().stream()
+                .sorted(Comparator.comparing(entry -> entry.getValue().getName()))
+                .map(entry -> new Slot(entry.getKey(), entry.getValue()))
+                .toArray(Slot[]::new);
+        timestampPath = (timestamp != null && !timestamp.isEmpty()) ? JsonPath.compile(timestamp) : null;
         
-        // base case -> key is on root level of json
-        if (!key.contains(".")) {
-            // array or object?
-            Matcher m = Pattern.compile(".*\\[(.*)\\]").matcher(key);
-            if (m.matches()) {
-                int index = Integer.parseInt(m.group(1));
-                String arrayKey = key.substring(0, key.indexOf('['));
-                return json.getAsJsonObject().get(arrayKey).getAsJsonArray()
-                        .get(index).getAsJsonPrimitive().getAsString();
-            } else {
-                return json.getAsJsonObject().getAsJsonPrimitive(key).getAsString();
-            }
+        // the streaming reader extracts the attribute values in slot order, followed by the timestamp
+        JsonPath[] paths = new JsonPath[compiled.length + (timestampPath != null ? 1 : 0)];
+        for (int i = 0; i < compiled.length; i++) {
+            paths[i] = compiled[i].path;
         }
+        if (timestampPath != null) {
+            paths[compiled.length] = timestampPath;
+        }
+        dataReader = new SensorDataReader(paths);
+        attributeOrder = Arrays.stream(compiled).map(slot -> slot.attribute).toArray(Attribute[]::new);
+        
+        slots = compiled;
+    }
+    
+    /**
+     * Returns the attribute slots of the sensor, compiling the sensor on first use. The canonical order is
+     * given by the attribute names.
+     * 
+     * @return
+     *          the slots.
+     */
+    private Slot[] getSlots() {
+        Slot[] ordered = slots;
+        if (ordered == null) {
+            compile();
+            ordered = slots;
+        }
+        return ordered;
+    }
+    
+    /**
+     * Returns the streaming reader of the sensor, compiling the sensor on first use.
+     * 
+     * @return
+     *          the {@link SensorDataReader}.
+     */
+    private SensorDataReader getDataReader() {
+        getSlots();
+        return dataReader;
+    }
+    
+    /**
+     * Attribute slot of the sensor, i.e. an attribute and the accessor for its value.
+     */
+    private static final class Slot {
+        
+        /**
+         * Compiled path where the value is found in the sensor data.
+         */
+        private final JsonPath path;
+        
+        /**
+         * Attribute the value belongs to.
+         */
+        private final Attribute attribute;
         
-        // else -> go a level deeper
-        String levelKey = key.split("\\.")[0];
-        String newKey = key.substring(levelKey.length() + 1);
-        
-        // array or object?
-        Matcher m = Pattern.compile(".*\\[(.*)\\]").matcher(levelKey);
-        if (m.matches()) {
-            int index = Integer.parseInt(m.group(1));
-            String arrayKey = levelKey.substring(0, levelKey.indexOf('['));
-            return getValueRecursively(json.getAsJsonObject().get(arrayKey).getAsJsonArray()
-                    .get(index), newKey);
-        } else {
-            return getValueRecursively(json.getAsJsonObject().get(levelKey), newKey);
+        /**
+         * Constructs a new {@link Slot}.
+         * 
+         * @param key
+         *          the key where the value is found.
+         * @param attribute
+         *          the attribute the value belongs to.
+         * @throws IllegalArgumentException
+         *          if the key is malformed.
+         */
+        Slot(String key, Attribute attribute) {
+            this.path = JsonPath.compile(key);
+            this.attribute = attribute;
         }
     }
 }
@@ -0,0 +1,299 @@
+package stream.vispar.server.core.entities;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * Extracts the values of a fixed set of {@link JsonPath paths} from sensor data without building a json tree.
+ * The data is read token by token, subtrees not addressed by any path are skipped and reading stops as soon as
+ * all values are found. The buffer holding the values is reused per thread.
+ * 
+ * @author Micha Hanselmann
+ */
+final class SensorDataReader {
+
+    /**
+     * Root of the path tree (the top level object of the sensor data).
+     */
+    private final Node root;
+
+    /**
+     * Number of paths.
+     */
+    private final int size;
+
+    /**
+     * Progress reused by reads on the same thread.
+     */
+    private final ThreadLocal<Progress> progress;
+
+
+    /**
+     * Constructs a new {@link SensorDataReader}.
+     * 
+     * @param paths
+     *          the paths to be extracted. The values are returned in the same order.
+     */
+    SensorDataReader(JsonPath... paths) {
+        this.root = new Node();
+        this.size = paths.length;
+        this.progress = ThreadLocal.withInitial(() -> new Progress(size));
+
+        for (int i = 0; i < paths.length; i++) {
+            Node node = root;
+            for (int segment = 0; segment < paths[i].getDepth(); segment++) {
+                node = node.field(paths[i].getKey(segment));
+                if (paths[i].getIndex(segment) >= 0) {
+                    node = node.element(paths[i].getIndex(segment));
+                }
+            }
+            node.targets = append(node.targets, i);
+        }
+    }
+
+    /**
+     * Reads the values of the paths. Reading stops as soon as all values are found.
+     * 
+     * @param data
+     *          the raw sensor data.
+     * @return
+     *          the values in the order of the paths (null if a value was not found). The array is reused by the
+     *          next read on the same thread, so it has to be consumed before.
+     * @throws IOException
+     *          if the data could not be read or is not valid json.
+     */
+    String[] read(Reader data) throws IOException {
+        JsonReader reader = new JsonReader(data);
+        reader.setLenient(true);
+        return read(reader, false);
+    }
+
+    /**
+     * Reads the values of the paths from the next value of a {@link JsonReader}.
+     * 
+     * @param reader
+     *          the {@link JsonReader} positioned in front of the value.
+     * @param complete
+     *          whether the value has to be consumed completely (e.g. to read further values afterwards) or reading
+     *          may stop as soon as all values are found.
+     * @return
+     *          the values in the order of the paths (null if a value was not found). The array is reused by the
+     *          next read on the same thread, so it has to be consumed before.
+     * @throws IOException
+     *          if the data could not be read or is not valid json.
+     */
+    String[] read(JsonReader reader, boolean complete) throws IOException {
+        Progress current = progress.get();
+        current.reset(complete);
+        read(reader, root, current);
+        return current.values;
+    }
+
+    /**
+     * Reads the next value and descends into it if it contains values of interest.
+     * 
+     * @param reader
+     *          the {@link JsonReader} positioned in front of the value.
+     * @param node
+     *          the path tree node belonging to the value.
+     * @param progress
+     *          the values found so far.
+     * @throws IOException
+     *          if the data could not be read or is not valid json.
+     */
+    private void read(JsonReader reader, Node node, Progress progress) throws IOException {
+        JsonToken token = reader.peek();
+        switch (token) {
+        case BEGIN_OBJECT:
+            if (node.fields == null) {
+                reader.skipValue();
+                return;
+            }
+            reader.beginObject();
+            while (!progress.isDone() && reader.hasNext()) {
+                Node child = node.fields.get(reader.nextName());
+                if (child == null) {
+                    reader.skipValue();
+                } else {
+                    read(reader, child, progress);
+                }
+            }
+            if (!progress.isDone()) {
+                reader.endObject();
+            }
+            break;
+        case BEGIN_ARRAY:
+            if (node.elements == null) {
+                reader.skipValue();
+                return;
+            }
+            reader.beginArray();
+            for (int i = 0; !progress.isDone() && reader.hasNext(); i++) {
+                Node child = node.elements.get(i);
+                if (child == null) {
+                    reader.skipValue();
+                } else {
+                    read(reader, child, progress);
+                }
+            }
+            if (!progress.isDone()) {
+                reader.endArray();
+            }
+            break;
+        case STRING:
+        case NUMBER:
+            progress.store(node, reader.nextString());
+            break;
+        case BOOLEAN:
+            progress.store(node, String.valueOf(reader.nextBoolean()));
+            break;
+        default:
+            reader.skipValue();
+            break;
+        }
+    }
+
+    /**
+     * Appends a value to an array.
+     * 
+     * @param array
+     *          the array.
+     * @param value
+     *          the value to be appended.
+     * @return
+     *          the new array.
+     */
+    private static int[] append(int[] array, int value) {
+        int[] result = new int[array.length + 1];
+        System.arraycopy(array, 0, result, 0, array.length);
+        result[array.length] = value;
+        return result;
+    }
+
+    /**
+     * Values found while reading a single value.
+     */
+    private static final class Progress {
+
+        /**
+         * Values in the order of the paths.
+         */
+        private final String[] values;
+
+        /**
+         * Whether the value has to be consumed completely.
+         */
+        private boolean complete;
+
+        /**
+         * Number of values still to be found.
+         */
+        private int remaining;
+
+        /**
+         * Constructs a new {@link Progress}.
+         * 
+         * @param size
+         *          the number of paths.
+         */
+        Progress(int size) {
+            this.values = new String[size];
+        }
+
+        /**
+         * Prepares reading the next value.
+         * 
+         * @param complete
+         *          whether the value has to be consumed completely.
+         */
+        void reset(boolean complete) {
+            Arrays.fill(values, null);
+            this.complete = complete;
+            this.remaining = values.length;
+        }
+
+        /**
+         * Returns whether reading can stop.
+         * 
+         * @return
+         *          true if all values are found and the value does not have to be consumed completely.
+         */
+        boolean isDone() {
+            return !complete && remaining == 0;
+        }
+
+        /**
+         * Stores a primitive value for all paths ending in the given node.
+         * 
+         * @param node
+         *          the path tree node the value belongs to.
+         * @param value
+         *          the value.
+         */
+        void store(Node node, String value) {
+            for (int target : node.targets) {
+                if (values[target] == null) {
+                    values[target] = value;
+                    remaining--;
+                }
+            }
+        }
+    }
+
+    /**
+     * Node of the path tree.
+     */
+    private static final class Node {
+
+        /**
+         * Children if the value is an object (null if no path descends into an object).
+         */
+        private Map<String, Node> fields;
+
+        /**
+         * Children if the value is an array (null if no path descends into an array).
+         */
+        private Map<Integer, Node> elements;
+
+        /**
+         * Indices of the paths ending in this node.
+         */
+        private int[] targets = new int[0];
+
+        /**
+         * Returns the child for an object key, creating it if necessary.
+         * 
+         * @param key
+         *          the key.
+         * @return
+         *          the child.
+         */
+        Node field(String key) {
+            if (fields == null) {
+                fields = new HashMap<>();
+            }
+            return fields.computeIfAbsent(key, k -> new Node());
+        }
+
+        /**
+         * Returns the child for an array index, creating it if necessary.
+         * 
+         * @param index
+         *          the index.
+         * @return
+         *          the child.
+         */
+        Node element(int index) {
+            if (elements == null) {
+                elements = new HashMap<>();
+            }
+            return elements.computeIfAbsent(index, k -> new Node());
+        }
+    }
+}
@@ -1,6 +1,5 @@
 package stream.vispar.server.core.entities;
 
-import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ThreadLocalRandom;
@@ -137,11 +136,12 @@ public final class SimulatedEvent {
         if (eventSensor == null) {
             throw new IllegalStateException("Sensor '" + this.sensor + "' not registered");
         }
-        Collection<Attribute> attributes = eventSensor.getAttributes();
+        Attribute[] attributes = eventSensor.attributeOrder();
         
-        // map data
-        Map<Attribute, String> simulatedData = new HashMap<>();
-        for (Attribute attr : attributes) {
+        // map data (typed, in canonical order)
+        Object[] simulatedData = new Object[attributes.length];
+        for (int i = 0; i < attributes.length; i++) {
+            Attribute attr = attributes[i];
             
             // get matching value
             AttributeValue value = data.get(attr.getName());
@@ -165,7 +165,12 @@ public final class SimulatedEvent {
             } else { // shouldn't happen due to prior file validation
                 throw new IllegalStateException("No simulation data for attribute '" + attr.getName() + "'");
             }
-            simulatedData.put(attr, val);
+            try {
+                simulatedData[i] = Sensor.convert(attr, val);
+            } catch (NumberFormatException e) {
+                throw new IllegalStateException("Simulation data for attribute '" + attr.getName() 
+                        + "' does not match its type: " + e.toString());
+            }
         }
         
         // create event
@@ -17,6 +17,7 @@ import stream.vispar.jsonconverter.types.IJsonElement;
 import stream.vispar.server.core.ServerInstance;
 import stream.vispar.server.core.entities.adapters.SimulatedEventDeserializer;
 import stream.vispar.server.engine.IEngine;
+import stream.vispar.server.localization.LocalizedString;
 
 /**
  * Collection of {@link SimulationEvent events} that can be simulated on an {@link IEngine}.
@@ -79,10 +80,14 @@ public class Simulation {
                 int delay = simEvent.getTimeDelay() + i * simEvent.getRepeatInterval();
                 scheduler.schedule(() ->  {
                     
-                    // create and send event (now has correct timestamp)
+                    // create and send event (now has correct timestamp) through the lane of its sensor, so it keeps
+                    // its order with events of the same sensor received meanwhile
                     try {
                         Event event = simEvent.createEvent(instance);
-                        instance.getEngine().sendEvent(event);
+                        if (!instance.getIngestQueue().offer(event)) {
+                            instance.getLogger().logError(String.format(instance.getLocalizer().get(
+                                    LocalizedString.SIMULATED_EVENT_REJECTED), event.toString()));
+                        }
                     } catch (IllegalStateException e) {
                         instance.getLogger().logError(e.toString());
                     }
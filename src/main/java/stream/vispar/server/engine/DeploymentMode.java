@@ -0,0 +1,30 @@
+package stream.vispar.server.engine;
+
+/**
+ * Defines how the {@link SiddhiEngine} distributes deployed patterns onto Siddhi runtimes.
+ * 
+ * @author Micha Hanselmann
+ */
+public enum DeploymentMode {
+
+    /**
+     * Each pattern is deployed in its own runtime. Events of pattern outputs are passed to the consuming patterns
+     * by the engine.
+     */
+    ISOLATED,
+
+    /**
+     * Chains of stateless patterns connected by pattern outputs and inputs are compiled into one runtime, so events
+     * of pattern outputs stay inside the runtime. The chain is recompiled whenever one of its members is
+     * (un)deployed; the new runtime is started before the previous one is shut down, so no events are missed.
+     * Patterns keeping state (e.g. windows) are deployed in their own runtime and never recompiled.
+     */
+    FUSED,
+
+    /**
+     * Stateless patterns (e.g. filters) using the same sensors and buffer size share one runtime, in which each
+     * sensor stream is defined once. As the patterns keep no state, the runtime can be rebuilt whenever one of them
+     * is (un)deployed without affecting the others. All other patterns are deployed in their own runtime.
+     */
+    SHARED
+}
@@ -0,0 +1,400 @@
+package stream.vispar.server.engine;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import stream.vispar.compiler.CompileException;
+import stream.vispar.compiler.SiddhiCompiler;
+import stream.vispar.compiler.TreeCompiler;
+import stream.vispar.model.Pattern;
+import stream.vispar.model.nodes.inputs.InputNode;
+import stream.vispar.model.nodes.inputs.PatternInputNode;
+import stream.vispar.model.nodes.inputs.SensorNode;
+import stream.vispar.model.nodes.outputs.MailActionNode;
+import stream.vispar.model.nodes.outputs.OutputNode;
+import stream.vispar.model.nodes.outputs.PatternOutputNode;
+import stream.vispar.model.nodes.outputs.SocketActionNode;
+import stream.vispar.server.core.ServerInstance;
+import stream.vispar.server.core.SocketTopic;
+import stream.vispar.server.core.entities.Event;
+import stream.vispar.server.core.entities.Sensor;
+import stream.vispar.server.core.entities.adapters.NodeVisitorAdapter;
+import stream.vispar.server.localization.LocalizedString;
+import stream.vispar.server.logger.LogLevel;
+
+/**
+ * Engine evaluating stateless filter patterns (sensors, filters and actions only) directly on the received events,
+ * without a Siddhi runtime and its threads. All other patterns - e.g. with windows, aggregations or pattern
+ * inputs and outputs - are deployed on a {@link SiddhiEngine}. A pattern is evaluated without Siddhi if its compiled
+ * execution plan is accepted by Siddhi and consists of single-stream filters and projections only (see
+ * {@link FilterPlan}), so the actions are executed exactly as if the pattern was deployed on Siddhi. Filter patterns
+ * deployed with an explicit asynchronous buffer size are deployed on Siddhi as well.
+ * 
+ * @author Micha Hanselmann
+ */
+public class FilterEngine implements IEngine {
+
+    /**
+     * Server instance the engine belongs to.
+     */
+    private final ServerInstance instance;
+
+    /**
+     * Engine deploying the patterns which are not evaluated directly.
+     */
+    private final SiddhiEngine fallback;
+
+    /**
+     * Compiler translating patterns to Siddhi execution plans.
+     */
+    private final SiddhiCompiler compiler;
+
+    /**
+     * Patterns evaluated directly by their id.
+     */
+    private final Map<String, FilterDeployment> deployments;
+
+    /**
+     * Routing table mapping sensor names to the inputs of all patterns evaluated directly. It is rebuilt on every
+     * (un)deployment and replaced as a whole, so the ingest path can read it without locking.
+     */
+    private volatile Map<String, FilterInput[]> sensorInputs;
+
+
+    /**
+     * Constructs a new {@link FilterEngine}.
+     * 
+     * @param instance
+     *          the {@link ServerInstance} the engine belongs to.
+     * @param fallback
+     *          the {@link SiddhiEngine} deploying all patterns which cannot be evaluated directly.
+     */
+    public FilterEngine(ServerInstance instance, SiddhiEngine fallback) {
+        this.instance = Objects.requireNonNull(instance);
+        this.fallback = Objects.requireNonNull(fallback);
+        this.compiler = new TreeCompiler();
+        this.deployments = new ConcurrentHashMap<>();
+        this.sensorInputs = Collections.emptyMap();
+    }
+
+    @Override
+    public void start() {
+        fallback.start();
+    }
+
+    @Override
+    public synchronized void stop() {
+        deployments.clear();
+        rebuildRoutes();
+        fallback.stop();
+    }
+
+    @Override
+    public void deploy(Pattern pattern) {
+        deploy(pattern, DEFAULT_BUFFER_SIZE);
+    }
+
+    @Override
+    public synchronized void deploy(Pattern pattern, int bufferSize) {
+        Objects.requireNonNull(pattern);
+        if (bufferSize < DEFAULT_BUFFER_SIZE || bufferSize > MAX_BUFFER_SIZE) {
+            throw new IllegalArgumentException("Invalid buffer size: " + bufferSize);
+        }
+        if (deployments.containsKey(pattern.getId())) {
+            // do nothing if pattern is already deployed
+            return;
+        }
+
+        FilterDeployment deployment = bufferSize <= SYNCHRONOUS && !pattern.isDeployed() ? prepare(pattern) : null;
+        if (Objects.isNull(deployment)) {
+            fallback.deploy(pattern, bufferSize);
+            return;
+        }
+
+        deployments.put(pattern.getId(), deployment);
+        rebuildRoutes();
+        instance.getLogger().log(String.format(instance.getLocalizer().get(LocalizedString.FILTER_PATTERN_DEPLOYED),
+                pattern.getName()));
+    }
+
+    @Override
+    public synchronized void undeploy(Pattern pattern) {
+        Objects.requireNonNull(pattern);
+        if (Objects.isNull(deployments.remove(pattern.getId()))) {
+            fallback.undeploy(pattern);
+            return;
+        }
+        rebuildRoutes();
+    }
+
+    @Override
+    public void sendEvent(Event event) {
+        fallback.sendEvent(event);
+
+        FilterInput[] inputs = sensorInputs.get(event.getSensor().getName());
+        if (Objects.isNull(inputs)) {
+            // no filter pattern listens to this sensor
+            return;
+        }
+        for (FilterInput input : inputs) {
+            input.process(Collections.singletonList(input.order(event.getValues())));
+        }
+    }
+
+    @Override
+    public void sendEvents(List<Event> events) {
+        fallback.sendEvents(events);
+
+        // group the events by sensor (keeping their order), each group is processed as one chunk like in Siddhi
+        Map<String, List<Event>> bySensor = new LinkedHashMap<>();
+        for (Event event : events) {
+            bySensor.computeIfAbsent(event.getSensor().getName(), sensor -> new ArrayList<>()).add(event);
+        }
+        Map<String, FilterInput[]> routes = sensorInputs;
+        for (Entry<String, List<Event>> entry : bySensor.entrySet()) {
+            FilterInput[] inputs = routes.get(entry.getKey());
+            if (Objects.isNull(inputs)) {
+                continue;
+            }
+            for (FilterInput input : inputs) {
+                List<Object[]> chunk = new ArrayList<>(entry.getValue().size());
+                for (Event event : entry.getValue()) {
+                    chunk.add(input.order(event.getValues()));
+                }
+                input.process(chunk);
+            }
+        }
+    }
+
+    /**
+     * Prepares the direct evaluation of a pattern.
+     * 
+     * @param pattern
+     *          the {@link Pattern} to be evaluated.
+     * @return
+     *          the {@link FilterDeployment}, {@code null} if the pattern cannot be evaluated without Siddhi.
+     */
+    private FilterDeployment prepare(Pattern pattern) {
+        try {
+            return new FilterDeployment(pattern);
+        } catch (RuntimeException e) {
+            // unsupported or invalid - Siddhi decides (and reports errors as usual)
+            return null;
+        }
+    }
+
+    /**
+     * Returns the ids of the patterns evaluated without Siddhi. Used for testing purposes.
+     * 
+     * @return
+     *          the pattern ids.
+     */
+    protected Collection<String> getFilterPatterns() {
+        return Collections.unmodifiableCollection(deployments.keySet());
+    }
+
+    /**
+     * Rebuilds the sensor routing table from the current {@link FilterDeployment}s.
+     */
+    private synchronized void rebuildRoutes() {
+        Map<String, List<FilterInput>> routes = new HashMap<>();
+        for (FilterDeployment deployment : deployments.values()) {
+            for (FilterInput input : deployment.inputs) {
+                routes.computeIfAbsent(input.sensor, sensor -> new ArrayList<>()).add(input);
+            }
+        }
+        Map<String, FilterInput[]> table = new HashMap<>();
+        routes.forEach((sensor, list) -> table.put(sensor, list.toArray(new FilterInput[0])));
+        sensorInputs = Collections.unmodifiableMap(table);
+    }
+
+    /**
+     * Pattern evaluated without Siddhi.
+     */
+    private final class FilterDeployment {
+
+        private final FilterPlan plan;
+        private final Collection<FilterInput> inputs;
+        private final Map<String, List<Runnable>> callbacks;
+
+
+        /**
+         * Constructs a new {@link FilterDeployment}.
+         * 
+         * @param pattern
+         *          the {@link Pattern} to be evaluated.
+         * @throws IllegalArgumentException
+         *          if the pattern could not be compiled or is not a stateless filter pattern.
+         * @throws RuntimeException
+         *          if Siddhi rejects the execution plan of the pattern.
+         */
+        FilterDeployment(Pattern pattern) {
+            this.inputs = new ArrayList<>();
+            this.callbacks = new HashMap<>();
+
+            for (InputNode input : pattern.getInputNodes()) {
+                input.acceptVisitor(new NodeVisitorAdapter() {
+
+                    @Override
+                    public void visitPatternInputNode(PatternInputNode node) {
+                        throw new IllegalArgumentException("Pattern inputs are evaluated by Siddhi");
+                    }
+                });
+            }
+
+            String code;
+            try {
+                code = compiler.compile(pattern).getAsString();
+            } catch (CompileException e) {
+                throw new IllegalArgumentException(e.toString());
+            }
+            this.plan = FilterPlan.parse(code);
+            fallback.validate(code);
+
+            for (InputNode input : pattern.getInputNodes()) {
+                input.acceptVisitor(new NodeVisitorAdapter() {
+
+                    @Override
+                    public void visitSensorNode(SensorNode node) {
+                        inputs.add(new FilterInput(FilterDeployment.this, node.getSensorName(),
+                                compiler.getStreamName(node)));
+                    }
+                });
+            }
+
+            for (OutputNode output : pattern.getOutputNodes()) {
+                output.acceptVisitor(new NodeVisitorAdapter() {
+
+                    @Override
+                    public void visitMailActionNode(MailActionNode node) {
+                        IAction action =
+                                new EmailAction(node.getRecipientEmail(), node.getSubject(), node.getMessage());
+                        addCallback(compiler.getStreamName(node), pattern, "email" + action, action);
+                    }
+
+                    @Override
+                    public void visitSocketActionNode(SocketActionNode node) {
+                        IAction action = new SocketAction(instance.getSockHandler(), node.getMessage(),
+                                new SocketTopic(pattern.getId(), node.getId(), pattern.getName()));
+                        addCallback(compiler.getStreamName(node), pattern, "socket" + action, action);
+                    }
+
+                    @Override
+                    public void visitPatternOutputNode(PatternOutputNode node) {
+                        throw new IllegalArgumentException("Pattern outputs are evaluated by Siddhi");
+                    }
+                });
+            }
+        }
+
+        /**
+         * Registers an action to be executed whenever events arrive at a stream.
+         * 
+         * @param stream
+         *          the name of the stream.
+         * @param pattern
+         *          the {@link Pattern} the action belongs to.
+         * @param description
+         *          the description of the action to be logged.
+         * @param action
+         *          the {@link IAction}.
+         */
+        private void addCallback(String stream, Pattern pattern, String description, IAction action) {
+            callbacks.computeIfAbsent(stream, key -> new ArrayList<>()).add(() -> {
+                instance.getLogger().logRepeated("pattern", pattern.getName(), LogLevel.INFO,
+                        System.currentTimeMillis(), () -> String.format(
+                        instance.getLocalizer().get(LocalizedString.PATTERN_RECOGNIZED), pattern.getName(),
+                        description));
+                action.execute();
+            });
+        }
+
+        /**
+         * Executes the actions of a stream events arrived at.
+         * 
+         * @param stream
+         *          the name of the stream.
+         */
+        private void notify(String stream) {
+            callbacks.getOrDefault(stream, Collections.emptyList()).forEach(Runnable::run);
+        }
+    }
+
+    /**
+     * Sensor input of a pattern evaluated without Siddhi.
+     */
+    private final class FilterInput {
+
+        private final FilterDeployment deployment;
+        private final String sensor;
+        private final String stream;
+        private final int[] slots;
+
+
+        /**
+         * Constructs a new {@link FilterInput}.
+         * 
+         * @param deployment
+         *          the {@link FilterDeployment} of the pattern.
+         * @param sensor
+         *          the name of the sensor.
+         * @param stream
+         *          the stream of the sensor in the execution plan.
+         * @throws IllegalArgumentException
+         *          if the sensor is not registered or misses one of the attributes of the stream.
+         */
+        FilterInput(FilterDeployment deployment, String sensor, String stream) {
+            this.deployment = deployment;
+            this.sensor = sensor;
+            this.stream = stream;
+
+            Sensor registered = instance.getSensorCtrl().getByName(sensor);
+            if (Objects.isNull(registered)) {
+                throw new IllegalArgumentException("Sensor '" + sensor + "' is not registered");
+            }
+            List<String> attributes = deployment.plan.getAttributes(stream);
+            this.slots = new int[attributes.size()];
+            for (int i = 0; i < slots.length; i++) {
+                slots[i] = registered.getSlot(attributes.get(i));
+                if (slots[i] < 0) {
+                    throw new IllegalArgumentException(
+                            "Sensor '" + sensor + "' has no attribute '" + attributes.get(i) + "'");
+                }
+            }
+        }
+
+        /**
+         * Orders event values as expected by the stream.
+         * 
+         * @param values
+         *          the event values in canonical order.
+         * @return
+         *          the values in stream order.
+         */
+        Object[] order(Object[] values) {
+            Object[] data = new Object[slots.length];
+            for (int i = 0; i < slots.length; i++) {
+                data[i] = values[slots[i]];
+            }
+            return data;
+        }
+
+        /**
+         * Processes a chunk of events of the sensor.
+         * 
+         * @param chunk
+         *          the values of the events in stream order.
+         */
+        void process(List<Object[]> chunk) {
+            deployment.plan.process(stream, chunk, deployment::notify);
+        }
+    }
+}
@@ -0,0 +1,643 @@
+package stream.vispar.server.engine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.regex.MatchResult;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Siddhi execution plan evaluated without a Siddhi runtime. Only stateless plans are supported, i.e. stream
+ * definitions and queries filtering and projecting a single stream (e.g.
+ * {@code from s[a >= 18 and not (b == 'x')] select a, b as c insert into t}), which is what patterns made of
+ * sensors, filters and actions are compiled to. Events are processed in chunks like in Siddhi: a query passes the
+ * events of a chunk accepted by its filter on as one chunk, so a stream is notified once per non-empty chunk
+ * arriving at it. Instances are immutable and can be used by multiple threads.
+ * 
+ * @author Micha Hanselmann
+ */
+final class FilterPlan {
+
+    /**
+     * Matches the name annotation of a plan and the info annotation of a query (which do not affect the events).
+     */
+    private static final Pattern ANNOTATIONS =
+            Pattern.compile("(?is)^(?:@(?:plan:name|info)\\s*\\([^)]*\\)\\s*)+");
+
+    /**
+     * Matches a stream definition, capturing the stream and its attributes.
+     */
+    private static final Pattern DEFINITION = Pattern.compile("(?is)define\\s+stream\\s+(\\w+)\\s*\\((.*)\\)");
+
+    /**
+     * Matches a query reading a single stream, capturing the input stream, the filter, the selection and the
+     * output stream.
+     */
+    private static final Pattern QUERY = Pattern.compile("(?is)from\\s+(\\w+)\\s*(?:\\[(.*)\\])?\\s*"
+            + "(?:select\\s+(.*?))?\\s*insert\\s+(?:(?:all|current)\\s+events\\s+)?into\\s+(\\w+)");
+
+    /**
+     * Matches a token of an expression (number, string literal, identifier or operator).
+     */
+    private static final Pattern TOKEN = Pattern.compile("\\s*(\\d+(?:\\.\\d+)?(?:[eE][-+]?\\d+)?[lLfFdD]?"
+            + "|'[^']*'|\"[^\"]*\"|[A-Za-z_][\\w:]*|==|!=|<=|>=|[<>(),.*-])");
+
+    /**
+     * Name of the string comparison extension (see {@link stream.vispar.server.engine.extensions.StringComparator}).
+     */
+    private static final String STRING_COMPARE = "vispar:stringcompare";
+
+    /**
+     * Attributes of each stream.
+     */
+    private final Map<String, List<String>> attributes;
+
+    /**
+     * Queries reading each stream.
+     */
+    private final Map<String, List<Query>> readers;
+
+
+    /**
+     * Constructs a new {@link FilterPlan}.
+     * 
+     * @param attributes
+     *          the attributes of each stream.
+     * @param readers
+     *          the queries reading each stream.
+     */
+    private FilterPlan(Map<String, List<String>> attributes, Map<String, List<Query>> readers) {
+        this.attributes = attributes;
+        this.readers = readers;
+    }
+
+    /**
+     * Parses a Siddhi execution plan.
+     * 
+     * @param plan
+     *          the Siddhi execution plan.
+     * @return
+     *          the {@link FilterPlan}.
+     * @throws IllegalArgumentException
+     *          if the plan contains constructs which are not supported (e.g. windows, joins or functions).
+     */
+    static FilterPlan parse(String plan) {
+        Map<String, List<String>> attributes = new HashMap<>();
+        List<MatchResult> queries = new ArrayList<>();
+        for (String statement : SiddhiEngine.statementsOf(plan)) {
+            String text = ANNOTATIONS.matcher(statement.trim()).replaceFirst("");
+            Matcher definition = DEFINITION.matcher(text);
+            Matcher query = QUERY.matcher(text);
+            if (text.isEmpty()) {
+                continue;
+            } else if (definition.matches()) {
+                List<String> names = new ArrayList<>();
+                for (String attribute : definition.group(2).split(",")) {
+                    names.add(attribute.trim().split("\\s+")[0]);
+                }
+                attributes.put(definition.group(1), names);
+            } else if (query.matches()) {
+                queries.add(query.toMatchResult());
+            } else {
+                throw new IllegalArgumentException("Unsupported statement: " + text);
+            }
+        }
+
+        // each query defines the attributes of its output stream, so they are resolved in order
+        Map<String, List<Query>> readers = new HashMap<>();
+        for (MatchResult query : queries) {
+            List<String> input = attributes.get(query.group(1));
+            if (Objects.isNull(input)) {
+                throw new IllegalArgumentException("Unknown stream: " + query.group(1));
+            }
+            Expression filter = Objects.isNull(query.group(2)) ? null : new Parser(query.group(2), input).condition();
+            List<String> names = new ArrayList<>();
+            List<Expression> selection = new ArrayList<>();
+            new Parser(Objects.toString(query.group(3), "*"), input).selection(names, selection);
+
+            List<String> existing = attributes.putIfAbsent(query.group(4), names);
+            if (Objects.nonNull(existing) && existing.size() != names.size()) {
+                throw new IllegalArgumentException("Inconsistent attributes of stream: " + query.group(4));
+            }
+            readers.computeIfAbsent(query.group(1), stream -> new ArrayList<>())
+                    .add(new Query(filter, selection.toArray(new Expression[0]), query.group(4)));
+        }
+
+        FilterPlan filterPlan = new FilterPlan(attributes, readers);
+        for (String stream : readers.keySet()) {
+            filterPlan.checkAcyclic(stream, new HashSet<>());
+        }
+        return filterPlan;
+    }
+
+    /**
+     * Returns the attributes of a stream.
+     * 
+     * @param stream
+     *          the name of the stream.
+     * @return
+     *          the attributes in the order of the event values, an empty list if the stream is unknown.
+     */
+    List<String> getAttributes(String stream) {
+        return Collections.unmodifiableList(attributes.getOrDefault(stream, Collections.emptyList()));
+    }
+
+    /**
+     * Processes a chunk of events arriving at a stream.
+     * 
+     * @param stream
+     *          the name of the stream.
+     * @param chunk
+     *          the values of the events (in the order of the attributes of the stream).
+     * @param arrivals
+     *          notified with the name of each stream a non-empty chunk arrives at (including the given stream).
+     */
+    void process(String stream, List<Object[]> chunk, Consumer<String> arrivals) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        arrivals.accept(stream);
+
+        for (Query query : readers.getOrDefault(stream, Collections.emptyList())) {
+            List<Object[]> passed = new ArrayList<>(chunk.size());
+            for (Object[] values : chunk) {
+                if (Objects.isNull(query.filter) || Boolean.TRUE.equals(query.filter.evaluate(values))) {
+                    Object[] selected = new Object[query.selection.length];
+                    for (int i = 0; i < selected.length; i++) {
+                        selected[i] = query.selection[i].evaluate(values);
+                    }
+                    passed.add(selected);
+                }
+            }
+            process(query.output, passed, arrivals);
+        }
+    }
+
+    /**
+     * Checks that no query (indirectly) reads its own output.
+     * 
+     * @param stream
+     *          the stream to be checked.
+     * @param path
+     *          the streams leading to the stream.
+     * @throws IllegalArgumentException
+     *          if the stream is part of a cycle.
+     */
+    private void checkAcyclic(String stream, Set<String> path) {
+        if (!path.add(stream)) {
+            throw new IllegalArgumentException("Cyclic stream: " + stream);
+        }
+        for (Query query : readers.getOrDefault(stream, Collections.emptyList())) {
+            checkAcyclic(query.output, path);
+        }
+        path.remove(stream);
+    }
+
+    /**
+     * Expression evaluated on the values of an event.
+     */
+    @FunctionalInterface
+    private interface Expression {
+
+        /**
+         * Evaluates the expression.
+         * 
+         * @param values
+         *          the values of the event.
+         * @return
+         *          the result.
+         */
+        Object evaluate(Object[] values);
+    }
+
+    /**
+     * Query of the plan.
+     */
+    private static final class Query {
+
+        private final Expression filter;
+        private final Expression[] selection;
+        private final String output;
+
+
+        /**
+         * Constructs a new {@link Query}.
+         * 
+         * @param filter
+         *          the filter ({@code null} if all events pass).
+         * @param selection
+         *          the expressions of the output attributes.
+         * @param output
+         *          the output stream.
+         */
+        Query(Expression filter, Expression[] selection, String output) {
+            this.filter = filter;
+            this.selection = selection;
+            this.output = output;
+        }
+    }
+
+    /**
+     * Comparison operator following the semantics of Siddhi (numbers are compared by value, a comparison with
+     * {@code null} or of incomparable values is false).
+     */
+    private enum Operator {
+
+        EQUAL("=="), NOT_EQUAL("!="), LESS("<"), LESS_EQUAL("<="), GREATER(">"), GREATER_EQUAL(">=");
+
+        private final String symbol;
+
+
+        /**
+         * Constructs a new {@link Operator}.
+         * 
+         * @param symbol
+         *          the symbol of the operator.
+         */
+        Operator(String symbol) {
+            this.symbol = symbol;
+        }
+
+        /**
+         * Returns the operator of a symbol.
+         * 
+         * @param symbol
+         *          the symbol.
+         * @return
+         *          the {@link Operator}, {@code null} if the symbol is no comparison operator.
+         */
+        static Operator of(String symbol) {
+            for (Operator operator : values()) {
+                if (operator.symbol.equals(symbol)) {
+                    return operator;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Compares two values.
+         * 
+         * @param left
+         *          the left-hand value.
+         * @param right
+         *          the right-hand value.
+         * @return
+         *          the result of the comparison, false if the values are incomparable.
+         */
+        boolean apply(Object left, Object right) {
+            if (Objects.isNull(left) || Objects.isNull(right)) {
+                return false;
+            } else if (left instanceof Number && right instanceof Number) {
+                if (isFloating(left) || isFloating(right)) {
+                    return test(((Number) left).doubleValue(), ((Number) right).doubleValue());
+                }
+                return test(Long.compare(((Number) left).longValue(), ((Number) right).longValue()), 0);
+            } else if (this == EQUAL || this == NOT_EQUAL) {
+                return left.equals(right) == (this == EQUAL);
+            }
+            return false;
+        }
+
+        /**
+         * Compares two numbers.
+         * 
+         * @param l
+         *          the left-hand number.
+         * @param r
+         *          the right-hand number.
+         * @return
+         *          the result of the comparison.
+         */
+        private boolean test(double l, double r) {
+            switch (this) {
+            case EQUAL:
+                return l == r;
+            case NOT_EQUAL:
+                return l != r;
+            case LESS:
+                return l < r;
+            case LESS_EQUAL:
+                return l <= r;
+            case GREATER:
+                return l > r;
+            default:
+                return l >= r;
+            }
+        }
+
+        /**
+         * Returns whether a number is a floating point number.
+         * 
+         * @param number
+         *          the number.
+         * @return
+         *          true if floating point, false otherwise.
+         */
+        private static boolean isFloating(Object number) {
+            return number instanceof Double || number instanceof Float;
+        }
+    }
+
+    /**
+     * Recursive descent parser for the filters and selections of queries.
+     */
+    private static final class Parser {
+
+        private final List<String> tokens;
+        private final List<String> input;
+        private int position;
+
+
+        /**
+         * Constructs a new {@link Parser}.
+         * 
+         * @param text
+         *          the text to be parsed.
+         * @param input
+         *          the attributes of the input stream.
+         * @throws IllegalArgumentException
+         *          if the text contains unsupported characters.
+         */
+        Parser(String text, List<String> input) {
+            this.tokens = new ArrayList<>();
+            this.input = input;
+            Matcher token = TOKEN.matcher(text);
+            int end = 0;
+            while (token.find() && token.start() == end) {
+                tokens.add(token.group(1));
+                end = token.end();
+            }
+            if (!text.substring(end).trim().isEmpty()) {
+                throw new IllegalArgumentException("Unsupported expression: " + text);
+            }
+        }
+
+        /**
+         * Parses a filter.
+         * 
+         * @return
+         *          the filter.
+         */
+        Expression condition() {
+            Expression condition = or();
+            expectEnd();
+            return condition;
+        }
+
+        /**
+         * Parses a selection. The wildcard selects all attributes of the input stream.
+         * 
+         * @param names
+         *          receives the names of the output attributes.
+         * @param selection
+         *          receives the expressions of the output attributes.
+         */
+        void selection(List<String> names, List<Expression> selection) {
+            do {
+                if (accept("*")) {
+                    for (int i = 0; i < input.size(); i++) {
+                        int index = i;
+                        names.add(input.get(i));
+                        selection.add(values -> values[index]);
+                    }
+                    continue;
+                }
+                int start = position;
+                Expression expression = or();
+                if (accept("as")) {
+                    names.add(identifier());
+                } else if ((position - start == 1 || position - start == 3 && ".".equals(tokens.get(start + 1)))
+                        && Character.isJavaIdentifierStart(tokens.get(position - 1).charAt(0))) {
+                    // plain attributes keep their name
+                    names.add(tokens.get(position - 1));
+                } else {
+                    throw new IllegalArgumentException("Unnamed output attribute");
+                }
+                selection.add(expression);
+            } while (accept(","));
+            expectEnd();
+        }
+
+        /**
+         * Parses a disjunction.
+         * 
+         * @return
+         *          the expression.
+         */
+        private Expression or() {
+            Expression left = and();
+            while (accept("or")) {
+                Expression first = left;
+                Expression second = and();
+                left = values -> Boolean.TRUE.equals(first.evaluate(values))
+                        || Boolean.TRUE.equals(second.evaluate(values));
+            }
+            return left;
+        }
+
+        /**
+         * Parses a conjunction.
+         * 
+         * @return
+         *          the expression.
+         */
+        private Expression and() {
+            Expression left = not();
+            while (accept("and")) {
+                Expression first = left;
+                Expression second = not();
+                left = values -> Boolean.TRUE.equals(first.evaluate(values))
+                        && Boolean.TRUE.equals(second.evaluate(values));
+            }
+            return left;
+        }
+
+        /**
+         * Parses a negation.
+         * 
+         * @return
+         *          the expression.
+         */
+        private Expression not() {
+            if (accept("not")) {
+                Expression operand = not();
+                return values -> !Boolean.TRUE.equals(operand.evaluate(values));
+            }
+            return comparison();
+        }
+
+        /**
+         * Parses a comparison.
+         * 
+         * @return
+         *          the expression.
+         */
+        private Expression comparison() {
+            Expression left = primary();
+            Operator operator = position < tokens.size() ? Operator.of(tokens.get(position)) : null;
+            if (Objects.isNull(operator)) {
+                return left;
+            }
+            position++;
+            Expression right = primary();
+            return values -> operator.apply(left.evaluate(values), right.evaluate(values));
+        }
+
+        /**
+         * Parses a constant, an attribute, a string comparison or a parenthesized expression.
+         * 
+         * @return
+         *          the expression.
+         */
+        private Expression primary() {
+            if (accept("(")) {
+                Expression expression = or();
+                expect(")");
+                return expression;
+            }
+            boolean negative = accept("-");
+            String token = next();
+            if (Character.isDigit(token.charAt(0))) {
+                Object constant = number((negative ? "-" : "") + token);
+                return values -> constant;
+            } else if (negative) {
+                throw new IllegalArgumentException("Unsupported expression: -" + token);
+            } else if (token.startsWith("'") || token.startsWith("\"")) {
+                String constant = token.substring(1, token.length() - 1);
+                return values -> constant;
+            } else if (token.equalsIgnoreCase("true") || token.equalsIgnoreCase("false")) {
+                Boolean constant = Boolean.valueOf(token);
+                return values -> constant;
+            } else if (token.equalsIgnoreCase(STRING_COMPARE) && accept("(")) {
+                Expression first = or();
+                expect(",");
+                Expression second = or();
+                expect(")");
+                return values -> compareStrings(first.evaluate(values), second.evaluate(values));
+            } else if (!Character.isJavaIdentifierStart(token.charAt(0)) || token.contains(":")) {
+                throw new IllegalArgumentException("Unsupported expression: " + token);
+            }
+
+            // attribute, optionally qualified by its stream
+            String attribute = accept(".") ? identifier() : token;
+            int index = input.indexOf(attribute);
+            if (index < 0) {
+                throw new IllegalArgumentException("Unknown attribute: " + attribute);
+            }
+            return values -> values[index];
+        }
+
+        /**
+         * Compares two strings like {@link stream.vispar.server.engine.extensions.StringComparator}.
+         * 
+         * @param first
+         *          the first string.
+         * @param second
+         *          the second string.
+         * @return
+         *          the result as defined by {@link String#compareTo(String)}.
+         */
+        private static Object compareStrings(Object first, Object second) {
+            if (Objects.isNull(first)) {
+                return 1;
+            } else if (Objects.isNull(second)) {
+                return -1;
+            }
+            return ((String) first).compareTo((String) second);
+        }
+
+        /**
+         * Converts a numeric literal to a number of the type Siddhi uses for it.
+         * 
+         * @param literal
+         *          the literal.
+         * @return
+         *          the number.
+         */
+        private static Object number(String literal) {
+            char suffix = Character.toLowerCase(literal.charAt(literal.length() - 1));
+            String digits = Character.isLetter(suffix) && suffix != 'e' ? literal.substring(0, literal.length() - 1)
+                    : literal;
+            if (suffix == 'l') {
+                return Long.valueOf(digits);
+            } else if (suffix == 'f') {
+                return Float.valueOf(digits);
+            } else if (suffix == 'd' || digits.contains(".") || digits.toLowerCase().contains("e")) {
+                return Double.valueOf(digits);
+            }
+            return Integer.valueOf(digits);
+        }
+
+        /**
+         * Parses an identifier.
+         * 
+         * @return
+         *          the identifier.
+         */
+        private String identifier() {
+            String token = next();
+            if (!Character.isJavaIdentifierStart(token.charAt(0)) || token.contains(":")) {
+                throw new IllegalArgumentException("Identifier expected: " + token);
+            }
+            return token;
+        }
+
+        /**
+         * Consumes the next token if it equals the given one (ignoring case).
+         * 
+         * @param token
+         *          the expected token.
+         * @return
+         *          true if the token was consumed, false otherwise.
+         */
+        private boolean accept(String token) {
+            if (position < tokens.size() && tokens.get(position).equalsIgnoreCase(token)) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Consumes the next token, which must equal the given one.
+         * 
+         * @param token
+         *          the expected token.
+         */
+        private void expect(String token) {
+            if (!accept(token)) {
+                throw new IllegalArgumentException("'" + token + "' expected");
+            }
+        }
+
+        /**
+         * Checks that all tokens were consumed.
+         */
+        private void expectEnd() {
+            if (position < tokens.size()) {
+                throw new IllegalArgumentException("Unexpected token: " + tokens.get(position));
+            }
+        }
+
+        /**
+         * Consumes the next token.
+         * 
+         * @return
+         *          the token.
+         */
+        private String next() {
+            if (position >= tokens.size()) {
+                throw new IllegalArgumentException("Unexpected end of expression");
+            }
+            return tokens.get(position++);
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package stream.vispar.server.engine;
 
+import java.util.List;
+
 import stream.vispar.model.Pattern;
 import stream.vispar.server.core.entities.Event;
 
@@ -10,6 +12,21 @@ import stream.vispar.server.core.entities.Event;
  */
 public interface IEngine {
 
+    /**
+     * Buffer size for {@link #deploy(Pattern, int)} to use the default of the engine.
+     */
+    int DEFAULT_BUFFER_SIZE = -1;
+    
+    /**
+     * Buffer size for {@link #deploy(Pattern, int)} to process the streams of a pattern synchronously.
+     */
+    int SYNCHRONOUS = 0;
+    
+    /**
+     * Maximum buffer size for {@link #deploy(Pattern, int)}.
+     */
+    int MAX_BUFFER_SIZE = 1 << 20;
+    
     /**
      * Starts the engine.
      */
@@ -30,6 +47,21 @@ public interface IEngine {
      */
     void deploy(Pattern pattern);
     
+    /**
+     * Deploys a pattern which will start its detection. The input streams of the pattern can be processed
+     * asynchronously, so a heavy pattern does not delay the other patterns using the same sensors.
+     * 
+     * @param pattern
+     *          the {@link Pattern} to be deployed.
+     * @param bufferSize
+     *          the number of events buffered by each input stream of the pattern if processed asynchronously,
+     *          {@link #SYNCHRONOUS} to process the pattern on the sending thread or {@link #DEFAULT_BUFFER_SIZE} to
+     *          use the default of the engine.
+     * @throws IllegalArgumentException
+     *          if the {@link Pattern} could not be compiled or the buffer size is invalid.
+     */
+    void deploy(Pattern pattern, int bufferSize);
+    
     /**
      * Undeploys a pattern which will stop its detection.
      * 
@@ -45,4 +77,13 @@ public interface IEngine {
      *          the {@link Event} to be sent.
      */
     void sendEvent(Event event);
+    
+    /**
+     * Sends multiple events to the engine (e.g. a batch from a sensor). Events of the same sensor are forwarded
+     * together, keeping their order.
+     * 
+     * @param events
+     *          the {@link Event events} to be sent.
+     */
+    void sendEvents(List<Event> events);
 }
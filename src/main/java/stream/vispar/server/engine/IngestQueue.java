@@ -0,0 +1,437 @@
+package stream.vispar.server.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import stream.vispar.server.core.ServerInstance;
+import stream.vispar.server.core.entities.Event;
+import stream.vispar.server.localization.LocalizedString;
+
+/**
+ * Bounded queue decoupling the receivers of sensor events (e.g. request threads) from the {@link IEngine}. Events
+ * are distributed onto a fixed set of lanes by the name of their sensor. Each lane buffers its events in a
+ * lock-free ring buffer and forwards them to the engine by a dedicated worker thread. Events of the same sensor
+ * therefore keep their order, while events of different sensors are processed in parallel. If a lane is full,
+ * events are rejected instead of blocking the caller, so the caller can signal backpressure.
+ * 
+ * @author Micha Hanselmann
+ */
+public class IngestQueue {
+
+    /**
+     * Default number of events a lane can hold.
+     */
+    public static final int DEFAULT_CAPACITY = 8192;
+
+    /**
+     * Maximum number of events forwarded to the engine at once.
+     */
+    private static final int MAX_DRAIN = 256;
+
+    /**
+     * Maximum time an idle worker sleeps before checking its lane again (in nanoseconds).
+     */
+    private static final long IDLE_PARK_NANOS = 1000000L;
+
+    /**
+     * Server instance the queue belongs to.
+     */
+    private final ServerInstance instance;
+
+    /**
+     * Lanes of the queue.
+     */
+    private final Lane[] lanes;
+
+    /**
+     * Number of rejected events.
+     */
+    private final AtomicLong rejected;
+
+    /**
+     * Determines whether the queue accepts events.
+     */
+    private volatile boolean running;
+
+    /**
+     * Number of callers currently enqueueing events. Callers announce themselves before checking whether the queue
+     * is running, and {@link #stop()} waits for them after stopping to accept events, so no event is enqueued
+     * after the workers terminated.
+     */
+    private final AtomicInteger offering;
+
+
+    /**
+     * Constructs a new {@link IngestQueue} with a single lane.
+     * 
+     * @param instance
+     *          the {@link ServerInstance} the queue belongs to.
+     * @param capacity
+     *          the number of events the queue can hold (rounded up to the next power of two).
+     */
+    public IngestQueue(ServerInstance instance, int capacity) {
+        this(instance, capacity, 1);
+    }
+
+    /**
+     * Constructs a new {@link IngestQueue}.
+     * 
+     * @param instance
+     *          the {@link ServerInstance} the queue belongs to.
+     * @param capacity
+     *          the number of events each lane can hold (rounded up to the next power of two).
+     * @param lanes
+     *          the number of lanes.
+     */
+    public IngestQueue(ServerInstance instance, int capacity, int lanes) {
+        if (lanes < 1) {
+            throw new IllegalArgumentException("At least one lane is required.");
+        }
+        this.instance = Objects.requireNonNull(instance);
+        this.lanes = new Lane[lanes];
+        for (int i = 0; i < lanes; i++) {
+            this.lanes[i] = new Lane(capacity);
+        }
+        this.rejected = new AtomicLong();
+        this.offering = new AtomicInteger();
+    }
+
+    /**
+     * Starts the workers. The queue accepts events afterwards.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i].start("vispar-ingest-" + i);
+        }
+    }
+
+    /**
+     * Stops the workers after all buffered events are forwarded. The queue rejects events afterwards.
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+
+        // wait for callers which saw the queue running to finish enqueueing
+        while (offering.get() > 0) {
+            Thread.yield();
+        }
+        for (Lane lane : lanes) {
+            lane.stop();
+        }
+    }
+
+    /**
+     * Enqueues an event.
+     * 
+     * @param event
+     *          the {@link Event} to be sent to the engine.
+     * @return
+     *          true if the event was enqueued, false if its lane is full or the queue is not running.
+     */
+    public boolean offer(Event event) {
+        Objects.requireNonNull(event);
+        offering.incrementAndGet();
+        try {
+            if (running && laneOf(event).offer(event)) {
+                return true;
+            }
+        } finally {
+            offering.decrementAndGet();
+        }
+        rejected.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Enqueues multiple events at once. The events of each lane are enqueued all or none, so a batch of a single
+     * sensor is never forwarded partially.
+     * 
+     * @param events
+     *          the {@link Event events} to be sent to the engine.
+     * @return
+     *          true if the events were enqueued, false if (some of) the events were rejected because a lane has
+     *          not enough space left or the queue is not running.
+     */
+    public boolean offerAll(List<Event> events) {
+        Objects.requireNonNull(events);
+        offering.incrementAndGet();
+        try {
+            return enqueueAll(events);
+        } finally {
+            offering.decrementAndGet();
+        }
+    }
+
+    /**
+     * Enqueues multiple events at once, see {@link #offerAll(List)}.
+     * 
+     * @param events
+     *          the {@link Event events} to be sent to the engine.
+     * @return
+     *          true if the events were enqueued, false if (some of) the events were rejected.
+     */
+    private boolean enqueueAll(List<Event> events) {
+        if (!running) {
+            rejected.addAndGet(events.size());
+            return false;
+        }
+
+        // common case: all events belong to the same lane
+        Lane first = events.isEmpty() ? null : laneOf(events.get(0));
+        boolean sameLane = true;
+        for (Event event : events) {
+            sameLane &= laneOf(event) == first;
+        }
+        if (sameLane) {
+            if (first == null || first.offerAll(events)) {
+                return true;
+            }
+            rejected.addAndGet(events.size());
+            return false;
+        }
+
+        // split by lane (keeping the order within each lane)
+        List<List<Event>> byLane = new ArrayList<>(lanes.length);
+        for (int i = 0; i < lanes.length; i++) {
+            byLane.add(new ArrayList<>());
+        }
+        for (Event event : events) {
+            byLane.get(indexOf(event)).add(event);
+        }
+        boolean accepted = true;
+        for (int i = 0; i < lanes.length; i++) {
+            List<Event> part = byLane.get(i);
+            if (!part.isEmpty() && !lanes[i].offerAll(part)) {
+                rejected.addAndGet(part.size());
+                accepted = false;
+            }
+        }
+        return accepted;
+    }
+
+    /**
+     * Returns the number of events waiting to be forwarded to the engine.
+     * 
+     * @return
+     *          the queue depth (over all lanes).
+     */
+    public int getDepth() {
+        int depth = 0;
+        for (Lane lane : lanes) {
+            depth += lane.buffer.size();
+        }
+        return depth;
+    }
+
+    /**
+     * Returns the number of events the queue can hold.
+     * 
+     * @return
+     *          the capacity (over all lanes).
+     */
+    public int getCapacity() {
+        return lanes.length * lanes[0].buffer.capacity();
+    }
+
+    /**
+     * Returns the number of events a lane can hold. All events of a sensor use the same lane, so a batch of a
+     * sensor with more events is never accepted by {@link #offerAll(List)}.
+     * 
+     * @return
+     *          the capacity of a lane.
+     */
+    public int getLaneCapacity() {
+        return lanes[0].buffer.capacity();
+    }
+
+    /**
+     * Returns the number of lanes.
+     * 
+     * @return
+     *          the number of lanes.
+     */
+    public int getLanes() {
+        return lanes.length;
+    }
+
+    /**
+     * Returns the number of events rejected since the queue was created.
+     * 
+     * @return
+     *          the number of rejected events.
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * Returns the lane of an event.
+     * 
+     * @param event
+     *          the {@link Event}.
+     * @return
+     *          the {@link Lane}.
+     */
+    private Lane laneOf(Event event) {
+        return lanes[indexOf(event)];
+    }
+
+    /**
+     * Returns the index of the lane of an event, determined by the name of its sensor.
+     * 
+     * @param event
+     *          the {@link Event}.
+     * @return
+     *          the index of the lane.
+     */
+    private int indexOf(Event event) {
+        if (lanes.length == 1) {
+            return 0;
+        }
+        int hash = event.getSensor().getName().hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), lanes.length);
+    }
+
+    /**
+     * Single-threaded lane forwarding its events to the engine in order.
+     */
+    private final class Lane {
+
+        /**
+         * Buffered events.
+         */
+        private final MpscRingBuffer<Event> buffer;
+
+        /**
+         * Determines whether the worker is (about to be) parked and has to be woken up.
+         */
+        private volatile boolean idle;
+
+        /**
+         * Worker forwarding the events to the engine.
+         */
+        private volatile Thread worker;
+
+
+        /**
+         * Constructs a new {@link Lane}.
+         * 
+         * @param capacity
+         *          the number of events the lane can hold.
+         */
+        Lane(int capacity) {
+            this.buffer = new MpscRingBuffer<>(capacity);
+        }
+
+        /**
+         * Starts the worker.
+         * 
+         * @param name
+         *          the name of the worker thread.
+         */
+        void start(String name) {
+            worker = new Thread(this::work, name);
+            worker.setDaemon(true);
+            worker.start();
+        }
+
+        /**
+         * Waits for the worker to forward all buffered events and terminate.
+         */
+        void stop() {
+            LockSupport.unpark(worker);
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                instance.getLogger().logError(e.toString());
+                Thread.currentThread().interrupt();
+            }
+            worker = null;
+        }
+
+        /**
+         * Enqueues an event.
+         * 
+         * @param event
+         *          the {@link Event}.
+         * @return
+         *          true if the event was enqueued, false if the lane is full.
+         */
+        boolean offer(Event event) {
+            if (buffer.offer(event)) {
+                wakeUp();
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Enqueues multiple events (all or none).
+         * 
+         * @param events
+         *          the {@link Event events}.
+         * @return
+         *          true if the events were enqueued, false if the lane has not enough space left.
+         */
+        boolean offerAll(List<Event> events) {
+            if (buffer.offerAll(events)) {
+                wakeUp();
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Wakes up the worker if it is idle.
+         */
+        private void wakeUp() {
+            if (idle) {
+                LockSupport.unpark(worker);
+            }
+        }
+
+        /**
+         * Forwards the buffered events to the engine until the queue is stopped and the lane is empty.
+         */
+        private void work() {
+            List<Event> events = new ArrayList<>(MAX_DRAIN);
+            while (running || !buffer.isEmpty()) {
+                if (buffer.drainTo(events, MAX_DRAIN) == 0) {
+
+                    // nothing to do - park until woken up (re-check after announcing to avoid a lost wake up)
+                    idle = true;
+                    if (running && buffer.isEmpty()) {
+                        LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                    }
+                    idle = false;
+                    continue;
+                }
+
+                try {
+                    if (events.size() == 1) {
+                        instance.getEngine().sendEvent(events.get(0));
+                    } else {
+                        instance.getEngine().sendEvents(events);
+                    }
+                } catch (RuntimeException e) {
+                    // keep the lane alive, whatever the engine throws
+                    instance.getLogger().logError(String.format(
+                            instance.getLocalizer().get(LocalizedString.INGEST_FAILED), events.size(),
+                            e.toString()));
+                }
+                events.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package stream.vispar.server.engine;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded, lock-free ring buffer for multiple producers and a single consumer. Producers claim slots by advancing
+ * the tail with a compare-and-set and publish their element afterwards. The consumer takes elements in claim
+ * order and waits for a claimed slot to be published before taking elements behind it.
+ * 
+ * @author Micha Hanselmann
+ * 
+ * @param <E>
+ *          the type of the elements.
+ */
+final class MpscRingBuffer<E> {
+
+    /**
+     * Slots of the buffer (null if free or claimed but not yet published).
+     */
+    private final AtomicReferenceArray<E> slots;
+
+    /**
+     * Mask to map a position to a slot (capacity - 1).
+     */
+    private final int mask;
+
+    /**
+     * Position of the next slot to be claimed by a producer.
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * Position of the next slot to be taken by the consumer. Written by the consumer only.
+     */
+    private volatile long head;
+
+
+    /**
+     * Constructs a new {@link MpscRingBuffer}.
+     * 
+     * @param capacity
+     *          the minimum number of elements the buffer can hold (rounded up to the next power of two).
+     */
+    MpscRingBuffer(int capacity) {
+        if (capacity < 1 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("Capacity has to be between 1 and 2^30.");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * Adds an element if there is space left. Safe to be called by multiple threads.
+     * 
+     * @param element
+     *          the element to be added.
+     * @return
+     *          true if the element was added, false if the buffer is full.
+     */
+    boolean offer(E element) {
+        Objects.requireNonNull(element);
+        long position = claim(1);
+        if (position < 0) {
+            return false;
+        }
+        slots.set(index(position), element);
+        return true;
+    }
+
+    /**
+     * Adds all elements if there is space left for all of them. The elements are added as one contiguous block,
+     * so they are not interleaved with elements of other producers. Safe to be called by multiple threads.
+     * 
+     * @param elements
+     *          the elements to be added.
+     * @return
+     *          true if the elements were added, false if the buffer has not enough space left.
+     */
+    boolean offerAll(List<? extends E> elements) {
+        for (E element : elements) {
+            Objects.requireNonNull(element);
+        }
+        if (elements.isEmpty()) {
+            return true;
+        }
+        long position = claim(elements.size());
+        if (position < 0) {
+            return false;
+        }
+        for (E element : elements) {
+            slots.set(index(position++), element);
+        }
+        return true;
+    }
+
+    /**
+     * Takes the next element. Must only be called by the consumer thread.
+     * 
+     * @return
+     *          the element or null if the buffer is empty (or the next element is not yet published).
+     */
+    E poll() {
+        long position = head;
+        int index = index(position);
+        E element = slots.get(index);
+        if (element == null) {
+            return null;
+        }
+        slots.lazySet(index, null);
+        head = position + 1;
+        return element;
+    }
+
+    /**
+     * Takes up to a given number of elements. Must only be called by the consumer thread.
+     * 
+     * @param target
+     *          the collection the elements are added to.
+     * @param max
+     *          the maximum number of elements to be taken.
+     * @return
+     *          the number of elements taken.
+     */
+    int drainTo(Collection<? super E> target, int max) {
+        long position = head;
+        int count = 0;
+        while (count < max) {
+            int index = index(position);
+            E element = slots.get(index);
+            if (element == null) {
+                break;
+            }
+            slots.lazySet(index, null);
+            target.add(element);
+            position++;
+            count++;
+        }
+        head = position;
+        return count;
+    }
+
+    /**
+     * Returns the number of elements in the buffer (including claimed but not yet published slots).
+     * 
+     * @return
+     *          the number of elements.
+     */
+    int size() {
+        long currentHead = head;
+        long size = tail.get() - currentHead;
+        return (int) Math.max(0, Math.min(size, capacity()));
+    }
+
+    /**
+     * Returns whether the buffer is empty.
+     * 
+     * @return
+     *          true if empty, false otherwise.
+     */
+    boolean isEmpty() {
+        return tail.get() == head;
+    }
+
+    /**
+     * Returns the number of elements the buffer can hold.
+     * 
+     * @return
+     *          the capacity.
+     */
+    int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Claims a contiguous block of slots.
+     * 
+     * @param count
+     *          the number of slots.
+     * @return
+     *          the position of the first slot or -1 if not enough slots are free.
+     */
+    private long claim(int count) {
+        if (count > capacity()) {
+            return -1;
+        }
+        long position;
+        do {
+            position = tail.get();
+            if (position + count - head > capacity()) {
+                return -1;
+            }
+        } while (!tail.compareAndSet(position, position + count));
+        return position;
+    }
+
+    /**
+     * Maps a position to a slot index.
+     * 
+     * @param position
+     *          the position.
+     * @return
+     *          the slot index.
+     */
+    private int index(long position) {
+        return (int) position & mask;
+    }
+}
@@ -0,0 +1,350 @@
+package stream.vispar.server.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Index over the interval predicates of many targets (e.g. the filters of deployed patterns). A predicate is a
+ * conjunction of intervals over the slots of an event, a target without intervals matches every event. The bounds
+ * of each slot are kept as sorted thresholds, so matching an event only touches the bounds it satisfies instead of
+ * evaluating the predicate of every target. Instances are immutable, matching reuses per-thread buffers so it does
+ * not allocate in steady state.
+ * 
+ * @author Micha Hanselmann
+ * 
+ * @param <T>
+ *          the type of the targets.
+ */
+final class PredicateIndex<T> {
+
+    /**
+     * Targets of the index.
+     */
+    private final List<T> targets;
+
+    /**
+     * Number of bounds a target has to satisfy to match (by target index).
+     */
+    private final int[] required;
+
+    /**
+     * Targets without bounds (matching every event).
+     */
+    private final List<T> unconstrained;
+
+    /**
+     * Constrained slots.
+     */
+    private final int[] slots;
+
+    /**
+     * Sorted bounds of the constrained slots (by index in {@link #slots}).
+     */
+    private final SlotBounds[] bounds;
+
+    /**
+     * Buffers reused by {@link #match(Object[])} on the same thread.
+     */
+    private final ThreadLocal<Scratch<T>> scratch;
+
+
+    /**
+     * Constructs a new {@link PredicateIndex}.
+     * 
+     * @param predicates
+     *          the targets mapped to their predicates (intervals by slot, empty if the target matches every event).
+     */
+    PredicateIndex(Map<T, Map<Integer, Interval>> predicates) {
+        this.targets = new ArrayList<>(predicates.keySet());
+        this.required = new int[targets.size()];
+        this.unconstrained = new ArrayList<>();
+
+        Map<Integer, List<Bound>> lowers = new HashMap<>();
+        Map<Integer, List<Bound>> uppers = new HashMap<>();
+        for (int i = 0; i < targets.size(); i++) {
+            for (Entry<Integer, Interval> entry : predicates.get(targets.get(i)).entrySet()) {
+                Interval interval = entry.getValue();
+                if (interval.low != Double.NEGATIVE_INFINITY) {
+                    lowers.computeIfAbsent(entry.getKey(), k -> new ArrayList<>())
+                            .add(new Bound(interval.low, interval.lowInclusive, i));
+                    required[i]++;
+                }
+                if (interval.high != Double.POSITIVE_INFINITY) {
+                    uppers.computeIfAbsent(entry.getKey(), k -> new ArrayList<>())
+                            .add(new Bound(interval.high, interval.highInclusive, i));
+                    required[i]++;
+                }
+            }
+            if (required[i] == 0) {
+                unconstrained.add(targets.get(i));
+            }
+        }
+
+        Set<Integer> constrained = new HashSet<>(lowers.keySet());
+        constrained.addAll(uppers.keySet());
+        this.slots = new int[constrained.size()];
+        this.bounds = new SlotBounds[constrained.size()];
+        int i = 0;
+        for (Integer slot : constrained) {
+            slots[i] = slot;
+            bounds[i++] = new SlotBounds(lowers.getOrDefault(slot, new ArrayList<>()),
+                    uppers.getOrDefault(slot, new ArrayList<>()));
+        }
+        this.scratch = ThreadLocal.withInitial(() -> new Scratch<>(targets.size()));
+    }
+
+    /**
+     * Returns whether every target matches every event, i.e. no target has a predicate.
+     * 
+     * @return
+     *          true if the index does not filter, false otherwise.
+     */
+    boolean isTrivial() {
+        return slots.length == 0;
+    }
+
+    /**
+     * Returns the targets whose predicates match an event. Values which are not numbers satisfy every bound, so
+     * the index never drops an event it cannot judge.
+     * 
+     * @param values
+     *          the values of the event by slot.
+     * @return
+     *          the matching targets. The list is reused by the next call on the same thread, so it has to be
+     *          consumed before.
+     */
+    List<T> match(Object[] values) {
+        Scratch<T> buffers = scratch.get();
+        List<T> matches = buffers.matches;
+        matches.clear();
+        for (int i = 0; i < unconstrained.size(); i++) {
+            matches.add(unconstrained.get(i));
+        }
+        if (slots.length == 0) {
+            return matches;
+        }
+
+        int[] hits = buffers.hits;
+        Arrays.fill(hits, 0);
+        for (int slot = 0; slot < slots.length; slot++) {
+            Object value = slots[slot] < values.length ? values[slots[slot]] : null;
+            SlotBounds slotBounds = bounds[slot];
+            if (value instanceof Number) {
+                double number = ((Number) value).doubleValue();
+
+                // lower bounds below the value (ascending) and upper bounds above the value (descending)
+                for (int i = 0; i < slotBounds.lowers.length && slotBounds.lowers[i].value <= number; i++) {
+                    hit(slotBounds.lowers[i], number, hits, matches);
+                }
+                for (int i = slotBounds.uppers.length - 1; i >= 0 && slotBounds.uppers[i].value >= number; i--) {
+                    hit(slotBounds.uppers[i], number, hits, matches);
+                }
+            } else {
+                for (Bound bound : slotBounds.lowers) {
+                    hit(bound, Double.NaN, hits, matches);
+                }
+                for (Bound bound : slotBounds.uppers) {
+                    hit(bound, Double.NaN, hits, matches);
+                }
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Counts a bound as satisfied unless the value equals an exclusive bound. Adds the target of the bound to the
+     * matches as soon as all of its bounds are satisfied.
+     * 
+     * @param bound
+     *          the {@link Bound}.
+     * @param value
+     *          the value (NaN if the bound is satisfied in any case).
+     * @param hits
+     *          the number of satisfied bounds by target index.
+     * @param matches
+     *          the matching targets.
+     */
+    private void hit(Bound bound, double value, int[] hits, List<T> matches) {
+        if (bound.value == value && !bound.inclusive) {
+            return;
+        }
+        if (++hits[bound.target] == required[bound.target]) {
+            matches.add(targets.get(bound.target));
+        }
+    }
+
+    /**
+     * Buffers of a thread matching events.
+     * 
+     * @param <T>
+     *          the type of the targets.
+     */
+    private static final class Scratch<T> {
+
+        private final int[] hits;
+        private final List<T> matches;
+
+
+        /**
+         * Constructs new {@link Scratch} buffers.
+         * 
+         * @param targets
+         *          the number of targets.
+         */
+        Scratch(int targets) {
+            this.hits = new int[targets];
+            this.matches = new ArrayList<>(targets);
+        }
+    }
+
+    /**
+     * Interval of numbers. Instances are immutable.
+     */
+    static final class Interval {
+
+        /**
+         * Interval containing all numbers.
+         */
+        static final Interval ALL = new Interval(Double.NEGATIVE_INFINITY, true, Double.POSITIVE_INFINITY, true);
+
+        private final double low;
+        private final boolean lowInclusive;
+        private final double high;
+        private final boolean highInclusive;
+
+
+        /**
+         * Constructs a new {@link Interval}.
+         * 
+         * @param low
+         *          the lower bound (negative infinity if unbounded).
+         * @param lowInclusive
+         *          whether the lower bound is part of the interval.
+         * @param high
+         *          the upper bound (positive infinity if unbounded).
+         * @param highInclusive
+         *          whether the upper bound is part of the interval.
+         */
+        Interval(double low, boolean lowInclusive, double high, boolean highInclusive) {
+            if (Double.isNaN(low) || Double.isNaN(high)) {
+                throw new IllegalArgumentException("Bounds must be numbers.");
+            }
+            this.low = low;
+            this.lowInclusive = lowInclusive;
+            this.high = high;
+            this.highInclusive = highInclusive;
+        }
+
+        /**
+         * Returns the intersection with another interval.
+         * 
+         * @param other
+         *          the other {@link Interval}.
+         * @return
+         *          the intersection.
+         */
+        Interval intersect(Interval other) {
+            Objects.requireNonNull(other);
+            double newLow = Math.max(low, other.low);
+            boolean newLowInclusive = (low != newLow || lowInclusive) && (other.low != newLow || other.lowInclusive);
+            double newHigh = Math.min(high, other.high);
+            boolean newHighInclusive = (high != newHigh || highInclusive)
+                    && (other.high != newHigh || other.highInclusive);
+            return new Interval(newLow, newLowInclusive, newHigh, newHighInclusive);
+        }
+
+        /**
+         * Returns whether the interval contains a number.
+         * 
+         * @param value
+         *          the number.
+         * @return
+         *          true if the number is part of the interval, false otherwise.
+         */
+        boolean contains(double value) {
+            return (value > low || (lowInclusive && value == low))
+                    && (value < high || (highInclusive && value == high));
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Interval)) {
+                return false;
+            }
+            Interval other = (Interval) obj;
+            return low == other.low && high == other.high && lowInclusive == other.lowInclusive
+                    && highInclusive == other.highInclusive;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(low, lowInclusive, high, highInclusive);
+        }
+
+        @Override
+        public String toString() {
+            return (lowInclusive ? "[" : "(") + low + ", " + high + (highInclusive ? "]" : ")");
+        }
+    }
+
+    /**
+     * Bound of the interval of a target.
+     */
+    private static final class Bound {
+
+        private final double value;
+        private final boolean inclusive;
+        private final int target;
+
+
+        /**
+         * Constructs a new {@link Bound}.
+         * 
+         * @param value
+         *          the value of the bound.
+         * @param inclusive
+         *          whether the value itself satisfies the bound.
+         * @param target
+         *          the index of the target.
+         */
+        Bound(double value, boolean inclusive, int target) {
+            this.value = value;
+            this.inclusive = inclusive;
+            this.target = target;
+        }
+    }
+
+    /**
+     * Lower and upper bounds of a slot, each sorted ascending by value.
+     */
+    private static final class SlotBounds {
+
+        private final Bound[] lowers;
+        private final Bound[] uppers;
+
+
+        /**
+         * Constructs new {@link SlotBounds}.
+         * 
+         * @param lowers
+         *          the lower bounds.
+         * @param uppers
+         *          the upper bounds.
+         */
+        SlotBounds(List<Bound> lowers, List<Bound> uppers) {
+            Comparator<Bound> byValue = Comparator.comparingDouble(bound -> bound.value);
+            this.lowers = lowers.toArray(new Bound[0]);
+            this.uppers = uppers.toArray(new Bound[0]);
+            Arrays.sort(this.lowers, byValue);
+            Arrays.sort(this.uppers, byValue);
+        }
+    }
+}
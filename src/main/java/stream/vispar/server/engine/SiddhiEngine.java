@@ -1,13 +1,26 @@
 package stream.vispar.server.engine;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.stream.Collectors;
 
 import org.wso2.siddhi.core.ExecutionPlanRuntime;
 import org.wso2.siddhi.core.SiddhiManager;
@@ -17,7 +30,6 @@ import org.wso2.siddhi.core.stream.output.StreamCallback;
 import com.google.common.base.Optional;
 
 import stream.vispar.compiler.CompileException;
-import stream.vispar.compiler.SiddhiCode;
 import stream.vispar.compiler.SiddhiCompiler;
 import stream.vispar.compiler.TreeCompiler;
 import stream.vispar.model.Pattern;
@@ -30,8 +42,11 @@ import stream.vispar.model.nodes.outputs.OutputNode;
 import stream.vispar.model.nodes.outputs.PatternOutputNode;
 import stream.vispar.model.nodes.outputs.SocketActionNode;
 import stream.vispar.server.core.ServerInstance;
+import stream.vispar.server.core.SocketTopic;
 import stream.vispar.server.core.entities.Event;
+import stream.vispar.server.core.entities.Sensor;
 import stream.vispar.server.core.entities.adapters.NodeVisitorAdapter;
+import stream.vispar.server.engine.PredicateIndex.Interval;
 import stream.vispar.server.engine.extensions.LogicalAndFunction;
 import stream.vispar.server.engine.extensions.StringAverage;
 import stream.vispar.server.engine.extensions.StringComparator;
@@ -40,6 +55,7 @@ import stream.vispar.server.engine.extensions.StringMaximum;
 import stream.vispar.server.engine.extensions.StringMinimum;
 import stream.vispar.server.engine.extensions.TimeLengthWindow;
 import stream.vispar.server.localization.LocalizedString;
+import stream.vispar.server.logger.LogLevel;
 
 /**
  * Engine implementation using the WSO2 Siddhi library.
@@ -54,196 +70,1687 @@ public class SiddhiEngine implements IEngine {
      */
     private final ServerInstance instance;
 
+    /**
+     * Matches plan annotations of an execution plan.
+     */
+    private static final java.util.regex.Pattern PLAN_ANNOTATION =
+            java.util.regex.Pattern.compile("(?im)^\\s*@plan:\\w+\\(.*\\)\\s*$");
+
+    /**
+     * Matches streams defined or written by an execution plan.
+     */
+    private static final java.util.regex.Pattern STREAM_USAGE =
+            java.util.regex.Pattern.compile("(?i)(?:define\\s+stream|insert\\s+into)\\s+(\\w+)");
+
+    /**
+     * Matches constructs keeping state across events (windows, sequences, joins and aggregations).
+     */
+    private static final java.util.regex.Pattern STATEFUL = java.util.regex.Pattern.compile("(?i)#|->|\\bevery\\b"
+            + "|\\bjoin\\b|\\bgroup\\s+by\\b|\\b(?:avg|sum|count|max|min|stddev|distinctcount|stringsum|stringmax"
+            + "|stringmin|stringavg)\\s*\\(");
+
+    /**
+     * Matches a query of an execution plan, capturing the query without its output stream and the output stream.
+     */
+    private static final java.util.regex.Pattern QUERY = java.util.regex.Pattern.compile(
+            "(?is)\\s*(?:@info\\([^)]*\\)\\s*)?(from\\b.*\\binsert\\s+(?:(?:all|current|expired)\\s+events\\s+)?into)"
+            + "\\s+(\\w+)\\s*");
+
+    /**
+     * Matches streams defined by an execution plan.
+     */
+    private static final java.util.regex.Pattern STREAM_DEFINITION =
+            java.util.regex.Pattern.compile("(?i)define\\s+stream\\s+(\\w+)");
+
+    /**
+     * Matches a numeric comparison of an attribute with a constant, capturing the attribute, the operator and the
+     * constant.
+     */
+    private static final java.util.regex.Pattern ATTRIBUTE_COMPARISON = java.util.regex.Pattern.compile(
+            "(?:\\w+\\.)?([A-Za-z_]\\w*)\\s*(<=|>=|==|<|>)\\s*(-?\\d+(?:\\.\\d+)?(?:[eE][-+]?\\d+)?)[lLfFdD]?");
+
+    /**
+     * Matches a numeric comparison of a constant with an attribute, capturing the constant, the operator and the
+     * attribute.
+     */
+    private static final java.util.regex.Pattern CONSTANT_COMPARISON = java.util.regex.Pattern.compile(
+            "(-?\\d+(?:\\.\\d+)?(?:[eE][-+]?\\d+)?)[lLfFdD]?\\s*(<=|>=|==|<|>)\\s*(?:\\w+\\.)?([A-Za-z_]\\w*)");
+
+    /**
+     * Prefix of the sensor streams shared by the patterns of a runtime.
+     */
+    private static final String SHARED_STREAM_PREFIX = "vispar_shared_";
+
     private SiddhiManager manager;
     private SiddhiCompiler compiler;
 
-    private final Map<String, DeploymentInstance> deploymentInstances;
+    private final Map<String, DeploymentInstance> deploymentInstances;
+
+    /**
+     * Query prefixes evaluated once for all deployed patterns using them, by their canonical form (see
+     * {@link #sharePrefixes(Pattern, String, int, Map, Map)}).
+     */
+    private final Map<String, SharedPrefix> sharedPrefixes;
+
+    /**
+     * Compiled execution plans of the patterns deployed in a group (by pattern id), so a group is rebuilt without
+     * compiling its members again.
+     */
+    private final Map<String, String> groupPlans;
+
+    /**
+     * Routing table mapping sensor names to the input handlers of all deployed patterns. It is rebuilt on every
+     * (un)deployment and replaced as a whole, so the ingest path can read it without locking.
+     */
+    private volatile Map<String, SensorRoute[]> sensorRoutes;
+
+    /**
+     * Buffer size of the asynchronous input streams used if a pattern is deployed without an explicit buffer size
+     * ({@link IEngine#SYNCHRONOUS} if patterns are processed synchronously by default).
+     */
+    private final int defaultBufferSize;
+
+    /**
+     * Distribution of the deployed patterns onto runtimes.
+     */
+    private final DeploymentMode mode;
+
+    /**
+     * Constructs a new {@link SiddhiEngine} processing patterns synchronously by default.
+     * 
+     * @param instance
+     *            the {@link ServerInstance} the engine belongs to.
+     */
+    public SiddhiEngine(ServerInstance instance) {
+        this(instance, SYNCHRONOUS);
+    }
+
+    /**
+     * Constructs a new {@link SiddhiEngine}.
+     * 
+     * @param instance
+     *            the {@link ServerInstance} the engine belongs to.
+     * @param defaultBufferSize
+     *            the buffer size of the asynchronous input streams used if a pattern is deployed without an
+     *            explicit buffer size ({@link IEngine#SYNCHRONOUS} to process patterns synchronously by default).
+     * @throws IllegalArgumentException
+     *             if the buffer size is negative or exceeds {@link IEngine#MAX_BUFFER_SIZE}.
+     */
+    public SiddhiEngine(ServerInstance instance, int defaultBufferSize) {
+        this(instance, defaultBufferSize, DeploymentMode.ISOLATED);
+    }
+
+    /**
+     * Constructs a new {@link SiddhiEngine}.
+     * 
+     * @param instance
+     *            the {@link ServerInstance} the engine belongs to.
+     * @param defaultBufferSize
+     *            the buffer size of the asynchronous input streams used if a pattern is deployed without an
+     *            explicit buffer size ({@link IEngine#SYNCHRONOUS} to process patterns synchronously by default).
+     * @param mode
+     *            the {@link DeploymentMode} determining how patterns are distributed onto runtimes.
+     * @throws IllegalArgumentException
+     *             if the buffer size is negative or exceeds {@link IEngine#MAX_BUFFER_SIZE}.
+     */
+    public SiddhiEngine(ServerInstance instance, int defaultBufferSize, DeploymentMode mode) {
+        if (defaultBufferSize < SYNCHRONOUS || defaultBufferSize > MAX_BUFFER_SIZE) {
+            throw new IllegalArgumentException("Invalid buffer size: " + defaultBufferSize);
+        }
+        this.instance = Objects.requireNonNull(instance);
+        this.defaultBufferSize = defaultBufferSize;
+        this.mode = Objects.requireNonNull(mode);
+        this.manager = new SiddhiManager();
+        this.compiler = new TreeCompiler();
+
+        this.deploymentInstances = new ConcurrentHashMap<>();
+        this.sharedPrefixes = new HashMap<>();
+        this.groupPlans = new HashMap<>();
+        this.sensorRoutes = Collections.emptyMap();
+        
+        manager.setExtension("vispar:and", LogicalAndFunction.class);
+        manager.setExtension("vispar:timeLength", TimeLengthWindow.class);
+        manager.setExtension("vispar:stringcompare", StringComparator.class);
+        manager.setExtension("vispar:stringsum", StringConcatenator.class);
+        manager.setExtension("vispar:stringmax", StringMaximum.class);
+        manager.setExtension("vispar:stringmin", StringMinimum.class);
+        manager.setExtension("vispar:stringavg", StringAverage.class);
+    }
+
+    @Override
+    public void start() {
+        instance.getLogger().log(instance.getLocalizer().get(LocalizedString.SIDDHI_ENGINE_STARTED));
+    }
+
+    @Override
+    public void stop() {
+
+        // undeploy all patterns deployed on Siddhi
+        for (String patternId : new ArrayList<>(deploymentInstances.keySet())) {
+            Pattern pattern = instance.getPatternCtrl().getById(patternId);
+            if (Objects.nonNull(pattern) && deploymentInstances.containsKey(patternId)) {
+                undeploy(pattern);
+            }
+        }
+
+        instance.getLogger().log(instance.getLocalizer().get(LocalizedString.SIDDHI_ENGINE_STOPPED));
+    }
+
+    @Override
+    public void deploy(Pattern pattern) {
+        deploy(pattern, DEFAULT_BUFFER_SIZE);
+    }
+
+    @Override
+    public synchronized void deploy(Pattern pattern, int bufferSize) {
+        Objects.requireNonNull(pattern);
+        if (bufferSize < DEFAULT_BUFFER_SIZE || bufferSize > MAX_BUFFER_SIZE) {
+            throw new IllegalArgumentException("Invalid buffer size: " + bufferSize);
+        }
+
+        assert Objects.nonNull(instance.getPatternCtrl().getById(
+                pattern.getId())) : "tried to deploy a pattern that could not be found in the pattern controller";
+
+        if (pattern.isDeployed()) {
+            assert deploymentInstances
+                    .containsKey(pattern.getId()) : "Pattern is deployed, but no DeploymentInstance is present.";
+            // do nothing if pattern is already deployed
+            return;
+        }
+
+        // compile the pattern first, so an invalid pattern does not affect deployed ones
+        String plan = compile(pattern);
+        int effectiveBufferSize = bufferSize == DEFAULT_BUFFER_SIZE ? defaultBufferSize : bufferSize;
+
+        if (mode == DeploymentMode.SHARED && isShareable(pattern, plan)) {
+
+            // the pattern joins the shared runtime of the patterns using the same sensors and buffer size
+            String group = effectiveBufferSize + ":" + String.join(",", new TreeSet<>(sensorsOf(pattern)));
+            Map<Pattern, Integer> members = groupMembers(group);
+            members.put(pattern, effectiveBufferSize);
+            groupPlans.put(pattern.getId(), plan);
+            try {
+                deployGroup(group, members);
+                return;
+            } catch (RuntimeException e) {
+                groupPlans.remove(pattern.getId());
+                // Siddhi rejects invalid plans with various runtime exceptions - the group stays as it is
+                instance.getLogger().logError(String.format(
+                        instance.getLocalizer().get(LocalizedString.SHARING_FAILED), pattern.getName(), e.toString()));
+            }
+        }
+
+        Map<Pattern, Integer> members = new LinkedHashMap<>();
+        Set<String> previous = new HashSet<>();
+        if (mode == DeploymentMode.FUSED && isStateless(plan)) {
+
+            // the pattern joins (and possibly merges) the chains of the deployed stateless patterns connected to
+            // it - stateful patterns are never recompiled, so they keep their state
+            Collection<Pattern> candidates = deployedPatterns();
+            candidates.add(pattern);
+            candidates = chainOf(pattern, candidates);
+            candidates.removeIf(member -> member != pattern && !isStateless(compile(member)));
+            for (Pattern member : chainOf(pattern, candidates)) {
+                if (member != pattern) {
+                    DeploymentInstance deployment = deploymentInstances.get(member.getId());
+                    members.put(member, deployment.bufferSize);
+                    previous.add(deployment.runtimeId);
+                }
+            }
+        }
+        members.put(pattern, effectiveBufferSize);
+        try {
+            deployChain(members);
+        } finally {
+            shutDownUnused(previous);
+        }
+    }
+
+    @Override
+    public synchronized void undeploy(Pattern pattern) {
+        Objects.requireNonNull(pattern);
+
+        if (!pattern.isDeployed()) {
+            assert !deploymentInstances
+                    .containsKey(pattern.getId()) : "Pattern is not deployed, but Runtime is present.";
+            // do nothing if pattern is already undeployed
+            return;
+        }
+        DeploymentInstance removed = deploymentInstances.get(pattern.getId());
+        if (Objects.isNull(removed)) {
+            throw new IllegalStateException("Pattern is deployed, but no DeploymentInstance is present.");
+        }
+        assert removed.patternId.equals(
+                pattern.getId()) : "inconsistent mapping found: pattern ID was mapped to wrong DeploymentInstance";
+
+        if (Objects.nonNull(removed.group)) {
+
+            // the other members of a shared runtime are moved to a new runtime without the pattern
+            groupPlans.remove(pattern.getId());
+            Map<Pattern, Integer> rest = groupMembers(removed.group);
+            rest.keySet().removeIf(member -> member.getId().equals(pattern.getId()));
+            if (!rest.isEmpty()) {
+                deployGroup(removed.group, rest);
+                return;
+            }
+        }
+
+        // the other members of a fused chain have to be recompiled without the pattern
+        Map<Pattern, Integer> rest = new LinkedHashMap<>();
+        for (DeploymentInstance deployment : deploymentInstances.values()) {
+            if (deployment != removed && deployment.runtimeId.equals(removed.runtimeId)) {
+                rest.put(instance.getPatternCtrl().getById(deployment.patternId), deployment.bufferSize);
+            }
+        }
+        if (rest.isEmpty()) {
+            tearDown(Collections.singleton(pattern));
+            return;
+        }
+
+        // fused patterns keep no state, so recompiling them loses nothing - the new runtimes take over before the
+        // previous one is shut down (removing the pattern may split the chain)
+        deploymentInstances.remove(pattern.getId());
+        try {
+            for (Collection<Pattern> chain : chains(rest.keySet())) {
+                Map<Pattern, Integer> members = new LinkedHashMap<>();
+                chain.forEach(member -> members.put(member, rest.get(member)));
+                deployChain(members);
+            }
+        } finally {
+            shutDownUnused(Collections.singleton(removed.runtimeId));
+        }
+    }
+
+    /**
+     * Compiles a pattern.
+     * 
+     * @param pattern
+     *            the {@link Pattern} to be compiled.
+     * @return the Siddhi execution plan of the pattern.
+     * @throws IllegalArgumentException
+     *             if the pattern could not be compiled.
+     */
+    private String compile(Pattern pattern) {
+        try {
+            return compiler.compile(pattern).getAsString();
+        } catch (CompileException e) {
+            instance.getLogger().logError("Siddhi compiler error: " + e.toString());
+            throw new IllegalArgumentException(e.toString());
+        }
+    }
+
+    /**
+     * Checks whether Siddhi accepts an execution plan. The runtime created for the check is never started.
+     * 
+     * @param plan
+     *            the Siddhi execution plan.
+     * @throws RuntimeException
+     *             if Siddhi rejects the plan (Siddhi uses various runtime exceptions).
+     */
+    void validate(String plan) {
+        manager.createExecutionPlanRuntime(plan).shutdown();
+    }
+
+    /**
+     * Deploys patterns in one runtime and starts it. If the patterns cannot be fused into one runtime, each of them
+     * is deployed in its own runtime instead. Deployed patterns are moved to the new runtime, which receives the
+     * events before the previous runtimes are shut down (see {@link #shutDownUnused(Collection)}).
+     * 
+     * @param members
+     *            the {@link Pattern}s (forming a chain if more than one) mapped to their buffer sizes.
+     * @throws IllegalArgumentException
+     *             if a pattern could not be deployed.
+     */
+    private void deployChain(Map<Pattern, Integer> members) {
+        List<Pattern> chain = new ArrayList<>(members.keySet());
+        Map<String, String> streamAliases = new HashMap<>();
+        Map<String, Map<String, Interval>> streamFilters = new HashMap<>();
+        Map<String, String> streamPrefixes = new HashMap<>();
+        ExecutionPlanRuntime runtime;
+        try {
+            String plan = chain.size() == 1
+                    ? sharePrefixes(chain.get(0), compile(chain.get(0)), members.get(chain.get(0)), streamAliases,
+                            streamPrefixes)
+                    : fuse(chain);
+            runtime = createRuntime(plan, Collections.max(members.values()), streamAliases, streamFilters);
+        } catch (RuntimeException e) {
+            if (chain.size() == 1) {
+                releasePrefixes();
+                throw e;
+            }
+
+            // Siddhi rejects invalid plans with various runtime exceptions - the engine wires separate runtimes
+            instance.getLogger().logError(String.format(instance.getLocalizer().get(LocalizedString.FUSION_FAILED),
+                    chain.stream().map(Pattern::getName).collect(Collectors.joining(", ")), e.toString()));
+            IllegalArgumentException failure = null;
+            for (Pattern member : chain) {
+                try {
+                    deployChain(Collections.singletonMap(member, members.get(member)));
+                } catch (IllegalArgumentException memberFailure) {
+                    failure = memberFailure;
+                }
+            }
+            if (Objects.nonNull(failure)) {
+                throw failure;
+            }
+            return;
+        }
+
+        List<DeploymentInstance> deployments = new ArrayList<>();
+        try {
+            for (Pattern member : chain) {
+                deployments.add(new DeploymentInstance(member, runtime, members.get(member), null, streamAliases,
+                        streamFilters, streamPrefixes, this));
+            }
+        } catch (IllegalArgumentException e) {
+            runtime.shutdown();
+            releasePrefixes();
+            instance.getLogger().logError(e.toString());
+            throw e;
+        }
+        runtime.start();
+
+        // deployments of the patterns in other runtimes are replaced, these runtimes are shut down by the caller
+        deployments.forEach(deployment -> deploymentInstances.put(deployment.patternId, deployment));
+        rebuildRoutes();
+    }
+
+    /**
+     * Shuts down the runtimes no deployed pattern uses anymore. Call it after the routes have been switched to the
+     * runtimes replacing them.
+     * 
+     * @param runtimeIds
+     *            the ids of the runtimes that might be unused.
+     */
+    private void shutDownUnused(Collection<String> runtimeIds) {
+        Set<String> unused = new HashSet<>(runtimeIds);
+        deploymentInstances.values().forEach(deployment -> unused.remove(deployment.runtimeId));
+        if (!unused.isEmpty()) {
+            rebuildRoutes();
+            unused.forEach(runtimeId -> manager.getExecutionPlanRuntime(runtimeId).shutdown());
+        }
+        releasePrefixes();
+    }
+
+    /**
+     * Undeploys patterns and shuts down their runtimes. The routes are removed first, so no more events are sent
+     * to the runtimes while they are shut down.
+     * 
+     * @param patterns
+     *            the deployed {@link Pattern}s, including all other patterns sharing their runtimes.
+     */
+    private void tearDown(Collection<Pattern> patterns) {
+        Set<String> runtimeIds = new HashSet<>();
+        for (Pattern pattern : patterns) {
+            runtimeIds.add(deploymentInstances.remove(pattern.getId()).runtimeId);
+        }
+        rebuildRoutes();
+
+        // by shutting down the runtimes, pattern recognition is stopped
+        for (String runtimeId : runtimeIds) {
+            ExecutionPlanRuntime runtime = manager.getExecutionPlanRuntime(runtimeId);
+            assert !Objects.isNull(runtime) : "couldn't find a runtime for a deployed Pattern";
+            runtime.shutdown();
+        }
+        releasePrefixes();
+    }
+
+    /**
+     * Moves the stateless prefix queries of a pattern to shared prefixes. A prefix query reads a sensor stream
+     * before any other query (see {@link #prefixQueriesOf(String, Collection)}). Prefix queries of different
+     * patterns are identical if they read the same sensor and equal each other except for the names of their input
+     * and output streams - e.g. the same filter on a sensor. Each of them is evaluated once in a runtime of its own,
+     * whose output is fanned out to the patterns using it. Prefixes keeping state (windows or aggregations) are not
+     * shared, as a pattern deployed later would start with the state built from earlier events.
+     * 
+     * @param pattern
+     *            the {@link Pattern}.
+     * @param plan
+     *            the Siddhi execution plan of the pattern.
+     * @param bufferSize
+     *            the buffer size of the pattern ({@link IEngine#SYNCHRONOUS} if synchronous), only prefixes with
+     *            the same buffer size are shared.
+     * @param streamAliases
+     *            receives the output stream of each replaced sensor stream.
+     * @param streamPrefixes
+     *            receives the key of the shared prefix of each replaced sensor stream.
+     * @return the execution plan of the pattern, reading the output streams of the shared prefixes instead of
+     *         the sensor streams.
+     */
+    private String sharePrefixes(Pattern pattern, String plan, int bufferSize, Map<String, String> streamAliases,
+            Map<String, String> streamPrefixes) {
+        Map<String, SensorNode> sensorStreams = new HashMap<>();
+        for (InputNode input : pattern.getInputNodes()) {
+            input.acceptVisitor(new NodeVisitorAdapter() {
+
+                @Override
+                public void visitSensorNode(SensorNode node) {
+                    sensorStreams.put(compiler.getStreamName(node), node);
+                }
+            });
+        }
+
+        String code = plan;
+        for (PrefixQuery query : prefixQueriesOf(plan, sensorStreams.keySet())) {
+            if (!isStateless(query.query)) {
+                continue;
+            }
+            SensorNode node = sensorStreams.get(query.stream);
+            String key = node.getSensorName() + ":" + bufferSize + ":" + query.canonical;
+            SharedPrefix prefix = sharedPrefixes.get(key);
+            if (Objects.isNull(prefix)) {
+                try {
+                    prefix = new SharedPrefix(key, node.getSensorName(), compiler.getAttributesOrdered(node), query,
+                            bufferSize);
+                } catch (RuntimeException e) {
+                    // Siddhi rejects invalid plans with various runtime exceptions - the query stays in the pattern
+                    continue;
+                }
+                sharedPrefixes.put(key, prefix);
+            }
+            code = withPrefix(code, query, prefix.attributes);
+            streamAliases.put(query.stream, query.output);
+            streamPrefixes.put(query.stream, key);
+        }
+        return code;
+    }
+
+    /**
+     * Shuts down the shared prefixes no deployed pattern uses anymore. Their routes are removed first.
+     */
+    private void releasePrefixes() {
+        Set<String> used = new HashSet<>();
+        deploymentInstances.values().forEach(deployment -> used.addAll(deployment.prefixToHandler.keySet()));
+        List<SharedPrefix> unused = new ArrayList<>();
+        sharedPrefixes.values().removeIf(prefix -> !used.contains(prefix.wire.key) && unused.add(prefix));
+        if (!unused.isEmpty()) {
+            rebuildRoutes();
+            unused.forEach(prefix -> prefix.runtime.shutdown());
+        }
+    }
+
+    /**
+     * Compiles a chain of patterns into one Siddhi execution plan. The pattern outputs are linked to the pattern
+     * inputs of the other members by internal queries, so their events do not leave the runtime.
+     * 
+     * @param chain
+     *            the connected {@link Pattern}s.
+     * @return the fused execution plan.
+     * @throws IllegalArgumentException
+     *             if a pattern could not be compiled or the streams of two members clash.
+     */
+    private String fuse(List<Pattern> chain) {
+        StringBuilder plan = new StringBuilder();
+        Map<String, String> streamOwners = new HashMap<>();
+        for (Pattern member : chain) {
+
+            // plan annotations (e.g. the name) of the member plans would clash
+            String code = PLAN_ANNOTATION.matcher(groupPlans.computeIfAbsent(member.getId(), id -> compile(member)))
+                    .replaceAll("");
+            Matcher matcher = STREAM_USAGE.matcher(maskLiterals(code));
+            while (matcher.find()) {
+                String owner = streamOwners.putIfAbsent(matcher.group(1), member.getId());
+                if (Objects.nonNull(owner) && !owner.equals(member.getId())) {
+                    throw new IllegalArgumentException("Stream '" + matcher.group(1) + "' is used by patterns '"
+                            + owner + "' and '" + member.getId() + "'");
+                }
+            }
+            plan.append(code).append('\n');
+        }
+
+        // link outputs and inputs of different members (self-references are wired by the engine)
+        Map<String, Pattern> byId = new HashMap<>();
+        chain.forEach(member -> byId.put(member.getId(), member));
+        for (Pattern member : chain) {
+            for (InputNode input : member.getInputNodes()) {
+                input.acceptVisitor(new NodeVisitorAdapter() {
+
+                    @Override
+                    public void visitPatternInputNode(PatternInputNode node) {
+                        Pattern source = byId.get(node.getSourcePatternId());
+                        if (Objects.isNull(source) || source == member) {
+                            return;
+                        }
+                        for (OutputNode output : source.getOutputNodes()) {
+                            output.acceptVisitor(new NodeVisitorAdapter() {
+
+                                @Override
+                                public void visitPatternOutputNode(PatternOutputNode outputNode) {
+                                    if (node.getPatternOutputName().equals(
+                                            Optional.fromNullable(outputNode.getName()).or(outputNode.getId()))) {
+                                        plan.append("from ").append(compiler.getStreamName(outputNode))
+                                                .append(" select * insert into ")
+                                                .append(compiler.getStreamName(node)).append(";\n");
+                                    }
+                                }
+                            });
+                        }
+                    }
+                });
+            }
+        }
+        return plan.toString();
+    }
+
+    /**
+     * Deploys the stateless patterns of a group in one shared runtime, replacing the previous runtime of the
+     * group. The new runtime is started and receives the events before the previous one is shut down, so the
+     * other patterns of the group do not miss events. As Siddhi cannot change a running runtime, each change of
+     * a group creates a runtime for all of its members - only their compiled plans are reused.
+     * 
+     * @param group
+     *            the group (the buffer size and the sensors of its patterns).
+     * @param members
+     *            the {@link Pattern}s of the group mapped to their buffer sizes.
+     */
+    private void deployGroup(String group, Map<Pattern, Integer> members) {
+        Map<String, Map<String, String>> sensorAliases = new HashMap<>();
+        String plan = share(members.keySet(), sensorAliases);
+        Map<String, String> queryAliases = new HashMap<>();
+        Map<String, Map<String, Interval>> streamFilters = new HashMap<>();
+        // all members of a group use the same buffer size
+        ExecutionPlanRuntime runtime = createRuntime(plan, members.values().iterator().next(), queryAliases,
+                streamFilters);
+
+        List<DeploymentInstance> deployments = new ArrayList<>();
+        try {
+            for (Entry<Pattern, Integer> member : members.entrySet()) {
+                Map<String, String> streamAliases = new HashMap<>(queryAliases);
+                streamAliases.putAll(sensorAliases.get(member.getKey().getId()));
+                deployments.add(new DeploymentInstance(member.getKey(), runtime, member.getValue(), group,
+                        streamAliases, streamFilters, Collections.emptyMap(), this));
+            }
+        } catch (IllegalArgumentException e) {
+            runtime.shutdown();
+            instance.getLogger().logError(e.toString());
+            throw e;
+        }
+        runtime.start();
+
+        // switch the routes before shutting down the previous runtime
+        Set<String> previous = new HashSet<>();
+        for (DeploymentInstance deployment : deploymentInstances.values()) {
+            if (group.equals(deployment.group)) {
+                previous.add(deployment.runtimeId);
+            }
+        }
+        deploymentInstances.values().removeIf(deployment -> group.equals(deployment.group));
+        deployments.forEach(deployment -> deploymentInstances.put(deployment.patternId, deployment));
+        rebuildRoutes();
+        for (String runtimeId : previous) {
+            manager.getExecutionPlanRuntime(runtimeId).shutdown();
+        }
+    }
+
+    /**
+     * Compiles the patterns of a group into one Siddhi execution plan. Sensor streams expecting the attributes of
+     * a sensor in the same order are replaced by one shared stream, so each event is passed to the runtime once.
+     * 
+     * @param members
+     *            the stateless {@link Pattern}s.
+     * @param streamAliases
+     *            receives the shared stream of each replaced sensor stream (by pattern id).
+     * @return the shared execution plan.
+     * @throws IllegalArgumentException
+     *             if a pattern could not be compiled or the streams of two members clash.
+     */
+    private String share(Collection<Pattern> members, Map<String, Map<String, String>> streamAliases) {
+        StringBuilder plan = new StringBuilder();
+        Map<String, String> sharedStreams = new HashMap<>();
+        Set<String> definedStreams = new HashSet<>();
+        Map<String, String> streamOwners = new HashMap<>();
+        for (Pattern member : members) {
+            String code = PLAN_ANNOTATION.matcher(compile(member)).replaceAll("");
+
+            // replace the sensor streams of the member by the shared ones
+            Map<String, String> aliases = new HashMap<>();
+            for (InputNode input : member.getInputNodes()) {
+                input.acceptVisitor(new NodeVisitorAdapter() {
+
+                    @Override
+                    public void visitSensorNode(SensorNode node) {
+                        String key = node.getSensorName() + Arrays.toString(
+                                resolveSlots(node.getSensorName(), compiler.getAttributesOrdered(node)));
+                        aliases.put(compiler.getStreamName(node), sharedStreams.computeIfAbsent(key,
+                                k -> SHARED_STREAM_PREFIX + sharedStreams.size()));
+                    }
+                });
+            }
+            for (Entry<String, String> alias : aliases.entrySet()) {
+                if (!definedStreams.add(alias.getValue())) {
+                    // shared stream is already defined
+                    code = withoutDefinition(code, alias.getKey());
+                }
+                code = renameStream(code, alias.getKey(), alias.getValue());
+            }
+            streamAliases.put(member.getId(), aliases);
+
+            // all other streams must belong to a single member
+            Matcher matcher = STREAM_USAGE.matcher(maskLiterals(code));
+            while (matcher.find()) {
+                String owner = streamOwners.putIfAbsent(matcher.group(1), member.getId());
+                if (!matcher.group(1).startsWith(SHARED_STREAM_PREFIX) && Objects.nonNull(owner)
+                        && !owner.equals(member.getId())) {
+                    throw new IllegalArgumentException("Stream '" + matcher.group(1) + "' is used by patterns '"
+                            + owner + "' and '" + member.getId() + "'");
+                }
+            }
+            plan.append(code).append('\n');
+        }
+        return plan.toString();
+    }
+
+    /**
+     * Returns the deployed patterns of a group.
+     * 
+     * @param group
+     *            the group (the buffer size and the sensors of its patterns).
+     * @return the {@link Pattern}s of the group mapped to their buffer sizes.
+     */
+    private Map<Pattern, Integer> groupMembers(String group) {
+        Map<Pattern, Integer> members = new LinkedHashMap<>();
+        for (DeploymentInstance deployment : deploymentInstances.values()) {
+            if (group.equals(deployment.group)) {
+                members.put(instance.getPatternCtrl().getById(deployment.patternId), deployment.bufferSize);
+            }
+        }
+        return members;
+    }
+
+    /**
+     * Determines whether Siddhi code keeps no state across events, i.e. uses no windows, sequences, joins or
+     * aggregations. String literals are ignored.
+     * 
+     * @param code
+     *            the Siddhi code (an execution plan or a query).
+     * @return true if the code keeps no state, false otherwise.
+     */
+    private static boolean isStateless(String code) {
+        return !STATEFUL.matcher(maskLiterals(code)).find();
+    }
+
+    /**
+     * Determines whether a pattern can share a runtime with other patterns, i.e. it keeps no state across events
+     * and is not connected to other patterns.
+     * 
+     * @param pattern
+     *            the {@link Pattern}.
+     * @param plan
+     *            the compiled execution plan of the pattern.
+     * @return true if the pattern can be shared, false otherwise.
+     */
+    private static boolean isShareable(Pattern pattern, String plan) {
+        if (!sourcesOf(pattern).isEmpty() || !isStateless(plan)) {
+            return false;
+        }
+        boolean[] connected = new boolean[1];
+        for (OutputNode output : pattern.getOutputNodes()) {
+            output.acceptVisitor(new NodeVisitorAdapter() {
+
+                @Override
+                public void visitPatternOutputNode(PatternOutputNode node) {
+                    connected[0] = true;
+                }
+            });
+        }
+        return !connected[0];
+    }
+
+    /**
+     * Returns the names of the sensors used by a pattern.
+     * 
+     * @param pattern
+     *            the {@link Pattern}.
+     * @return the sensor names.
+     */
+    private static Set<String> sensorsOf(Pattern pattern) {
+        Set<String> sensors = new HashSet<>();
+        for (InputNode input : pattern.getInputNodes()) {
+            input.acceptVisitor(new NodeVisitorAdapter() {
+
+                @Override
+                public void visitSensorNode(SensorNode node) {
+                    sensors.add(node.getSensorName());
+                }
+            });
+        }
+        return sensors;
+    }
+
+    /**
+     * Returns the currently deployed patterns.
+     * 
+     * @return the deployed {@link Pattern}s.
+     */
+    private Collection<Pattern> deployedPatterns() {
+        Collection<Pattern> patterns = new ArrayList<>();
+        for (String patternId : deploymentInstances.keySet()) {
+            patterns.add(instance.getPatternCtrl().getById(patternId));
+        }
+        return patterns;
+    }
+
+    /**
+     * Returns the chain of a pattern, i.e. all patterns connected to it by pattern inputs and outputs.
+     * 
+     * @param pattern
+     *            the {@link Pattern}.
+     * @param candidates
+     *            the {@link Pattern}s the chain may consist of (including the pattern).
+     * @return the chain of the pattern.
+     */
+    private static Collection<Pattern> chainOf(Pattern pattern, Collection<Pattern> candidates) {
+        for (Collection<Pattern> chain : chains(candidates)) {
+            if (chain.contains(pattern)) {
+                return chain;
+            }
+        }
+        throw new IllegalStateException("Pattern is not a candidate of its chain");
+    }
+
+    /**
+     * Splits patterns into chains, i.e. groups of patterns connected by pattern inputs and outputs.
+     * 
+     * @param patterns
+     *            the {@link Pattern}s.
+     * @return the chains.
+     */
+    private static Collection<Collection<Pattern>> chains(Collection<Pattern> patterns) {
+        Map<String, Set<String>> neighbours = new HashMap<>();
+        patterns.forEach(pattern -> neighbours.put(pattern.getId(), new HashSet<>()));
+        for (Pattern pattern : patterns) {
+            for (String source : sourcesOf(pattern)) {
+                if (neighbours.containsKey(source)) {
+                    neighbours.get(pattern.getId()).add(source);
+                    neighbours.get(source).add(pattern.getId());
+                }
+            }
+        }
+
+        // collect connected components
+        Collection<Collection<Pattern>> chains = new ArrayList<>();
+        Set<String> visited = new HashSet<>();
+        for (Pattern pattern : patterns) {
+            if (!visited.add(pattern.getId())) {
+                continue;
+            }
+            Set<String> component = new HashSet<>();
+            Deque<String> pending = new ArrayDeque<>();
+            pending.add(pattern.getId());
+            while (!pending.isEmpty()) {
+                String current = pending.poll();
+                component.add(current);
+                for (String neighbour : neighbours.get(current)) {
+                    if (visited.add(neighbour)) {
+                        pending.add(neighbour);
+                    }
+                }
+            }
+            chains.add(patterns.stream().filter(member -> component.contains(member.getId()))
+                    .collect(Collectors.toList()));
+        }
+        return chains;
+    }
+
+    /**
+     * Returns the ids of the patterns whose outputs are consumed by a pattern.
+     * 
+     * @param pattern
+     *            the {@link Pattern}.
+     * @return the ids of the source patterns.
+     */
+    private static Set<String> sourcesOf(Pattern pattern) {
+        Set<String> sources = new HashSet<>();
+        for (InputNode input : pattern.getInputNodes()) {
+            input.acceptVisitor(new NodeVisitorAdapter() {
+
+                @Override
+                public void visitPatternInputNode(PatternInputNode node) {
+                    sources.add(node.getSourcePatternId());
+                }
+            });
+        }
+        return sources;
+    }
+
+    @Override
+    public void sendEvent(Event event) {
+        logReceived(event);
+
+        SensorRoute[] routes = sensorRoutes.get(event.getSensor().getName());
+        if (Objects.isNull(routes)) {
+            // no deployed pattern listens to this sensor
+            return;
+        }
+
+        // the values are already typed and ordered canonically, each route only has to reorder them for the
+        // handlers whose pre-filter accepts the event
+        Object[] values = event.getValues();
+        for (SensorRoute route : routes) {
+            List<InputHandler> targets = route.select(values);
+            if (targets.isEmpty()) {
+                continue;
+            }
+            Object[] data = route.order(values);
+
+            for (InputHandler handler : targets) {
+                try {
+                    handler.send(event.getTimestamp(), data);
+                } catch (InterruptedException e) {
+                    this.instance.getLogger().logError(e.toString());
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+    
+    @Override
+    public void sendEvents(List<Event> events) {
+        
+        // group the events by sensor (keeping their order)
+        Map<Sensor, List<Event>> bySensor = new LinkedHashMap<>();
+        for (Event event : events) {
+            logReceived(event);
+            bySensor.computeIfAbsent(event.getSensor(), sensor -> new ArrayList<>()).add(event);
+        }
+
+        for (Entry<Sensor, List<Event>> entry : bySensor.entrySet()) {
+            SensorRoute[] routes = sensorRoutes.get(entry.getKey().getName());
+            if (Objects.isNull(routes)) {
+                // no deployed pattern listens to this sensor
+                continue;
+            }
+
+            // one multi-event send per handler instead of one send per event
+            for (SensorRoute route : routes) {
+                if (route.isFiltered()) {
+                    sendFiltered(route, entry.getValue());
+                    continue;
+                }
+                org.wso2.siddhi.core.event.Event[] batch = new org.wso2.siddhi.core.event.Event[entry.getValue()
+                        .size()];
+                for (int i = 0; i < batch.length; i++) {
+                    Event event = entry.getValue().get(i);
+                    batch[i] = new org.wso2.siddhi.core.event.Event(event.getTimestamp(),
+                            route.order(event.getValues()));
+                }
+
+                for (InputHandler handler : route.handlers) {
+                    send(handler, batch);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Logs the reception of an event (as repeated message of its sensor).
+     * 
+     * @param event
+     *            the received {@link Event}.
+     */
+    private void logReceived(Event event) {
+        instance.getLogger().logRepeated("sensor", event.getSensor().getName(), LogLevel.DEBUG, event.getTimestamp(),
+                () -> String.format(instance.getLocalizer().get(LocalizedString.RECEIVED_EVENT), event.toString()));
+    }
+    
+    /**
+     * Sends events of a sensor to the handlers of a route whose pre-filters accept them, one batch per handler.
+     * 
+     * @param route
+     *            the {@link SensorRoute} of the sensor.
+     * @param events
+     *            the {@link Event events} of the sensor.
+     */
+    private void sendFiltered(SensorRoute route, List<Event> events) {
+        Map<InputHandler, List<org.wso2.siddhi.core.event.Event>> batches = new LinkedHashMap<>();
+        for (Event event : events) {
+            List<InputHandler> targets = route.select(event.getValues());
+            if (targets.isEmpty()) {
+                continue;
+            }
+            org.wso2.siddhi.core.event.Event converted = new org.wso2.siddhi.core.event.Event(event.getTimestamp(),
+                    route.order(event.getValues()));
+            for (InputHandler handler : targets) {
+                batches.computeIfAbsent(handler, key -> new ArrayList<>()).add(converted);
+            }
+        }
+        batches.forEach((handler, batch) -> send(handler, batch.toArray(new org.wso2.siddhi.core.event.Event[0])));
+    }
+
+    /**
+     * Sends a batch of events to an input handler.
+     * 
+     * @param handler
+     *            the {@link InputHandler}.
+     * @param batch
+     *            the events.
+     */
+    private void send(InputHandler handler, org.wso2.siddhi.core.event.Event[] batch) {
+        try {
+            handler.send(batch);
+        } catch (InterruptedException e) {
+            this.instance.getLogger().logError(e.toString());
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Sends events issued by a {@link PatternOutputNode} to the input handlers of all
+     * {@link PatternInputNode}s connected to it. The handlers are resolved on (un)deployment, see
+     * {@link #rebuildRoutes()}.
+     * 
+     * @param wire
+     *            the {@link OutputWire} of the {@link PatternOutputNode} that issued the events
+     * @param events
+     *            the events to be sent to the input nodes
+     */
+    private void sendEvents(OutputWire wire, org.wso2.siddhi.core.event.Event[] events) {
+        instance.getLogger().logRepeated("pattern output", wire.key, LogLevel.DEBUG, System.currentTimeMillis(),
+                () -> String.format(instance.getLocalizer().get(LocalizedString.RECEIVED_EVENT), "pattern event"));
+
+        for (InputHandler handler : wire.targets) {
+            try {
+                handler.send(events);
+            } catch (InterruptedException e) {
+                this.instance.getLogger().logError(e.toString());
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Creates a runtime for an execution plan. Identical queries of the plan are evaluated once.
+     * 
+     * @param plan
+     *            the Siddhi execution plan.
+     * @param bufferSize
+     *            the buffer size of the asynchronous input streams ({@link IEngine#SYNCHRONOUS} if synchronous).
+     * @param streamAliases
+     *            receives the streams replacing the output streams of removed queries.
+     * @param streamFilters
+     *            receives the pre-filters of the input streams, see {@link #prefiltersOf(String)}.
+     * @return the runtime (not yet started).
+     */
+    private ExecutionPlanRuntime createRuntime(String plan, int bufferSize, Map<String, String> streamAliases,
+            Map<String, Map<String, Interval>> streamFilters) {
+        String code = dedupe(plan, streamAliases);
+        streamFilters.putAll(prefiltersOf(code));
+        if (bufferSize > SYNCHRONOUS) {
+            code = makeAsync(code, bufferSize);
+        }
+        return manager.createExecutionPlanRuntime(code);
+    }
+
+    /**
+     * Removes duplicate queries from a Siddhi execution plan. A query is a duplicate if it equals another query
+     * except for its output stream, e.g. the same filter on the same sensor used by several patterns. Its output
+     * stream is replaced by the output stream of the other query, which may turn the queries reading from them
+     * into duplicates as well - so shared operator prefixes are evaluated once and fanned out afterwards. Output
+     * streams that are defined explicitly or written by several queries are never replaced.
+     * 
+     * @param plan
+     *            the Siddhi execution plan.
+     * @param streamAliases
+     *            receives the replacing stream of each replaced output stream.
+     * @return the execution plan without duplicate queries.
+     */
+    static String dedupe(String plan, Map<String, String> streamAliases) {
+        List<String> statements = statementsOf(plan);
+        boolean merged = true;
+        while (merged) {
+            merged = false;
+
+            // streams which must be kept as they are
+            Set<String> fixed = new HashSet<>();
+            Set<String> written = new HashSet<>();
+            for (String statement : statements) {
+                Matcher definition = STREAM_DEFINITION.matcher(statement);
+                while (definition.find()) {
+                    fixed.add(definition.group(1));
+                }
+                Matcher query = QUERY.matcher(statement);
+                if (query.matches() && !written.add(query.group(2))) {
+                    fixed.add(query.group(2));
+                }
+            }
+
+            // canonical query (without output stream) mapped to its output stream
+            Map<String, String> canonical = new HashMap<>();
+            for (int i = 0; i < statements.size() && !merged; i++) {
+                Matcher query = QUERY.matcher(statements.get(i));
+                if (!query.matches() || fixed.contains(query.group(2))) {
+                    continue;
+                }
+                String duplicate = query.group(2);
+                String original = canonical.putIfAbsent(query.group(1).replaceAll("\\s+", " "), duplicate);
+                if (Objects.nonNull(original)) {
+                    statements.remove(i);
+                    statements.replaceAll(statement -> renameStream(statement, duplicate, original));
+                    streamAliases.replaceAll((stream, alias) -> alias.equals(duplicate) ? original : alias);
+                    streamAliases.put(duplicate, original);
+                    merged = true;
+                }
+            }
+        }
+        return String.join(";", statements);
+    }
+
+    /**
+     * Finds the prefix queries of a Siddhi execution plan. A prefix query is the only query reading a sensor
+     * stream, filters it or applies a window to it right away and reads no other stream (no joins, patterns or
+     * sequences). Its output stream must not be written by any other statement.
+     * 
+     * @param plan
+     *            the Siddhi execution plan.
+     * @param sensorStreams
+     *            the streams of the plan receiving sensor events.
+     * @return the prefix queries of the plan.
+     */
+    static List<PrefixQuery> prefixQueriesOf(String plan, Collection<String> sensorStreams) {
+        List<String> statements = statementsOf(plan);
+        List<PrefixQuery> prefixes = new ArrayList<>();
+        for (String stream : sensorStreams) {
+            java.util.regex.Pattern reference =
+                    java.util.regex.Pattern.compile("\\b" + java.util.regex.Pattern.quote(stream) + "\\b");
+            String definition = null;
+            List<String> readers = new ArrayList<>();
+            for (String statement : statements) {
+                String masked = maskLiterals(statement);
+                Matcher defined = STREAM_DEFINITION.matcher(masked);
+                if (defined.find() && defined.group(1).equals(stream)) {
+                    definition = statement.substring(defined.start()).trim();
+                } else if (reference.matcher(masked).find()) {
+                    readers.add(statement);
+                }
+            }
+            if (Objects.isNull(definition) || readers.size() != 1) {
+                continue;
+            }
+
+            String query = readers.get(0);
+            Matcher matcher = QUERY.matcher(query);
+            Matcher source = java.util.regex.Pattern.compile("(?is)\\s*(?:@info\\([^)]*\\)\\s*)?from\\s+"
+                    + java.util.regex.Pattern.quote(stream) + "\\s*([\\[#].*)").matcher(maskLiterals(query));
+            if (!matcher.matches() || !source.matches() || !isSingleSource(source.group(1))
+                    || !matcher.group(1).matches("(?is).*\\binsert\\s+into")) {
+                continue;
+            }
+            String output = matcher.group(2);
+            int writers = 0;
+            Matcher usage = STREAM_USAGE.matcher(maskLiterals(plan));
+            while (usage.find()) {
+                writers += usage.group(1).equals(output) ? 1 : 0;
+            }
+            if (writers != 1) {
+                continue;
+            }
+
+            String canonical = renameStream(definition, stream, "?") + ";" + renameStream(matcher.group(1).trim(),
+                    stream, "?");
+            prefixes.add(new PrefixQuery(stream, output, definition, query, canonical));
+        }
+        return prefixes;
+    }
+
+    /**
+     * Checks whether the source of a query (following its input stream) reads no other stream.
+     * 
+     * @param source
+     *            the query following its input stream, with blank string literals.
+     * @return true if the query reads a single stream, false otherwise.
+     */
+    private static boolean isSingleSource(String source) {
+        StringBuilder outer = new StringBuilder();
+        int depth = 0;
+        for (char c : source.toCharArray()) {
+            if (c == '[' || c == '(') {
+                depth++;
+            } else if (c == ']' || c == ')') {
+                depth--;
+            } else if (depth == 0) {
+                outer.append(c);
+            }
+        }
+        String from = outer.toString().split("(?i)\\b(?:select|insert)\\b", 2)[0];
+        return !java.util.regex.Pattern.compile("(?i),|->|=|\\b(?:join|unidirectional|every)\\b").matcher(from)
+                .find();
+    }
+
+    /**
+     * Removes a prefix query from a Siddhi execution plan. The definition of its sensor stream is replaced by a
+     * definition of its output stream, which receives the events of the shared prefix instead.
+     * 
+     * @param plan
+     *            the Siddhi execution plan.
+     * @param prefix
+     *            the {@link PrefixQuery} of the plan.
+     * @param attributes
+     *            the attributes of the output stream (e.g. {@code "a int, b string"}).
+     * @return the execution plan without the prefix query.
+     */
+    static String withPrefix(String plan, PrefixQuery prefix, String attributes) {
+        List<String> statements = statementsOf(plan);
+        statements.remove(prefix.query);
+        for (int i = 0; i < statements.size(); i++) {
+            Matcher definition = STREAM_DEFINITION.matcher(maskLiterals(statements.get(i)));
+            if (definition.find() && definition.group(1).equals(prefix.stream)) {
+                // keep the plan annotations preceding the definition
+                statements.set(i, statements.get(i).substring(0, definition.start()) + "define stream "
+                        + prefix.output + " (" + attributes + ")");
+            }
+        }
+        return String.join(";", statements);
+    }
+
+    /**
+     * Derives pre-filters for the input streams of a Siddhi execution plan, so events can be dropped before they
+     * are sent to the runtime. A stream is pre-filtered if it is read by a single query which filters it before
+     * any other processing (e.g. {@code from s[a > 5 and b <= 2] ...}) and is not part of a pattern or sequence.
+     * Only comparisons of attributes with numeric constants are taken from the filter. Other parts of a
+     * conjunction are ignored and disjunctions are not pre-filtered at all, so a pre-filter never drops an event
+     * the query would accept.
+     * 
+     * @param plan
+     *            the Siddhi execution plan.
+     * @return the input streams mapped to the intervals their attributes have to be in.
+     */
+    static Map<String, Map<String, Interval>> prefiltersOf(String plan) {
+        List<String> statements = statementsOf(plan);
+        Map<String, Map<String, Interval>> prefilters = new HashMap<>();
+        Matcher definition = STREAM_DEFINITION.matcher(plan);
+        while (definition.find()) {
+            String stream = definition.group(1);
+            java.util.regex.Pattern reference =
+                    java.util.regex.Pattern.compile("\\b" + java.util.regex.Pattern.quote(stream) + "\\b");
+            List<String> readers = statements.stream()
+                    .filter(statement -> QUERY.matcher(statement).matches() && reference.matcher(statement).find())
+                    .collect(Collectors.toList());
+            if (readers.size() != 1) {
+                continue;
+            }
+
+            Matcher filtered = java.util.regex.Pattern.compile("(?is)\\s*(?:@info\\([^)]*\\)\\s*)?from\\s+"
+                    + java.util.regex.Pattern.quote(stream) + "\\s*\\[(.*)").matcher(readers.get(0));
+            if (!filtered.matches()) {
+                continue;
+            }
+            String rest = filtered.group(1);
+            int end = closingBracket(rest);
+            String source = end < 0 ? "" : rest.substring(end + 1).split("(?i)\\b(?:select|insert)\\b", 2)[0];
+            if (end < 0 || source.contains(",") || source.contains("->")) {
+                // events dropped by the filter still affect patterns and sequences
+                continue;
+            }
+
+            Map<String, Interval> intervals = new HashMap<>();
+            for (String conjunct : conjunctsOf(rest.substring(0, end))) {
+                Matcher comparison = ATTRIBUTE_COMPARISON.matcher(conjunct);
+                Matcher reversed = CONSTANT_COMPARISON.matcher(conjunct);
+                if (comparison.matches()) {
+                    intervals.merge(comparison.group(1), intervalOf(comparison.group(2),
+                            Double.parseDouble(comparison.group(3))), Interval::intersect);
+                } else if (reversed.matches()) {
+                    intervals.merge(reversed.group(3), intervalOf(mirror(reversed.group(2)),
+                            Double.parseDouble(reversed.group(1))), Interval::intersect);
+                }
+            }
+            if (!intervals.isEmpty()) {
+                prefilters.put(stream, intervals);
+            }
+        }
+        return prefilters;
+    }
 
     /**
-     * Constructs a new {@link SiddhiEngine}.
+     * Returns the position of the bracket closing a filter (outside of string literals and nested brackets).
      * 
-     * @param instance
-     *            the {@link ServerInstance} the engine belongs to.
+     * @param text
+     *            the text following the opening bracket.
+     * @return the position of the closing bracket, -1 if there is none.
      */
-    public SiddhiEngine(ServerInstance instance) {
-        this.instance = Objects.requireNonNull(instance);
-        this.manager = new SiddhiManager();
-        this.compiler = new TreeCompiler();
-
-        this.deploymentInstances = new ConcurrentHashMap<>();
-        
-        manager.setExtension("vispar:and", LogicalAndFunction.class);
-        manager.setExtension("vispar:timeLength", TimeLengthWindow.class);
-        manager.setExtension("vispar:stringcompare", StringComparator.class);
-        manager.setExtension("vispar:stringsum", StringConcatenator.class);
-        manager.setExtension("vispar:stringmax", StringMaximum.class);
-        manager.setExtension("vispar:stringmin", StringMinimum.class);
-        manager.setExtension("vispar:stringavg", StringAverage.class);
+    private static int closingBracket(String text) {
+        int depth = 0;
+        char quote = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (quote != 0) {
+                quote = c == quote ? 0 : quote;
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (c == '[') {
+                depth++;
+            } else if (c == ']' && depth-- == 0) {
+                return i;
+            }
+        }
+        return -1;
     }
 
-    @Override
-    public void start() {
-        instance.getLogger().log(instance.getLocalizer().get(LocalizedString.SIDDHI_ENGINE_STARTED));
+    /**
+     * Splits a condition into the operands of its top-level conjunctions (nested conjunctions in parentheses are
+     * split as well). A condition containing a top-level disjunction or negation has no operands that must hold.
+     * 
+     * @param condition
+     *            the condition.
+     * @return the operands (trimmed, without enclosing parentheses).
+     */
+    private static List<String> conjunctsOf(String condition) {
+        String text = unwrap(condition.trim());
+        List<String> operands = new ArrayList<>();
+        int depth = 0;
+        char quote = 0;
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (quote != 0) {
+                quote = c == quote ? 0 : quote;
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (depth == 0 && (isKeyword(text, i, "or") || isKeyword(text, i, "not"))) {
+                return Collections.emptyList();
+            } else if (depth == 0 && isKeyword(text, i, "and")) {
+                operands.add(text.substring(start, i));
+                start = i + "and".length();
+            }
+        }
+        operands.add(text.substring(start));
+
+        List<String> conjuncts = new ArrayList<>();
+        for (String operand : operands) {
+            String unwrapped = unwrap(operand.trim());
+            if (unwrapped.equals(text)) {
+                conjuncts.add(unwrapped);
+            } else {
+                conjuncts.addAll(conjunctsOf(unwrapped));
+            }
+        }
+        return conjuncts;
     }
 
-    @Override
-    public void stop() {
-
-        // undeploy all patterns
-        instance.getPatternCtrl().getAll().forEach(this::undeploy);
+    /**
+     * Removes parentheses enclosing a whole expression.
+     * 
+     * @param expression
+     *            the expression (trimmed).
+     * @return the expression without enclosing parentheses (trimmed).
+     */
+    private static String unwrap(String expression) {
+        String text = expression;
+        while (text.startsWith("(")) {
+            int depth = 0;
+            int close = -1;
+            for (int i = 0; i < text.length() && close < 0; i++) {
+                depth += text.charAt(i) == '(' ? 1 : text.charAt(i) == ')' ? -1 : 0;
+                close = depth == 0 ? i : -1;
+            }
+            if (close != text.length() - 1) {
+                break;
+            }
+            text = text.substring(1, close).trim();
+        }
+        return text;
+    }
 
-        instance.getLogger().log(instance.getLocalizer().get(LocalizedString.SIDDHI_ENGINE_STOPPED));
+    /**
+     * Returns whether a keyword starts at a position of a text (as a whole word, ignoring case).
+     * 
+     * @param text
+     *            the text.
+     * @param position
+     *            the position.
+     * @param keyword
+     *            the keyword.
+     * @return true if the keyword starts at the position, false otherwise.
+     */
+    private static boolean isKeyword(String text, int position, String keyword) {
+        int end = position + keyword.length();
+        return text.regionMatches(true, position, keyword, 0, keyword.length())
+                && (position == 0 || !Character.isJavaIdentifierPart(text.charAt(position - 1)))
+                && (end == text.length() || !Character.isJavaIdentifierPart(text.charAt(end)));
     }
 
-    @Override
-    public void deploy(Pattern pattern) {
-        Objects.requireNonNull(pattern);
+    /**
+     * Returns the interval of the values satisfying a comparison with a constant.
+     * 
+     * @param operator
+     *            the comparison operator (value on the left-hand side).
+     * @param constant
+     *            the constant.
+     * @return the {@link Interval}.
+     */
+    private static Interval intervalOf(String operator, double constant) {
+        switch (operator) {
+        case "<":
+            return new Interval(Double.NEGATIVE_INFINITY, true, constant, false);
+        case "<=":
+            return new Interval(Double.NEGATIVE_INFINITY, true, constant, true);
+        case ">":
+            return new Interval(constant, false, Double.POSITIVE_INFINITY, true);
+        case ">=":
+            return new Interval(constant, true, Double.POSITIVE_INFINITY, true);
+        default:
+            return new Interval(constant, true, constant, true);
+        }
+    }
 
-        assert Objects.nonNull(instance.getPatternCtrl().getById(
-                pattern.getId())) : "tried to deploy a pattern that could not be found in the pattern controller";
+    /**
+     * Mirrors a comparison operator, i.e. swaps its sides.
+     * 
+     * @param operator
+     *            the comparison operator.
+     * @return the mirrored operator.
+     */
+    private static String mirror(String operator) {
+        return operator.replace('<', '#').replace('>', '<').replace('#', '>');
+    }
 
-        if (pattern.isDeployed()) {
-            assert deploymentInstances
-                    .containsKey(pattern.getId()) : "Pattern is deployed, but no DeploymentInstance is present.";
-            // do nothing if pattern is already deployed
-            return;
+    /**
+     * Renames a stream in Siddhi code. Only whole identifiers outside of string literals are replaced, so messages
+     * or other constants mentioning the stream are kept as they are.
+     * 
+     * @param code
+     *            the Siddhi code.
+     * @param stream
+     *            the name of the stream.
+     * @param replacement
+     *            the new name of the stream.
+     * @return the code using the new name.
+     */
+    static String renameStream(String code, String stream, String replacement) {
+        StringBuilder renamed = new StringBuilder(code.length());
+        char quote = 0;
+        int i = 0;
+        while (i < code.length()) {
+            char c = code.charAt(i);
+            if (quote != 0) {
+                quote = c == quote ? 0 : quote;
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (Character.isJavaIdentifierStart(c)) {
+                int end = i + 1;
+                while (end < code.length() && Character.isJavaIdentifierPart(code.charAt(end))) {
+                    end++;
+                }
+                String identifier = code.substring(i, end);
+                renamed.append(identifier.equals(stream) ? replacement : identifier);
+                i = end;
+                continue;
+            }
+            renamed.append(c);
+            i++;
         }
+        return renamed.toString();
+    }
 
-        // compile the pattern
-        SiddhiCode code = null;
-        try {
-            code = compiler.compile(pattern);
-        } catch (CompileException e) {
-            instance.getLogger().logError("Siddhi compiler error: " + e.toString());
-            throw new IllegalArgumentException(e.toString());
+    /**
+     * Blanks out the contents of the string literals in Siddhi code, so patterns matched on the code do not match
+     * inside of literals. Positions in the code are kept.
+     * 
+     * @param code
+     *            the Siddhi code.
+     * @return the code with blank literals.
+     */
+    static String maskLiterals(String code) {
+        char[] masked = code.toCharArray();
+        char quote = 0;
+        for (int i = 0; i < masked.length; i++) {
+            char c = masked[i];
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                } else {
+                    masked[i] = ' ';
+                }
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            }
         }
-
-        // init and start runtime
-        ExecutionPlanRuntime runtime = manager.createExecutionPlanRuntime(code.getAsString());
-        deploymentInstances.put(pattern.getId(), new DeploymentInstance(pattern, runtime, this));
-        runtime.start();
+        return new String(masked);
     }
 
-    @Override
-    public void undeploy(Pattern pattern) {
-        Objects.requireNonNull(pattern);
+    /**
+     * Removes the definition of a stream from Siddhi code.
+     * 
+     * @param code
+     *            the Siddhi code.
+     * @param stream
+     *            the name of the stream.
+     * @return the code without the definition.
+     */
+    private static String withoutDefinition(String code, String stream) {
+        List<String> statements = statementsOf(code);
+        statements.removeIf(statement -> {
+            Matcher definition = STREAM_DEFINITION.matcher(maskLiterals(statement).trim());
+            return definition.lookingAt() && definition.group(1).equals(stream);
+        });
+        return String.join(";", statements);
+    }
 
-        if (!pattern.isDeployed()) {
-            assert !deploymentInstances
-                    .containsKey(pattern.getId()) : "Pattern is not deployed, but Runtime is present.";
-            // do nothing if pattern is already undeployed
-            return;
+    /**
+     * Splits a Siddhi execution plan into its statements (separated by semicolons outside of string literals).
+     * 
+     * @param plan
+     *            the Siddhi execution plan.
+     * @return the statements (without semicolons).
+     */
+    static List<String> statementsOf(String plan) {
+        List<String> statements = new ArrayList<>();
+        char quote = 0;
+        int start = 0;
+        for (int i = 0; i < plan.length(); i++) {
+            char c = plan.charAt(i);
+            if (quote != 0) {
+                quote = c == quote ? 0 : quote;
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (c == ';') {
+                statements.add(plan.substring(start, i));
+                start = i + 1;
+            }
         }
-        ExecutionPlanRuntime runtime =
-                manager.getExecutionPlanRuntime(deploymentInstances.get(pattern.getId()).runtimeId);
-        assert !Objects.isNull(runtime) : "couldn't find a runtime for a deployed Pattern";
-
-        // by shutting down the runtime, pattern recognition is stopped
-        runtime.shutdown();
-        DeploymentInstance removed = deploymentInstances.remove(pattern.getId());
-
-        assert Objects.nonNull(removed) : "tried to remove deployment instance, but none was present";
-        assert removed.patternId.equals(
-                pattern.getId()) : "inconsistent mapping found: pattern ID was mapped to wrong DeploymentInstance";
+        statements.add(plan.substring(start));
+        return statements;
     }
 
-    @Override
-    public void sendEvent(Event event) {
-        instance.getLogger()
-                .log(String.format(instance.getLocalizer().get(LocalizedString.RECEIVED_EVENT), event.toString()));
+    /**
+     * Makes the input streams of a Siddhi execution plan asynchronous. Events sent to an asynchronous stream are
+     * buffered in a ring buffer (disruptor) and processed by a thread of the runtime instead of the sending
+     * thread.
+     * 
+     * @param plan
+     *            the Siddhi execution plan.
+     * @param bufferSize
+     *            the number of events buffered by each stream (rounded up to the next power of two, as required by
+     *            the ring buffer).
+     * @return the execution plan with asynchronous input streams.
+     */
+    static String makeAsync(String plan, int bufferSize) {
+        int size = Integer.highestOneBit(bufferSize);
+        if (size < bufferSize) {
+            size <<= 1;
+        }
 
-        for (DeploymentInstance currentInstance : deploymentInstances.values()) {
-            Collection<InputHandler> handlers = currentInstance.sensorToHandler.get(event.getSensor().getName());
+        // definitions are searched in the masked plan, so string literals looking like definitions are kept
+        StringBuilder async = new StringBuilder("@plan:async(bufferSize = '" + size + "')\n");
+        Matcher definition = STREAM_DEFINITION.matcher(maskLiterals(plan));
+        int copied = 0;
+        while (definition.find()) {
+            async.append(plan, copied, definition.start()).append("@config(async = 'true') ");
+            copied = definition.start();
+        }
+        return async.append(plan, copied, plan.length()).toString();
+    }
 
-            if (Objects.nonNull(handlers)) {
-                // handlers for the given event were found
+    /**
+     * Resolves the slots of the attributes of a sensor, i.e. where to find their values in an {@link Event}.
+     * 
+     * @param sensorName
+     *            the name of the sensor.
+     * @param attributeOrder
+     *            the attributes in the order expected by an input handler.
+     * @return the slot of each attribute.
+     * @throws IllegalArgumentException
+     *             if the sensor is not registered or misses one of the attributes.
+     */
+    private int[] resolveSlots(String sensorName, Attribute[] attributeOrder) {
+        Sensor sensor = instance.getSensorCtrl().getByName(sensorName);
+        if (Objects.isNull(sensor)) {
+            throw new IllegalArgumentException("Sensor '" + sensorName + "' is not registered");
+        }
 
-                // this array represents the order of attributes expected by the handler
-                Attribute[] attributeOrder = currentInstance.sensorToAttributeOrder.get(event.getSensor().getName());
+        int[] slots = new int[attributeOrder.length];
+        for (int i = 0; i < attributeOrder.length; i++) {
+            slots[i] = sensor.getSlot(attributeOrder[i].getName());
+            if (slots[i] < 0) {
+                throw new IllegalArgumentException(
+                        "Sensor '" + sensorName + "' has no attribute '" + attributeOrder[i].getName() + "'");
+            }
+        }
+        return slots;
+    }
 
-                // maps the attributes to the values of the current event
-                Map<String, String> dataMap = new HashMap<>();
+    /**
+     * Rebuilds the sensor routing table and the wiring between pattern outputs and pattern inputs from the
+     * current {@link DeploymentInstance}s. Handlers expecting the same attribute order are grouped into one
+     * {@link SensorRoute}, so the event values are only reordered once per group.
+     */
+    private synchronized void rebuildRoutes() {
+        Map<String, List<SensorRoute>> routes = new HashMap<>();
 
-                for (Entry<Attribute, String> entry : event.getData().entrySet()) {
-                    dataMap.put(entry.getKey().getName(), entry.getValue());
-                }
+        for (DeploymentInstance deployment : deploymentInstances.values()) {
+            for (Entry<String, Collection<InputHandler>> entry : deployment.sensorToHandler.entrySet()) {
+                addRoute(routes, entry.getKey(), deployment.sensorToSlots.get(entry.getKey()), entry.getValue(),
+                        deployment.handlerFilters);
+            }
+        }
+        for (SharedPrefix prefix : sharedPrefixes.values()) {
+            addRoute(routes, prefix.sensor, prefix.slots, Collections.singletonList(prefix.handler),
+                    Collections.singletonMap(prefix.handler, prefix.filter));
+        }
 
-                assert attributeOrder.length == dataMap.size() && dataMap.size() == event.getSensor().getAttributes()
-                        .size() : "unexpected inconsistency with sensor attributes";
-
-                Object[] data = new Object[attributeOrder.length];
-
-                // extracting the data for each attribute in the correct order
-                for (int i = 0; i < attributeOrder.length; ++i) {
-                    String next = dataMap.get(attributeOrder[i].getName());
-
-                    Object nextObject = null;
-                    switch (attributeOrder[i].getType()) {
-                    case DOUBLE:
-                        nextObject = Double.parseDouble(next);
-                        break;
-                    case INTEGER:
-                        nextObject = Integer.parseInt(next);
-                        break;
-                    case STRING:
-                        nextObject = next;
-                        break;
-                    default:
-                        throw new IllegalStateException("Attribute has unknown type");
+        Map<String, SensorRoute[]> table = new HashMap<>();
+        routes.forEach((sensor, list) -> table.put(sensor, list.toArray(new SensorRoute[0])));
+        sensorRoutes = Collections.unmodifiableMap(table);
+
+        // connect each pattern output to the inputs of all deployed patterns consuming it (except for other
+        // members of a fused chain, which are linked inside their runtime)
+        for (DeploymentInstance deployment : deploymentInstances.values()) {
+            for (OutputWire wire : deployment.outputWires) {
+                List<InputHandler> targets = new ArrayList<>();
+                for (DeploymentInstance consumer : deploymentInstances.values()) {
+                    if (consumer == deployment || !consumer.runtimeId.equals(deployment.runtimeId)) {
+                        targets.addAll(consumer.patternInputToHandler.getOrDefault(wire.key,
+                                Collections.emptyList()));
                     }
-
-                    data[i] = nextObject;
                 }
+                wire.targets = targets.toArray(new InputHandler[0]);
+            }
+        }
 
-                handlers.forEach(handler -> {
-                    try {
-                        handler.send(event.getTimestamp(), data);
-                    } catch (InterruptedException e) {
-                        this.instance.getLogger().logError(e.toString());
-                        Thread.currentThread().interrupt();
-                    }
-                });
+        // connect each shared prefix to the patterns using it
+        for (SharedPrefix prefix : sharedPrefixes.values()) {
+            List<InputHandler> targets = new ArrayList<>();
+            for (DeploymentInstance consumer : deploymentInstances.values()) {
+                targets.addAll(consumer.prefixToHandler.getOrDefault(prefix.wire.key, Collections.emptyList()));
             }
+            prefix.wire.targets = targets.toArray(new InputHandler[0]);
         }
     }
-    
+
     /**
-     * Sends events issued by the given {@link PatternOutputNode} in the given
-     * {@link Pattern} to all DeploymentInstances that contain a corresponding
-     * {@link PatternInputNode}.
+     * Adds input handlers of a sensor to the routes of the sensor. Handlers are added to the route with the same
+     * attribute order, if there is one.
      * 
-     * @param sourcePattern
-     *            the {@link Pattern} that caused the events
-     * @param sourceNode
-     *            the {@link PatternOutputNode} that issued the events
-     * @param events
-     *            the events to be sent to the input nodes
+     * @param routes
+     *            the routes of all sensors.
+     * @param sensor
+     *            the name of the sensor.
+     * @param slots
+     *            the sensor slot of each attribute in the order expected by the handlers.
+     * @param handlers
+     *            the handlers.
+     * @param filters
+     *            the pre-filters (intervals by sensor slot) of the handlers.
      */
-    protected void sendEvents(Pattern sourcePattern, PatternOutputNode sourceNode,
-            org.wso2.siddhi.core.event.Event[] events) {
-        instance.getLogger()
-                .log(String.format(instance.getLocalizer().get(LocalizedString.RECEIVED_EVENT), "pattern event"));
-
-        for (DeploymentInstance currentInstance : deploymentInstances.values()) {
-            // to calculate the correct key, by convention we have to use the node id if the name is null
-            Collection<InputHandler> handlers =
-                    currentInstance.patternInputToHandler.get(
-                            sourcePattern.getId() + Optional.fromNullable(sourceNode.getName()).or(sourceNode.getId()));
-
-            if (Objects.nonNull(handlers)) {
-                // handlers for the events were found
-                
-                // send events to all handlers
-                handlers.forEach(handler -> {
-                    try {
-                        handler.send(events);
-                    } catch (InterruptedException e) {
-                        this.instance.getLogger().logError(e.toString());
-                        Thread.currentThread().interrupt();
-                    }
-                });
+    private static void addRoute(Map<String, List<SensorRoute>> routes, String sensor, int[] slots,
+            Collection<InputHandler> handlers, Map<InputHandler, Map<Integer, Interval>> filters) {
+        List<SensorRoute> sensorRouteList = routes.computeIfAbsent(sensor, k -> new ArrayList<>());
+
+        // look for a route with the same attribute order
+        SensorRoute match = null;
+        for (SensorRoute route : sensorRouteList) {
+            if (Arrays.equals(route.slots, slots)) {
+                match = route;
+                break;
+            }
+        }
+
+        if (Objects.isNull(match)) {
+            sensorRouteList.add(new SensorRoute(slots, handlers, filters));
+        } else {
+            sensorRouteList.set(sensorRouteList.indexOf(match), match.with(handlers, filters));
+        }
+    }
+
+    /**
+     * Maps the pre-filter of a sensor stream to sensor slots.
+     * 
+     * @param attributeOrder
+     *            the attributes of the stream.
+     * @param slots
+     *            the sensor slot of each attribute.
+     * @param filter
+     *            the intervals by attribute name.
+     * @return the intervals by sensor slot.
+     */
+    private static Map<Integer, Interval> slotFilterOf(Attribute[] attributeOrder, int[] slots,
+            Map<String, Interval> filter) {
+        Map<Integer, Interval> slotFilter = new HashMap<>();
+        for (int i = 0; i < attributeOrder.length; i++) {
+            if (filter.containsKey(attributeOrder[i].getName())) {
+                slotFilter.put(slots[i], filter.get(attributeOrder[i].getName()));
             }
         }
+        return slotFilter;
+    }
+
+    /**
+     * Returns the sensor routing table. Used for testing purposes.
+     * 
+     * @return a mapping of sensor names to the {@link InputHandler}s receiving their events.
+     */
+    protected Map<String, InputHandler[]> getSensorRoutes() {
+        Map<String, InputHandler[]> output = new HashMap<>();
+        sensorRoutes.forEach((sensor, routes) -> output.put(sensor, Arrays.stream(routes)
+                .flatMap(route -> Arrays.stream(route.handlers)).toArray(InputHandler[]::new)));
+        return output;
+    }
+
+    /**
+     * Returns the wiring between pattern outputs and pattern inputs. Used for testing purposes.
+     * 
+     * @return a mapping of pattern outputs (source pattern id + output name) to the {@link InputHandler}s
+     *         receiving their events.
+     */
+    protected Map<String, InputHandler[]> getPatternRoutes() {
+        Map<String, InputHandler[]> output = new HashMap<>();
+        for (DeploymentInstance deployment : deploymentInstances.values()) {
+            deployment.outputWires.forEach(wire -> output.put(wire.key, wire.targets));
+        }
+        return output;
+    }
+
+    /**
+     * Returns the shared prefixes. Used for testing purposes.
+     * 
+     * @return the keys (sensor, buffer size and canonical form) of the shared prefixes.
+     */
+    protected Collection<String> getSharedPrefixes() {
+        return Collections.unmodifiableCollection(new ArrayList<>(sharedPrefixes.keySet()));
     }
 
     /**
@@ -257,6 +1764,256 @@ public class SiddhiEngine implements IEngine {
         return deploymentInstances.values();
     }
 
+    /**
+     * Entry of the sensor routing table. Holds all {@link InputHandler}s of a sensor that expect its attributes
+     * in the same order, indexed by their pre-filters. Instances are immutable.
+     * 
+     * @author Micha Hanselmann
+     */
+    private static final class SensorRoute {
+
+        private final int[] slots;
+        private final boolean canonical;
+        private final InputHandler[] handlers;
+        private final List<InputHandler> allHandlers;
+        private final Map<InputHandler, Map<Integer, Interval>> filters;
+        private final PredicateIndex<InputHandler> index;
+
+        /**
+         * Constructs a new {@link SensorRoute}.
+         * 
+         * @param slots
+         *            the sensor slot of each attribute in the order expected by the handlers.
+         * @param handlers
+         *            the handlers receiving the events.
+         * @param filters
+         *            the pre-filters (intervals by sensor slot) of the handlers, handlers without pre-filter
+         *            receive all events.
+         */
+        SensorRoute(int[] slots, Collection<InputHandler> handlers,
+                Map<InputHandler, Map<Integer, Interval>> filters) {
+            this.slots = Objects.requireNonNull(slots);
+            // patterns sharing a runtime share the input handler of a sensor stream
+            this.handlers = handlers.stream().distinct().toArray(InputHandler[]::new);
+            this.allHandlers = Collections.unmodifiableList(Arrays.asList(this.handlers));
+
+            this.filters = new LinkedHashMap<>();
+            for (InputHandler handler : this.handlers) {
+                this.filters.put(handler, filters.getOrDefault(handler, Collections.emptyMap()));
+            }
+            this.index = new PredicateIndex<>(this.filters);
+
+            boolean identity = true;
+            for (int i = 0; i < slots.length; i++) {
+                identity &= slots[i] == i;
+            }
+            this.canonical = identity;
+        }
+
+        /**
+         * Returns a copy of this route that additionally contains the given handlers.
+         * 
+         * @param additional
+         *            the handlers to be added.
+         * @param additionalFilters
+         *            the pre-filters of the handlers to be added.
+         * @return the new {@link SensorRoute}.
+         */
+        SensorRoute with(Collection<InputHandler> additional,
+                Map<InputHandler, Map<Integer, Interval>> additionalFilters) {
+            Collection<InputHandler> all = new ArrayList<>(Arrays.asList(handlers));
+            all.addAll(additional);
+            Map<InputHandler, Map<Integer, Interval>> allFilters = new HashMap<>(additionalFilters);
+            allFilters.putAll(filters);
+            return new SensorRoute(slots, all, allFilters);
+        }
+
+        /**
+         * Returns whether some handler of this route has a pre-filter.
+         * 
+         * @return true if events may be dropped for some handlers, false otherwise.
+         */
+        boolean isFiltered() {
+            return !index.isTrivial();
+        }
+
+        /**
+         * Returns the handlers whose pre-filter accepts an event.
+         * 
+         * @param values
+         *            the event values in canonical order.
+         * @return the handlers to receive the event. The list is reused by the next call on the same thread, so it
+         *         has to be consumed before.
+         */
+        List<InputHandler> select(Object[] values) {
+            return index.isTrivial() ? allHandlers : index.match(values);
+        }
+
+        /**
+         * Orders event values as expected by the handlers. If the handlers expect the canonical order, the values
+         * are passed on as they are.
+         * 
+         * @param values
+         *            the event values in canonical order.
+         * @return the values in handler order.
+         */
+        Object[] order(Object[] values) {
+            assert values.length == slots.length : "unexpected inconsistency with sensor attributes";
+
+            if (canonical) {
+                return values;
+            }
+            Object[] data = new Object[slots.length];
+            for (int i = 0; i < slots.length; i++) {
+                data[i] = values[slots[i]];
+            }
+            return data;
+        }
+    }
+
+    /**
+     * Connection of a {@link PatternOutputNode} to the input handlers of all {@link PatternInputNode}s consuming
+     * it. The targets are replaced as a whole on every (un)deployment, so the output callback can read them
+     * without locking.
+     * 
+     * @author Micha Hanselmann
+     */
+    private static final class OutputWire {
+
+        private final String key;
+        private volatile InputHandler[] targets;
+
+        /**
+         * Constructs a new {@link OutputWire} without targets.
+         * 
+         * @param key
+         *            the key of the output (source pattern id + output name).
+         */
+        OutputWire(String key) {
+            this.key = Objects.requireNonNull(key);
+            this.targets = new InputHandler[0];
+        }
+    }
+
+    /**
+     * Prefix query of an execution plan, see {@link SiddhiEngine#prefixQueriesOf(String, Collection)}.
+     * 
+     * @author Micha Hanselmann
+     */
+    static final class PrefixQuery {
+
+        private final String stream;
+        private final String output;
+        private final String definition;
+        private final String query;
+        private final String canonical;
+
+        /**
+         * Constructs a new {@link PrefixQuery}.
+         * 
+         * @param stream
+         *            the sensor stream read by the query.
+         * @param output
+         *            the output stream of the query.
+         * @param definition
+         *            the definition of the sensor stream.
+         * @param query
+         *            the query statement.
+         * @param canonical
+         *            the definition and the query without the names of their streams.
+         */
+        PrefixQuery(String stream, String output, String definition, String query, String canonical) {
+            this.stream = Objects.requireNonNull(stream);
+            this.output = Objects.requireNonNull(output);
+            this.definition = Objects.requireNonNull(definition);
+            this.query = Objects.requireNonNull(query);
+            this.canonical = Objects.requireNonNull(canonical);
+        }
+
+        /**
+         * Returns the canonical form of the query, equal for queries doing the same on the same kind of stream.
+         * 
+         * @return the definition and the query without the names of their streams.
+         */
+        String getCanonical() {
+            return canonical;
+        }
+
+        /**
+         * Returns the output stream of the query.
+         * 
+         * @return the name of the output stream.
+         */
+        String getOutput() {
+            return output;
+        }
+    }
+
+    /**
+     * Stateless prefix query evaluated once in a runtime of its own for all patterns using it. It receives the
+     * events of its sensor through the routing table and sends its output to the patterns over an
+     * {@link OutputWire}.
+     * 
+     * @author Micha Hanselmann
+     */
+    private final class SharedPrefix {
+
+        private final String sensor;
+        private final int[] slots;
+        private final Map<Integer, Interval> filter;
+        private final ExecutionPlanRuntime runtime;
+        private final InputHandler handler;
+        private final OutputWire wire;
+        private final String attributes;
+
+        /**
+         * Constructs a new {@link SharedPrefix} and starts its runtime.
+         * 
+         * @param key
+         *            the key of the prefix (its sensor, buffer size and canonical form).
+         * @param sensor
+         *            the name of the sensor.
+         * @param attributeOrder
+         *            the attributes of the sensor stream.
+         * @param query
+         *            the {@link PrefixQuery}.
+         * @param bufferSize
+         *            the buffer size of the asynchronous input stream ({@link IEngine#SYNCHRONOUS} if synchronous).
+         * @throws RuntimeException
+         *             if Siddhi rejects the query (Siddhi uses various runtime exceptions) or the sensor misses one
+         *             of the attributes.
+         */
+        SharedPrefix(String key, String sensor, Attribute[] attributeOrder, PrefixQuery query, int bufferSize) {
+            this.sensor = Objects.requireNonNull(sensor);
+            this.slots = resolveSlots(sensor, attributeOrder);
+            String plan = query.definition + ";\n" + query.query + ";";
+            this.filter = slotFilterOf(attributeOrder, slots,
+                    prefiltersOf(plan).getOrDefault(query.stream, Collections.emptyMap()));
+            this.wire = new OutputWire(key);
+
+            this.runtime = manager.createExecutionPlanRuntime(bufferSize > SYNCHRONOUS ? makeAsync(plan, bufferSize)
+                    : plan);
+            try {
+                this.handler = runtime.getInputHandler(query.stream);
+                this.attributes = runtime.getStreamDefinitionMap().get(query.output).getAttributeList().stream()
+                        .map(attribute -> attribute.getName() + " "
+                                + attribute.getType().name().toLowerCase(Locale.ROOT))
+                        .collect(Collectors.joining(", "));
+                runtime.addCallback(query.output, new StreamCallback() {
+
+                    @Override
+                    public void receive(org.wso2.siddhi.core.event.Event[] events) {
+                        sendEvents(wire, events);
+                    }
+                });
+            } catch (RuntimeException e) {
+                runtime.shutdown();
+                throw e;
+            }
+            runtime.start();
+        }
+    }
+
     /**
      * The DeploymentInstance encapsulates the id of a deployed {@link Pattern}, the
      * id of the {@link ExecutionPlanRuntime} and the Handlers for the input- and
@@ -268,13 +2025,20 @@ public class SiddhiEngine implements IEngine {
 
         private final String patternId;
         private final String runtimeId;
+        private final int bufferSize;
+        private final String group;
+        private final Map<String, String> streamAliases;
 
         private final Collection<IAction> actions;
 
         private final Map<String, Collection<InputHandler>> sensorToHandler;
         private final Map<String, Attribute[]> sensorToAttributeOrder;
+        private final Map<String, int[]> sensorToSlots;
+        private final Map<InputHandler, Map<Integer, Interval>> handlerFilters;
         
         private final Map<String, Collection<InputHandler>> patternInputToHandler;
+        private final Map<String, Collection<InputHandler>> prefixToHandler;
+        private final Collection<OutputWire> outputWires;
 
         /**
          * Constructs a new instance of {@link DeploymentInstance} for the given
@@ -284,19 +2048,38 @@ public class SiddhiEngine implements IEngine {
          *            the pattern that should be deployed
          * @param runtime
          *            the runtime the pattern should be deployed in
+         * @param bufferSize
+         *            the buffer size the pattern was deployed with ({@link IEngine#SYNCHRONOUS} if synchronous)
+         * @param group
+         *            the group of patterns sharing the runtime ({@code null} if not shared)
+         * @param streamAliases
+         *            the streams of the runtime replacing streams of the pattern (e.g. shared sensor streams)
+         * @param streamFilters
+         *            the pre-filters of the input streams of the runtime (intervals by attribute name)
+         * @param streamPrefixes
+         *            the sensor streams of the pattern replaced by shared prefixes, mapped to their keys
          * @param engine
          *            the {@link SiddhiEngine} this DeploymentInstance belongs to
          */
-        DeploymentInstance(Pattern pattern, ExecutionPlanRuntime runtime, SiddhiEngine engine) {
+        DeploymentInstance(Pattern pattern, ExecutionPlanRuntime runtime, int bufferSize, String group,
+                Map<String, String> streamAliases, Map<String, Map<String, Interval>> streamFilters,
+                Map<String, String> streamPrefixes, SiddhiEngine engine) {
             this.patternId = Objects.requireNonNull(pattern).getId();
             this.runtimeId = Objects.requireNonNull(runtime).getName();
+            this.bufferSize = bufferSize;
+            this.group = group;
+            this.streamAliases = Objects.requireNonNull(streamAliases);
 
             this.actions = new LinkedList<>();
 
             this.sensorToHandler = new HashMap<>();
             this.sensorToAttributeOrder = new HashMap<>();
+            this.sensorToSlots = new HashMap<>();
+            this.handlerFilters = new HashMap<>();
             
             this.patternInputToHandler = new HashMap<>();
+            this.prefixToHandler = new HashMap<>();
+            this.outputWires = new LinkedList<>();
 
             // initialize input handlers using a node visitor
             for (InputNode input : pattern.getInputNodes()) {
@@ -305,16 +2088,31 @@ public class SiddhiEngine implements IEngine {
                     @Override
                     public void visitSensorNode(SensorNode node) {
                         // obtain handler for this sensor and add it to the map
+                        String stream = streamOf(compiler.getStreamName(node));
+                        String prefix = streamPrefixes.get(compiler.getStreamName(node));
+                        if (Objects.nonNull(prefix)) {
+                            // the events of the sensor arrive through a shared prefix
+                            prefixToHandler.computeIfAbsent(prefix, k -> new LinkedList<>())
+                                    .add(runtime.getInputHandler(stream));
+                            return;
+                        }
                         
                         // add new input handler list for the current sensor, if no list for the sensor exists
                         sensorToHandler.putIfAbsent(node.getSensorName(), new LinkedList<>());
 
                         // add the input handler for the current node
-                        sensorToHandler.get(node.getSensorName())
-                                .add(runtime.getInputHandler(compiler.getStreamName(node)));
-
-                        // store attribute order
-                        sensorToAttributeOrder.put(node.getSensorName(), compiler.getAttributesOrdered(node));
+                        InputHandler handler = runtime.getInputHandler(stream);
+                        sensorToHandler.get(node.getSensorName()).add(handler);
+
+                        // store attribute order and the matching sensor slots
+                        Attribute[] attributeOrder = compiler.getAttributesOrdered(node);
+                        int[] slots = resolveSlots(node.getSensorName(), attributeOrder);
+                        sensorToAttributeOrder.put(node.getSensorName(), attributeOrder);
+                        sensorToSlots.put(node.getSensorName(), slots);
+
+                        // store the pre-filter of the stream by sensor slot
+                        handlerFilters.put(handler, slotFilterOf(attributeOrder, slots,
+                                streamFilters.getOrDefault(stream, Collections.emptyMap())));
                     }
                     
                     @Override
@@ -326,7 +2124,7 @@ public class SiddhiEngine implements IEngine {
                         patternInputToHandler.putIfAbsent(node.getSourcePatternId() + node.getPatternOutputName(),
                                 new LinkedList<>());
                         patternInputToHandler.get(node.getSourcePatternId() + node.getPatternOutputName())
-                                .add(runtime.getInputHandler(compiler.getStreamName(node)));
+                                .add(runtime.getInputHandler(streamOf(compiler.getStreamName(node))));
                     }
                 });
             }
@@ -344,10 +2142,10 @@ public class SiddhiEngine implements IEngine {
                                 new EmailAction(node.getRecipientEmail(), node.getSubject(), node.getMessage());
                         actions.add(action);
 
-                        runtime.addCallback(compiler.getStreamName(node), new StreamCallback() {
+                        runtime.addCallback(streamOf(compiler.getStreamName(node)), new StreamCallback() {
                             @Override
                             public void receive(org.wso2.siddhi.core.event.Event[] events) {
-                                logRecognized("email" + action);
+                                logRecognized(() -> "email" + action);
 
                                 action.execute();
                             }
@@ -358,13 +2156,14 @@ public class SiddhiEngine implements IEngine {
                     public void visitSocketActionNode(SocketActionNode node) {
                         // the output node is a socket action node
 
-                        final SocketAction action = new SocketAction(instance.getSockHandler(), node.getMessage());
+                        final SocketAction action = new SocketAction(instance.getSockHandler(), node.getMessage(),
+                                new SocketTopic(pattern.getId(), node.getId(), pattern.getName()));
                         actions.add(action);
 
-                        runtime.addCallback(compiler.getStreamName(node), new StreamCallback() {
+                        runtime.addCallback(streamOf(compiler.getStreamName(node)), new StreamCallback() {
                             @Override
                             public void receive(org.wso2.siddhi.core.event.Event[] events) {
-                                logRecognized("socket" + action);
+                                logRecognized(() -> "socket" + action);
 
                                 action.execute();
                             }
@@ -374,29 +2173,49 @@ public class SiddhiEngine implements IEngine {
                     @Override
                     public void visitPatternOutputNode(PatternOutputNode node) {
                         
-                        runtime.addCallback(compiler.getStreamName(node), new StreamCallback() {
+                        // to calculate the correct key, by convention we have to use the node id if the name is
+                        // null - the wire is connected to the consuming inputs on (un)deployment
+                        final OutputWire wire = new OutputWire(
+                                pattern.getId() + Optional.fromNullable(node.getName()).or(node.getId()));
+                        outputWires.add(wire);
+                        
+                        runtime.addCallback(streamOf(compiler.getStreamName(node)), new StreamCallback() {
                             
                             @Override
                             public void receive(org.wso2.siddhi.core.event.Event[] events) {
-                                logRecognized("Pattern Action");
+                                instance.getLogger().logRepeated("pattern", pattern.getName(), LogLevel.DEBUG,
+                                        System.currentTimeMillis(), () -> String.format(
+                                        instance.getLocalizer().get(LocalizedString.PATTERN_RECOGNIZED),
+                                        pattern.getName(), "Pattern Action"));
                                 
                                 // we received events over the pattern output - we have to feed these events
                                 // into the input of all other runtimes
-                                engine.sendEvents(pattern, node, events);
+                                engine.sendEvents(wire, events);
                             }
                         });
                     }
                     
-                    private void logRecognized(String action) {
-                        instance.getLogger()
-                        .log(String.format(
+                    private void logRecognized(Supplier<String> action) {
+                        instance.getLogger().logRepeated("pattern", pattern.getName(), LogLevel.INFO,
+                                System.currentTimeMillis(), () -> String.format(
                                 instance.getLocalizer().get(LocalizedString.PATTERN_RECOGNIZED),
-                                pattern.getName(), action));
+                                pattern.getName(), action.get()));
                     }
                 });
             }
         }
 
+        /**
+         * Returns the stream of the runtime carrying the events of a stream of the pattern.
+         * 
+         * @param stream
+         *            the name of the stream in the compiled pattern
+         * @return the name of the stream in the runtime
+         */
+        private String streamOf(String stream) {
+            return streamAliases.getOrDefault(stream, stream);
+        }
+
         // ===== GETTERS FOR TESTING PURPOSES =====
 
         /**
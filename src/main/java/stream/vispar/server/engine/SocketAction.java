@@ -5,6 +5,7 @@ import java.util.Map;
 import java.util.Objects;
 
 import stream.vispar.server.core.ISocketHandler;
+import stream.vispar.server.core.SocketTopic;
 
 /**
  * Action implementation that sends a predefined message over a websocket.
@@ -23,9 +24,14 @@ public class SocketAction implements IAction {
      */
     private final String message;
     
+    /**
+     * Topic the message is published to (null if sent to all clients).
+     */
+    private final SocketTopic topic;
+    
     
     /**
-     * Constructs a new {@link SocketAction}.
+     * Constructs a new {@link SocketAction} sending its message to all clients.
      * 
      * @param sockHandler
      *          the {@link ISocketHandler} to be used.
@@ -35,11 +41,32 @@ public class SocketAction implements IAction {
     public SocketAction(ISocketHandler sockHandler, String message) {
         this.sockHandler = Objects.requireNonNull(sockHandler);
         this.message = Objects.requireNonNull(message);
+        this.topic = null;
+    }
+    
+    /**
+     * Constructs a new {@link SocketAction} publishing its message to a topic.
+     * 
+     * @param sockHandler
+     *          the {@link ISocketHandler} to be used.
+     * @param message
+     *          the message to be sent.
+     * @param topic
+     *          the {@link SocketTopic} the message is published to.
+     */
+    public SocketAction(ISocketHandler sockHandler, String message, SocketTopic topic) {
+        this.sockHandler = Objects.requireNonNull(sockHandler);
+        this.message = Objects.requireNonNull(message);
+        this.topic = Objects.requireNonNull(topic);
     }
 
     @Override
     public void execute() {
-        sockHandler.sendMessage(message);
+        if (topic == null) {
+            sockHandler.sendMessage(message);
+        } else {
+            sockHandler.publish(topic, message);
+        }
     }
     
     @Override
@@ -143,7 +143,52 @@ public enum LocalizedString {
     NOSHELL("noshell"),
     
     /** INV_ADDUSER_SYNTAX */
-    INV_ADDUSER_SYNTAX("inv_adduser_syntax");
+    INV_ADDUSER_SYNTAX("inv_adduser_syntax"),
+    
+    /** BATCH_ITEMS_REJECTED */
+    BATCH_ITEMS_REJECTED("batch_items_rejected"),
+    
+    /** INGEST_FAILED */
+    INGEST_FAILED("ingest_failed"),
+    
+    /** INGEST_STATS */
+    INGEST_STATS("ingest_stats"),
+    
+    /** INV_STATS_SYNTAX */
+    INV_STATS_SYNTAX("inv_stats_syntax"),
+    
+    /** FUSION_FAILED */
+    FUSION_FAILED("fusion_failed"),
+    
+    /** SHARING_FAILED */
+    SHARING_FAILED("sharing_failed"),
+    
+    /** FILTER_PATTERN_DEPLOYED */
+    FILTER_PATTERN_DEPLOYED("filter_pattern_deployed"),
+    
+    /** SOCKET_STATS */
+    SOCKET_STATS("socket_stats"),
+    
+    /** INVALID_SOCKET_COMMAND */
+    INVALID_SOCKET_COMMAND("invalid_socket_command"),
+    
+    /** SOCKET_RESYNC */
+    SOCKET_RESYNC("socket_resync"),
+    
+    /** SERVER_BUSY */
+    SERVER_BUSY("server_busy"),
+    
+    /** LOG_MESSAGES_DROPPED */
+    LOG_MESSAGES_DROPPED("log_messages_dropped"),
+    
+    /** LOG_SUMMARY */
+    LOG_SUMMARY("log_summary"),
+    
+    /** BATCH_TOO_LARGE */
+    BATCH_TOO_LARGE("batch_too_large"),
+    
+    /** SIMULATED_EVENT_REJECTED */
+    SIMULATED_EVENT_REJECTED("simulated_event_rejected");
     
     
     /**
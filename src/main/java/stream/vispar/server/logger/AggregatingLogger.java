@@ -0,0 +1,252 @@
+package stream.vispar.server.logger;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import stream.vispar.server.localization.LocalizedString;
+import stream.vispar.server.localization.Localizer;
+
+/**
+ * Logger implementation that summarizes repeated messages (see {@link ILogger#logRepeated}) before forwarding them
+ * to another logger. Instead of one message per event, one summary per source is logged periodically, containing
+ * the number of messages, the timestamps of the first and the last event and the first message as sample. Only the
+ * sample is created, all other messages of the interval are just counted.
+ * 
+ * <p>
+ * Summaries are logged as normal messages, so repeated debug messages are summarized even if debug messages are
+ * not logged. All other messages (especially errors) are forwarded as they are.
+ * 
+ * @author Micha Hanselmann
+ */
+public class AggregatingLogger implements ILogger {
+
+    /**
+     * Logger the messages and summaries are forwarded to.
+     */
+    private final ILogger logger;
+
+    /**
+     * Summaries of the current interval by category and source.
+     */
+    private final Map<String, Map<String, Summary>> summaries;
+
+    /**
+     * Logs the summaries periodically.
+     */
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Timestamp formatter. Only used by the scheduler (or after it is stopped).
+     */
+    private final SimpleDateFormat dateFormat;
+
+    /**
+     * Format of a summary.
+     */
+    private final String summaryFormat;
+
+
+    /**
+     * Constructs a new {@link AggregatingLogger} instance.
+     * 
+     * @param logger
+     *          the {@link ILogger} the messages and summaries are forwarded to.
+     * @param interval
+     *          the interval between two summaries of a source (in milliseconds).
+     */
+    public AggregatingLogger(ILogger logger, long interval) {
+        this(logger, interval, new Localizer(Locale.US));
+    }
+
+    /**
+     * Constructs a new {@link AggregatingLogger} instance.
+     * 
+     * @param logger
+     *          the {@link ILogger} the messages and summaries are forwarded to.
+     * @param interval
+     *          the interval between two summaries of a source (in milliseconds).
+     * @param localizer
+     *          the {@link Localizer} of the summaries.
+     */
+    public AggregatingLogger(ILogger logger, long interval, Localizer localizer) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("Interval has to be positive.");
+        }
+        this.logger = Objects.requireNonNull(logger);
+        this.summaries = new ConcurrentHashMap<>();
+        this.dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+        this.summaryFormat = localizer.get(LocalizedString.LOG_SUMMARY);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "vispar-log-aggregator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.scheduleAtFixedRate(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void log(String message) {
+        logger.log(message);
+    }
+
+    @Override
+    public void logError(String error) {
+        logger.logError(error);
+    }
+
+    @Override
+    public boolean isEnabled(LogLevel level) {
+        return logger.isEnabled(level);
+    }
+
+    @Override
+    public void debug(Supplier<String> message) {
+        logger.debug(message);
+    }
+
+    @Override
+    public void info(Supplier<String> message) {
+        logger.info(message);
+    }
+
+    @Override
+    public void logRepeated(String category, String source, LogLevel level, long timestamp,
+            Supplier<String> message) {
+        Objects.requireNonNull(category);
+        Objects.requireNonNull(source);
+        Objects.requireNonNull(message);
+        if (level == LogLevel.ERROR) {
+            logger.logError(message.get());
+            return;
+        }
+        if (!logger.isEnabled(LogLevel.INFO)) {
+            return;
+        }
+
+        // a summary is retired once it stayed empty for an interval - retry with a new one then
+        Map<String, Summary> sources = summaries.get(category);
+        if (sources == null) {
+            sources = summaries.computeIfAbsent(category, key -> new ConcurrentHashMap<>());
+        }
+        Summary summary = sources.get(source);
+        while (summary == null || !summary.add(timestamp, message)) {
+            if (summary != null) {
+                sources.remove(source, summary);
+            }
+            summary = sources.computeIfAbsent(source, key -> new Summary());
+        }
+    }
+
+    /**
+     * Stops the periodic summaries and logs the summaries of the current interval.
+     */
+    public void close() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    /**
+     * Logs the summaries of the current interval and starts a new interval.
+     */
+    private synchronized void flush() {
+        summaries.forEach((category, sources) -> sources.forEach((source, summary) -> {
+            String text = summary.reset(category + " " + source, summaryFormat, dateFormat);
+            if (text == null) {
+                sources.remove(source, summary);
+            } else {
+                logger.log(text);
+            }
+        }));
+    }
+
+    /**
+     * Summary of the repeated messages of a source in the current interval.
+     */
+    private static final class Summary {
+
+        /**
+         * Number of messages.
+         */
+        private long count;
+
+        /**
+         * Timestamp of the first event.
+         */
+        private long first;
+
+        /**
+         * Timestamp of the last event.
+         */
+        private long last;
+
+        /**
+         * First message.
+         */
+        private String sample;
+
+        /**
+         * Determines whether the summary is no longer used.
+         */
+        private boolean retired;
+
+        /**
+         * Adds a message.
+         * 
+         * @param timestamp
+         *          the timestamp of the event.
+         * @param message
+         *          supplies the message (only called for the first message).
+         * @return
+         *          true if the message was added, false if the summary is retired.
+         */
+        synchronized boolean add(long timestamp, Supplier<String> message) {
+            if (retired) {
+                return false;
+            }
+            if (count == 0) {
+                first = timestamp;
+                sample = message.get();
+            }
+            last = timestamp;
+            count++;
+            return true;
+        }
+
+        /**
+         * Creates the text of the summary and starts a new interval. Retires the summary if it is empty.
+         * 
+         * @param source
+         *          the source of the messages.
+         * @param summaryFormat
+         *          the format of the summary (source, count, first and last timestamp, sample).
+         * @param dateFormat
+         *          the timestamp formatter.
+         * @return
+         *          the text of the summary or null if the summary is empty.
+         */
+        synchronized String reset(String source, String summaryFormat, SimpleDateFormat dateFormat) {
+            if (count == 0) {
+                retired = true;
+                return null;
+            }
+            String text = (count == 1) ? sample : String.format(summaryFormat, source, count,
+                    dateFormat.format(new Date(first)), dateFormat.format(new Date(last)), sample);
+            count = 0;
+            sample = null;
+            return text;
+        }
+    }
+}
@@ -0,0 +1,507 @@
+package stream.vispar.server.logger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.GZIPOutputStream;
+
+import stream.vispar.server.localization.LocalizedString;
+import stream.vispar.server.localization.Localizer;
+
+/**
+ * Appends lines to a file without blocking the caller on the disk. Lines are put into a bounded ring buffer, which
+ * is drained by a background writer. The writer takes all pending lines at once and writes them with a single
+ * call to a file channel that is kept open (group commit). The file is rotated by size and age, rotated segments
+ * are compressed in the background.
+ * 
+ * @author Micha Hanselmann
+ */
+final class AsyncFileAppender {
+
+    /**
+     * Maximum number of lines written at once.
+     */
+    private static final int MAX_BATCH = 1024;
+
+    /**
+     * Maximum time to wait for pending compressions on close (in seconds).
+     */
+    private static final long CLOSE_TIMEOUT = 30;
+
+    /**
+     * Path of the file.
+     */
+    private final Path file;
+
+    /**
+     * Determines what happens to lines appended while the buffer is full.
+     */
+    private final OverflowPolicy overflow;
+
+    /**
+     * Size of a segment after which the file is rotated (in bytes, 0 = never).
+     */
+    private final long maxBytes;
+
+    /**
+     * Age of a segment after which the file is rotated (in milliseconds, 0 = never).
+     */
+    private final long maxAge;
+
+    /**
+     * Timestamp formatter (null if lines are written without timestamps). Only used by the writer.
+     */
+    private final SimpleDateFormat dateFormat;
+
+    /**
+     * Format of the message reporting dropped lines.
+     */
+    private final String droppedFormat;
+
+    /**
+     * Guards the buffer and the counters.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Signaled when the buffer is no longer empty (or the appender is closed).
+     */
+    private final Condition notEmpty = lock.newCondition();
+
+    /**
+     * Signaled when the buffer is no longer full (or the appender is closed).
+     */
+    private final Condition notFull = lock.newCondition();
+
+    /**
+     * Signaled when lines have been written.
+     */
+    private final Condition flushed = lock.newCondition();
+
+    /**
+     * Times the buffered lines were appended at.
+     */
+    private final long[] times;
+
+    /**
+     * Buffered lines.
+     */
+    private final String[] lines;
+
+    /**
+     * Index of the oldest buffered line.
+     */
+    private int head;
+
+    /**
+     * Number of buffered lines.
+     */
+    private int size;
+
+    /**
+     * Number of lines appended since the appender was created.
+     */
+    private long appended;
+
+    /**
+     * Number of lines written since the appender was created.
+     */
+    private long written;
+
+    /**
+     * Number of lines dropped since the last write.
+     */
+    private long dropped;
+
+    /**
+     * Determines whether the appender is closed.
+     */
+    private boolean closed;
+
+    /**
+     * Writer draining the buffer.
+     */
+    private final Thread writer;
+
+    /**
+     * Compresses rotated segments.
+     */
+    private final ExecutorService compressor;
+
+    /**
+     * Channel of the current segment. Only used by the writer (after construction).
+     */
+    private FileChannel channel;
+
+    /**
+     * Size of the current segment (in bytes).
+     */
+    private long segmentBytes;
+
+    /**
+     * Time the current segment was opened at.
+     */
+    private long segmentStart;
+
+    /**
+     * Determines whether the last rotation failed (and was reported).
+     */
+    private boolean rotationFailed;
+
+
+    /**
+     * Constructs a new {@link AsyncFileAppender} and opens its file.
+     * 
+     * @param file
+     *          the path of the file (created if missing, appended to otherwise).
+     * @param timestamps
+     *          determines whether lines are prefixed with the time they were appended at.
+     * @param capacity
+     *          the number of lines the buffer can hold.
+     * @param overflow
+     *          the {@link OverflowPolicy} applied while the buffer is full.
+     * @param maxBytes
+     *          the size of a segment after which the file is rotated (in bytes, 0 = never).
+     * @param maxAge
+     *          the age of a segment after which the file is rotated (in milliseconds, 0 = never).
+     * @param localizer
+     *          the {@link Localizer} of the messages written by the appender itself.
+     * @throws IOException
+     *          if the file could not be opened.
+     */
+    AsyncFileAppender(Path file, boolean timestamps, int capacity, OverflowPolicy overflow, long maxBytes,
+            long maxAge, Localizer localizer) throws IOException {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity has to be positive.");
+        }
+        if (maxBytes < 0 || maxAge < 0) {
+            throw new IllegalArgumentException("Rotation limits must not be negative.");
+        }
+        this.file = Objects.requireNonNull(file);
+        this.overflow = Objects.requireNonNull(overflow);
+        this.maxBytes = maxBytes;
+        this.maxAge = maxAge;
+        this.dateFormat = timestamps ? new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS") : null;
+        this.droppedFormat = localizer.get(LocalizedString.LOG_MESSAGES_DROPPED);
+        this.times = new long[capacity];
+        this.lines = new String[capacity];
+        open(System.currentTimeMillis());
+
+        this.compressor = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "vispar-log-compressor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.writer = new Thread(this::work, "vispar-log-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Appends a line. Safe to be called by multiple threads.
+     * 
+     * @param line
+     *          the line (without line break).
+     * @return
+     *          true if the line was buffered, false if it was dropped because the buffer is full (and the policy is
+     *          {@link OverflowPolicy#DROP}) or the appender is closed.
+     */
+    boolean append(String line) {
+        Objects.requireNonNull(line);
+        long time = System.currentTimeMillis();
+        lock.lock();
+        try {
+            while (size == lines.length && !closed) {
+                if (overflow == OverflowPolicy.DROP) {
+                    dropped++;
+                    return false;
+                }
+                try {
+                    notFull.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    dropped++;
+                    return false;
+                }
+            }
+            if (closed) {
+                return false;
+            }
+            int tail = (head + size) % lines.length;
+            times[tail] = time;
+            lines[tail] = line;
+            size++;
+            appended++;
+            if (size == 1) {
+                notEmpty.signal();
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until all lines appended so far are written.
+     */
+    void flush() {
+        lock.lock();
+        try {
+            long target = appended;
+            while (written < target) {
+                flushed.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Closes the appender after all buffered lines are written and all rotated segments are compressed. Lines
+     * appended afterwards are dropped.
+     */
+    void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            writer.join();
+            compressor.shutdown();
+            compressor.awaitTermination(CLOSE_TIMEOUT, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes the buffered lines until the appender is closed and the buffer is empty.
+     */
+    private void work() {
+        long[] batchTimes = new long[Math.min(MAX_BATCH, lines.length)];
+        String[] batchLines = new String[batchTimes.length];
+        StringBuilder text = new StringBuilder();
+        while (true) {
+            int count;
+            long lost;
+            boolean done;
+            lock.lock();
+            try {
+                while (size == 0 && !closed) {
+                    notEmpty.awaitUninterruptibly();
+                }
+                count = Math.min(size, batchLines.length);
+                for (int i = 0; i < count; i++) {
+                    int index = (head + i) % lines.length;
+                    batchTimes[i] = times[index];
+                    batchLines[i] = lines[index];
+                    lines[index] = null;
+                }
+                head = (head + count) % lines.length;
+                size -= count;
+                lost = dropped;
+                dropped = 0;
+                done = closed && size == 0;
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+
+            write(text, batchTimes, batchLines, count, lost);
+
+            lock.lock();
+            try {
+                written += count;
+                flushed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            if (done) {
+                break;
+            }
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("[ERROR] Could not close logfile: " + e.toString());
+        }
+    }
+
+    /**
+     * Writes a batch of lines with a single write.
+     * 
+     * @param text
+     *          reused buffer for the text of the batch.
+     * @param batchTimes
+     *          the times the lines were appended at.
+     * @param batchLines
+     *          the lines.
+     * @param count
+     *          the number of lines.
+     * @param lost
+     *          the number of lines dropped before the batch.
+     */
+    private void write(StringBuilder text, long[] batchTimes, String[] batchLines, int count, long lost) {
+        long now = System.currentTimeMillis();
+        text.setLength(0);
+        if (lost > 0) {
+            appendTimestamp(text, now).append("[ERROR] ").append(String.format(droppedFormat, lost)).append('\n');
+        }
+        for (int i = 0; i < count; i++) {
+            appendTimestamp(text, batchTimes[i]).append(batchLines[i]).append('\n');
+            batchLines[i] = null;
+        }
+        if (text.length() == 0) {
+            return;
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8));
+        try {
+            rotateIfNeeded(bytes.remaining(), now);
+            while (bytes.hasRemaining()) {
+                segmentBytes += channel.write(bytes);
+            }
+        } catch (IOException e) {
+            System.err.println("[ERROR] Could not write to logfile: " + e.toString());
+        }
+    }
+
+    /**
+     * Appends the timestamp prefix of a line.
+     * 
+     * @param text
+     *          the text the prefix is appended to.
+     * @param time
+     *          the time the line was appended at.
+     * @return
+     *          the text.
+     */
+    private StringBuilder appendTimestamp(StringBuilder text, long time) {
+        if (dateFormat != null) {
+            text.append('[').append(dateFormat.format(new Date(time))).append("] ");
+        }
+        return text;
+    }
+
+    /**
+     * Rotates the file if the current segment would exceed its size or is too old. The rotated segment is
+     * compressed in the background. If the file cannot be rotated, the current segment is continued and the
+     * failure is reported once (until a rotation succeeds again).
+     * 
+     * @param incoming
+     *          the number of bytes to be written.
+     * @param now
+     *          the current time.
+     * @throws IOException
+     *          if the current segment could not be reopened either.
+     */
+    private void rotateIfNeeded(long incoming, long now) throws IOException {
+        boolean full = maxBytes > 0 && segmentBytes + incoming > maxBytes;
+        boolean old = maxAge > 0 && now - segmentStart >= maxAge;
+        if (segmentBytes == 0 || !(full || old)) {
+            return;
+        }
+        channel.close();
+        Path rotated = rotatedPath(now);
+        try {
+            Files.move(file, rotated);
+        } catch (IOException e) {
+            reportRotationFailure(e);
+            open(now);
+            return;
+        }
+        try {
+            open(now);
+        } catch (IOException e) {
+            // continue the rotated segment instead
+            reportRotationFailure(e);
+            Files.move(rotated, file);
+            open(now);
+            return;
+        }
+        rotationFailed = false;
+        compressor.execute(() -> compress(rotated));
+    }
+
+    /**
+     * Reports a failed rotation, unless the previous rotation failed as well.
+     * 
+     * @param e
+     *          the cause of the failure.
+     */
+    private void reportRotationFailure(IOException e) {
+        if (!rotationFailed) {
+            rotationFailed = true;
+            System.err.println("[ERROR] Could not rotate logfile: " + e.toString());
+        }
+    }
+
+    /**
+     * Returns an unused path for a rotated segment.
+     * 
+     * @param now
+     *          the current time.
+     * @return
+     *          the path.
+     */
+    private Path rotatedPath(long now) {
+        String base = file.getFileName() + "." + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date(now));
+        Path rotated = file.resolveSibling(base);
+        for (int i = 1; Files.exists(rotated) || Files.exists(rotated.resolveSibling(rotated.getFileName() + ".gz"));
+                i++) {
+            rotated = file.resolveSibling(base + "-" + i);
+        }
+        return rotated;
+    }
+
+    /**
+     * Opens a new segment.
+     * 
+     * @param now
+     *          the current time.
+     * @throws IOException
+     *          if the file could not be opened.
+     */
+    private void open(long now) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        segmentBytes = channel.size();
+        segmentStart = now;
+    }
+
+    /**
+     * Compresses a rotated segment and deletes the uncompressed file.
+     * 
+     * @param rotated
+     *          the path of the rotated segment.
+     */
+    private static void compress(Path rotated) {
+        Path target = rotated.resolveSibling(rotated.getFileName() + ".gz");
+        try {
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(target))) {
+                Files.copy(rotated, out);
+            }
+            Files.delete(rotated);
+        } catch (IOException e) {
+            System.err.println("[ERROR] Could not compress logfile: " + e.toString());
+        }
+    }
+}
@@ -3,6 +3,7 @@ package stream.vispar.server.logger;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Objects;
+import java.util.function.Supplier;
 
 import stream.vispar.server.cli.IConsole;
 
@@ -28,9 +29,14 @@ public class ConsoleLogger implements ILogger {
      */
     private final SimpleDateFormat dateFormat;
     
+    /**
+     * Lowest level of logged messages.
+     */
+    private final LogLevel level;
+    
     
     /**
-     * Constructs a new {@link ConsoleLogger} instance.
+     * Constructs a new {@link ConsoleLogger} instance logging normal messages and errors.
      * 
      * @param console
      *          the console to be used for logging.
@@ -38,21 +44,60 @@ public class ConsoleLogger implements ILogger {
      *          determines whether log should contain timestamps.
      */
     public ConsoleLogger(IConsole console, boolean timestamps) {
+        this(console, timestamps, LogLevel.INFO);
+    }
+    
+    /**
+     * Constructs a new {@link ConsoleLogger} instance.
+     * 
+     * @param console
+     *          the console to be used for logging.
+     * @param timestamps
+     *          determines whether log should contain timestamps.
+     * @param level
+     *          the lowest {@link LogLevel} of logged messages.
+     */
+    public ConsoleLogger(IConsole console, boolean timestamps, LogLevel level) {
         this.console = Objects.requireNonNull(console);
         this.timestamps = timestamps;
         this.dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+        this.level = Objects.requireNonNull(level);
     }
 
     @Override
     public void log(String message) {
         Objects.requireNonNull(message);
-        console.println(generateTimestamp() + message);
+        if (isEnabled(LogLevel.INFO)) {
+            print(message);
+        }
     }
 
     @Override
     public void logError(String error) {
         Objects.requireNonNull(error);
-        log("[ERROR] " + error);
+        print("[ERROR] " + error);
+    }
+    
+    @Override
+    public boolean isEnabled(LogLevel messageLevel) {
+        return messageLevel.compareTo(level) >= 0;
+    }
+    
+    @Override
+    public void debug(Supplier<String> message) {
+        if (isEnabled(LogLevel.DEBUG)) {
+            print("[DEBUG] " + message.get());
+        }
+    }
+    
+    /**
+     * Prints a message to the console.
+     * 
+     * @param message
+     *          the message.
+     */
+    private void print(String message) {
+        console.println(generateTimestamp() + message);
     }
     
     /**
@@ -1,39 +1,39 @@
 package stream.vispar.server.logger;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.util.Locale;
 import java.util.Objects;
+import java.util.function.Supplier;
+
+import stream.vispar.server.localization.Localizer;
 
 /**
- * Logger implementation that logs to a file.
+ * Logger implementation that logs to a file. Messages are written asynchronously by a background writer, which
+ * also rotates the file by size and age (see {@link AsyncFileAppender}).
  * 
  * @author Micha Hanselmann
  */
 public class FileLogger implements ILogger {
     
     /**
-     * File path.
+     * Default number of messages buffered until they are written.
      */
-    private final Path filePath;
+    public static final int DEFAULT_CAPACITY = 8192;
     
     /**
-     * Determines whether log contains timestamps.
+     * Lowest level of logged messages.
      */
-    private final boolean timestamps;
+    private final LogLevel level;
     
     /**
-     * Timestamp formatter.
+     * Appender writing the messages to the file.
      */
-    private final SimpleDateFormat dateFormat;
+    private final AsyncFileAppender appender;
     
     
     /**
-     * Constructs a new {@link FileLogger} instance.
+     * Constructs a new {@link FileLogger} instance logging normal messages and errors.
      * 
      * @param file
      *          the path to the file to be used for logging.
@@ -41,14 +41,76 @@ public class FileLogger implements ILogger {
      *          determines whether log should contain timestamps.
      */
     public FileLogger(String file, boolean timestamps) {
+        this(file, timestamps, LogLevel.INFO);
+    }
+    
+    /**
+     * Constructs a new {@link FileLogger} instance blocking while its buffer is full and never rotating its file.
+     * 
+     * @param file
+     *          the path to the file to be used for logging.
+     * @param timestamps
+     *          determines whether log should contain timestamps.
+     * @param level
+     *          the lowest {@link LogLevel} of logged messages.
+     */
+    public FileLogger(String file, boolean timestamps, LogLevel level) {
+        this(file, timestamps, level, DEFAULT_CAPACITY, OverflowPolicy.BLOCK, 0, 0);
+    }
+    
+    /**
+     * Constructs a new {@link FileLogger} instance.
+     * 
+     * @param file
+     *          the path to the file to be used for logging.
+     * @param timestamps
+     *          determines whether log should contain timestamps.
+     * @param level
+     *          the lowest {@link LogLevel} of logged messages.
+     * @param capacity
+     *          the number of messages buffered until they are written.
+     * @param overflow
+     *          the {@link OverflowPolicy} applied while the buffer is full.
+     * @param maxBytes
+     *          the size after which the file is rotated (in bytes, 0 = never).
+     * @param maxAge
+     *          the age after which the file is rotated (in milliseconds, 0 = never).
+     */
+    public FileLogger(String file, boolean timestamps, LogLevel level, int capacity, OverflowPolicy overflow,
+            long maxBytes, long maxAge) {
+        this(file, timestamps, level, capacity, overflow, maxBytes, maxAge, new Localizer(Locale.US));
+    }
+    
+    /**
+     * Constructs a new {@link FileLogger} instance.
+     * 
+     * @param file
+     *          the path to the file to be used for logging.
+     * @param timestamps
+     *          determines whether log should contain timestamps.
+     * @param level
+     *          the lowest {@link LogLevel} of logged messages.
+     * @param capacity
+     *          the number of messages buffered until they are written.
+     * @param overflow
+     *          the {@link OverflowPolicy} applied while the buffer is full.
+     * @param maxBytes
+     *          the size after which the file is rotated (in bytes, 0 = never).
+     * @param maxAge
+     *          the age after which the file is rotated (in milliseconds, 0 = never).
+     * @param localizer
+     *          the {@link Localizer} of the messages written by the logger itself (e.g. about dropped messages).
+     */
+    public FileLogger(String file, boolean timestamps, LogLevel level, int capacity, OverflowPolicy overflow,
+            long maxBytes, long maxAge, Localizer localizer) {
         Objects.requireNonNull(file);
-        this.filePath = Paths.get(file);
-        this.timestamps = timestamps;
-        this.dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+        this.level = Objects.requireNonNull(level);
+        Objects.requireNonNull(localizer);
         
-        // test for permission
+        // open file (fails without permission)
         try {
-            Files.write(filePath, "".getBytes(), StandardOpenOption.CREATE);
+            this.appender = new AsyncFileAppender(Paths.get(file), timestamps, capacity, overflow, maxBytes, maxAge,
+                    localizer);
         } catch (IOException e) {
             System.err.println("[ERROR] Could not create logfile: " + e.toString());
             throw new IllegalArgumentException("Could not create logfile '" + file + "'.");
@@ -58,27 +120,40 @@ public class FileLogger implements ILogger {
     @Override
     public void log(String message) {
         Objects.requireNonNull(message);
-        String entry = generateTimestamp() + message + "\n";
-        try {
-            Files.write(filePath, entry.getBytes(), StandardOpenOption.APPEND);
-        } catch (IOException e) {
-            System.err.println("[ERROR] Could not write to logfile: " + e.toString());
+        if (isEnabled(LogLevel.INFO)) {
+            appender.append(message);
         }
     }
 
     @Override
     public void logError(String error) {
         Objects.requireNonNull(error);
-        log("[ERROR] " + error);
+        appender.append("[ERROR] " + error);
+    }
+    
+    @Override
+    public boolean isEnabled(LogLevel messageLevel) {
+        return messageLevel.compareTo(level) >= 0;
+    }
+    
+    @Override
+    public void debug(Supplier<String> message) {
+        if (isEnabled(LogLevel.DEBUG)) {
+            appender.append("[DEBUG] " + message.get());
+        }
     }
     
     /**
-     * Generates a timestamp for the current time.
-     * 
-     * @return
-     *          the timestamp string.
+     * Waits until all messages logged so far are written to the file.
+     */
+    public void flush() {
+        appender.flush();
+    }
+    
+    /**
+     * Closes the logger after all logged messages are written. Messages logged afterwards are dropped.
      */
-    private String generateTimestamp() {
-        return (timestamps) ? "[" + dateFormat.format(new Date()) + "] " : "";
+    public void close() {
+        appender.close();
     }
 }
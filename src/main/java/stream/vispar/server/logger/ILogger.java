@@ -1,5 +1,7 @@
 package stream.vispar.server.logger;
 
+import java.util.function.Supplier;
+
 /**
  * Defines functionality of a logger.
  * 
@@ -22,4 +24,71 @@ public interface ILogger {
      *          the error message to be logged.
      */
     void logError(String error);
+    
+    /**
+     * Returns whether messages of a level are logged. Loggers without levels log all messages.
+     * 
+     * @param level
+     *          the {@link LogLevel}.
+     * @return
+     *          true if messages of the level are logged, false otherwise.
+     */
+    default boolean isEnabled(LogLevel level) {
+        return true;
+    }
+    
+    /**
+     * Logs a debug message. The message is only created if debug messages are logged, so it may be expensive to
+     * create (e.g. messages about single events).
+     * 
+     * @param message
+     *          supplies the message to be logged.
+     */
+    default void debug(Supplier<String> message) {
+        if (isEnabled(LogLevel.DEBUG)) {
+            log(message.get());
+        }
+    }
+    
+    /**
+     * Logs a (normal) message. The message is only created if normal messages are logged.
+     * 
+     * @param message
+     *          supplies the message to be logged.
+     */
+    default void info(Supplier<String> message) {
+        if (isEnabled(LogLevel.INFO)) {
+            log(message.get());
+        }
+    }
+    
+    /**
+     * Logs a message repeated for each event of a source, e.g. for each event received from a sensor. Loggers may
+     * summarize these messages instead of logging each of them (see {@link AggregatingLogger}), so the message is
+     * only created if it is logged.
+     * 
+     * @param category
+     *          the category of the source (e.g. "sensor").
+     * @param source
+     *          the name of the source the message is repeated for (e.g. the name of the sensor).
+     * @param level
+     *          the {@link LogLevel} of the single message.
+     * @param timestamp
+     *          the timestamp of the event.
+     * @param message
+     *          supplies the message to be logged.
+     */
+    default void logRepeated(String category, String source, LogLevel level, long timestamp, Supplier<String> message) {
+        switch (level) {
+        case DEBUG:
+            debug(message);
+            break;
+        case INFO:
+            info(message);
+            break;
+        default:
+            logError(message.get());
+            break;
+        }
+    }
 }
@@ -0,0 +1,24 @@
+package stream.vispar.server.logger;
+
+/**
+ * Severity of a logged message. A logger set to a level only logs messages of that level or above.
+ * 
+ * @author Micha Hanselmann
+ */
+public enum LogLevel {
+
+    /**
+     * Detailed messages about single events (e.g. received sensor events).
+     */
+    DEBUG,
+
+    /**
+     * Normal messages (e.g. deployments and recognized patterns).
+     */
+    INFO,
+
+    /**
+     * Errors.
+     */
+    ERROR
+}
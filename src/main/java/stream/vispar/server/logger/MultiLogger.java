@@ -3,6 +3,7 @@ package stream.vispar.server.logger;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Objects;
+import java.util.function.Supplier;
 
 /**
  * Logger implementation that forwards a logged message to multiple loggers.
@@ -36,6 +37,50 @@ public class MultiLogger implements ILogger {
         loggers.forEach(logger -> logger.logError(error));
     }
     
+    @Override
+    public boolean isEnabled(LogLevel level) {
+        for (ILogger logger : loggers) {
+            if (logger.isEnabled(level)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    @Override
+    public void debug(Supplier<String> message) {
+        if (isEnabled(LogLevel.DEBUG)) {
+            Supplier<String> shared = once(message);
+            loggers.forEach(logger -> logger.debug(shared));
+        }
+    }
+    
+    @Override
+    public void info(Supplier<String> message) {
+        if (isEnabled(LogLevel.INFO)) {
+            Supplier<String> shared = once(message);
+            loggers.forEach(logger -> logger.info(shared));
+        }
+    }
+    
+    /**
+     * Returns a supplier creating the message only once, no matter how many loggers log it.
+     * 
+     * @param message
+     *          supplies the message.
+     * @return
+     *          the caching supplier.
+     */
+    private static Supplier<String> once(Supplier<String> message) {
+        String[] created = new String[1];
+        return () -> {
+            if (created[0] == null) {
+                created[0] = Objects.requireNonNull(message.get());
+            }
+            return created[0];
+        };
+    }
+    
     /**
      * Adds a logger to this {@link MultiLogger}.
      * 
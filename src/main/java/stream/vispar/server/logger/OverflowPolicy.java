@@ -0,0 +1,19 @@
+package stream.vispar.server.logger;
+
+/**
+ * Determines what happens to a message that is logged while the buffer of an asynchronous logger is full.
+ * 
+ * @author Micha Hanselmann
+ */
+public enum OverflowPolicy {
+
+    /**
+     * The caller waits until the buffer has space left. No message is lost, but a slow disk slows down the caller.
+     */
+    BLOCK,
+
+    /**
+     * The message is dropped. The caller never waits, the number of dropped messages is logged afterwards.
+     */
+    DROP
+}
@@ -11,13 +11,18 @@ import stream.vispar.server.core.ApiRouteTest;
 import stream.vispar.server.core.AuthManagerTest;
 import stream.vispar.server.core.MongoDBConnectorTest;
 import stream.vispar.server.core.PatternControllerTest;
+import stream.vispar.server.core.ReplayBufferTest;
 import stream.vispar.server.core.SensorControllerTest;
 import stream.vispar.server.core.ServerConfigTest;
 import stream.vispar.server.core.ServerInstanceTest;
 import stream.vispar.server.core.SparkServerTest;
+import stream.vispar.server.core.SocketMessagesTest;
+import stream.vispar.server.core.SocketSessionTest;
+import stream.vispar.server.core.SocketTopicTest;
 import stream.vispar.server.core.SparkSocketTest;
 import stream.vispar.server.core.UserControllerTest;
 import stream.vispar.server.core.entities.EventTest;
+import stream.vispar.server.core.entities.JsonPathTest;
 import stream.vispar.server.core.entities.SensorTest;
 import stream.vispar.server.core.entities.SimulatedEventTest;
 import stream.vispar.server.core.entities.SimulationTest;
@@ -26,6 +31,11 @@ import stream.vispar.server.core.entities.adapters.SensorJsonDeserializerTest;
 import stream.vispar.server.core.entities.adapters.SimulatedEventDeserializerTest;
 import stream.vispar.server.engine.EmailActionTest;
 import stream.vispar.server.engine.EventActionTest;
+import stream.vispar.server.engine.FilterEngineTest;
+import stream.vispar.server.engine.FilterPlanTest;
+import stream.vispar.server.engine.IngestQueueTest;
+import stream.vispar.server.engine.MpscRingBufferTest;
+import stream.vispar.server.engine.PredicateIndexTest;
 import stream.vispar.server.engine.SiddhiEngineTest;
 import stream.vispar.server.engine.SocketActionTest;
 import stream.vispar.server.engine.extensions.LogicalAndFunctionTest;
@@ -35,6 +45,7 @@ import stream.vispar.server.engine.extensions.StringConcatenatorTest;
 import stream.vispar.server.engine.extensions.StringMaximumTest;
 import stream.vispar.server.engine.extensions.StringMinimumTest;
 import stream.vispar.server.localization.LocalizerTest;
+import stream.vispar.server.logger.AggregatingLoggerTest;
 import stream.vispar.server.logger.ConsoleLoggerTest;
 import stream.vispar.server.logger.FileLoggerTest;
 import stream.vispar.server.logger.MultiLoggerTest;
@@ -60,15 +71,20 @@ import stream.vispar.server.logger.MultiLoggerTest;
     AuthManagerTest.class,
     MongoDBConnectorTest.class,
     PatternControllerTest.class,
+    ReplayBufferTest.class,
     SensorControllerTest.class,
     ServerConfigTest.class,
     ServerInstanceTest.class,
     SparkServerTest.class,
+    SocketMessagesTest.class,
+    SocketSessionTest.class,
+    SocketTopicTest.class,
     SparkSocketTest.class,
     UserControllerTest.class,
     
     // entities
     EventTest.class,
+    JsonPathTest.class,
     SensorTest.class,
     SimulatedEventTest.class,
     SimulationTest.class,
@@ -81,6 +97,11 @@ import stream.vispar.server.logger.MultiLoggerTest;
     // engine
     EmailActionTest.class,
     EventActionTest.class,
+    FilterEngineTest.class,
+    FilterPlanTest.class,
+    IngestQueueTest.class,
+    MpscRingBufferTest.class,
+    PredicateIndexTest.class,
     SiddhiEngineTest.class,
     SocketActionTest.class,
     
@@ -96,6 +117,7 @@ import stream.vispar.server.logger.MultiLoggerTest;
     LocalizerTest.class,
     
     // logger
+    AggregatingLoggerTest.class,
     ConsoleLoggerTest.class,
     FileLoggerTest.class,
     MultiLoggerTest.class
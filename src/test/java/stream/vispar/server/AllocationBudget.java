@@ -0,0 +1,63 @@
+package stream.vispar.server;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.Assume;
+
+/**
+ * Measures the heap allocations of the current thread to keep hot paths within an allocation budget. Relies on
+ * the allocation counters of HotSpot, tests using it are skipped on other JVMs.
+ * 
+ * @author Micha Hanselmann
+ */
+public final class AllocationBudget {
+
+    private static final int WARMUP_CALLS = 20000;
+
+    /**
+     * Utility class.
+     */
+    private AllocationBudget() {
+    }
+
+    /**
+     * Returns the average number of bytes an action allocates per call, after warming it up.
+     * 
+     * @param calls
+     *            the number of measured calls.
+     * @param action
+     *            the action to be measured.
+     * @return the allocated bytes per call.
+     */
+    public static double bytesPerCall(int calls, Runnable action) {
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+        long thread = Thread.currentThread().getId();
+
+        for (int i = 0; i < WARMUP_CALLS; i++) {
+            action.run();
+        }
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < calls; i++) {
+            action.run();
+        }
+        return (double) (threads.getThreadAllocatedBytes(thread) - before) / calls;
+    }
+
+    /**
+     * Asserts that an action stays within an allocation budget.
+     * 
+     * @param budget
+     *            the maximum number of bytes allocated per call (on average).
+     * @param action
+     *            the action to be measured.
+     */
+    public static void assertWithin(double budget, Runnable action) {
+        assertThat(bytesPerCall(100000, action), lessThanOrEqualTo(budget));
+    }
+}
@@ -18,12 +18,14 @@ import org.mockito.Mockito;
 
 import stream.vispar.model.Pattern;
 import stream.vispar.server.core.PatternController;
+import stream.vispar.server.core.ISocketHandler;
 import stream.vispar.server.core.ServerInstance;
 import stream.vispar.server.core.ServerInstanceMock;
 import stream.vispar.server.core.UserController;
 import stream.vispar.server.core.entities.Event;
 import stream.vispar.server.core.entities.User;
 import stream.vispar.server.engine.IEngine;
+import stream.vispar.server.engine.IngestQueue;
 import stream.vispar.server.localization.LocalizedString;
 import stream.vispar.server.localization.Localizer;
 
@@ -131,6 +133,28 @@ public class CommandTest {
                         "./src/test/resources/simulations/temp.sim")));
     }
     
+    /**
+     * Test for Command.STATS
+     */
+    @Test
+    public void testStats() {
+        // prepare mocked instance
+        Localizer loc = new Localizer(Locale.US);
+        ServerInstance inst = mock(ServerInstance.class);
+        IngestQueue queue = mock(IngestQueue.class);
+        when(inst.getLocalizer()).thenReturn(loc);
+        when(inst.getIngestQueue()).thenReturn(queue);
+        when(queue.getDepth()).thenReturn(3);
+        when(queue.getCapacity()).thenReturn(8);
+        when(queue.getLanes()).thenReturn(2);
+        when(queue.getRejected()).thenReturn(5L);
+        when(inst.getSockHandler()).thenReturn(mock(ISocketHandler.class));
+        
+        // stats
+        CommandResult result = Command.STATS.handle(inst, "stats");
+        assertThat(result.getMessage(), equalTo(String.format(loc.get(LocalizedString.INGEST_STATS), 3, 8, 2, 5L)));
+    }
+    
     /**
      * Test for Command.STOP
      */
@@ -310,6 +310,45 @@ public class ApiRouteTest {
         assertThat(result, equalTo(new GsonConverter().toJson(deployedPattern)));
     }
 
+    /**
+     * Test for ApiRoute.POST_PATTERNS_DEPLOY with asynchronous input streams.
+     * 
+     * @throws JsonException bad json.
+     */
+    @Test
+    public void testPostPatternsDeployAsync() throws JsonException {
+        // prepare mocked instance
+        ServerInstance inst = spy(new ServerInstanceMock());
+        PatternController ctrl = mock(PatternController.class);
+        Pattern deployedPattern = new Pattern("id1", true, "myPattern");
+        when(ctrl.deploy("id1", 1024)).thenReturn(deployedPattern);
+        when(inst.getPatternCtrl()).thenReturn(ctrl);
+        
+        // create request
+        IJsonObject request = new GsonJsonObject();
+        request.add("user", "user123");
+        IJsonObject requestData = new GsonJsonObject();
+        requestData.add("id", "id1");
+        requestData.add("bufferSize", 1024);
+        request.add("data", requestData);
+        
+        // POST patterns/deploy
+        IJsonObject result = ApiRoute.POST_PATTERNS_DEPLOY.execute(inst, request).getAsJsonObject()
+                .get("data").getAsJsonObject();
+        verify(ctrl, times(1)).deploy("id1", 1024);
+        assertThat(result, equalTo(new GsonConverter().toJson(deployedPattern)));
+        
+        // invalid buffer size
+        IJsonObject invalidRequest = new GsonJsonObject();
+        invalidRequest.add("user", "user123");
+        IJsonObject invalidData = new GsonJsonObject();
+        invalidData.add("id", "id1");
+        invalidData.add("bufferSize", -5);
+        invalidRequest.add("data", invalidData);
+        IJsonObject error = ApiRoute.POST_PATTERNS_DEPLOY.execute(inst, invalidRequest).getAsJsonObject();
+        assertThat(error.getAsJsonPrimitive("error").getAsInt(), equalTo(RouteError.INVALID_REQUEST.getCode()));
+    }
+
     /**
      * Test for ApiRoute.POST_PATTERNS_UNDEPLOY
      * 
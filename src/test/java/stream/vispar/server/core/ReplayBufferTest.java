@@ -0,0 +1,99 @@
+package stream.vispar.server.core;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.Mockito.mock;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.jetty.websocket.api.Session;
+import org.junit.Test;
+
+import stream.vispar.server.logger.ILogger;
+
+/**
+ * Tests for {@link ReplayBuffer}.
+ * 
+ * @author Micha Hanselmann
+ */
+public class ReplayBufferTest {
+
+    /**
+     * Test method for {@link ReplayBuffer#add(SocketTopic, String)}.
+     */
+    @Test
+    public void testAdd() {
+        ReplayBuffer replay = new ReplayBuffer(4);
+        assertThat(replay.getLatest(), equalTo(0L));
+        SocketTopic topic = new SocketTopic("p1", "n1", null);
+        ReplayBuffer.Entry entry = replay.add(topic, "Hello");
+        assertThat(entry.getSequence(), equalTo(1L));
+        assertThat(entry.getMessage(), equalTo("{\"seq\":1,\"message\":\"Hello\"}"));
+        assertThat(entry.getTopic() == topic, equalTo(true));
+        assertThat(replay.add(null, "World").getSequence(), equalTo(2L));
+        assertThat(replay.getLatest(), equalTo(2L));
+    }
+
+    /**
+     * Test method for {@link ReplayBuffer#since(long)}.
+     * 
+     * Checks that the gap is returned as long as none of its messages were evicted.
+     */
+    @Test
+    public void testSince() {
+        ReplayBuffer replay = new ReplayBuffer(3);
+        assertThat(replay.since(0).size(), equalTo(0));
+        for (int i = 1; i <= 5; i++) {
+            replay.add(null, String.valueOf(i));
+        }
+        List<ReplayBuffer.Entry> missed = replay.since(2);
+        assertThat(missed.size(), equalTo(3));
+        for (int i = 0; i < missed.size(); i++) {
+            assertThat(missed.get(i).getSequence(), equalTo(3L + i));
+        }
+        assertThat(replay.since(5).size(), equalTo(0));
+
+        // evicted or never assigned
+        assertThat(replay.since(1), nullValue());
+        assertThat(replay.since(0), nullValue());
+        assertThat(replay.since(6), nullValue());
+    }
+
+    /**
+     * Test method for {@link ReplayBuffer#complete(long, java.util.Collection)}.
+     * 
+     * Checks that messages are completed in order without waiting, even if their publishers finish out of order,
+     * and that the publisher completing a gap gets the clients of all messages it completes.
+     */
+    @Test
+    public void testComplete() {
+        ReplayBuffer replay = new ReplayBuffer(4);
+        SocketSession first = new SocketSession(mock(Session.class), 1, SlowConsumerPolicy.DROP_NEWEST,
+                mock(ILogger.class));
+        SocketSession second = new SocketSession(mock(Session.class), 1, SlowConsumerPolicy.DROP_NEWEST,
+                mock(ILogger.class));
+        long sequence1 = replay.add(null, "1").getSequence();
+        long sequence2 = replay.add(null, "2").getSequence();
+        long sequence3 = replay.add(null, "3").getSequence();
+        assertThat(replay.complete(sequence2, Collections.singleton(second)), empty());
+        assertThat(replay.getCompleted(), equalTo(0L));
+
+        assertThat(replay.complete(sequence1, Collections.singleton(first)), containsInAnyOrder(first, second));
+        assertThat(replay.getCompleted(), equalTo(2L));
+        assertThat(replay.complete(sequence3, Collections.singleton(first)), contains(first));
+        assertThat(replay.getCompleted(), equalTo(3L));
+    }
+
+    /**
+     * Test method for {@link ReplayBuffer#ReplayBuffer(int)}.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testReplayBufferBadCapacity() {
+        new ReplayBuffer(0);
+    }
+}
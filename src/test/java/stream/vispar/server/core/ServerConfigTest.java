@@ -13,7 +13,10 @@ import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.sameInstance;
 import static org.mockito.Mockito.mock;
 
+import stream.vispar.server.engine.DeploymentMode;
 import stream.vispar.server.logger.ILogger;
+import stream.vispar.server.logger.LogLevel;
+import stream.vispar.server.logger.OverflowPolicy;
 
 /**
  * Tests for {@link ServerConfig}.
@@ -45,6 +48,166 @@ public class ServerConfigTest {
         assertThat(config.getLogger(), sameInstance(logger));
         assertThat(config.getDatabaseUrl(), equalTo("databaseUrl"));
         assertThat(config.getSensorsConfigPath(), equalTo("configPath"));
+        assertThat(config.getEngineLanes(), equalTo(Runtime.getRuntime().availableProcessors()));
+        assertThat(config.getAsyncBufferSize(), equalTo(0));
+        assertThat(config.getDeploymentMode(), equalTo(DeploymentMode.ISOLATED));
+        assertThat(config.isFilterFastPath(), equalTo(false));
+    }
+
+    /**
+     * Test method for {@link ServerConfig.Builder#build()}.
+     */
+    @Test
+    public void testServerConfigEngine() {
+        ServerConfig config = new ServerConfig.Builder(80, 81, Locale.US, logger, "databaseUrl", "configPath")
+                .engineLanes(3).asyncBufferSize(1024).deploymentMode(DeploymentMode.FUSED).filterFastPath(true)
+                .build();
+        assertThat(config.getEngineLanes(), equalTo(3));
+        assertThat(config.getAsyncBufferSize(), equalTo(1024));
+        assertThat(config.getDeploymentMode(), equalTo(DeploymentMode.FUSED));
+        assertThat(config.isFilterFastPath(), equalTo(true));
+        assertThat(config.getSocketDelivery(), equalTo(SocketDelivery.IMMEDIATE));
+        assertThat(config.getSocketReplay(), equalTo(0));
+    }
+
+    /**
+     * Test method for {@link ServerConfig.Builder#build()}.
+     */
+    @Test
+    public void testServerConfigSocket() {
+        ServerConfig config = new ServerConfig.Builder(80, 81, Locale.US, logger, "databaseUrl", "configPath")
+                .socketDelivery(SocketDelivery.LATEST).socketTick(20).socketReplay(512).socketHoldTimeout(1000)
+                .build();
+        assertThat(config.getSocketDelivery(), equalTo(SocketDelivery.LATEST));
+        assertThat(config.getSocketTick(), equalTo(20L));
+        assertThat(config.getSocketReplay(), equalTo(512));
+        assertThat(config.getSocketHoldTimeout(), equalTo(1000L));
+        assertThat(config.getDeploymentMode(), equalTo(DeploymentMode.ISOLATED));
+    }
+
+    /**
+     * Test method for {@link ServerConfig.Builder#build()}.
+     * 
+     * Checks the socket queue and log options.
+     */
+    @Test
+    public void testServerConfigQueueAndLog() {
+        ServerConfig config = new ServerConfig.Builder(80, 81, Locale.US, logger, "databaseUrl", "configPath")
+                .socketQueueCapacity(16).slowConsumerPolicy(SlowConsumerPolicy.DISCONNECT).logLevel(LogLevel.DEBUG)
+                .logBufferSize(64).logOverflow(OverflowPolicy.DROP).logMaxBytes(1024).logMaxAge(60000)
+                .logSummaryInterval(1000).build();
+        assertThat(config.getSocketQueueCapacity(), equalTo(16));
+        assertThat(config.getSlowConsumerPolicy(), equalTo(SlowConsumerPolicy.DISCONNECT));
+        assertThat(config.getLogLevel(), equalTo(LogLevel.DEBUG));
+        assertThat(config.getLogBufferSize(), equalTo(64));
+        assertThat(config.getLogOverflow(), equalTo(OverflowPolicy.DROP));
+        assertThat(config.getLogMaxBytes(), equalTo(1024L));
+        assertThat(config.getLogMaxAge(), equalTo(60000L));
+        assertThat(config.getLogSummaryInterval(), equalTo(1000L));
+    }
+
+    /**
+     * Test method for {@link ServerConfig.Builder#build()}.
+     * 
+     * Checks invalid argument behaviour.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testServerConfigInvSocketQueueCapacity() {
+        new ServerConfig.Builder(80, 81, Locale.US, logger, "databaseUrl", "configPath").socketQueueCapacity(0)
+                .build();
+    }
+
+    /**
+     * Test method for {@link ServerConfig.Builder#build()}.
+     * 
+     * Checks invalid argument behaviour.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testServerConfigInvLogBufferSize() {
+        new ServerConfig.Builder(80, 81, Locale.US, logger, "databaseUrl", "configPath").logBufferSize(0).build();
+    }
+
+    /**
+     * Test method for {@link ServerConfig.Builder#build()}.
+     * 
+     * Checks invalid argument behaviour.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testServerConfigInvLogSummaryInterval() {
+        new ServerConfig.Builder(80, 81, Locale.US, logger, "databaseUrl", "configPath").logSummaryInterval(-1)
+                .build();
+    }
+
+    /**
+     * Test method for {@link ServerConfig.Builder#build()}.
+     * 
+     * Checks behavior on null argument.
+     */
+    @Test(expected = NullPointerException.class)
+    public void testServerConfigNullSlowConsumerPolicy() {
+        new ServerConfig.Builder(80, 81, Locale.US, logger, "databaseUrl", "configPath").slowConsumerPolicy(null)
+                .build();
+    }
+
+    /**
+     * Test method for {@link ServerConfig.Builder#build()}.
+     * 
+     * Checks invalid argument behaviour.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testServerConfigInvSocketTick() {
+        new ServerConfig.Builder(80, 81, Locale.US, logger, "databaseUrl", "configPath").socketTick(0).build();
+    }
+
+    /**
+     * Test method for {@link ServerConfig.Builder#build()}.
+     * 
+     * Checks invalid argument behaviour.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testServerConfigInvSocketReplay() {
+        new ServerConfig.Builder(80, 81, Locale.US, logger, "databaseUrl", "configPath").socketReplay(-1).build();
+    }
+
+    /**
+     * Test method for {@link ServerConfig.Builder#build()}.
+     * 
+     * Checks invalid argument behaviour.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testServerConfigInvSocketHoldTimeout() {
+        new ServerConfig.Builder(80, 81, Locale.US, logger, "databaseUrl", "configPath").socketHoldTimeout(-1)
+                .build();
+    }
+
+    /**
+     * Test method for {@link ServerConfig.Builder#build()}.
+     * 
+     * Checks invalid argument behaviour.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testServerConfigInvLanes() {
+        new ServerConfig.Builder(80, 81, Locale.US, logger, "databaseUrl", "configPath").engineLanes(0).build();
+    }
+
+    /**
+     * Test method for {@link ServerConfig.Builder#build()}.
+     * 
+     * Checks invalid argument behaviour.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testServerConfigInvBufferSize() {
+        new ServerConfig.Builder(80, 81, Locale.US, logger, "databaseUrl", "configPath").asyncBufferSize(-1).build();
+    }
+
+    /**
+     * Test method for {@link ServerConfig.Builder#build()}.
+     * 
+     * Checks behavior on null argument.
+     */
+    @Test(expected = NullPointerException.class)
+    public void testServerConfigNullDeploymentMode() {
+        new ServerConfig.Builder(80, 81, Locale.US, logger, "databaseUrl", "configPath").deploymentMode(null).build();
     }
 
     /**
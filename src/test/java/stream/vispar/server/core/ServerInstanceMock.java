@@ -1,9 +1,11 @@
 package stream.vispar.server.core;
 
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
 import static org.mockito.Mockito.mock;
 
 import java.util.Locale;
 
+import stream.vispar.server.engine.DeploymentMode;
 import stream.vispar.server.logger.ILogger;
 
 /**
@@ -30,8 +32,52 @@ public class ServerInstanceMock extends ServerInstance {
         super(getConfig(), db);
     }
     
+    /**
+     * Construct new {@link ServerInstanceMock}.
+     * 
+     * @param db
+     *            the {@link IDatabaseConnector} used by the instance.
+     * @param mode
+     *            the {@link DeploymentMode} used by the engine.
+     */
+    public ServerInstanceMock(IDatabaseConnector db, DeploymentMode mode) {
+        super(new ServerConfig.Builder(8888, 8889, Locale.US, mock(ILogger.class, CALLS_REAL_METHODS), "localhost",
+                "./src/test/resources/sensors").engineLanes(1).deploymentMode(mode).build(), db);
+    }
+    
+    /**
+     * Construct new {@link ServerInstanceMock}.
+     * 
+     * @param db
+     *            the {@link IDatabaseConnector} used by the instance.
+     * @param filterFastPath
+     *            whether stateless filter patterns are evaluated without Siddhi.
+     */
+    public ServerInstanceMock(IDatabaseConnector db, boolean filterFastPath) {
+        super(new ServerConfig.Builder(8888, 8889, Locale.US, mock(ILogger.class, CALLS_REAL_METHODS), "localhost",
+                "./src/test/resources/sensors").engineLanes(1).filterFastPath(filterFastPath).build(), db);
+    }
+    
+    /**
+     * Construct new {@link ServerInstanceMock}.
+     * 
+     * @param db
+     *            the {@link IDatabaseConnector} used by the instance.
+     * @param logger
+     *            the {@link ILogger} used by the instance.
+     */
+    public ServerInstanceMock(IDatabaseConnector db, ILogger logger) {
+        super(new ServerConfig(8888, 8889, Locale.US, logger, "localhost", "./src/test/resources/sensors"), db);
+    }
+    
+    /**
+     * Returns the config of the instance. The logger is a mock logging all levels, so messages of all levels can
+     * be verified by their {@link ILogger#log(String)} call.
+     * 
+     * @return the config.
+     */
     private static ServerConfig getConfig() {
-        ILogger logger = mock(ILogger.class);
+        ILogger logger = mock(ILogger.class, CALLS_REAL_METHODS);
         return new ServerConfig(8888, 8889, Locale.US, logger, "localhost", "./src/test/resources/sensors");
     }
 }
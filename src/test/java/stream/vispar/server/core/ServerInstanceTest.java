@@ -15,6 +15,7 @@ import org.junit.Test;
 
 import stream.vispar.server.cli.DefaultConsole;
 import stream.vispar.server.engine.IEngine;
+import stream.vispar.server.engine.IngestQueue;
 import stream.vispar.server.localization.Localizer;
 import stream.vispar.server.logger.ConsoleLogger;
 import stream.vispar.server.logger.ILogger;
@@ -40,6 +41,7 @@ public class ServerInstanceTest {
         assertThat(instance.getLocalizer(), instanceOf(Localizer.class));
         assertThat(instance.getDBConn(), instanceOf(IDatabaseConnector.class));
         assertThat(instance.getEngine(), instanceOf(IEngine.class));
+        assertThat(instance.getIngestQueue(), instanceOf(IngestQueue.class));
         assertThat(instance.getUserCtrl(), instanceOf(UserController.class));
         assertThat(instance.getPatternCtrl(), instanceOf(PatternController.class));
         assertThat(instance.getSensorCtrl(), instanceOf(SensorController.class));
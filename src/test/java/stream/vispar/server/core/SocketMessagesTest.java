@@ -0,0 +1,51 @@
+package stream.vispar.server.core;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link SocketMessages}.
+ * 
+ * @author Micha Hanselmann
+ */
+public class SocketMessagesTest {
+
+    /**
+     * Test method for {@link SocketMessages#batch(java.util.Collection)}.
+     */
+    @Test
+    public void testBatch() {
+        String batch = SocketMessages.batch(Arrays.asList(SocketMessages.quote("a"), SocketMessages.sequenced(2, "b")));
+        assertThat(batch, equalTo("[\"a\",{\"seq\":2,\"message\":\"b\"}]"));
+    }
+
+    /**
+     * Test method for {@link SocketMessages#quote(String)}.
+     */
+    @Test
+    public void testQuote() {
+        assertThat(SocketMessages.quote("<b>say \"hi\"</b>"), equalTo("\"<b>say \\\"hi\\\"</b>\""));
+    }
+
+    /**
+     * Test method for {@link SocketMessages#resync(long)}.
+     */
+    @Test
+    public void testResync() {
+        assertThat(SocketMessages.resync(42), equalTo("{\"resync\":true,\"seq\":42}"));
+    }
+
+    /**
+     * Test method for {@link SocketMessages#quote(String)}.
+     * 
+     * Checks behavior on null argument.
+     */
+    @Test(expected = NullPointerException.class)
+    public void testQuoteNull() {
+        SocketMessages.quote(null);
+    }
+}
@@ -0,0 +1,327 @@
+package stream.vispar.server.core;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jetty.websocket.api.RemoteEndpoint;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.junit.Before;
+import org.junit.Test;
+
+import stream.vispar.server.logger.ILogger;
+
+/**
+ * Tests for {@link SocketSession}.
+ * 
+ * @author Micha Hanselmann
+ */
+public class SocketSessionTest {
+
+    private Session session;
+    private List<String> sent;
+    private List<WriteCallback> pending;
+
+    /**
+     * Create a session whose writes complete only when their callback is called by the test.
+     */
+    @Before
+    public void setUp() {
+        session = mock(Session.class);
+        RemoteEndpoint remote = mock(RemoteEndpoint.class);
+        when(session.getRemote()).thenReturn(remote);
+        when(session.isOpen()).thenReturn(true);
+        sent = new ArrayList<>();
+        pending = new ArrayList<>();
+        doAnswer(invocation -> {
+            sent.add(invocation.getArgument(0));
+            pending.add(invocation.getArgument(1));
+            return null;
+        }).when(remote).sendString(anyString(), any(WriteCallback.class));
+    }
+
+    /**
+     * Test method for {@link SocketSession#send(String)}.
+     * 
+     * Checks that messages are written one at a time and in order.
+     */
+    @Test
+    public void testSend() {
+        SocketSession socket = new SocketSession(session, 4, SlowConsumerPolicy.DROP_NEWEST, mock(ILogger.class));
+        socket.send("1");
+        socket.send("2");
+        socket.send("3");
+        assertThat(sent, contains("1"));
+        assertThat(socket.getQueueDepth(), equalTo(2));
+
+        complete();
+        complete();
+        assertThat(sent, contains("1", "2", "3"));
+        assertThat(socket.getQueueDepth(), equalTo(0));
+        complete();
+        socket.send("4");
+        assertThat(sent, contains("1", "2", "3", "4"));
+    }
+
+    /**
+     * Test method for {@link SocketSession#send(String)}.
+     * 
+     * Checks policy {@link SlowConsumerPolicy#DROP_NEWEST}.
+     */
+    @Test
+    public void testSendDropNewest() {
+        SocketSession socket = new SocketSession(session, 2, SlowConsumerPolicy.DROP_NEWEST, mock(ILogger.class));
+        for (int i = 1; i <= 5; i++) {
+            socket.send(String.valueOf(i));
+        }
+        assertThat(socket.getDropped(), equalTo(2L));
+        completeAll();
+        assertThat(sent, contains("1", "2", "3"));
+    }
+
+    /**
+     * Test method for {@link SocketSession#send(String)}.
+     * 
+     * Checks policy {@link SlowConsumerPolicy#DROP_OLDEST}.
+     */
+    @Test
+    public void testSendDropOldest() {
+        SocketSession socket = new SocketSession(session, 2, SlowConsumerPolicy.DROP_OLDEST, mock(ILogger.class));
+        for (int i = 1; i <= 5; i++) {
+            socket.send(String.valueOf(i));
+        }
+        assertThat(socket.getDropped(), equalTo(2L));
+        completeAll();
+        assertThat(sent, contains("1", "4", "5"));
+    }
+
+    /**
+     * Test method for {@link SocketSession#send(String)}.
+     * 
+     * Checks policy {@link SlowConsumerPolicy#DISCONNECT}.
+     */
+    @Test
+    public void testSendDisconnect() {
+        SocketSession socket = new SocketSession(session, 2, SlowConsumerPolicy.DISCONNECT, mock(ILogger.class));
+        socket.send("1");
+        socket.send("2");
+        socket.send("3");
+        verify(session, never()).close(anyInt(), anyString());
+        socket.send("4");
+        verify(session).close(anyInt(), anyString());
+        assertThat(socket.getQueueDepth(), equalTo(0));
+        assertThat(socket.getDropped(), equalTo(1L));
+    }
+
+    /**
+     * Test method for {@link SocketSession#send(String)}.
+     * 
+     * Checks that failed writes are logged and the next message is sent anyway.
+     */
+    @Test
+    public void testSendFailed() {
+        ILogger logger = mock(ILogger.class);
+        SocketSession socket = new SocketSession(session, 2, SlowConsumerPolicy.DROP_NEWEST, logger);
+        socket.send("1");
+        socket.send("2");
+        pending.remove(0).writeFailed(new IllegalStateException("broken"));
+        verify(logger).logError(anyString());
+        assertThat(sent, contains("1", "2"));
+    }
+
+    /**
+     * Test method for {@link SocketSession#send(String)}.
+     * 
+     * Checks that all clients write the shared text instead of encoding the message again.
+     */
+    @Test
+    public void testSendSharedText() {
+        String frame = "Hello";
+        new SocketSession(session, 2, SlowConsumerPolicy.DROP_NEWEST, mock(ILogger.class)).send(frame);
+        new SocketSession(session, 2, SlowConsumerPolicy.DROP_NEWEST, mock(ILogger.class)).send(frame);
+        assertThat(sent.size(), equalTo(2));
+        for (String text : sent) {
+            assertThat(text, sameInstance(frame));
+        }
+    }
+
+    /**
+     * Test method for {@link SocketSession#release(long)}.
+     * 
+     * Checks that numbered messages routed out of order are sent in order, and only once.
+     */
+    @Test
+    public void testRelease() {
+        SocketSession socket = new SocketSession(session, 8, SlowConsumerPolicy.DROP_NEWEST, mock(ILogger.class));
+        ReplayBuffer replay = new ReplayBuffer(8);
+        ReplayBuffer.Entry first = replay.add(null, "1");
+        ReplayBuffer.Entry second = replay.add(null, "2");
+        socket.offer(second);
+        socket.release(0);
+        assertThat(sent.size(), equalTo(0));
+
+        socket.offer(first);
+        socket.release(2);
+        pending.get(0).writeSuccess();
+        assertThat(sent, contains(first.getMessage(), second.getMessage()));
+        socket.offer(first);
+        socket.release(2);
+        assertThat(sent.size(), equalTo(2));
+    }
+
+    /**
+     * Test method for {@link SocketSession#hold()}.
+     * 
+     * Checks that numbered messages are held until the session is live.
+     */
+    @Test
+    public void testHold() {
+        SocketSession socket = new SocketSession(session, 8, SlowConsumerPolicy.DROP_NEWEST, mock(ILogger.class));
+        ReplayBuffer replay = new ReplayBuffer(8);
+        socket.hold();
+        socket.offer(replay.add(null, "1"));
+        socket.release(1);
+        assertThat(sent.size(), equalTo(0));
+        assertThat(socket.getQueueDepth(), equalTo(1));
+
+        socket.live();
+        socket.release(1);
+        assertThat(sent, contains("{\"seq\":1,\"message\":\"1\"}"));
+    }
+
+    /**
+     * Test method for {@link SocketSession#expire(long)}.
+     * 
+     * Checks that numbered messages are held until the grace period expired.
+     */
+    @Test
+    public void testExpire() {
+        SocketSession socket = new SocketSession(session, 8, SlowConsumerPolicy.DROP_NEWEST, mock(ILogger.class));
+        ReplayBuffer replay = new ReplayBuffer(8);
+        socket.hold();
+        socket.offer(replay.add(null, "1"));
+        socket.expire(60000);
+        socket.release(1);
+        assertThat(sent.size(), equalTo(0));
+
+        socket.expire(0);
+        socket.release(1);
+        assertThat(sent, contains("{\"seq\":1,\"message\":\"1\"}"));
+    }
+
+    /**
+     * Test method for {@link SocketSession#offer(ReplayBuffer.Entry)}.
+     * 
+     * Checks that a held session stops holding once more messages are routed than fit into its queue.
+     */
+    @Test
+    public void testOfferHeldOverflow() {
+        SocketSession socket = new SocketSession(session, 2, SlowConsumerPolicy.DROP_NEWEST, mock(ILogger.class));
+        ReplayBuffer replay = new ReplayBuffer(8);
+        socket.hold();
+        socket.offer(replay.add(null, "1"));
+        socket.offer(replay.add(null, "2"));
+        socket.release(2);
+        assertThat(sent.size(), equalTo(0));
+
+        socket.offer(replay.add(null, "3"));
+        socket.release(3);
+        assertThat(sent, contains("{\"seq\":1,\"message\":\"1\"}"));
+    }
+
+    /**
+     * Test method for {@link SocketSession#flush()}.
+     * 
+     * Checks that batched messages are sent as one array per flush, while the previous write did not complete.
+     */
+    @Test
+    public void testFlushBatched() {
+        SocketSession socket = new SocketSession(session, 4, SlowConsumerPolicy.DROP_NEWEST, mock(ILogger.class),
+                SocketDelivery.BATCHED);
+        SocketTopic topic = new SocketTopic("p1", "n1", null);
+        socket.flush();
+        assertThat(sent.size(), equalTo(0));
+
+        socket.enqueue(topic, SocketMessages.quote("1"));
+        socket.enqueue(topic, SocketMessages.quote("2"));
+        assertThat(sent.size(), equalTo(0));
+        assertThat(socket.getQueueDepth(), equalTo(2));
+        socket.flush();
+        socket.enqueue(null, SocketMessages.quote("3"));
+        socket.flush();
+        assertThat(sent, contains("[\"1\",\"2\"]"));
+
+        complete();
+        socket.flush();
+        assertThat(sent, contains("[\"1\",\"2\"]", "[\"3\"]"));
+        assertThat(socket.getQueueDepth(), equalTo(0));
+    }
+
+    /**
+     * Test method for {@link SocketSession#enqueue(SocketTopic, String)}.
+     * 
+     * Checks that only the latest message of each socket action node is kept, in the order of the latest messages.
+     */
+    @Test
+    public void testEnqueueLatest() {
+        SocketSession socket = new SocketSession(session, 2, SlowConsumerPolicy.DROP_NEWEST, mock(ILogger.class),
+                SocketDelivery.LATEST);
+        SocketTopic first = new SocketTopic("p1", "n1", null);
+        SocketTopic second = new SocketTopic("p1", "n2", null);
+        for (int i = 1; i <= 100; i++) {
+            socket.enqueue(first, SocketMessages.quote("a" + i));
+            socket.enqueue(second, SocketMessages.quote("b" + i));
+        }
+        socket.enqueue(first, SocketMessages.quote("a101"));
+        assertThat(socket.getQueueDepth(), equalTo(2));
+        assertThat(socket.getDropped(), equalTo(0L));
+        socket.flush();
+        assertThat(sent, contains("[\"b100\",\"a101\"]"));
+    }
+
+    /**
+     * Test method for {@link SocketSession#enqueue(SocketTopic, String)}.
+     * 
+     * Checks policy {@link SlowConsumerPolicy#DROP_OLDEST} for batched messages.
+     */
+    @Test
+    public void testEnqueueDropOldest() {
+        SocketSession socket = new SocketSession(session, 2, SlowConsumerPolicy.DROP_OLDEST, mock(ILogger.class),
+                SocketDelivery.LATEST);
+        for (int i = 1; i <= 3; i++) {
+            socket.enqueue(null, SocketMessages.quote(String.valueOf(i)));
+        }
+        assertThat(socket.getDropped(), equalTo(1L));
+        socket.flush();
+        assertThat(sent, contains("[\"2\",\"3\"]"));
+    }
+
+    /**
+     * Completes the oldest pending write.
+     */
+    private void complete() {
+        pending.remove(0).writeSuccess();
+    }
+
+    /**
+     * Completes all pending writes (including those started by completing a write).
+     */
+    private void completeAll() {
+        while (!pending.isEmpty()) {
+            complete();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package stream.vispar.server.core;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.arrayContaining;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link SocketTopic}.
+ * 
+ * @author Micha Hanselmann
+ */
+public class SocketTopicTest {
+
+    /**
+     * Test method for {@link SocketTopic#getKeys()}.
+     */
+    @Test
+    public void testGetKeys() {
+        SocketTopic topic = new SocketTopic("p1", "n1", "Kitchen");
+        assertThat(topic.getKeys(), arrayContaining("pattern:p1", "output:n1", "name:Kitchen"));
+    }
+
+    /**
+     * Test method for {@link SocketTopic#latestKey()}.
+     * 
+     * Checks that topics of the same output node share their key, whatever the pattern is named.
+     */
+    @Test
+    public void testLatestKey() {
+        SocketTopic topic = new SocketTopic("p1", "n1", "Kitchen");
+        assertThat(topic.latestKey(), equalTo("output:n1"));
+        assertThat(new SocketTopic("p1", "n1", null).latestKey(), equalTo(topic.latestKey()));
+        assertThat(new SocketTopic("p1", "n2", "Kitchen").latestKey(), not(equalTo(topic.latestKey())));
+    }
+
+    /**
+     * Test method for {@link SocketTopic#isKey(String)}.
+     */
+    @Test
+    public void testIsKey() {
+        assertThat(SocketTopic.isKey("pattern:p1"), equalTo(true));
+        assertThat(SocketTopic.isKey("output:n1"), equalTo(true));
+        assertThat(SocketTopic.isKey("name:Kitchen"), equalTo(true));
+        assertThat(SocketTopic.isKey("tag:Kitchen"), equalTo(false));
+    }
+
+    /**
+     * Test method for {@link SocketTopic#SocketTopic(String, String, String)}.
+     */
+    @Test(expected = NullPointerException.class)
+    public void testSocketTopicNull() {
+        new SocketTopic(null, "n1", "Kitchen");
+    }
+}
@@ -4,10 +4,15 @@
 package stream.vispar.server.core;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.equalToIgnoringCase;
 import static org.hamcrest.Matchers.notNullValue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.BufferedReader;
@@ -28,7 +33,7 @@ import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
 import stream.vispar.server.cli.DefaultConsole;
-import stream.vispar.server.engine.IEngine;
+import stream.vispar.server.engine.IngestQueue;
 import stream.vispar.server.logger.ConsoleLogger;
 import stream.vispar.server.logger.ILogger;
 
@@ -153,7 +158,9 @@ public class SparkServerTest {
         instance.getSensorCtrl().registerSensors();
         assertThat(instance.getSensorCtrl().getByName("temp1"), notNullValue());
         ServerInstance spy = spy(instance);
-        when(spy.getEngine()).thenReturn(mock(IEngine.class));
+        IngestQueue queue = mock(IngestQueue.class);
+        when(queue.offer(any())).thenReturn(true);
+        when(spy.getIngestQueue()).thenReturn(queue);
         
         SparkServer server = new SparkServer(spy, 8080);
         server.start();
@@ -183,8 +190,164 @@ public class SparkServerTest {
                 .lines().collect(Collectors.joining("\n"));
 
         assertThat(result, equalToIgnoringCase("{}"));
+        verify(queue).offer(any());
         
         stream.close();
         server.stop();
     }
+
+    /**
+     * Test method for /sensor/temp1/batch route (if sensor batch route creation works).
+     * 
+     * @throws IOException server problem.
+     */
+    @Test
+    public void testSensorBatchRouteCreated() throws IOException {
+        instance.getSensorCtrl().registerSensors();
+        assertThat(instance.getSensorCtrl().getByName("temp1"), notNullValue());
+        ServerInstance spy = spy(instance);
+        IngestQueue queue = mock(IngestQueue.class);
+        when(queue.offerAll(any())).thenReturn(true);
+        when(queue.getLaneCapacity()).thenReturn(IngestQueue.DEFAULT_CAPACITY);
+        when(spy.getIngestQueue()).thenReturn(queue);
+        
+        SparkServer server = new SparkServer(spy, 8080);
+        server.start();
+        
+        URL url = new URL("http://localhost:8080/sensor/temp1/batch");
+        HttpURLConnection http = (HttpURLConnection) url.openConnection();
+        http.setRequestMethod("POST");
+        http.setDoOutput(true);
+        
+        // sensor request (newline-delimited, second item is invalid)
+        String request = "{ \"value\": \"23\", \"other\": { \"room\": \"home\" } }\n"
+                        + "{ \"value\": \"23\" }\n"
+                        + "{ \"value\": \"24\", \"other\": { \"room\": \"home\" } }\n";
+        byte[] out = request.getBytes(StandardCharsets.UTF_8);
+        http.setFixedLengthStreamingMode(out.length);
+        http.setRequestProperty("Content-Type", "application/x-ndjson; charset=UTF-8");
+        http.connect();
+        try (OutputStream os = http.getOutputStream()) {
+            os.write(out);
+        }
+        
+        InputStream stream = http.getInputStream();
+        String result = new BufferedReader(new InputStreamReader(stream))
+                .lines().collect(Collectors.joining("\n"));
+
+        assertThat(result, containsString("\"accepted\":2"));
+        assertThat(result, containsString("\"index\":1"));
+        verify(queue).offerAll(argThat(events -> events.size() == 2));
+        
+        stream.close();
+        server.stop();
+    }
+    
+    /**
+     * Test method for /sensor/temp1 route.
+     * 
+     * Checks that the sensor is asked to retry later if the ingest queue is full.
+     * 
+     * @throws IOException server problem.
+     */
+    @Test
+    public void testSensorRouteQueueFull() throws IOException {
+        instance.getSensorCtrl().registerSensors();
+        ServerInstance spy = spy(instance);
+        IngestQueue queue = mock(IngestQueue.class);
+        when(queue.offer(any())).thenReturn(false);
+        when(spy.getIngestQueue()).thenReturn(queue);
+        
+        SparkServer server = new SparkServer(spy, 8080);
+        server.start();
+        
+        URL url = new URL("http://localhost:8080/sensor/temp1");
+        HttpURLConnection http = (HttpURLConnection) url.openConnection();
+        http.setRequestMethod("POST");
+        http.setDoOutput(true);
+        
+        // sensor request
+        String request = "{ \"value\": \"23\", \"other\": { \"room\": \"home\" } }";
+        byte[] out = request.getBytes(StandardCharsets.UTF_8);
+        http.setFixedLengthStreamingMode(out.length);
+        http.setRequestProperty("Content-Type", "application/json; charset=UTF-8");
+        http.connect();
+        try (OutputStream os = http.getOutputStream()) {
+            os.write(out);
+        }
+        
+        assertThat(http.getResponseCode(), equalTo(503));
+        assertThat(http.getHeaderField("Retry-After"), equalTo("1"));
+        
+        http.disconnect();
+        server.stop();
+    }
+    
+    /**
+     * Test method for /sensor/temp1/batch route.
+     * 
+     * Checks that the sensor is asked to retry later if the ingest queue has not enough space left for the batch.
+     * 
+     * @throws IOException server problem.
+     */
+    @Test
+    public void testSensorBatchRouteQueueFull() throws IOException {
+        assertThat(postBatch(IngestQueue.DEFAULT_CAPACITY, false).getResponseCode(), equalTo(503));
+    }
+    
+    /**
+     * Test method for /sensor/temp1/batch route.
+     * 
+     * Checks that a batch larger than a lane of the ingest queue is rejected as too large instead of being retried
+     * forever.
+     * 
+     * @throws IOException server problem.
+     */
+    @Test
+    public void testSensorBatchRouteTooLarge() throws IOException {
+        assertThat(postBatch(1, true).getResponseCode(), equalTo(413));
+    }
+    
+    /**
+     * Posts a batch of two events to the /sensor/temp1/batch route of a server with a mocked ingest queue.
+     * 
+     * @param laneCapacity
+     *              the capacity of a lane of the ingest queue.
+     * @param accepted
+     *              whether the ingest queue accepts the batch.
+     * @return
+     *              the (finished) connection.
+     * @throws IOException server problem.
+     */
+    private HttpURLConnection postBatch(int laneCapacity, boolean accepted) throws IOException {
+        instance.getSensorCtrl().registerSensors();
+        ServerInstance spy = spy(instance);
+        IngestQueue queue = mock(IngestQueue.class);
+        when(queue.offerAll(any())).thenReturn(accepted);
+        when(queue.getLaneCapacity()).thenReturn(laneCapacity);
+        when(spy.getIngestQueue()).thenReturn(queue);
+        
+        SparkServer server = new SparkServer(spy, 8080);
+        server.start();
+        
+        URL url = new URL("http://localhost:8080/sensor/temp1/batch");
+        HttpURLConnection http = (HttpURLConnection) url.openConnection();
+        http.setRequestMethod("POST");
+        http.setDoOutput(true);
+        
+        String request = "{ \"value\": \"23\", \"other\": { \"room\": \"home\" } }\n"
+                        + "{ \"value\": \"24\", \"other\": { \"room\": \"home\" } }\n";
+        byte[] out = request.getBytes(StandardCharsets.UTF_8);
+        http.setFixedLengthStreamingMode(out.length);
+        http.setRequestProperty("Content-Type", "application/x-ndjson; charset=UTF-8");
+        http.connect();
+        try (OutputStream os = http.getOutputStream()) {
+            os.write(out);
+        }
+        
+        http.getResponseCode();
+        http.disconnect();
+        server.stop();
+        return http;
+    }
 }
@@ -5,13 +5,28 @@ package stream.vispar.server.core;
 
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.notNullValue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Locale;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 
+import org.eclipse.jetty.websocket.api.RemoteEndpoint;
 import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WriteCallback;
 import org.eclipse.jetty.websocket.api.annotations.OnWebSocketConnect;
 import org.eclipse.jetty.websocket.api.annotations.OnWebSocketMessage;
 import org.eclipse.jetty.websocket.api.annotations.WebSocket;
@@ -33,6 +48,7 @@ public class SparkSocketTest {
     private ServerInstance instance;
     private String receivedMsg = "";
     private boolean connected = false;
+    private final List<Session> sessions = new ArrayList<>();
     
     /**
      * Socket client for testing.
@@ -156,8 +172,296 @@ public class SparkSocketTest {
             Thread.sleep(100);
         }
         assertThat(receivedMsg, equalTo("Hello Socket!"));
+        assertThat(socket.getSessions().size(), equalTo(1));
+        assertThat(socket.getSessions().get(0).getDropped(), equalTo(0L));
         
         socket.stop();
         client.stop();
     }
-}
+
+    /**
+     * Test method for {@link SparkSocket#publish(SocketTopic, String)}.
+     * 
+     * Checks that only clients subscribed to a topic (or without subscriptions) receive its messages.
+     */
+    @Test
+    public void testPublish() {
+        SparkSocket socket = new SparkSocket(instance, 8080);
+        List<String> all = connect(socket);
+        List<String> kitchen = connect(socket);
+        List<String> output = connect(socket);
+        socket.messageReceived(sessions.get(1), "subscribe name:Kitchen");
+        socket.messageReceived(sessions.get(2), "subscribe output:n1");
+        socket.messageReceived(sessions.get(2), "subscribe pattern:p1");
+        
+        socket.publish(new SocketTopic("p1", "n1", "Kitchen"), "1");
+        socket.publish(new SocketTopic("p2", "n2", "Kitchen"), "2");
+        socket.publish(new SocketTopic("p3", "n3", "Bath"), "3");
+        assertThat(all, contains("1", "2", "3"));
+        assertThat(kitchen, contains("1", "2"));
+        assertThat(output, contains("1"));
+        
+        socket.messageReceived(sessions.get(1), "unsubscribe name:Kitchen");
+        socket.publish(new SocketTopic("p3", "n3", "Bath"), "4");
+        assertThat(kitchen, contains("1", "2", "4"));
+        assertThat(output, contains("1"));
+    }
+    
+    /**
+     * Test method for {@link SparkSocket#publish(SocketTopic, String)}.
+     * 
+     * Checks batched delivery with only the latest message of each socket action node.
+     */
+    @Test
+    public void testPublishLatest() {
+        SparkSocket socket = new SparkSocket(instance, 8080, 16, SlowConsumerPolicy.DROP_OLDEST,
+                SocketDelivery.LATEST, 1000);
+        List<String> all = connect(socket);
+        List<String> kitchen = connect(socket);
+        socket.messageReceived(sessions.get(1), "subscribe name:Kitchen");
+        
+        for (int i = 1; i <= 1000; i++) {
+            socket.publish(new SocketTopic("p1", "n1", "Kitchen"), "k" + i);
+            socket.publish(new SocketTopic("p2", "n2", "Bath"), "b" + i);
+        }
+        socket.sendMessage("hello");
+        assertThat(all.size(), equalTo(0));
+        
+        socket.flush();
+        assertThat(all, contains("[\"k1000\",\"b1000\",\"hello\"]"));
+        assertThat(kitchen, contains("[\"k1000\",\"hello\"]"));
+        socket.flush();
+        assertThat(all.size(), equalTo(1));
+    }
+
+    /**
+     * Test method for {@link SparkSocket#SparkSocket(ServerInstance, int, int, SlowConsumerPolicy, SocketDelivery, long)}.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testSparkSocketBadTick() {
+        new SparkSocket(instance, 8080, 16, SlowConsumerPolicy.DROP_OLDEST, SocketDelivery.BATCHED, 0);
+    }
+    
+    /**
+     * Test method for {@link SparkSocket#messageReceived(Session, String)}.
+     * 
+     * Checks that a resuming client gets the messages of its subscriptions it missed replayed.
+     */
+    @Test
+    public void testResume() {
+        SparkSocket socket = new SparkSocket(instance, 8080, 16, SlowConsumerPolicy.DROP_OLDEST,
+                SocketDelivery.IMMEDIATE, SparkSocket.DEFAULT_TICK, 8, 0);
+        List<String> first = connect(socket);
+        socket.flush();
+        socket.publish(new SocketTopic("p1", "n1", "Kitchen"), "1");
+        socket.publish(new SocketTopic("p2", "n2", "Bath"), "2");
+        socket.sendMessage("3");
+        socket.publish(new SocketTopic("p1", "n1", "Kitchen"), "4");
+        assertThat(first, contains("{\"seq\":1,\"message\":\"1\"}", "{\"seq\":2,\"message\":\"2\"}",
+                "{\"seq\":3,\"message\":\"3\"}", "{\"seq\":4,\"message\":\"4\"}"));
+        
+        // reconnect after message 1
+        List<String> second = connect(socket);
+        socket.messageReceived(sessions.get(1), "subscribe name:Kitchen");
+        socket.messageReceived(sessions.get(1), "resume 1");
+        assertThat(second, contains("{\"seq\":3,\"message\":\"3\"}", "{\"seq\":4,\"message\":\"4\"}"));
+        socket.messageReceived(sessions.get(1), "resume 4");
+        assertThat(second.size(), equalTo(2));
+    }
+
+    /**
+     * Test method for {@link SparkSocket#messageReceived(Session, String)}.
+     * 
+     * Checks that a client resuming after evicted messages is told to resync.
+     */
+    @Test
+    public void testResumeResync() {
+        SparkSocket socket = new SparkSocket(instance, 8080, 16, SlowConsumerPolicy.DROP_OLDEST,
+                SocketDelivery.BATCHED, SparkSocket.DEFAULT_TICK, 2);
+        for (int i = 1; i <= 5; i++) {
+            socket.sendMessage(String.valueOf(i));
+        }
+        List<String> evicted = connect(socket);
+        List<String> client = connect(socket);
+        socket.messageReceived(sessions.get(0), "resume 2");
+        socket.messageReceived(sessions.get(1), "resume 3");
+        socket.messageReceived(sessions.get(1), "resume 9");
+        socket.flush();
+        assertThat(evicted, contains("[{\"resync\":true,\"seq\":5}]"));
+        assertThat(client, contains("[{\"seq\":4,\"message\":\"4\"},{\"seq\":5,\"message\":\"5\"},"
+                + "{\"resync\":true,\"seq\":5}]"));
+    }
+    
+    /**
+     * Test method for {@link SparkSocket#messageReceived(Session, String)}.
+     * 
+     * Checks that messages published while a client reconnects are neither duplicated nor reordered by the replay.
+     */
+    @Test
+    public void testResumeHeld() {
+        SparkSocket socket = new SparkSocket(instance, 8080, 16, SlowConsumerPolicy.DROP_OLDEST,
+                SocketDelivery.IMMEDIATE, SparkSocket.DEFAULT_TICK, 8);
+        for (int i = 1; i <= 3; i++) {
+            socket.sendMessage(String.valueOf(i));
+        }
+        List<String> client = connect(socket);
+        socket.sendMessage("4");
+        socket.sendMessage("5");
+        assertThat(client, empty());
+        
+        socket.messageReceived(sessions.get(0), "resume 1");
+        socket.sendMessage("6");
+        assertThat(sequencesOf(client), contains(2L, 3L, 4L, 5L, 6L));
+    }
+    
+    /**
+     * Test method for {@link SparkSocket#flush()}.
+     * 
+     * Checks that new clients are held across ticks until they resume, so a client resuming after a round trip
+     * gets the messages it missed replayed instead of having to resync.
+     */
+    @Test
+    public void testFlushHeld() {
+        SparkSocket socket = new SparkSocket(instance, 8080, 16, SlowConsumerPolicy.DROP_OLDEST,
+                SocketDelivery.IMMEDIATE, SparkSocket.DEFAULT_TICK, 8);
+        socket.sendMessage("1");
+        List<String> client = connect(socket);
+        socket.sendMessage("2");
+        socket.flush();
+        socket.sendMessage("3");
+        socket.flush();
+        assertThat(client, empty());
+        
+        socket.messageReceived(sessions.get(0), "resume 0");
+        assertThat(sequencesOf(client), contains(1L, 2L, 3L));
+    }
+    
+    /**
+     * Test method for {@link SparkSocket#flush()}.
+     * 
+     * Checks that new clients which do not resume receive the messages routed since they connected once the
+     * grace period expired.
+     */
+    @Test
+    public void testFlushHoldTimeout() {
+        SparkSocket socket = new SparkSocket(instance, 8080, 16, SlowConsumerPolicy.DROP_OLDEST,
+                SocketDelivery.IMMEDIATE, SparkSocket.DEFAULT_TICK, 8, 0);
+        socket.sendMessage("1");
+        List<String> client = connect(socket);
+        socket.sendMessage("2");
+        assertThat(client, empty());
+        
+        socket.flush();
+        assertThat(sequencesOf(client), contains(2L));
+    }
+    
+    /**
+     * Test method for {@link SparkSocket#SparkSocket(ServerInstance, int, int, SlowConsumerPolicy, SocketDelivery, long, int, long)}.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testSparkSocketBadHoldTimeout() {
+        new SparkSocket(instance, 8080, 16, SlowConsumerPolicy.DROP_OLDEST, SocketDelivery.IMMEDIATE,
+                SparkSocket.DEFAULT_TICK, 8, -1);
+    }
+    
+    /**
+     * Test method for {@link SparkSocket#publish(SocketTopic, String)}.
+     * 
+     * Checks that numbered messages published concurrently are received in order, also by a client resuming
+     * meanwhile.
+     * 
+     * @throws InterruptedException
+     *          if interrupted while waiting for the publishers.
+     */
+    @Test(timeout = 10000)
+    public void testPublishConcurrently() throws InterruptedException {
+        SparkSocket socket = new SparkSocket(instance, 8080, 4096, SlowConsumerPolicy.DROP_OLDEST,
+                SocketDelivery.IMMEDIATE, SparkSocket.DEFAULT_TICK, 4096, 0);
+        List<WriteCallback> writes = Collections.synchronizedList(new ArrayList<>());
+        List<String> live = connect(socket, writes);
+        socket.flush();
+        
+        List<Thread> publishers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            SocketTopic topic = new SocketTopic("p" + i, "n" + i, null);
+            Thread publisher = new Thread(() -> {
+                for (int j = 0; j < 500; j++) {
+                    socket.publish(topic, String.valueOf(j));
+                }
+            });
+            publishers.add(publisher);
+            publisher.start();
+        }
+        List<String> resumed = connect(socket, writes);
+        socket.messageReceived(sessions.get(1), "resume 0");
+        for (Thread publisher : publishers) {
+            publisher.join();
+        }
+        while (!writes.isEmpty()) {
+            writes.remove(0).writeSuccess();
+        }
+        
+        List<Long> all = LongStream.rangeClosed(1, 2000).boxed().collect(Collectors.toList());
+        assertThat(sequencesOf(live), equalTo(all));
+        assertThat(sequencesOf(resumed), equalTo(all));
+    }
+    
+    /**
+     * Connects a mocked client to a socket, its writes complete immediately.
+     * 
+     * @param socket
+     *          the {@link SparkSocket}.
+     * @return
+     *          the messages received by the client.
+     */
+    private List<String> connect(SparkSocket socket) {
+        return connect(socket, null);
+    }
+    
+    /**
+     * Connects a mocked client to a socket.
+     * 
+     * @param socket
+     *          the {@link SparkSocket}.
+     * @param writes
+     *          collects the callbacks of the writes, to be completed by the test (null to complete them
+     *          immediately).
+     * @return
+     *          the messages received by the client.
+     */
+    private List<String> connect(SparkSocket socket, List<WriteCallback> writes) {
+        Session session = mock(Session.class);
+        RemoteEndpoint remote = mock(RemoteEndpoint.class);
+        List<String> received = Collections.synchronizedList(new ArrayList<>());
+        when(session.getRemote()).thenReturn(remote);
+        when(session.isOpen()).thenReturn(true);
+        when(session.getRemoteAddress()).thenReturn(new InetSocketAddress("127.0.0.1", 4000 + sessions.size()));
+        doAnswer(invocation -> {
+            received.add(invocation.getArgument(0));
+            if (writes != null) {
+                writes.add(invocation.getArgument(1));
+            } else {
+                invocation.<WriteCallback>getArgument(1).writeSuccess();
+            }
+            return null;
+        }).when(remote).sendString(anyString(), any(WriteCallback.class));
+        socket.clientConnected(session);
+        sessions.add(session);
+        return received;
+    }
+    
+    /**
+     * Extracts the sequence numbers of numbered messages.
+     * 
+     * @param messages
+     *          the messages received by a client.
+     * @return
+     *          the sequence numbers.
+     */
+    private static List<Long> sequencesOf(List<String> messages) {
+        synchronized (messages) {
+            return messages.stream().map(message -> Long.parseLong(
+                    message.substring("{\"seq\":".length(), message.indexOf(',')))).collect(Collectors.toList());
+        }
+    }
+}
\ No newline at end of file
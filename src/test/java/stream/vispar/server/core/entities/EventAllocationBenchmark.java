@@ -0,0 +1,97 @@
+package stream.vispar.server.core.entities;
+
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.util.function.Consumer;
+
+import stream.vispar.jsonconverter.IJsonConverter;
+import stream.vispar.jsonconverter.exceptions.JsonException;
+import stream.vispar.jsonconverter.gson.GsonConverter;
+
+/**
+ * Benchmark for the allocations of an {@link Event} on its way from the raw sensor data to the consuming
+ * deployments. Compares reading the values as map (one copy per consumer) with reading the shared typed values.
+ * Reports the allocated bytes and the time per event.
+ * 
+ * <p>
+ * Not part of the test suite, run it manually using the main method (requires a HotSpot JVM).
+ * 
+ * @author Micha Hanselmann
+ */
+public final class EventAllocationBenchmark {
+
+    private static final int CONSUMERS = 4;
+    private static final int WARMUP_EVENTS = 200000;
+    private static final int MEASURED_EVENTS = 1000000;
+    private static final String DATA = "{ \"value\": 23, \"other\": { \"room\": \"Kitchen\" } }";
+
+    /**
+     * Sink preventing the reads from being optimized away.
+     */
+    private static int sink;
+
+    /**
+     * Utility class.
+     */
+    private EventAllocationBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     * 
+     * @param args
+     *            not used.
+     * @throws JsonException
+     *            if the sensor configuration could not be parsed.
+     */
+    public static void main(String[] args) throws JsonException {
+        IJsonConverter conv = new GsonConverter();
+        Sensor sensor = conv.fromJson(conv.fromString("{ \"name\": \"temp1\", \"description\": \"\", "
+                + "\"endpoint\": \"temp1\", \"attributes\": { "
+                + "\"value\": { \"name\": \"value\", \"type\": \"INTEGER\" }, "
+                + "\"other.room\": { \"name\": \"room\", \"type\": \"STRING\" } } }"), Sensor.class);
+        sensor.compile();
+
+        run("parse only", sensor, event -> sink += event.getValues().length);
+        run("parse + getData() per consumer", sensor, event -> {
+            for (int i = 0; i < CONSUMERS; i++) {
+                sink += event.getData().size();
+            }
+        });
+        run("parse + getValues() per consumer", sensor, event -> {
+            for (int i = 0; i < CONSUMERS; i++) {
+                sink += event.getValues().length;
+            }
+        });
+    }
+
+    /**
+     * Runs a single benchmark iteration.
+     * 
+     * @param name
+     *            the name of the iteration.
+     * @param sensor
+     *            the {@link Sensor} parsing the events.
+     * @param consumers
+     *            reads each parsed event.
+     */
+    private static void run(String name, Sensor sensor, Consumer<Event> consumers) {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+
+        for (int i = 0; i < WARMUP_EVENTS; i++) {
+            consumers.accept(sensor.parseEvent(new StringReader(DATA)));
+        }
+        long bytes = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_EVENTS; i++) {
+            consumers.accept(sensor.parseEvent(new StringReader(DATA)));
+        }
+        long duration = System.nanoTime() - start;
+        bytes = threads.getThreadAllocatedBytes(thread) - bytes;
+
+        System.out.println(String.format("%-34s %8.1f bytes/event %8.1f ns/event", name,
+                (double) bytes / MEASURED_EVENTS, (double) duration / MEASURED_EVENTS));
+    }
+}
@@ -9,6 +9,7 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasEntry;
 import static org.mockito.Mockito.mock;
+import java.io.StringReader;
 import java.util.HashMap;
 import java.util.Locale;
 import org.junit.Test;
@@ -38,15 +39,57 @@ public class EventTest {
         
         Sensor sensor = instance.getSensorCtrl().getByName("temp1");
         HashMap<Attribute, String> data = new HashMap<>();
-        Attribute attr = new Attribute("attr", "", AttributeType.INTEGER);
+        Attribute attr = new Attribute("value", "", AttributeType.INTEGER);
+        Attribute room = new Attribute("room", "", AttributeType.STRING);
         data.put(attr, "32");
+        data.put(room, "Kitchen");
         Event event = new Event(123, data, sensor);
         
         assertThat(event.getData(), hasEntry(attr, "32"));
+        assertThat(event.getValues()[sensor.getSlot("value")], equalTo((Object) 32));
+        assertThat(event.getValues()[sensor.getSlot("room")], equalTo((Object) "Kitchen"));
         assertThat(event.getTimestamp(), equalTo(123L));
         assertThat(event.getSensor(), sameInstance(sensor));
     }
 
+    /**
+     * Test method for {@link Event#Event(long, java.util.Map, Sensor)}.
+     * 
+     * Checks behavior on values not matching the attribute type.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testEventBadValue() {
+        ServerConfig config = new ServerConfig(8888, 8889, Locale.US, mock(ILogger.class), "localhost", 
+                "./src/test/resources/sensors");
+        ServerInstance instance = new ServerInstance(config);
+        instance.getSensorCtrl().registerSensors();
+        
+        Sensor sensor = instance.getSensorCtrl().getByName("temp1");
+        HashMap<Attribute, String> data = new HashMap<>();
+        data.put(new Attribute("value", "", AttributeType.INTEGER), "warm");
+        data.put(new Attribute("room", "", AttributeType.STRING), "Kitchen");
+        new Event(123, data, sensor);
+    }
+
+    /**
+     * Test method for {@link Event#getData()}.
+     * 
+     * Checks that values keep the form they were received in.
+     */
+    @Test
+    public void testGetDataRaw() {
+        ServerConfig config = new ServerConfig(8888, 8889, Locale.US, mock(ILogger.class), "localhost", 
+                "./src/test/resources/sensors");
+        ServerInstance instance = new ServerInstance(config);
+        instance.getSensorCtrl().registerSensors();
+        
+        Sensor sensor = instance.getSensorCtrl().getByName("rainSensor");
+        Event event = sensor.parseEvent(new StringReader("{ \"value\": 21 }"));
+        
+        assertThat(event.getData(), hasEntry(new Attribute("rain", "", AttributeType.DOUBLE), "21"));
+        assertThat(event.getValues()[sensor.getSlot("rain")], equalTo((Object) 21.0));
+    }
+
     /**
      * Test method for {@link Event#toString()}.
      */
@@ -59,11 +102,12 @@ public class EventTest {
         
         Sensor sensor = instance.getSensorCtrl().getByName("temp1");
         HashMap<Attribute, String> data = new HashMap<>();
-        Attribute attr = new Attribute("attr", "", AttributeType.INTEGER);
-        data.put(attr, "32");
+        data.put(new Attribute("value", "", AttributeType.INTEGER), "32");
+        data.put(new Attribute("room", "", AttributeType.STRING), "Kitchen");
         Event event = new Event(123, data, sensor);
         
-        assertThat(event.toString(), containsString("data={attr: int (origin: )=32}"));
+        assertThat(event.toString(), containsString("value: int (origin: )=32"));
+        assertThat(event.toString(), containsString("room: String (origin: )=Kitchen"));
         assertThat(event.toString(), containsString("sensor=temp1"));
         assertThat(event.toString(), containsString("timestamp=123"));
     }
@@ -0,0 +1,104 @@
+package stream.vispar.server.core.entities;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import stream.vispar.jsonconverter.exceptions.JsonException;
+import stream.vispar.jsonconverter.gson.GsonConverter;
+import stream.vispar.jsonconverter.types.IJsonElement;
+
+/**
+ * Tests for {@link JsonPath}.
+ * 
+ * @author Micha Hanselmann
+ */
+public class JsonPathTest {
+    
+    private IJsonElement data;
+    
+    
+    /**
+     * Parse demo data.
+     * 
+     * @throws JsonException bad format.
+     */
+    @Before
+    public void setUp() throws JsonException {
+        String raw = "{\n"
+                + "    \"value\": \"23\",\n"
+                + "    \"fillLevel\": [ 1.25, 1.5 ],\n"
+                + "    \"other\": {\n"
+                + "        \"room\": \"Kitchen\",\n"
+                + "        \"time\": [ \"8080\" ],\n"
+                + "        \"readings\": [ { \"value\": 7 }, { \"value\": 8 } ]\n"
+                + "    }\n"
+                + "}";
+        data = new GsonConverter().fromString(raw);
+    }
+
+    /**
+     * Test method for {@link JsonPath#getValue(IJsonElement)} on root level keys.
+     * 
+     * @throws JsonException bad format.
+     */
+    @Test
+    public void testGetValueRoot() throws JsonException {
+        assertThat(JsonPath.compile("value").getValue(data), equalTo("23"));
+        assertThat(JsonPath.compile("fillLevel[1]").getValue(data), equalTo("1.5"));
+    }
+
+    /**
+     * Test method for {@link JsonPath#getValue(IJsonElement)} on nested keys.
+     * 
+     * @throws JsonException bad format.
+     */
+    @Test
+    public void testGetValueNested() throws JsonException {
+        assertThat(JsonPath.compile("other.room").getValue(data), equalTo("Kitchen"));
+        assertThat(JsonPath.compile("other.time[0]").getValue(data), equalTo("8080"));
+        assertThat(JsonPath.compile("other.readings[1].value").getValue(data), equalTo("8"));
+    }
+
+    /**
+     * Test method for {@link JsonPath#getValue(IJsonElement)}.
+     * 
+     * Checks behavior on missing keys.
+     * 
+     * @throws JsonException bad format.
+     */
+    @Test(expected = NullPointerException.class)
+    public void testGetValueMissing() throws JsonException {
+        JsonPath.compile("other.humidity.value").getValue(data);
+    }
+
+    /**
+     * Test method for {@link JsonPath#compile(String)}.
+     * 
+     * Checks behavior on malformed paths.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testCompileMalformed1() {
+        JsonPath.compile("other.time[x]");
+    }
+
+    /**
+     * Test method for {@link JsonPath#compile(String)}.
+     * 
+     * Checks behavior on malformed paths.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testCompileMalformed2() {
+        JsonPath.compile("other..room");
+    }
+
+    /**
+     * Test method for {@link JsonPath#toString()}.
+     */
+    @Test
+    public void testToString() {
+        assertThat(JsonPath.compile("other.time[0]").toString(), equalTo("other.time[0]"));
+    }
+}
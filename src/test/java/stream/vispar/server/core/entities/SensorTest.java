@@ -6,9 +6,14 @@ package stream.vispar.server.core.entities;
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.not;
+import java.io.StringReader;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -128,6 +133,129 @@ public class SensorTest {
         assertThat(s, containsString("timestamp=8080"));
     }
 
+    /**
+     * Test method for {@link Sensor#parseEvent(stream.vispar.jsonconverter.types.IJsonElement)}.
+     * 
+     * Checks behavior on values not matching the attribute type.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseEventBadValue() {
+        IJsonObject data = new GsonJsonObject();
+        IJsonObject nestedData = new GsonJsonObject();
+        IJsonArray array = new GsonJsonArray();
+        data.add("value", "warm");
+        nestedData.add("room", "Kitchen");
+        array.add("8080");
+        nestedData.add("time", array);
+        data.add("other", nestedData);
+        
+        sensor.parseEvent(data);
+    }
+
+    /**
+     * Test method for {@link Sensor#parseEvent(java.io.Reader)}.
+     */
+    @Test
+    public void testParseEventStreamed() {
+        String raw = "{\n"
+                + "    \"ignored\": { \"nested\": [ 1, 2, { \"deep\": true } ] },\n"
+                + "    \"value\": 23,\n"
+                + "    \"other\": {\n"
+                + "        \"time\": [ \"8080\", \"9090\" ],\n"
+                + "        \"room\": \"Kitchen\"\n"
+                + "    }\n"
+                + "}";
+        
+        Event event = sensor.parseEvent(new StringReader(raw));
+        assertThat(event.getTimestamp(), equalTo(8080L));
+        assertThat(event.getValues()[sensor.getSlot("value")], equalTo((Object) 23));
+        assertThat(event.getValues()[sensor.getSlot("room")], equalTo((Object) "Kitchen"));
+    }
+
+    /**
+     * Test method for {@link Sensor#parseEvent(java.io.Reader)}.
+     * 
+     * Checks that reading stops once all values are found (the rest of the data is never looked at).
+     */
+    @Test
+    public void testParseEventStreamedStopsEarly() {
+        String raw = "{ \"value\": \"23\", \"other\": { \"room\": \"Kitchen\", \"time\": [ 8080 ] }, "
+                + "\"garbage\": ][ this is never read";
+        
+        Event event = sensor.parseEvent(new StringReader(raw));
+        assertThat(event.getTimestamp(), equalTo(8080L));
+    }
+
+    /**
+     * Test method for {@link Sensor#parseEvent(java.io.Reader)}.
+     * 
+     * Checks behavior on missing values.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseEventStreamedMissing() {
+        sensor.parseEvent(new StringReader("{ \"value\": \"23\", \"other\": { \"time\": [ 8080 ] } }"));
+    }
+
+    /**
+     * Test method for {@link Sensor#parseEvent(java.io.Reader)}.
+     * 
+     * Checks behavior on malformed data.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseEventStreamedMalformed() {
+        sensor.parseEvent(new StringReader("{ \"value\": "));
+    }
+
+    /**
+     * Test method for {@link Sensor#parseEvents(java.io.Reader, java.util.Map)} using a json array.
+     */
+    @Test
+    public void testParseEventsArray() {
+        String raw = "[\n"
+                + "    { \"value\": 1, \"other\": { \"room\": \"Kitchen\", \"time\": [ 100 ] }, \"x\": [ 1 ] },\n"
+                + "    { \"value\": \"warm\", \"other\": { \"room\": \"Kitchen\", \"time\": [ 200 ] } },\n"
+                + "    { \"value\": 3, \"other\": { \"room\": \"Garden\", \"time\": [ 300 ] } }\n"
+                + "]";
+        
+        Map<Integer, String> errors = new HashMap<>();
+        List<Event> events = sensor.parseEvents(new StringReader(raw), errors);
+        assertThat(events.size(), equalTo(2));
+        assertThat(events.get(0).getTimestamp(), equalTo(100L));
+        assertThat(events.get(1).getTimestamp(), equalTo(300L));
+        assertThat(events.get(1).getValues()[sensor.getSlot("room")], equalTo((Object) "Garden"));
+        assertThat(errors.keySet(), contains(1));
+    }
+
+    /**
+     * Test method for {@link Sensor#parseEvents(java.io.Reader, java.util.Map)} using newline-delimited json.
+     */
+    @Test
+    public void testParseEventsNewlineDelimited() {
+        String raw = "{ \"value\": 1, \"other\": { \"room\": \"Kitchen\", \"time\": [ 100 ] } }\n"
+                + "{ \"value\": 2, \"other\": { \"room\": \n"
+                + "\n"
+                + "{ \"value\": 3, \"other\": { \"room\": \"Garden\", \"time\": [ 300 ] } }\n";
+        
+        Map<Integer, String> errors = new HashMap<>();
+        List<Event> events = sensor.parseEvents(new StringReader(raw), errors);
+        assertThat(events.size(), equalTo(2));
+        assertThat(events.get(0).getTimestamp(), equalTo(100L));
+        assertThat(events.get(1).getTimestamp(), equalTo(300L));
+        assertThat(errors.keySet(), contains(1));
+    }
+
+    /**
+     * Test method for {@link Sensor#getSlot(String)} and {@link Sensor#getAttributeOrder()}.
+     */
+    @Test
+    public void testGetSlot() {
+        Attribute[] order = sensor.getAttributeOrder();
+        assertThat(order.length, equalTo(2));
+        assertThat(order[sensor.getSlot("value")], equalTo(new Attribute("value", "", AttributeType.INTEGER)));
+        assertThat(order[sensor.getSlot("room")], equalTo(new Attribute("room", "", AttributeType.STRING)));
+        assertThat(sensor.getSlot("humidity"), equalTo(-1));
+    }
+
     /**
      * Test method for {@link Sensor#equals(java.lang.Object)}.
      * 
@@ -6,19 +6,20 @@ package stream.vispar.server.core.entities;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.notNullValue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Locale;
 
 import org.junit.Test;
-import stream.vispar.model.Pattern;
 import stream.vispar.server.core.ServerConfig;
 import stream.vispar.server.core.ServerInstance;
-import stream.vispar.server.engine.IEngine;
+import stream.vispar.server.engine.IngestQueue;
 import stream.vispar.server.logger.ILogger;
 
 /**
@@ -50,22 +51,9 @@ public class SimulationTest {
      */
     @Test
     public void testSimulate() {
-        Collection<Event> events = new ArrayList<>();
-        IEngine fakeEngine = new IEngine() {
-            @Override
-            public void undeploy(Pattern pattern) { }
-            @Override
-            public void stop() { }
-            @Override
-            public void start() { }
-            @Override
-            public void sendEvent(Event event) { 
-                System.out.println(event);
-                events.add(event);
-            }
-            @Override
-            public void deploy(Pattern pattern) { }
-        };
+        List<Event> events = Collections.synchronizedList(new ArrayList<>());
+        IngestQueue queue = mock(IngestQueue.class);
+        when(queue.offer(any())).thenAnswer(invocation -> events.add(invocation.getArgument(0)));
         
         ServerConfig config = new ServerConfig(8888, 8889, Locale.US, mock(ILogger.class), "localhost", 
                 "./src/test/resources/sensors");
@@ -73,7 +61,7 @@ public class SimulationTest {
         instance.getSensorCtrl().registerSensors();
         
         ServerInstance mockInstance = spy(instance);
-        when(mockInstance.getEngine()).thenReturn(fakeEngine);
+        when(mockInstance.getIngestQueue()).thenReturn(queue);
         
         Simulation sim = new Simulation("./src/test/resources/simulations/temp.sim");
         sim.simulate(mockInstance);
@@ -84,6 +72,7 @@ public class SimulationTest {
             e.printStackTrace();
         }
         
+        // the events are queued like received events instead of being sent to the engine directly
         assertThat(events.size(), equalTo(6));
         for (Event e : events) {
             assertThat(e.getSensor().getName(), equalTo("temp1"));
@@ -0,0 +1,155 @@
+package stream.vispar.server.engine;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import stream.vispar.model.Pattern;
+import stream.vispar.model.nodes.Attribute;
+import stream.vispar.model.nodes.Operand;
+import stream.vispar.model.nodes.Point;
+import stream.vispar.model.nodes.inputs.ConstantIntegerNode;
+import stream.vispar.model.nodes.inputs.SensorNode;
+import stream.vispar.model.nodes.operators.FilterOperatorNode;
+import stream.vispar.model.nodes.operators.Relation;
+import stream.vispar.model.nodes.outputs.SocketActionNode;
+import stream.vispar.server.core.DBConnectorMock;
+import stream.vispar.server.core.ServerConfig;
+import stream.vispar.server.core.ServerInstance;
+import stream.vispar.server.core.entities.Event;
+import stream.vispar.server.core.entities.Sensor;
+import stream.vispar.server.logger.ILogger;
+
+/**
+ * Benchmark comparing the {@link FilterEngine} fast path with the {@link SiddhiEngine}. Measures the cost per
+ * event of a sensor used by a growing number of constant filter patterns, every second event matches them.
+ * 
+ * <p>
+ * Not part of the test suite, run it manually using the main method.
+ * 
+ * @author Micha Hanselmann
+ */
+public final class FilterEngineBenchmark {
+
+    private static final int[] PATTERN_COUNTS = {1, 10, 100};
+    private static final int WARMUP_EVENTS = 50000;
+    private static final int MEASURED_EVENTS = 200000;
+
+    /**
+     * Utility class.
+     */
+    private FilterEngineBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     * 
+     * @param args
+     *            not used.
+     */
+    public static void main(String[] args) {
+        for (int count : PATTERN_COUNTS) {
+            System.out.println(String.format("%4d filter patterns: siddhi %10.1f ns/event, fast path %10.1f ns/event",
+                    count, run(count, false), run(count, true)));
+        }
+    }
+
+    /**
+     * Runs a single benchmark iteration.
+     * 
+     * @param patterns
+     *            number of filter patterns deployed on the sensor.
+     * @param filterFastPath
+     *            whether the filter patterns are evaluated without Siddhi.
+     * @return the average time per event in nanoseconds.
+     */
+    private static double run(int patterns, boolean filterFastPath) {
+        ILogger logger = new ILogger() {
+
+            @Override
+            public void log(String message) {
+                // discard
+            }
+
+            @Override
+            public void logError(String error) {
+                System.err.println(error);
+            }
+        };
+        ServerConfig config = new ServerConfig.Builder(8888, 8889, Locale.US, logger, "localhost",
+                "./src/test/resources/sensors").engineLanes(1).filterFastPath(filterFastPath).build();
+        ServerInstance instance = new ServerInstance(config, new DBConnectorMock()) { };
+        instance.getSensorCtrl().registerSensors();
+        instance.getEngine().start();
+
+        Sensor sensor = instance.getSensorCtrl().getByName("temp1");
+        for (int i = 0; i < patterns; i++) {
+            deploy(instance, sensor, "filter" + i);
+        }
+
+        Event[] events = {createEvent(sensor, "10"), createEvent(sensor, "20")};
+
+        for (int i = 0; i < WARMUP_EVENTS; i++) {
+            instance.getEngine().sendEvent(events[i % events.length]);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_EVENTS; i++) {
+            instance.getEngine().sendEvent(events[i % events.length]);
+        }
+        long duration = System.nanoTime() - start;
+
+        instance.getEngine().stop();
+        return (double) duration / MEASURED_EVENTS;
+    }
+
+    /**
+     * Deploys a pattern executing a socket action for every event of a sensor with a value of at least 18.
+     * 
+     * @param instance
+     *            the {@link ServerInstance} to be used.
+     * @param s
+     *            the {@link Sensor} used by the pattern.
+     * @param id
+     *            the id of the pattern.
+     */
+    private static void deploy(ServerInstance instance, Sensor s, String id) {
+        Pattern pattern = new Pattern(id, false, "Pattern " + id);
+        SensorNode sensor = new SensorNode("sensornode", new Point(0, 0), s.getName(), s.getDescription(),
+                new Operand(s.getAttributes().toArray(new Attribute[0])));
+        ConstantIntegerNode constant = new ConstantIntegerNode("constantnode", new Point(0, 0), 18);
+        FilterOperatorNode filter = new FilterOperatorNode("filternode", new Point(0, 0), Relation.GREATER_EQUAL);
+        SocketActionNode action = new SocketActionNode("actionnode", new Point(0, 0));
+        action.setMessage("actionmessage");
+
+        pattern.addInputNode(sensor);
+        pattern.addInputNode(constant);
+        pattern.addOperatorNode(filter);
+        pattern.addOutputNode(action);
+        sensor.setOutput(filter);
+        constant.setOutput(filter);
+        filter.setFirstAttribute(s.getAttributes().stream().filter(attr -> attr.getName().equals("value"))
+                .findFirst().get().mutableCopy(sensor.getId()));
+        filter.setSecondAttribute(constant.asAttribute());
+        filter.setOutput(action);
+
+        instance.getPatternCtrl().update(pattern);
+        instance.getPatternCtrl().deploy(id);
+    }
+
+    /**
+     * Creates an event of a temperature sensor.
+     * 
+     * @param sensor
+     *            the {@link Sensor}.
+     * @param value
+     *            the temperature.
+     * @return the {@link Event}.
+     */
+    private static Event createEvent(Sensor sensor, String value) {
+        Map<Attribute, String> data = new HashMap<>();
+        for (Attribute attr : sensor.getAttributes()) {
+            data.put(attr, attr.getName().equals("room") ? "Kitchen" : value);
+        }
+        return new Event(System.currentTimeMillis(), data, sensor);
+    }
+}
@@ -0,0 +1,178 @@
+package stream.vispar.server.engine;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.mockito.Mockito.reset;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import stream.vispar.model.Pattern;
+import stream.vispar.model.nodes.Attribute;
+import stream.vispar.server.core.DBConnectorMock;
+import stream.vispar.server.core.ServerInstance;
+import stream.vispar.server.core.ServerInstanceMock;
+import stream.vispar.server.core.entities.Event;
+import stream.vispar.server.core.entities.Sensor;
+
+/**
+ * Tests for {@link FilterEngine}. The recognized patterns are compared with a plain {@link SiddhiEngine}.
+ * 
+ * @author Micha Hanselmann
+ */
+public class FilterEngineTest {
+
+    private static final int[] VALUES = {10, 18, 21, 22, 30};
+
+    private ServerInstance fastInstance;
+    private ServerInstance siddhiInstance;
+    private FilterEngine subject;
+
+
+    /**
+     * Sets up a fast path instance and a Siddhi instance.
+     */
+    @Before
+    public void setUp() {
+        this.fastInstance = new ServerInstanceMock(new DBConnectorMock(), true);
+        fastInstance.start();
+        assertThat(fastInstance.getEngine(), instanceOf(FilterEngine.class));
+        this.subject = (FilterEngine) fastInstance.getEngine();
+        this.siddhiInstance = new ServerInstanceMock(new DBConnectorMock(), false);
+        siddhiInstance.start();
+    }
+
+    /**
+     * Stops both instances.
+     */
+    @After
+    public void tearDown() {
+        for (ServerInstance instance : new ServerInstance[] {fastInstance, siddhiInstance}) {
+            if (instance.isRunning()) {
+                instance.stop();
+            }
+        }
+    }
+
+    /**
+     * Test method for {@link FilterEngine#deploy(Pattern)}. Tests that a constant filter pattern is evaluated
+     * without Siddhi and recognized exactly like by Siddhi for single events.
+     */
+    @Test
+    public void testSendEvent() {
+        deploy(ComplexEventPatterns.getConstantFilterPattern());
+        assertThat(subject.getFilterPatterns(), contains("constant_filter_pattern"));
+
+        for (int value : VALUES) {
+            fastInstance.getEngine().sendEvent(createEvent(fastInstance, value));
+            siddhiInstance.getEngine().sendEvent(createEvent(siddhiInstance, value));
+        }
+        assertThat(recognitions(fastInstance), equalTo(recognitions(siddhiInstance)));
+        assertThat(recognitions(fastInstance).size(), equalTo(2));
+    }
+
+    /**
+     * Test method for {@link FilterEngine#sendEvents(List)}. Tests that a batch triggers the actions once, like
+     * a chunk of events in Siddhi.
+     */
+    @Test
+    public void testSendEvents() {
+        deploy(ComplexEventPatterns.getConstantFilterPattern());
+
+        for (ServerInstance instance : new ServerInstance[] {fastInstance, siddhiInstance}) {
+            List<Event> batch = new ArrayList<>();
+            for (int value : VALUES) {
+                batch.add(createEvent(instance, value));
+            }
+            instance.getEngine().sendEvents(batch);
+        }
+        assertThat(recognitions(fastInstance), equalTo(recognitions(siddhiInstance)));
+        assertThat(recognitions(fastInstance).size(), equalTo(1));
+    }
+
+    /**
+     * Test method for {@link FilterEngine#undeploy(Pattern)}. Tests that no actions are executed after the
+     * pattern has been undeployed.
+     */
+    @Test
+    public void testUndeploy() {
+        deploy(ComplexEventPatterns.getConstantFilterPattern());
+        fastInstance.getPatternCtrl().undeploy("constant_filter_pattern");
+        assertThat(subject.getFilterPatterns(), empty());
+
+        reset(fastInstance.getLogger());
+        fastInstance.getEngine().sendEvent(createEvent(fastInstance, 20));
+        assertThat(recognitions(fastInstance), empty());
+    }
+
+    /**
+     * Test method for {@link FilterEngine#deploy(Pattern)}. Tests that patterns with windows and aggregations
+     * are deployed on Siddhi.
+     */
+    @Test
+    public void testDeployFallback() {
+        deploy(ComplexEventPatterns.getAggregationPattern());
+        assertThat(subject.getFilterPatterns(), empty());
+
+        fastInstance.getPatternCtrl().undeploy("aggregation_pattern");
+    }
+
+    /**
+     * Deploys a pattern on both instances and resets their loggers.
+     * 
+     * @param pattern
+     *            the {@link Pattern} to be deployed.
+     */
+    private void deploy(Pattern pattern) {
+        for (ServerInstance instance : new ServerInstance[] {fastInstance, siddhiInstance}) {
+            instance.getPatternCtrl().update(pattern);
+            instance.getPatternCtrl().deploy(pattern.getId());
+            reset(instance.getLogger());
+        }
+    }
+
+    /**
+     * Creates an event of sensor temp1.
+     * 
+     * @param instance
+     *            the {@link ServerInstance} providing the sensor.
+     * @param value
+     *            the temperature.
+     * @return the {@link Event}.
+     */
+    private static Event createEvent(ServerInstance instance, int value) {
+        Sensor sensor = instance.getSensorCtrl().getByName("temp1");
+        Map<Attribute, String> data = new HashMap<>();
+        for (Attribute attr : sensor.getAttributes()) {
+            data.put(attr, attr.getName().equals("room") ? "Kitchen" : String.valueOf(value));
+        }
+        return new Event(System.currentTimeMillis(), data, sensor);
+    }
+
+    /**
+     * Returns the logged pattern recognitions of an instance.
+     * 
+     * @param instance
+     *            the {@link ServerInstance}.
+     * @return the logged messages.
+     */
+    private static List<Object> recognitions(ServerInstance instance) {
+        List<Object> messages = new ArrayList<>();
+        Mockito.mockingDetails(instance.getLogger()).getInvocations().stream()
+                .filter(invocation -> invocation.getMethod().getName().equals("log"))
+                .map(invocation -> invocation.getArgument(0))
+                .filter(message -> message.toString().contains("recognized"))
+                .forEach(messages::add);
+        return messages;
+    }
+}
@@ -0,0 +1,185 @@
+package stream.vispar.server.engine;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.wso2.siddhi.core.ExecutionPlanRuntime;
+import org.wso2.siddhi.core.SiddhiManager;
+import org.wso2.siddhi.core.event.Event;
+import org.wso2.siddhi.core.stream.output.StreamCallback;
+
+import stream.vispar.server.engine.extensions.StringComparator;
+
+/**
+ * Tests for {@link FilterPlan}.
+ * 
+ * @author Micha Hanselmann
+ */
+public class FilterPlanTest {
+
+    private static final String PLAN = "@plan:name('plan') "
+            + "define stream s (value int, room string); "
+            + "@info(name = 'q1') from s[value >= 18 and not (22 <= value)] select value as v, room "
+            + "insert into t; "
+            + "@info(name = 'q2') from t[vispar:stringcompare(room, 'Kitchen') == 0 or v == 30] select * "
+            + "insert into u; ";
+
+
+    /**
+     * Test method for {@link FilterPlan#getAttributes(String)}.
+     */
+    @Test
+    public void testGetAttributes() {
+        FilterPlan plan = FilterPlan.parse(PLAN);
+        assertThat(plan.getAttributes("s"), contains("value", "room"));
+        assertThat(plan.getAttributes("t"), contains("v", "room"));
+        assertThat(plan.getAttributes("u"), contains("v", "room"));
+        assertThat(plan.getAttributes("unknown"), empty());
+    }
+
+    /**
+     * Test method for {@link FilterPlan#process(String, List, java.util.function.Consumer)}. Tests that each
+     * stream is notified once per non-empty chunk.
+     */
+    @Test
+    public void testProcess() {
+        FilterPlan plan = FilterPlan.parse(PLAN);
+        assertThat(process(plan, new Object[] {10, "Kitchen"}, new Object[] {22, "Kitchen"}), contains("s"));
+        assertThat(process(plan, new Object[] {20, "Bath"}, new Object[] {21, "Bath"}), contains("s", "t"));
+        assertThat(process(plan, new Object[] {20, "Bath"}, new Object[] {21, "Kitchen"}), contains("s", "t", "u"));
+        assertThat(process(plan), empty());
+    }
+
+    /**
+     * Test method for {@link FilterPlan#process(String, List, java.util.function.Consumer)}. Tests that
+     * comparisons with missing values never match.
+     */
+    @Test
+    public void testProcessNull() {
+        FilterPlan plan = FilterPlan.parse(PLAN);
+        assertThat(process(plan, new Object[] {null, "Kitchen"}), contains("s"));
+    }
+
+    /**
+     * Test method for {@link FilterPlan#parse(String)}. Tests that a plan with a window is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseWindow() {
+        FilterPlan.parse("define stream s (value int); from s#window.length(10) select value insert into t;");
+    }
+
+    /**
+     * Test method for {@link FilterPlan#parse(String)}. Tests that a plan with an aggregation is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseAggregation() {
+        FilterPlan.parse("define stream s (value int); from s select sum(value) as total insert into t;");
+    }
+
+    /**
+     * Test method for {@link FilterPlan#parse(String)}. Tests that a plan with arithmetic is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseArithmetic() {
+        FilterPlan.parse("define stream s (value int); from s[value + 1 > 2] select value insert into t;");
+    }
+
+    /**
+     * Test method for {@link FilterPlan#parse(String)}. Tests that a cyclic plan is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseCycle() {
+        FilterPlan.parse("define stream s (value int); from s select value insert into t; "
+                + "from t select value insert into s;");
+    }
+
+    /**
+     * Test method for {@link FilterPlan#process(String, List, java.util.function.Consumer)}. Tests that the same
+     * events arrive at the same streams as in a Siddhi runtime of the plan.
+     * 
+     * @throws InterruptedException
+     *          if interrupted while sending events to Siddhi.
+     */
+    @Test
+    public void testProcessLikeSiddhi() throws InterruptedException {
+        String code = "define stream s (i int, d double, l long, r string); "
+                + "from s[i >= 18 and not (d < 20.5)] select i, d insert into a; "
+                + "from s[l == 3 or r == 'Kitchen'] select * insert into b; "
+                + "from s[r != 'Bath' and i < d] select r, i insert into c; "
+                + "from s[vispar:stringcompare(r, 'Bath') > 0 or 4 > l] select r insert into e; "
+                + "from a[i != 20 and d <= 30.0] select i insert into f; ";
+        FilterPlan plan = FilterPlan.parse(code);
+
+        SiddhiManager manager = new SiddhiManager();
+        manager.setExtension("vispar:stringcompare", StringComparator.class);
+        ExecutionPlanRuntime runtime = manager.createExecutionPlanRuntime(code);
+        List<String> siddhiArrivals = new ArrayList<>();
+        for (String stream : Arrays.asList("s", "a", "b", "c", "e", "f")) {
+            runtime.addCallback(stream, new StreamCallback() {
+
+                @Override
+                public void receive(Event[] events) {
+                    siddhiArrivals.add(stream);
+                }
+            });
+        }
+        runtime.start();
+
+        Object[] ints = {null, 17, 18, 20, 25};
+        Object[] doubles = {null, 20.0, 20.5, 30.0};
+        Object[] longs = {null, 3L, 4L};
+        Object[] strings = {null, "Kitchen", "Bath", "Attic"};
+        Random random = new Random(42);
+        try {
+            for (int n = 0; n < 500; n++) {
+                Object[] values = {ints[random.nextInt(ints.length)], doubles[random.nextInt(doubles.length)],
+                    longs[random.nextInt(longs.length)], strings[random.nextInt(strings.length)]};
+                siddhiArrivals.clear();
+                runtime.getInputHandler("s").send(values.clone());
+
+                List<String> arrivals = process(plan, values);
+                Collections.sort(arrivals);
+                Collections.sort(siddhiArrivals);
+                assertThat(Arrays.toString(values), arrivals, equalTo(siddhiArrivals));
+            }
+        } finally {
+            runtime.shutdown();
+        }
+    }
+
+    /**
+     * Test method for {@link FilterPlan#process(String, List, java.util.function.Consumer)}. Tests that
+     * comparisons of incomparable values never match.
+     */
+    @Test
+    public void testProcessIncomparable() {
+        FilterPlan plan = FilterPlan.parse("define stream s (value int, room string); "
+                + "from s[room > 5] select value insert into t;");
+        assertThat(process(plan, new Object[] {10, "Kitchen"}), contains("s"));
+    }
+
+    /**
+     * Processes a chunk of events arriving at stream s.
+     * 
+     * @param plan
+     *          the {@link FilterPlan}.
+     * @param chunk
+     *          the values of the events.
+     * @return
+     *          the streams the chunk arrived at.
+     */
+    private static List<String> process(FilterPlan plan, Object[]... chunk) {
+        List<String> arrivals = new ArrayList<>();
+        plan.process("s", Arrays.asList(chunk), arrivals::add);
+        return arrivals;
+    }
+}
@@ -0,0 +1,267 @@
+package stream.vispar.server.engine;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import stream.vispar.server.core.ServerInstance;
+import stream.vispar.server.core.ServerInstanceMock;
+import stream.vispar.server.core.entities.Event;
+import stream.vispar.server.core.entities.Sensor;
+import stream.vispar.server.localization.Localizer;
+import stream.vispar.server.logger.ILogger;
+
+/**
+ * Tests for {@link IngestQueue}.
+ * 
+ * @author Micha Hanselmann
+ */
+public class IngestQueueTest {
+
+    private ServerInstance instance;
+    private IEngine engine;
+
+
+    /**
+     * Create mocked instance.
+     */
+    @Before
+    public void setUp() {
+        instance = mock(ServerInstance.class);
+        engine = mock(IEngine.class);
+        when(instance.getEngine()).thenReturn(engine);
+        when(instance.getLogger()).thenReturn(mock(ILogger.class));
+        when(instance.getLocalizer()).thenReturn(new Localizer(Locale.US));
+    }
+
+    /**
+     * Test method for {@link IngestQueue#IngestQueue(ServerInstance, int)}.
+     */
+    @Test(expected = NullPointerException.class)
+    public void testIngestQueueNull() {
+        new IngestQueue(null, 8);
+    }
+
+    /**
+     * Test method for {@link IngestQueue#offer(Event)}.
+     * 
+     * Checks that events are rejected if the queue is not running.
+     */
+    @Test
+    public void testOfferNotRunning() {
+        IngestQueue queue = new IngestQueue(instance, 8);
+        assertThat(queue.offer(mock(Event.class)), equalTo(false));
+        assertThat(queue.offerAll(Arrays.asList(mock(Event.class), mock(Event.class))), equalTo(false));
+        assertThat(queue.getRejected(), equalTo(3L));
+    }
+
+    /**
+     * Test method for {@link IngestQueue#offer(Event)}.
+     */
+    @Test
+    public void testOffer() {
+        IngestQueue queue = new IngestQueue(instance, 8);
+        queue.start();
+        Event event = mock(Event.class);
+        assertThat(queue.offer(event), equalTo(true));
+        verify(engine, timeout(1000)).sendEvent(event);
+        queue.stop();
+        assertThat(queue.getRejected(), equalTo(0L));
+    }
+
+    /**
+     * Test method for {@link IngestQueue#offer(Event)} and {@link IngestQueue#stop()}.
+     * 
+     * Checks that events are rejected while the engine is busy and the queue is full, and that all accepted
+     * events are forwarded before the queue stops.
+     * 
+     * @throws InterruptedException
+     *          if interrupted while waiting.
+     */
+    @Test
+    public void testOfferFull() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            release.await();
+            return null;
+        }).when(engine).sendEvent(any(Event.class));
+
+        IngestQueue queue = new IngestQueue(instance, 2);
+        queue.start();
+
+        // worker takes the first event and blocks in the engine
+        assertThat(queue.offer(mock(Event.class)), equalTo(true));
+        verify(engine, timeout(1000)).sendEvent(any(Event.class));
+
+        // queue fills up
+        assertThat(queue.offer(mock(Event.class)), equalTo(true));
+        assertThat(queue.offer(mock(Event.class)), equalTo(true));
+        assertThat(queue.getDepth(), equalTo(2));
+        assertThat(queue.offer(mock(Event.class)), equalTo(false));
+        assertThat(queue.getRejected(), equalTo(1L));
+
+        // remaining events are forwarded on stop
+        release.countDown();
+        queue.stop();
+        assertThat(queue.getDepth(), equalTo(0));
+        verify(engine).sendEvents(any());
+    }
+
+    /**
+     * Test method for {@link IngestQueue#IngestQueue(ServerInstance, int, int)}.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testIngestQueueInvLanes() {
+        new IngestQueue(instance, 8, 0);
+    }
+
+    /**
+     * Test method for {@link IngestQueue#offer(Event)}.
+     * 
+     * Checks that a busy sensor does not block the events of a sensor on another lane (temp1 and temp2 are
+     * distributed onto different lanes).
+     * 
+     * @throws InterruptedException
+     *          if interrupted while waiting.
+     */
+    @Test
+    public void testOfferLanes() throws InterruptedException {
+        ServerInstance inst = new ServerInstanceMock();
+        inst.getSensorCtrl().registerSensors();
+        Event eventA = mockEvent(inst.getSensorCtrl().getByName("temp1"));
+        Event eventB = mockEvent(inst.getSensorCtrl().getByName("temp2"));
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            release.await();
+            return null;
+        }).when(engine).sendEvent(eventA);
+
+        IngestQueue queue = new IngestQueue(instance, 8, 2);
+        assertThat(queue.getLanes(), equalTo(2));
+        assertThat(queue.getCapacity(), equalTo(16));
+        queue.start();
+
+        assertThat(queue.offer(eventA), equalTo(true));
+        verify(engine, timeout(1000)).sendEvent(eventA);
+        assertThat(queue.offer(eventB), equalTo(true));
+        verify(engine, timeout(1000)).sendEvent(eventB);
+
+        release.countDown();
+        queue.stop();
+    }
+
+    /**
+     * Test method for {@link IngestQueue#offerAll(List)}.
+     * 
+     * Checks that the events of a sensor keep their order.
+     */
+    @Test
+    public void testOfferAllOrder() {
+        List<Event> received = Collections.synchronizedList(new ArrayList<>());
+        doAnswer(invocation -> received.add(invocation.getArgument(0)))
+                .when(engine).sendEvent(any(Event.class));
+        doAnswer(invocation -> received.addAll(invocation.getArgument(0)))
+                .when(engine).sendEvents(any());
+
+        ServerInstance inst = new ServerInstanceMock();
+        inst.getSensorCtrl().registerSensors();
+        List<Event> events = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            events.add(mockEvent(inst.getSensorCtrl().getByName(i % 2 == 0 ? "temp1" : "temp2")));
+        }
+
+        IngestQueue queue = new IngestQueue(instance, 64, 2);
+        queue.start();
+        for (int i = 0; i < events.size(); i += 10) {
+            assertThat(queue.offerAll(events.subList(i, i + 10)), equalTo(true));
+        }
+        queue.stop();
+
+        assertThat(received.size(), equalTo(events.size()));
+        for (String name : Arrays.asList("temp1", "temp2")) {
+            assertThat(received.stream().filter(e -> e.getSensor().getName().equals(name))
+                    .collect(Collectors.toList()), 
+                    equalTo(events.stream().filter(e -> e.getSensor().getName().equals(name))
+                    .collect(Collectors.toList())));
+        }
+    }
+
+    /**
+     * Test method for {@link IngestQueue#stop()}.
+     * 
+     * Checks that every event accepted while the queue is stopped concurrently is forwarded to the engine.
+     * 
+     * @throws InterruptedException
+     *          if interrupted while waiting.
+     */
+    @Test(timeout = 10000)
+    public void testStopWhileOffering() throws InterruptedException {
+        AtomicLong forwarded = new AtomicLong();
+        doAnswer(invocation -> forwarded.incrementAndGet()).when(engine).sendEvent(any(Event.class));
+        doAnswer(invocation -> forwarded.addAndGet(invocation.<List<Event>>getArgument(0).size()))
+                .when(engine).sendEvents(any());
+        ServerInstance inst = new ServerInstanceMock();
+        inst.getSensorCtrl().registerSensors();
+        Event event = mockEvent(inst.getSensorCtrl().getByName("temp1"));
+        List<Event> batch = Arrays.asList(event, event);
+
+        for (int round = 0; round < 20; round++) {
+            forwarded.set(0);
+            IngestQueue queue = new IngestQueue(instance, 1024, 2);
+            queue.start();
+            AtomicLong accepted = new AtomicLong();
+            CountDownLatch started = new CountDownLatch(4);
+            List<Thread> producers = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                boolean single = i % 2 == 0;
+                Thread producer = new Thread(() -> {
+                    started.countDown();
+                    for (int j = 0; j < 2000; j++) {
+                        if (single ? queue.offer(event) : queue.offerAll(batch)) {
+                            accepted.addAndGet(single ? 1 : batch.size());
+                        }
+                    }
+                });
+                producers.add(producer);
+                producer.start();
+            }
+            started.await();
+            queue.stop();
+            for (Thread producer : producers) {
+                producer.join();
+            }
+            assertThat(forwarded.get(), equalTo(accepted.get()));
+        }
+    }
+
+    /**
+     * Creates a mocked event of a sensor.
+     * 
+     * @param sensor
+     *          the {@link Sensor}.
+     * @return
+     *          the mocked {@link Event}.
+     */
+    private static Event mockEvent(Sensor sensor) {
+        Event event = mock(Event.class);
+        when(event.getSensor()).thenReturn(sensor);
+        return event;
+    }
+}
@@ -0,0 +1,116 @@
+package stream.vispar.server.engine;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link MpscRingBuffer}.
+ * 
+ * @author Micha Hanselmann
+ */
+public class MpscRingBufferTest {
+
+    /**
+     * Test method for {@link MpscRingBuffer#MpscRingBuffer(int)}.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testMpscRingBufferInv() {
+        new MpscRingBuffer<String>(0);
+    }
+
+    /**
+     * Test method for {@link MpscRingBuffer#capacity()}.
+     */
+    @Test
+    public void testCapacity() {
+        assertThat(new MpscRingBuffer<String>(1).capacity(), equalTo(1));
+        assertThat(new MpscRingBuffer<String>(5).capacity(), equalTo(8));
+        assertThat(new MpscRingBuffer<String>(8).capacity(), equalTo(8));
+    }
+
+    /**
+     * Test method for {@link MpscRingBuffer#offer(Object)} and {@link MpscRingBuffer#poll()}.
+     */
+    @Test
+    public void testOfferPoll() {
+        MpscRingBuffer<String> buffer = new MpscRingBuffer<>(2);
+        assertThat(buffer.poll(), nullValue());
+        assertThat(buffer.offer("a"), equalTo(true));
+        assertThat(buffer.offer("b"), equalTo(true));
+        assertThat(buffer.offer("c"), equalTo(false));
+        assertThat(buffer.size(), equalTo(2));
+
+        assertThat(buffer.poll(), equalTo("a"));
+        assertThat(buffer.offer("c"), equalTo(true));
+        assertThat(buffer.poll(), equalTo("b"));
+        assertThat(buffer.poll(), equalTo("c"));
+        assertThat(buffer.poll(), nullValue());
+        assertThat(buffer.isEmpty(), equalTo(true));
+    }
+
+    /**
+     * Test method for {@link MpscRingBuffer#offerAll(List)}.
+     */
+    @Test
+    public void testOfferAll() {
+        MpscRingBuffer<String> buffer = new MpscRingBuffer<>(4);
+        assertThat(buffer.offer("a"), equalTo(true));
+        assertThat(buffer.offerAll(Arrays.asList("b", "c", "d", "e")), equalTo(false));
+        assertThat(buffer.size(), equalTo(1));
+        assertThat(buffer.offerAll(Arrays.asList("b", "c", "d")), equalTo(true));
+
+        List<String> drained = new ArrayList<>();
+        assertThat(buffer.drainTo(drained, 10), equalTo(4));
+        assertThat(drained, contains("a", "b", "c", "d"));
+    }
+
+    /**
+     * Test method for {@link MpscRingBuffer#offer(Object)}.
+     * 
+     * Checks that concurrent producers neither lose nor duplicate elements.
+     * 
+     * @throws InterruptedException
+     *          if interrupted while waiting for the producers.
+     */
+    @Test
+    public void testConcurrentProducers() throws InterruptedException {
+        MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(64);
+        int producers = 4;
+        int perProducer = 10000;
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            threads[p] = new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    while (!buffer.offer(i)) {
+                        Thread.yield();
+                    }
+                }
+            });
+            threads[p].start();
+        }
+
+        long sum = 0;
+        int received = 0;
+        while (received < producers * perProducer) {
+            Integer element = buffer.poll();
+            if (element != null) {
+                sum += element;
+                received++;
+            }
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(sum, equalTo((long) producers * perProducer * (perProducer - 1) / 2));
+        assertThat(buffer.isEmpty(), equalTo(true));
+    }
+}
@@ -0,0 +1,155 @@
+package stream.vispar.server.engine;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import stream.vispar.server.AllocationBudget;
+import stream.vispar.server.engine.PredicateIndex.Interval;
+
+/**
+ * Tests for {@link PredicateIndex}.
+ * 
+ * @author Micha Hanselmann
+ */
+public class PredicateIndexTest {
+
+    private static final double INF = Double.POSITIVE_INFINITY;
+
+    private Map<String, Map<Integer, Interval>> predicates;
+
+
+    /**
+     * Create predicates.
+     */
+    @Before
+    public void setUp() {
+        predicates = new HashMap<>();
+        predicates.put("greater", Collections.singletonMap(0, new Interval(5, false, INF, true)));
+        predicates.put("atMost", Collections.singletonMap(0, new Interval(-INF, true, 3, true)));
+        Map<Integer, Interval> range = new HashMap<>();
+        range.put(0, new Interval(2, true, 4, false));
+        range.put(1, new Interval(0, true, INF, true));
+        predicates.put("range", range);
+        predicates.put("all", Collections.emptyMap());
+    }
+
+    /**
+     * Test method for {@link PredicateIndex#isTrivial()}.
+     */
+    @Test
+    public void testIsTrivial() {
+        assertThat(new PredicateIndex<>(predicates).isTrivial(), equalTo(false));
+        assertThat(new PredicateIndex<>(Collections.singletonMap("all", Collections.emptyMap())).isTrivial(),
+                equalTo(true));
+    }
+
+    /**
+     * Test method for {@link PredicateIndex#match(Object[])}. Tests inclusive and exclusive bounds.
+     */
+    @Test
+    public void testMatch() {
+        PredicateIndex<String> index = new PredicateIndex<>(predicates);
+        assertThat(index.match(new Object[] {5, 1}), containsInAnyOrder("all"));
+        assertThat(index.match(new Object[] {5.5, 1}), containsInAnyOrder("all", "greater"));
+        assertThat(index.match(new Object[] {3, 1}), containsInAnyOrder("all", "atMost", "range"));
+        assertThat(index.match(new Object[] {2, -1}), containsInAnyOrder("all", "atMost"));
+        assertThat(index.match(new Object[] {4, 0}), containsInAnyOrder("all"));
+    }
+
+    /**
+     * Test method for {@link PredicateIndex#match(Object[])}. Tests that values which are not numbers satisfy
+     * all bounds.
+     */
+    @Test
+    public void testMatchNoNumber() {
+        PredicateIndex<String> index = new PredicateIndex<>(predicates);
+        assertThat(index.match(new Object[] {"x", null}), containsInAnyOrder("all", "greater", "atMost", "range"));
+        assertThat(index.match(new Object[] {10, "x"}), containsInAnyOrder("all", "greater"));
+    }
+
+    /**
+     * Test method for {@link PredicateIndex#match(Object[])}. Tests that matching reuses its buffers, so it does
+     * not allocate in steady state.
+     */
+    @Test
+    public void testMatchAllocations() {
+        PredicateIndex<String> index = new PredicateIndex<>(predicates);
+        Object[] values = {3, 1};
+        assertThat(index.match(values), containsInAnyOrder("all", "atMost", "range"));
+        AllocationBudget.assertWithin(1, () -> index.match(values));
+        assertThat(index.match(values), containsInAnyOrder("all", "atMost", "range"));
+    }
+
+    /**
+     * Test method for {@link PredicateIndex#match(Object[])}. Compares the index with evaluating each predicate
+     * on random events.
+     */
+    @Test
+    public void testMatchRandom() {
+        Random random = new Random(42);
+        Map<Integer, Map<Integer, Interval>> randomPredicates = new HashMap<>();
+        for (int i = 0; i < 50; i++) {
+            Map<Integer, Interval> predicate = new HashMap<>();
+            for (int slot = 0; slot < 3; slot++) {
+                if (random.nextBoolean()) {
+                    double low = random.nextBoolean() ? -INF : random.nextInt(10);
+                    double high = random.nextBoolean() ? INF : random.nextInt(10);
+                    predicate.put(slot, new Interval(low, random.nextBoolean(), high, random.nextBoolean()));
+                }
+            }
+            randomPredicates.put(i, predicate);
+        }
+        PredicateIndex<Integer> index = new PredicateIndex<>(randomPredicates);
+
+        for (int i = 0; i < 1000; i++) {
+            Object[] values = {random.nextInt(12) - 1, random.nextInt(12) - 1.0, random.nextInt(12) - 1L};
+            Set<Integer> expected = new HashSet<>();
+            for (Entry<Integer, Map<Integer, Interval>> predicate : randomPredicates.entrySet()) {
+                if (predicate.getValue().entrySet().stream().allMatch(entry -> entry.getValue()
+                        .contains(((Number) values[entry.getKey()]).doubleValue()))) {
+                    expected.add(predicate.getKey());
+                }
+            }
+            List<Integer> matches = index.match(values);
+            assertThat(matches.size(), equalTo(expected.size()));
+            assertThat(new HashSet<>(matches), equalTo(expected));
+        }
+    }
+
+    /**
+     * Test method for {@link Interval#intersect(Interval)}.
+     */
+    @Test
+    public void testIntersect() {
+        Interval interval = new Interval(1, true, 5, false).intersect(new Interval(1, false, 7, true));
+        assertThat(interval, equalTo(new Interval(1, false, 5, false)));
+        assertThat(interval.contains(1), equalTo(false));
+        assertThat(interval.contains(4.9), equalTo(true));
+
+        PredicateIndex<String> index = new PredicateIndex<>(Collections.singletonMap("empty",
+                Collections.singletonMap(0, new Interval(3, false, 2, true))));
+        assertThat(index.match(new Object[] {2.5}), empty());
+    }
+
+    /**
+     * Test method for {@link Interval#Interval(double, boolean, double, boolean)}.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testIntervalNaN() {
+        new Interval(Double.NaN, true, 1, true);
+    }
+}
@@ -0,0 +1,130 @@
+package stream.vispar.server.engine;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import stream.vispar.model.Pattern;
+import stream.vispar.model.nodes.Attribute;
+import stream.vispar.model.nodes.Operand;
+import stream.vispar.model.nodes.Point;
+import stream.vispar.model.nodes.inputs.SensorNode;
+import stream.vispar.model.nodes.outputs.SocketActionNode;
+import stream.vispar.server.core.DBConnectorMock;
+import stream.vispar.server.core.ServerConfig;
+import stream.vispar.server.core.ServerInstance;
+import stream.vispar.server.core.entities.Event;
+import stream.vispar.server.core.entities.Sensor;
+import stream.vispar.server.logger.ILogger;
+
+/**
+ * Benchmark for the ingest path of {@link SiddhiEngine}. Measures the cost per event of a sensor used by a
+ * single pattern while a growing number of patterns is deployed on another sensor. The cost per event should
+ * stay flat, no matter how many patterns are deployed.
+ * 
+ * <p>
+ * Not part of the test suite, run it manually using the main method.
+ * 
+ * @author Micha Hanselmann
+ */
+public final class SiddhiEngineRoutingBenchmark {
+
+    private static final int[] PATTERN_COUNTS = {0, 10, 100, 500};
+    private static final int WARMUP_EVENTS = 50000;
+    private static final int MEASURED_EVENTS = 200000;
+
+    /**
+     * Utility class.
+     */
+    private SiddhiEngineRoutingBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     * 
+     * @param args
+     *            not used.
+     */
+    public static void main(String[] args) {
+        for (int count : PATTERN_COUNTS) {
+            System.out.println(String.format("%4d other patterns deployed: %10.1f ns/event", count, run(count)));
+        }
+    }
+
+    /**
+     * Runs a single benchmark iteration.
+     * 
+     * @param otherPatterns
+     *            number of patterns deployed on another sensor.
+     * @return the average time per event in nanoseconds.
+     */
+    private static double run(int otherPatterns) {
+        ILogger logger = new ILogger() {
+            @Override
+            public void log(String message) {
+                // discard
+            }
+
+            @Override
+            public void logError(String error) {
+                System.err.println(error);
+            }
+        };
+        ServerConfig config = new ServerConfig(8888, 8889, Locale.US, logger, "localhost",
+                "./src/test/resources/sensors");
+        ServerInstance instance = new ServerInstance(config, new DBConnectorMock()) { };
+        instance.getSensorCtrl().registerSensors();
+        instance.getEngine().start();
+
+        // one pattern on the measured sensor, the others on another one
+        deploy(instance, "measured", "temp1");
+        for (int i = 0; i < otherPatterns; i++) {
+            deploy(instance, "other" + i, "temp2");
+        }
+
+        Sensor sensor = instance.getSensorCtrl().getByName("temp1");
+        Map<Attribute, String> data = new HashMap<>();
+        for (Attribute attr : sensor.getAttributes()) {
+            data.put(attr, attr.getName().equals("room") ? "Kitchen" : "23");
+        }
+        Event event = new Event(System.currentTimeMillis(), data, sensor);
+
+        for (int i = 0; i < WARMUP_EVENTS; i++) {
+            instance.getEngine().sendEvent(event);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_EVENTS; i++) {
+            instance.getEngine().sendEvent(event);
+        }
+        long duration = System.nanoTime() - start;
+
+        instance.getEngine().stop();
+        return (double) duration / MEASURED_EVENTS;
+    }
+
+    /**
+     * Deploys a simple pattern forwarding every event of a sensor to a socket action.
+     * 
+     * @param instance
+     *            the {@link ServerInstance} to be used.
+     * @param id
+     *            the id of the pattern.
+     * @param sensorName
+     *            the name of the sensor used by the pattern.
+     */
+    private static void deploy(ServerInstance instance, String id, String sensorName) {
+        Sensor s = instance.getSensorCtrl().getByName(sensorName);
+        Pattern pattern = new Pattern(id, false, "Pattern " + id);
+        SensorNode sensor = new SensorNode("sensornode", new Point(0, 0), sensorName, s.getDescription(),
+                new Operand(s.getAttributes().toArray(new Attribute[0])));
+        SocketActionNode action = new SocketActionNode("actionnode", new Point(0, 0));
+        action.setMessage("actionmessage");
+
+        pattern.addInputNode(sensor);
+        pattern.addOutputNode(action);
+        sensor.setOutput(action);
+
+        instance.getPatternCtrl().update(pattern);
+        instance.getPatternCtrl().deploy(id);
+    }
+}
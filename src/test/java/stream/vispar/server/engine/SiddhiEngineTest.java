@@ -1,5 +1,7 @@
 package stream.vispar.server.engine;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.anyString;
@@ -8,6 +10,11 @@ import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.verify;
 
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Objects;
 
 import org.junit.After;
@@ -22,18 +29,29 @@ import stream.vispar.compiler.SiddhiCompiler;
 import stream.vispar.compiler.TreeCompiler;
 import stream.vispar.model.Pattern;
 import stream.vispar.model.nodes.Attribute;
+import stream.vispar.model.nodes.AttributeType;
 import stream.vispar.model.nodes.Operand;
 import stream.vispar.model.nodes.Point;
+import stream.vispar.model.nodes.inputs.ConstantIntegerNode;
 import stream.vispar.model.nodes.inputs.PatternInputNode;
 import stream.vispar.model.nodes.inputs.SensorNode;
+import stream.vispar.model.nodes.operators.CountAggregationNode;
+import stream.vispar.model.nodes.operators.FilterOperatorNode;
+import stream.vispar.model.nodes.operators.LengthWindow;
+import stream.vispar.model.nodes.operators.Relation;
 import stream.vispar.model.nodes.outputs.PatternOutputNode;
 import stream.vispar.model.nodes.outputs.SocketActionNode;
+import stream.vispar.server.AllocationBudget;
 import stream.vispar.server.core.DBConnectorMock;
 import stream.vispar.server.core.ServerInstance;
 import stream.vispar.server.core.ServerInstanceMock;
 import stream.vispar.server.core.entities.Sensor;
 import stream.vispar.server.core.entities.Simulation;
+import stream.vispar.server.engine.PredicateIndex.Interval;
+import stream.vispar.server.engine.SiddhiEngine.DeploymentInstance;
 import stream.vispar.server.localization.LocalizedString;
+import stream.vispar.server.logger.ILogger;
+import stream.vispar.server.logger.LogLevel;
 
 /**
  * Test class for {@link SiddhiEngine}.
@@ -182,6 +200,137 @@ public class SiddhiEngineTest {
                 subject.getDeploymentInstances().stream().anyMatch(instance -> instance.getPatternId().equals("id")));
     }
 
+    /**
+     * Test method for {@link SiddhiEngine#deploy(Pattern, int)}. Tests that a
+     * pattern with asynchronous input streams is recognized and it's action is
+     * executed upon detection.
+     * 
+     * @throws Exception
+     *             cause sometimes something goes wrong
+     */
+    @Test
+    public void testDeployAsync() throws Exception {
+        Pattern toDeploy = new Pattern("id", false, "Pattern");
+        SensorNode sensor = new SensorNode("sensornode", new Point(0, 0), "temp1", "Temperature sensor", new Operand(
+                (mockedInstance.getSensorCtrl().getByName("temp1").getAttributes().toArray(new Attribute[0]))));
+
+        SocketActionNode action = new SocketActionNode("actionnode", new Point(0, 0));
+        action.setMessage("actionmessage");
+
+        toDeploy.addInputNode(sensor);
+        toDeploy.addOutputNode(action);
+        sensor.setOutput(action);
+
+        mockedInstance.getPatternCtrl().update(toDeploy);
+
+        // deploy pattern with asynchronous input streams
+        mockedInstance.getPatternCtrl().deploy("id", 1024);
+
+        reset(mockedInstance.getLogger());
+        new Simulation("./src/test/resources/simulations/siddhienginetest_oneeventtemp1.sim").simulate(mockedInstance);
+        Thread.sleep(500);
+
+        // verify the pattern was detected
+        verify(mockedInstance.getLogger())
+                .log("Pattern 'Pattern' recognized. Executing action: socket{message=actionmessage}");
+    }
+
+    /**
+     * Test method for {@link SiddhiEngine#deploy(Pattern, int)} when passing an
+     * invalid buffer size.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testDeployInvalidBufferSize() {
+        subject.deploy(new Pattern("id", false, "Pattern"), -2);
+    }
+
+    /**
+     * Test method for {@link SiddhiEngine#makeAsync(String, int)}.
+     */
+    @Test
+    public void testMakeAsync() {
+        String plan = SiddhiEngine.makeAsync("define stream s (a int);\nfrom s select a insert into t;", 1000);
+        assertTrue(plan.startsWith("@plan:async(bufferSize = '1024')"));
+        assertTrue(plan.contains("@config(async = 'true') define stream s (a int);"));
+        assertTrue(plan.endsWith("from s select a insert into t;"));
+    }
+
+    /**
+     * Test method for {@link SiddhiEngine#makeAsync(String, int)}.
+     * 
+     * Checks that definitions in other cases or with other whitespace are made asynchronous as well.
+     */
+    @Test
+    public void testMakeAsyncDefinitionStyle() {
+        String plan = SiddhiEngine.makeAsync("DEFINE STREAM s (a int);\ndefine  stream\nt (a int);", 8);
+        assertTrue(plan.contains("@config(async = 'true') DEFINE STREAM s (a int);"));
+        assertTrue(plan.contains("@config(async = 'true') define  stream\nt (a int);"));
+    }
+
+    /**
+     * Test method for {@link SiddhiEngine#makeAsync(String, int)}.
+     * 
+     * Checks that string literals looking like definitions are left untouched.
+     */
+    @Test
+    public void testMakeAsyncLiteral() {
+        String plan = SiddhiEngine.makeAsync(
+                "define stream s (a string);\nfrom s[a == 'define stream x'] select a insert into t;", 8);
+        assertTrue(plan.contains("@config(async = 'true') define stream s (a string);"));
+        assertTrue(plan.endsWith("from s[a == 'define stream x'] select a insert into t;"));
+    }
+
+    /**
+     * Test method for {@link SiddhiEngine#dedupe(String, Map)}. Tests that a filter shared by two chains of queries
+     * is evaluated once and that different filters are kept.
+     */
+    @Test
+    public void testDedupe() {
+        Map<String, String> aliases = new HashMap<>();
+        String plan = SiddhiEngine.dedupe("define stream s (a int);\n"
+                + "from s[a > 1] select a insert into f1;\nfrom f1 select a insert into o1;\n"
+                + "from s[a > 1] select a insert into f2;\nfrom f2 select a insert into o2;\n"
+                + "from s[a > 2] select a insert into o3;", aliases);
+        assertThat(plan, equalTo("define stream s (a int);\n"
+                + "from s[a > 1] select a insert into f1;\nfrom f1 select a insert into o1;\n"
+                + "from s[a > 2] select a insert into o3;"));
+        assertThat(aliases.get("f2"), equalTo("f1"));
+        assertThat(aliases.get("o2"), equalTo("o1"));
+        assertThat(aliases.containsKey("o3"), equalTo(false));
+    }
+
+    /**
+     * Test method for {@link SiddhiEngine#dedupe(String, Map)}. Tests that defined streams and streams written by
+     * several queries are kept.
+     */
+    @Test
+    public void testDedupeFixedStreams() {
+        String plan = "define stream s (a int);\ndefine stream o1 (a int);\n"
+                + "from s select a insert into o1;\nfrom s select a insert into o2;\n"
+                + "from s select a insert into u;\nfrom s[a > 0] select a insert into u;";
+        Map<String, String> aliases = new HashMap<>();
+        assertThat(SiddhiEngine.dedupe(plan, aliases), equalTo(plan));
+        assertTrue(aliases.isEmpty());
+    }
+
+    /**
+     * Test method for {@link SiddhiEngine#prefiltersOf(String)}. Tests that numeric comparisons of a conjunctive
+     * filter are turned into intervals and that other constructs are not pre-filtered.
+     */
+    @Test
+    public void testPrefiltersOf() {
+        Map<String, Map<String, Interval>> prefilters = SiddhiEngine.prefiltersOf("define stream s (a int, b double,"
+                + " c string);\ndefine stream t (a int);\ndefine stream u (a int);\ndefine stream v (a int);\n"
+                + "from s[s.a > 5 and (b <= 2.5 and 1 < b) and c == 'x or y'] select a insert into o1;\n"
+                + "from t[a > 1 or a < 0] select a insert into o2;\n"
+                + "from u[a == 4] select a insert into o3;\nfrom u select a insert into o4;\n"
+                + "from every e1 = v[a > 1] -> e2 = v[a > 2] select e1.a insert into o5;");
+        assertThat(prefilters.keySet(), equalTo(Collections.singleton("s")));
+        assertThat(prefilters.get("s").get("a"), equalTo(new Interval(5, false, Double.POSITIVE_INFINITY, true)));
+        assertThat(prefilters.get("s").get("b"), equalTo(new Interval(1, false, 2.5, true)));
+        assertThat(prefilters.get("s").containsKey("c"), equalTo(false));
+    }
+
     /**
      * Test method for {@link SiddhiEngine#undeploy(Pattern)}. Tests that a pattern
      * won't be recognized after it was undeployed.
@@ -226,6 +375,451 @@ public class SiddhiEngineTest {
                 subject.getDeploymentInstances().stream().noneMatch(instance -> instance.getPatternId().equals("id")));
     }
     
+    /**
+     * Test method for the sensor routing table. Tests that the routes are updated on deployment and
+     * undeployment.
+     */
+    @Test
+    public void testSensorRoutes() {
+        Pattern toDeploy = new Pattern("id", false, "Pattern");
+        SensorNode sensor = new SensorNode("sensornode", new Point(0, 0), "temp1", "Temperature sensor", new Operand(
+                (mockedInstance.getSensorCtrl().getByName("temp1").getAttributes().toArray(new Attribute[0]))));
+
+        SocketActionNode action = new SocketActionNode("actionnode", new Point(0, 0));
+        action.setMessage("actionmessage");
+
+        toDeploy.addInputNode(sensor);
+        toDeploy.addOutputNode(action);
+        sensor.setOutput(action);
+
+        mockedInstance.getPatternCtrl().update(toDeploy);
+        assertTrue(subject.getSensorRoutes().isEmpty());
+
+        // deploy pattern
+        mockedInstance.getPatternCtrl().deploy("id");
+        assertThat(subject.getSensorRoutes().get("temp1").length, equalTo(1));
+        assertThat(subject.getSensorRoutes().containsKey("temp2"), equalTo(false));
+
+        // undeploy pattern
+        mockedInstance.getPatternCtrl().undeploy("id");
+        assertTrue(subject.getSensorRoutes().isEmpty());
+    }
+    
+    /**
+     * Test method for the wiring between pattern outputs and pattern inputs. Tests that the wiring is updated
+     * when a downstream pattern is deployed after (and undeployed before) its upstream pattern.
+     */
+    @Test
+    public void testPatternRoutes() {
+        mockedInstance.getPatternCtrl().update(createChildPattern(mockedInstance));
+        mockedInstance.getPatternCtrl().update(createParentPattern(mockedInstance));
+
+        // upstream pattern without consumers
+        mockedInstance.getPatternCtrl().deploy("childid");
+        assertThat(subject.getPatternRoutes().get("childidoutputname").length, equalTo(0));
+
+        // downstream pattern deployed afterwards is wired to the existing output
+        mockedInstance.getPatternCtrl().deploy("parentid");
+        assertThat(subject.getPatternRoutes().get("childidoutputname").length, equalTo(2));
+
+        // undeploying the downstream pattern removes the wiring
+        mockedInstance.getPatternCtrl().undeploy("parentid");
+        assertThat(subject.getPatternRoutes().get("childidoutputname").length, equalTo(0));
+    }
+    
+    /**
+     * Test method for {@link DeploymentMode#FUSED}. Tests that chained patterns share one runtime and that the
+     * remaining patterns are recompiled on undeployment.
+     */
+    @Test
+    public void testDeployFused() {
+        ServerInstance fusedInstance = new ServerInstanceMock(new DBConnectorMock(), DeploymentMode.FUSED);
+        fusedInstance.start();
+        SiddhiEngine engine = (SiddhiEngine) fusedInstance.getEngine();
+        fusedInstance.getPatternCtrl().update(createChildPattern(fusedInstance));
+        fusedInstance.getPatternCtrl().update(createParentPattern(fusedInstance));
+
+        // chain is compiled into one runtime, so the output is linked inside the runtime
+        fusedInstance.getPatternCtrl().deploy("childid");
+        fusedInstance.getPatternCtrl().deploy("parentid");
+        assertThat(engine.getDeploymentInstances().size(), equalTo(2));
+        assertThat(engine.getDeploymentInstances().stream().map(DeploymentInstance::getRuntimeId).distinct()
+                .count(), equalTo(1L));
+        assertThat(engine.getPatternRoutes().get("childidoutputname").length, equalTo(0));
+
+        // remaining pattern is recompiled into its own runtime
+        fusedInstance.getPatternCtrl().undeploy("parentid");
+        assertThat(engine.getDeploymentInstances().size(), equalTo(1));
+        assertThat(engine.getSensorRoutes().get("temp1").length, equalTo(1));
+
+        fusedInstance.stop();
+    }
+    
+    /**
+     * Test method for {@link DeploymentMode#FUSED}. Tests that a window pattern consuming a chain keeps its state
+     * when a sibling joins the chain.
+     * 
+     * @throws Exception
+     *             cause sometimes something goes wrong
+     */
+    @Test
+    public void testDeployFusedKeepsState() throws Exception {
+        ServerInstance fusedInstance = new ServerInstanceMock(new DBConnectorMock(), DeploymentMode.FUSED);
+        fusedInstance.start();
+        SiddhiEngine engine = (SiddhiEngine) fusedInstance.getEngine();
+        Sensor s = fusedInstance.getSensorCtrl().getByName("temp1");
+        fusedInstance.getPatternCtrl().update(createChildPattern(fusedInstance));
+        fusedInstance.getPatternCtrl().update(createParentPattern(fusedInstance));
+
+        // counts the events of the child pattern and is recognized from the second one on
+        Pattern window = new Pattern("windowid", false, "Window pattern");
+        PatternInputNode input = new PatternInputNode("windowinputid", new Point(0, 0), "outputname", "childid",
+                new Operand(s.getAttributes().toArray(new Attribute[0])));
+        CountAggregationNode count = new CountAggregationNode("countid", new Point(0, 0));
+        count.setOutputAttributeName("count");
+        count.setLengthWindow(new LengthWindow(10));
+        ConstantIntegerNode constant = new ConstantIntegerNode("constantid", new Point(0, 0), 2);
+        FilterOperatorNode filter = new FilterOperatorNode("filterid", new Point(0, 0), Relation.GREATER_EQUAL);
+        SocketActionNode action = new SocketActionNode("windowactionid", new Point(0, 0));
+        action.setMessage("second event");
+        window.addInputNode(input);
+        window.addInputNode(constant);
+        window.addOperatorNode(count);
+        window.addOperatorNode(filter);
+        window.addOutputNode(action);
+        input.setOutput(count);
+        count.setOutput(filter);
+        constant.setOutput(filter);
+        filter.setFirstAttribute(count.getAggregationOutputAttribute());
+        filter.setSecondAttribute(constant.asAttribute());
+        filter.setOutput(action);
+        fusedInstance.getPatternCtrl().update(window);
+
+        fusedInstance.getPatternCtrl().deploy("childid");
+        fusedInstance.getPatternCtrl().deploy("windowid");
+        String windowRuntime = runtimeOf(engine, "windowid");
+        String raw = "{ \"value\": 10, \"other\": { \"room\": \"Kitchen\" } }";
+        engine.sendEvent(s.parseEvent(new StringReader(raw)));
+
+        // the parent joins the chain of the child, the window pattern keeps its runtime
+        fusedInstance.getPatternCtrl().deploy("parentid");
+        assertThat(runtimeOf(engine, "parentid"), equalTo(runtimeOf(engine, "childid")));
+        assertThat(runtimeOf(engine, "windowid"), equalTo(windowRuntime));
+
+        // the second event is counted on top of the first one
+        reset(fusedInstance.getLogger());
+        engine.sendEvent(s.parseEvent(new StringReader(raw)));
+        Thread.sleep(500);
+        verify(fusedInstance.getLogger())
+                .log("Pattern 'Window pattern' recognized. Executing action: socket{message=second event}");
+
+        fusedInstance.stop();
+    }
+
+    /**
+     * Returns the id of the runtime a pattern is deployed in.
+     * 
+     * @param engine
+     *            the {@link SiddhiEngine}.
+     * @param patternId
+     *            the id of the deployed pattern.
+     * @return the runtime id.
+     */
+    private static String runtimeOf(SiddhiEngine engine, String patternId) {
+        return engine.getDeploymentInstances().stream().filter(deployment -> deployment.getPatternId()
+                .equals(patternId)).findFirst().get().getRuntimeId();
+    }
+    
+    /**
+     * Test method for {@link DeploymentMode#SHARED}. Tests that stateless patterns on the same sensor share one
+     * runtime and one input handler.
+     */
+    @Test
+    public void testDeployShared() {
+        ServerInstance sharedInstance = new ServerInstanceMock(new DBConnectorMock(), DeploymentMode.SHARED);
+        sharedInstance.start();
+        SiddhiEngine engine = (SiddhiEngine) sharedInstance.getEngine();
+        for (String id : new String[] {"id1", "id2"}) {
+            Pattern pattern = new Pattern(id, false, "Pattern " + id);
+            SensorNode sensor = new SensorNode("sensor" + id, new Point(0, 0), "temp1", "Temperature sensor",
+                    new Operand(sharedInstance.getSensorCtrl().getByName("temp1").getAttributes()
+                            .toArray(new Attribute[0])));
+            SocketActionNode action = new SocketActionNode("action" + id, new Point(0, 0));
+            action.setMessage("message" + id);
+            pattern.addInputNode(sensor);
+            pattern.addOutputNode(action);
+            sensor.setOutput(action);
+            sharedInstance.getPatternCtrl().update(pattern);
+        }
+
+        // both patterns are fed by the same stream of one runtime
+        sharedInstance.getPatternCtrl().deploy("id1");
+        sharedInstance.getPatternCtrl().deploy("id2");
+        assertThat(engine.getDeploymentInstances().size(), equalTo(2));
+        assertThat(engine.getDeploymentInstances().stream().map(DeploymentInstance::getRuntimeId).distinct()
+                .count(), equalTo(1L));
+        assertThat(engine.getSensorRoutes().get("temp1").length, equalTo(1));
+
+        // remaining pattern is moved to a new runtime
+        sharedInstance.getPatternCtrl().undeploy("id1");
+        assertThat(engine.getDeploymentInstances().size(), equalTo(1));
+        assertThat(engine.getSensorRoutes().get("temp1").length, equalTo(1));
+
+        // a pattern with another buffer size gets its own group, the other pattern stays synchronous
+        sharedInstance.getPatternCtrl().deploy("id1", 1024);
+        assertThat(engine.getDeploymentInstances().stream().map(DeploymentInstance::getRuntimeId).distinct()
+                .count(), equalTo(2L));
+
+        sharedInstance.stop();
+    }
+    
+    /**
+     * Tests that renaming a stream leaves string literals and other identifiers untouched.
+     */
+    @Test
+    public void testRenameStream() {
+        String code = "define stream s (s_a int);\nfrom s[s_a > 1] select 's', \"from s\" insert into t;";
+        assertThat(SiddhiEngine.renameStream(code, "s", "u"),
+                equalTo("define stream u (s_a int);\nfrom u[s_a > 1] select 's', \"from s\" insert into t;"));
+        assertThat(SiddhiEngine.maskLiterals("select 'define stream x' insert into y;"),
+                equalTo("select '                ' insert into y;"));
+    }
+
+    /**
+     * Tests shared deployment of patterns whose messages contain the name of their input stream.
+     */
+    @Test
+    public void testDeploySharedMessageWithStreamName() {
+        ServerInstance sharedInstance = new ServerInstanceMock(new DBConnectorMock(), DeploymentMode.SHARED);
+        sharedInstance.start();
+        SiddhiEngine engine = (SiddhiEngine) sharedInstance.getEngine();
+        for (String id : new String[] {"id1", "id2"}) {
+            Pattern pattern = new Pattern(id, false, "Pattern " + id);
+            SensorNode sensor = new SensorNode("sensor" + id, new Point(0, 0), "temp1", "Temperature sensor",
+                    new Operand(sharedInstance.getSensorCtrl().getByName("temp1").getAttributes()
+                            .toArray(new Attribute[0])));
+            SocketActionNode action = new SocketActionNode("action" + id, new Point(0, 0));
+            String stream = new TreeCompiler().getStreamName(sensor);
+            action.setMessage("define stream " + stream + " (a int); insert into " + stream);
+            pattern.addInputNode(sensor);
+            pattern.addOutputNode(action);
+            sensor.setOutput(action);
+            sharedInstance.getPatternCtrl().update(pattern);
+        }
+
+        // messages neither clash with other patterns nor get renamed
+        sharedInstance.getPatternCtrl().deploy("id1");
+        sharedInstance.getPatternCtrl().deploy("id2");
+        assertThat(engine.getDeploymentInstances().size(), equalTo(2));
+        assertThat(engine.getDeploymentInstances().stream().map(DeploymentInstance::getRuntimeId).distinct()
+                .count(), equalTo(1L));
+        assertThat(engine.getSensorRoutes().get("temp1").length, equalTo(1));
+
+        sharedInstance.stop();
+    }
+    
+    /**
+     * Test method for {@link SiddhiEngine#prefixQueriesOf(String, java.util.Collection)} and
+     * {@link SiddhiEngine#withPrefix(String, SiddhiEngine.PrefixQuery, String)}.
+     */
+    @Test
+    public void testPrefixQueries() {
+        String plan1 = "define stream s1 (a int);\nfrom s1#window.length(5) select count() as c insert into t1;\n"
+                + "from t1 select c insert into o1;";
+        String plan2 = "define stream s2 (a int);\nfrom s2#window.length(5) select count() as c insert into t2;";
+        String plan3 = "define stream s3 (a int);\nfrom s3#window.length(6) select count() as c insert into t3;\n"
+                + "define stream v (a int);\nfrom v[a > 1] select a insert into w;\n"
+                + "from v[a > 2] select a insert into w;\ndefine stream x (a int);\n"
+                + "from every e1 = x[a > 1] -> e2 = x[a > 2] select e1.a insert into y;";
+        SiddhiEngine.PrefixQuery prefix1 = SiddhiEngine.prefixQueriesOf(plan1, Collections.singleton("s1")).get(0);
+        SiddhiEngine.PrefixQuery prefix2 = SiddhiEngine.prefixQueriesOf(plan2, Collections.singleton("s2")).get(0);
+        SiddhiEngine.PrefixQuery prefix3 = SiddhiEngine.prefixQueriesOf(plan3, Collections.singleton("s3")).get(0);
+        assertThat(prefix1.getCanonical(), equalTo(prefix2.getCanonical()));
+        assertTrue(!prefix1.getCanonical().equals(prefix3.getCanonical()));
+
+        // streams read by several queries, written by several queries or read by patterns are no prefixes
+        assertTrue(SiddhiEngine.prefixQueriesOf(plan3, Arrays.asList("v", "x")).isEmpty());
+
+        assertThat(SiddhiEngine.withPrefix(plan1, prefix1, "c long"),
+                equalTo("define stream t1 (c long);\nfrom t1 select c insert into o1;"));
+    }
+
+    /**
+     * Tests that separately deployed patterns starting with the same filter on a sensor share one prefix, which is
+     * evaluated once for both of them.
+     * 
+     * @throws Exception
+     *             cause sometimes something goes wrong
+     */
+    @Test
+    public void testDeploySharedPrefix() throws Exception {
+        for (String id : new String[] {"id1", "id2"}) {
+            Pattern pattern = new Pattern(id, false, "Pattern " + id);
+            SensorNode sensor = new SensorNode("sensor" + id, new Point(0, 0), "temp1", "Temperature sensor",
+                    new Operand(mockedInstance.getSensorCtrl().getByName("temp1").getAttributes()
+                            .toArray(new Attribute[0])));
+            ConstantIntegerNode constant = new ConstantIntegerNode("constant" + id, new Point(0, 0), 20);
+            FilterOperatorNode filter = new FilterOperatorNode("filter" + id, new Point(0, 0),
+                    Relation.GREATER_EQUAL);
+            filter.setFirstAttribute(new Attribute("value", "", AttributeType.INTEGER).mutableCopy(sensor.getId()));
+            filter.setSecondAttribute(constant.asAttribute());
+            SocketActionNode action = new SocketActionNode("action" + id, new Point(0, 0));
+            action.setMessage("message" + id);
+            pattern.addInputNode(sensor);
+            pattern.addInputNode(constant);
+            pattern.addOperatorNode(filter);
+            pattern.addOutputNode(action);
+            sensor.setOutput(filter);
+            constant.setOutput(filter);
+            filter.setOutput(action);
+            mockedInstance.getPatternCtrl().update(pattern);
+        }
+
+        // the second pattern reuses the prefix of the first one
+        mockedInstance.getPatternCtrl().deploy("id1");
+        mockedInstance.getPatternCtrl().deploy("id2");
+        assertThat(subject.getSharedPrefixes().size(), equalTo(1));
+        assertThat(subject.getSensorRoutes().get("temp1").length, equalTo(1));
+        assertThat(subject.getDeploymentInstances().stream().map(DeploymentInstance::getRuntimeId).distinct()
+                .count(), equalTo(2L));
+
+        // the output of the prefix reaches both patterns
+        reset(mockedInstance.getLogger());
+        new Simulation("./src/test/resources/simulations/siddhienginetest_oneeventtemp1.sim").simulate(mockedInstance);
+        Thread.sleep(500);
+        verify(mockedInstance.getLogger())
+                .log("Pattern 'Pattern id1' recognized. Executing action: socket{message=messageid1}");
+        verify(mockedInstance.getLogger())
+                .log("Pattern 'Pattern id2' recognized. Executing action: socket{message=messageid2}");
+
+        // the prefix is kept as long as a pattern uses it
+        mockedInstance.getPatternCtrl().undeploy("id1");
+        assertThat(subject.getSharedPrefixes().size(), equalTo(1));
+        mockedInstance.getPatternCtrl().undeploy("id2");
+        assertTrue(subject.getSharedPrefixes().isEmpty());
+        assertTrue(subject.getSensorRoutes().isEmpty());
+    }
+
+    /**
+     * Tests that patterns starting with the same window aggregation on a sensor do not share it, so a pattern
+     * deployed later does not count events which arrived before.
+     * 
+     * @throws Exception
+     *             cause sometimes something goes wrong
+     */
+    @Test
+    public void testDeployWindowPrefixNotShared() throws Exception {
+        for (String id : new String[] {"id1", "id2"}) {
+            Pattern pattern = new Pattern(id, false, "Pattern " + id);
+            SensorNode sensor = new SensorNode("sensor" + id, new Point(0, 0), "temp1", "Temperature sensor",
+                    new Operand(mockedInstance.getSensorCtrl().getByName("temp1").getAttributes()
+                            .toArray(new Attribute[0])));
+            CountAggregationNode count = new CountAggregationNode("count" + id, new Point(0, 0));
+            count.setOutputAttributeName("count");
+            count.setLengthWindow(new LengthWindow(10));
+            SocketActionNode action = new SocketActionNode("action" + id, new Point(0, 0));
+            action.setMessage("message" + id);
+            pattern.addInputNode(sensor);
+            pattern.addOperatorNode(count);
+            pattern.addOutputNode(action);
+            sensor.setOutput(count);
+            count.setOutput(action);
+            mockedInstance.getPatternCtrl().update(pattern);
+        }
+
+        mockedInstance.getPatternCtrl().deploy("id1");
+        mockedInstance.getPatternCtrl().deploy("id2");
+        assertTrue(subject.getSharedPrefixes().isEmpty());
+
+        // each pattern receives the sensor events itself
+        assertThat(subject.getSensorRoutes().get("temp1").length, equalTo(2));
+    }
+
+    /**
+     * Tests that the ingest path - parsing a reading, routing it and dropping it by the pre-filter of a pattern -
+     * stays within an allocation budget. Most of the budget is taken by the json reader (its buffer) and the
+     * parsed strings. The logger logs nothing, so only the ingest path itself is measured.
+     */
+    @Test
+    public void testSendEventAllocations() {
+        ILogger quiet = new ILogger() {
+
+            @Override
+            public void log(String message) {
+            }
+
+            @Override
+            public void logError(String error) {
+            }
+
+            @Override
+            public boolean isEnabled(LogLevel level) {
+                return false;
+            }
+        };
+        ServerInstance quietInstance = new ServerInstanceMock(new DBConnectorMock(), quiet);
+        quietInstance.start();
+        try {
+            quietInstance.getPatternCtrl().update(ComplexEventPatterns.getConstantFilterPattern());
+            quietInstance.getPatternCtrl().deploy("constant_filter_pattern");
+            IEngine engine = quietInstance.getEngine();
+            Sensor sensor = quietInstance.getSensorCtrl().getByName("temp1");
+            String raw = "{ \"value\": 10, \"other\": { \"room\": \"Kitchen\" } }";
+
+            // readings rejected by the pre-filter never reach Siddhi
+            AllocationBudget.assertWithin(4096, () -> engine.sendEvent(sensor.parseEvent(new StringReader(raw))));
+        } finally {
+            quietInstance.stop();
+        }
+    }
+    
+    /**
+     * Creates a pattern forwarding the events of sensor temp1 to a pattern output named "outputname".
+     * 
+     * @param inst
+     *            the {@link ServerInstance} providing the sensor.
+     * @return the {@link Pattern} with id "childid".
+     */
+    private static Pattern createChildPattern(ServerInstance inst) {
+        Pattern child = new Pattern("childid", false, "Child Pattern");
+        Sensor s = inst.getSensorCtrl().getByName("temp1");
+        SensorNode sensor = new SensorNode("sensorid", new Point(0, 0), "temp1", s.getDescription(),
+                new Operand(s.getAttributes().toArray(new Attribute[0])));
+        PatternOutputNode output = new PatternOutputNode("outputid", new Point(0, 0), child.getId());
+        child.addInputNode(sensor);
+        child.addOutputNode(output);
+        sensor.setOutput(output);
+        output.setName("outputname");
+        return child;
+    }
+    
+    /**
+     * Creates a pattern consuming the output of the child pattern by two pattern inputs.
+     * 
+     * @param inst
+     *            the {@link ServerInstance} providing the sensor.
+     * @return the {@link Pattern} with id "parentid".
+     */
+    private static Pattern createParentPattern(ServerInstance inst) {
+        Sensor s = inst.getSensorCtrl().getByName("temp1");
+        Pattern parent = new Pattern("parentid", false, "Parent pattern");
+        PatternInputNode input = new PatternInputNode("inputid", new Point(0, 0), "outputname", "childid",
+                new Operand(s.getAttributes().toArray(new Attribute[0])));
+        PatternInputNode input2 = new PatternInputNode("inputid2", new Point(0, 0), "outputname", "childid",
+                new Operand(s.getAttributes().toArray(new Attribute[0])));
+        SocketActionNode action = new SocketActionNode("actionid", new Point(0, 0));
+        SocketActionNode action2 = new SocketActionNode("actionid2", new Point(0, 0));
+        parent.addInputNode(input);
+        parent.addInputNode(input2);
+        parent.addOutputNode(action);
+        parent.addOutputNode(action2);
+        input.setOutput(action);
+        input2.setOutput(action2);
+        action.setMessage("message");
+        action2.setMessage("message2");
+        return parent;
+    }
+    
     @Test
     // @Ignore
     public void testNestedPattern() {
@@ -6,12 +6,14 @@ package stream.vispar.server.engine;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 import org.junit.Test;
 
 import stream.vispar.server.core.ISocketHandler;
+import stream.vispar.server.core.SocketTopic;
 
 /**
  * Tests for {@link SocketAction}.
@@ -47,6 +49,20 @@ public class SocketActionTest {
         verify(handler, times(1)).sendMessage("Hello Socket!");
     }
 
+    /**
+     * Test method for {@link SocketAction#execute()}.
+     * 
+     * Checks that the message is published to the topic of the action.
+     */
+    @Test
+    public void testExecuteTopic() {
+        ISocketHandler handler = mock(ISocketHandler.class);
+        SocketTopic topic = new SocketTopic("p1", "n1", "Kitchen");
+        new SocketAction(handler, "Hello Socket!", topic).execute();
+        verify(handler, times(1)).publish(topic, "Hello Socket!");
+        verify(handler, never()).sendMessage("Hello Socket!");
+    }
+
     /**
      * Test method for {@link toString()}.
      */
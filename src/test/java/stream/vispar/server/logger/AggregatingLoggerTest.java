@@ -0,0 +1,172 @@
+package stream.vispar.server.logger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.startsWith;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.Test;
+
+import stream.vispar.server.localization.Localizer;
+
+/**
+ * Tests for {@link AggregatingLogger}.
+ * 
+ * @author Micha Hanselmann
+ */
+public class AggregatingLoggerTest {
+
+    /**
+     * Interval long enough to never elapse during a test (in milliseconds).
+     */
+    private static final long NEVER = 3600000;
+
+    /**
+     * Logger implementation for testing purposes.
+     */
+    private static class TestLogger implements ILogger {
+
+        private final List<String> lines = new CopyOnWriteArrayList<>();
+        private final LogLevel level;
+
+        TestLogger(LogLevel level) {
+            this.level = level;
+        }
+
+        @Override
+        public void log(String message) {
+            lines.add(message);
+        }
+
+        @Override
+        public void logError(String error) {
+            lines.add("[ERROR] " + error);
+        }
+
+        @Override
+        public boolean isEnabled(LogLevel messageLevel) {
+            return messageLevel.compareTo(level) >= 0;
+        }
+    }
+
+
+    /**
+     * Test method for {@link AggregatingLogger#logRepeated}.
+     * 
+     * Checks that repeated messages are summarized per source and only the first message is created.
+     */
+    @Test
+    public void testLogRepeated() {
+        TestLogger target = new TestLogger(LogLevel.INFO);
+        AggregatingLogger logger = new AggregatingLogger(target, NEVER);
+        int[] created = new int[1];
+        for (int i = 1; i <= 3; i++) {
+            logger.logRepeated("sensor", "temp1", LogLevel.DEBUG, i * 1000, () -> "Event " + ++created[0]);
+        }
+        logger.logRepeated("sensor", "temp2", LogLevel.DEBUG, 5000, () -> "Single event");
+        logger.logRepeated("pattern", "temp1", LogLevel.INFO, 6000, () -> "Recognized");
+        assertThat(target.lines, empty());
+
+        logger.close();
+        assertThat(created[0], equalTo(1));
+        assertThat(target.lines.size(), equalTo(3));
+        assertThat(target.lines, containsInAnyOrder(startsWith("sensor temp1: 3 messages from "),
+                equalTo("Single event"), equalTo("Recognized")));
+        assertThat(target.lines.stream().filter(line -> line.startsWith("sensor temp1")).findFirst().get(),
+                containsString("first: Event 1"));
+    }
+
+    /**
+     * Test method for {@link AggregatingLogger#AggregatingLogger(ILogger, long, Localizer)}.
+     * 
+     * Checks that summaries are localized.
+     */
+    @Test
+    public void testLogRepeatedLocalized() {
+        TestLogger target = new TestLogger(LogLevel.INFO);
+        AggregatingLogger logger = new AggregatingLogger(target, NEVER, new Localizer(Locale.GERMANY));
+        logger.logRepeated("sensor", "temp1", LogLevel.DEBUG, 1000, () -> "Event 1");
+        logger.logRepeated("sensor", "temp1", LogLevel.DEBUG, 2000, () -> "Event 2");
+        logger.close();
+        assertThat(target.lines, contains(startsWith("sensor temp1: 2 Nachrichten von ")));
+        assertThat(target.lines.get(0), containsString("erste: Event 1"));
+    }
+
+    /**
+     * Test method for {@link AggregatingLogger#logRepeated}.
+     * 
+     * Checks that errors are not summarized.
+     */
+    @Test
+    public void testLogRepeatedError() {
+        TestLogger target = new TestLogger(LogLevel.INFO);
+        AggregatingLogger logger = new AggregatingLogger(target, NEVER);
+        logger.logRepeated("sensor", "temp1", LogLevel.ERROR, 1000, () -> "Oh no!");
+        logger.logRepeated("sensor", "temp1", LogLevel.ERROR, 2000, () -> "Oh no!");
+        assertThat(target.lines, contains("[ERROR] Oh no!", "[ERROR] Oh no!"));
+        logger.close();
+        assertThat(target.lines.size(), equalTo(2));
+    }
+
+    /**
+     * Test method for {@link AggregatingLogger#logRepeated}.
+     * 
+     * Checks that nothing is summarized if only errors are logged.
+     */
+    @Test
+    public void testLogRepeatedDisabled() {
+        TestLogger target = new TestLogger(LogLevel.ERROR);
+        AggregatingLogger logger = new AggregatingLogger(target, NEVER);
+        logger.logRepeated("sensor", "temp1", LogLevel.DEBUG, 1000, () -> {
+            throw new AssertionError("message must not be created");
+        });
+        logger.close();
+        assertThat(target.lines, empty());
+    }
+
+    /**
+     * Test method for {@link AggregatingLogger#AggregatingLogger(ILogger, long)}.
+     * 
+     * Checks that summaries are logged periodically.
+     * 
+     * @throws InterruptedException
+     *          if interrupted while waiting.
+     */
+    @Test
+    public void testInterval() throws InterruptedException {
+        TestLogger target = new TestLogger(LogLevel.INFO);
+        AggregatingLogger logger = new AggregatingLogger(target, 20);
+        logger.logRepeated("sensor", "temp1", LogLevel.DEBUG, 1000, () -> "First");
+        for (int i = 0; i < 100 && target.lines.isEmpty(); i++) {
+            Thread.sleep(20);
+        }
+        assertThat(target.lines, contains("First"));
+
+        logger.logRepeated("sensor", "temp1", LogLevel.DEBUG, 2000, () -> "Second");
+        for (int i = 0; i < 100 && target.lines.size() < 2; i++) {
+            Thread.sleep(20);
+        }
+        logger.close();
+        assertThat(target.lines, contains("First", "Second"));
+    }
+
+    /**
+     * Test method for {@link AggregatingLogger#log(String)}.
+     */
+    @Test
+    public void testLog() {
+        TestLogger target = new TestLogger(LogLevel.INFO);
+        AggregatingLogger logger = new AggregatingLogger(target, NEVER);
+        logger.log("Hello Log.");
+        logger.logError("Hello Error.");
+        assertThat(target.lines, contains("Hello Log.", "[ERROR] Hello Error."));
+        logger.close();
+    }
+}
@@ -79,4 +79,44 @@ public class ConsoleLoggerTest {
         logger.logError("Hello Error.");
         assertThat(consoleData, containsString("[ERROR] Hello Error."));
     }
+
+    /**
+     * Test method for {@link ConsoleLogger#debug(java.util.function.Supplier)}.
+     */
+    @Test
+    public void testDebug() {
+        ConsoleLogger logger = new ConsoleLogger(testConsole, false, LogLevel.DEBUG);
+        logger.debug(() -> "Hello Debug.");
+        assertThat(consoleData, equalTo("[DEBUG] Hello Debug."));
+    }
+
+    /**
+     * Test method for {@link ConsoleLogger#debug(java.util.function.Supplier)}.
+     * 
+     * Checks that debug messages are not even created by default.
+     */
+    @Test
+    public void testDebugDisabled() {
+        ConsoleLogger logger = new ConsoleLogger(testConsole, false);
+        assertThat(logger.isEnabled(LogLevel.DEBUG), equalTo(false));
+        logger.debug(() -> {
+            throw new AssertionError("message must not be created");
+        });
+        assertThat(consoleData, equalTo(""));
+    }
+
+    /**
+     * Test method for {@link ConsoleLogger#isEnabled(LogLevel)}.
+     * 
+     * Checks that only errors are logged on error level.
+     */
+    @Test
+    public void testLevelError() {
+        ConsoleLogger logger = new ConsoleLogger(testConsole, false, LogLevel.ERROR);
+        logger.log("Hello Log!");
+        logger.info(() -> "Hello Info!");
+        assertThat(consoleData, equalTo(""));
+        logger.logError("Hello Error.");
+        assertThat(consoleData, equalTo("[ERROR] Hello Error."));
+    }
 }
@@ -1,15 +1,30 @@
 package stream.vispar.server.logger;
 
 import org.junit.After;
+import org.junit.Assume;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.startsWith;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
+import java.util.zip.GZIPInputStream;
 
 /**
  * Tests for {@link FileLogger}.
@@ -18,6 +33,12 @@ import java.util.List;
  */
 public class FileLoggerTest {
 
+    /**
+     * Folder for files of a single test.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     /**
      * Cleanup.
      * 
@@ -27,6 +48,7 @@ public class FileLoggerTest {
     public void tearDown() throws Exception {
         Files.deleteIfExists(Paths.get("test.log"));
         Files.deleteIfExists(Paths.get("testError.log"));
+        Files.deleteIfExists(Paths.get("testDebug.log"));
     }
 
     /**
@@ -34,7 +56,7 @@ public class FileLoggerTest {
      */
     @Test
     public void testFileLogger() {
-        new FileLogger("test.log", false);
+        new FileLogger("test.log", false).close();
         assertThat(Files.exists(Paths.get("test.log")), equalTo(true));
     }
 
@@ -67,6 +89,7 @@ public class FileLoggerTest {
     public void testLog() throws Exception {
         FileLogger logger = new FileLogger("test.log", true);
         logger.log("Hello Log!");
+        logger.close();
         List<String> lines = Files.readAllLines(Paths.get("test.log"));
         assertThat(lines.size(), equalTo(1));
         assertThat(lines.get(0), containsString("Hello Log!"));
@@ -81,8 +104,155 @@ public class FileLoggerTest {
     public void testLogError() throws Exception {
         FileLogger logger = new FileLogger("testError.log", false);
         logger.logError("Oh no!");
+        logger.close();
         List<String> lines = Files.readAllLines(Paths.get("testError.log"));
         assertThat(lines.size(), equalTo(1));
         assertThat(lines.get(0), equalTo("[ERROR] Oh no!"));
     }
-}
+
+    /**
+     * Test method for {@link FileLogger#debug(java.util.function.Supplier)}.
+     * 
+     * Checks that debug messages are only written on debug level.
+     * 
+     * @throws Exception io problem.
+     */
+    @Test
+    public void testDebug() throws Exception {
+        FileLogger info = new FileLogger("testDebug.log", false);
+        info.debug(() -> "Hidden");
+        FileLogger debug = new FileLogger("testDebug.log", false, LogLevel.DEBUG);
+        debug.debug(() -> "Visible");
+        info.close();
+        debug.close();
+        List<String> lines = Files.readAllLines(Paths.get("testDebug.log"));
+        assertThat(lines.size(), equalTo(1));
+        assertThat(lines.get(0), equalTo("[DEBUG] Visible"));
+    }
+
+    /**
+     * Test method for {@link FileLogger#flush()}.
+     * 
+     * Checks that all messages are written in order, even if they exceed the buffer.
+     * 
+     * @throws Exception io problem.
+     */
+    @Test
+    public void testFlush() throws Exception {
+        FileLogger logger = new FileLogger(folder.getRoot() + "/test.log", false, LogLevel.INFO, 16,
+                OverflowPolicy.BLOCK, 0, 0);
+        for (int i = 0; i < 1000; i++) {
+            logger.log("Message " + i);
+        }
+        logger.flush();
+        List<String> lines = Files.readAllLines(folder.getRoot().toPath().resolve("test.log"));
+        assertThat(lines.size(), equalTo(1000));
+        for (int i = 0; i < 1000; i++) {
+            assertThat(lines.get(i), equalTo("Message " + i));
+        }
+        logger.close();
+    }
+
+    /**
+     * Test method for {@link FileLogger#log(String)}.
+     * 
+     * Checks that dropped messages are reported.
+     * 
+     * @throws Exception io problem.
+     */
+    @Test
+    public void testLogDrop() throws Exception {
+        FileLogger logger = new FileLogger(folder.getRoot() + "/test.log", false, LogLevel.INFO, 1,
+                OverflowPolicy.DROP, 0, 0);
+        for (int i = 0; i < 1000; i++) {
+            logger.log("Message");
+        }
+        logger.close();
+        int logged = 0;
+        for (String line : Files.readAllLines(folder.getRoot().toPath().resolve("test.log"))) {
+            if (line.equals("Message")) {
+                logged++;
+            } else {
+                assertThat(line, startsWith("[ERROR] "));
+                logged += Integer.valueOf(line.split(" ")[1]);
+            }
+        }
+        assertThat(logged, equalTo(1000));
+    }
+
+    /**
+     * Test method for {@link FileLogger#log(String)}.
+     * 
+     * Checks that the file is rotated by size and rotated files are compressed.
+     * 
+     * @throws Exception io problem.
+     */
+    @Test
+    public void testRotation() throws Exception {
+        FileLogger logger = new FileLogger(folder.getRoot() + "/test.log", false, LogLevel.INFO, 16,
+                OverflowPolicy.BLOCK, 100, 0);
+        String message = "0123456789012345678901234567890123456789";
+        for (int i = 0; i < 10; i++) {
+            logger.log(message);
+            logger.flush();
+        }
+        logger.close();
+
+        int lines = Files.readAllLines(folder.getRoot().toPath().resolve("test.log")).size();
+        assertThat(lines, lessThanOrEqualTo(2));
+        File[] rotated = folder.getRoot().listFiles((dir, name) -> name.endsWith(".gz"));
+        for (File segment : rotated) {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new GZIPInputStream(new FileInputStream(segment)), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    assertThat(line, equalTo(message));
+                    lines++;
+                }
+            }
+        }
+        assertThat(rotated.length, greaterThan(0));
+        assertThat(lines, equalTo(10));
+        assertThat(folder.getRoot().list().length, equalTo(rotated.length + 1));
+    }
+
+    /**
+     * Test method for {@link FileLogger#log(String)}.
+     * 
+     * Checks that logging continues in the current file if it cannot be rotated.
+     * 
+     * @throws Exception cause bad things sometimes happen.
+     */
+    @Test
+    public void testRotationFailure() throws Exception {
+        File dir = folder.newFolder("logs");
+        FileLogger logger = new FileLogger(dir + "/test.log", false, LogLevel.INFO, 16,
+                OverflowPolicy.BLOCK, 100, 0);
+        String message = "0123456789012345678901234567890123456789";
+        PrintStream err = System.err;
+        ByteArrayOutputStream reported = new ByteArrayOutputStream();
+        Path path = dir.toPath();
+        try {
+            dir.setWritable(false);
+            Assume.assumeFalse(Files.isWritable(path));
+            System.setErr(new PrintStream(reported, true, "UTF-8"));
+            for (int i = 0; i < 10; i++) {
+                logger.log(message);
+                logger.flush();
+            }
+        } finally {
+            System.setErr(err);
+            dir.setWritable(true);
+            logger.close();
+        }
+
+        List<String> lines = Files.readAllLines(path.resolve("test.log"));
+        assertThat(lines.size(), equalTo(10));
+        for (String line : lines) {
+            assertThat(line, equalTo(message));
+        }
+        assertThat(dir.list().length, equalTo(1));
+        String[] failures = reported.toString("UTF-8").split("Could not rotate logfile", -1);
+        assertThat(failures.length, equalTo(2));
+    }
+}
\ No newline at end of file
@@ -4,6 +4,7 @@
 package stream.vispar.server.logger;
 
 import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.MatcherAssert.assertThat;
 import org.junit.Test;
 
@@ -36,6 +37,17 @@ public class MultiLoggerTest {
         }
     }
     
+    /**
+     * Logger implementation for testing purposes not logging debug messages.
+     */
+    private class ConsoleLoggerStub extends TestLogger {
+        
+        @Override
+        public boolean isEnabled(LogLevel level) {
+            return level != LogLevel.DEBUG;
+        }
+    }
+    
 
     /**
      * Test method for {@link MultiLogger#log(String)}.
@@ -69,6 +81,40 @@ public class MultiLoggerTest {
         assertThat(t2.getLog(), containsString("[ERROR] Hello Error!\n"));
     }
 
+    /**
+     * Test method for {@link MultiLogger#debug(java.util.function.Supplier)}.
+     * 
+     * Checks that the message is created once and only passed to loggers logging debug messages.
+     */
+    @Test
+    public void testDebug() {
+        TestLogger t1 = new TestLogger();
+        ConsoleLoggerStub t2 = new ConsoleLoggerStub();
+        MultiLogger multi = new MultiLogger();
+        multi.addLogger(t1);
+        multi.addLogger(t2);
+        
+        int[] created = new int[1];
+        multi.debug(() -> "Hello Debug " + ++created[0]);
+        assertThat(t1.getLog(), containsString("Hello Debug 1\n"));
+        assertThat(t2.getLog(), equalTo(""));
+        assertThat(created[0], equalTo(1));
+    }
+
+    /**
+     * Test method for {@link MultiLogger#isEnabled(LogLevel)}.
+     */
+    @Test
+    public void testIsEnabled() {
+        MultiLogger multi = new MultiLogger();
+        multi.addLogger(new ConsoleLoggerStub());
+        assertThat(multi.isEnabled(LogLevel.DEBUG), equalTo(false));
+        assertThat(multi.isEnabled(LogLevel.INFO), equalTo(true));
+        
+        multi.addLogger(new TestLogger());
+        assertThat(multi.isEnabled(LogLevel.DEBUG), equalTo(true));
+    }
+
     /**
      * Test method for {@link MultiLogger#addLogger(ILogger)}.
      * 